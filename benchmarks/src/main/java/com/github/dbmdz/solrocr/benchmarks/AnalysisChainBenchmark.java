@@ -0,0 +1,78 @@
+package com.github.dbmdz.solrocr.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.util.AttributeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import solrocr.OcrAlternativesFilterFactory;
+import solrocr.OcrCharFilterFactory;
+
+/**
+ * Benchmark for the indexing analysis chain of an OCR field, i.e. {@link OcrCharFilterFactory} →
+ * tokenizer → {@link OcrAlternativesFilterFactory.OcrAlternativesFilter}.
+ *
+ * <p>The tokenizer and filter are re-used across invocations, just like Lucene does it with its
+ * per-thread token stream components.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisChainBenchmark {
+  @Param({"synthetic", "bundled"})
+  public String corpus;
+
+  @Param({"hocr", "alto", "miniocr"})
+  public String format;
+
+  @Param({"false", "true"})
+  public boolean expandAlternatives;
+
+  private String content;
+  private OcrCharFilterFactory charFilterFactory;
+  private Tokenizer tokenizer;
+  private TokenFilter filter;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    content = BenchmarkDocuments.get(corpus, format).readString();
+    Map<String, String> args = new HashMap<>();
+    args.put("expandAlternatives", Boolean.toString(expandAlternatives));
+    charFilterFactory = new OcrCharFilterFactory(args);
+    // Tokens with alternatives can get very long, so we need to raise the maximum token length
+    tokenizer = new WhitespaceTokenizer(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY, 1024);
+    filter = new OcrAlternativesFilterFactory.OcrAlternativesFilter(tokenizer);
+  }
+
+  @Benchmark
+  public int analyze() throws IOException {
+    tokenizer.setReader(charFilterFactory.create(new StringReader(content)));
+    filter.reset();
+    int numTokens = 0;
+    while (filter.incrementToken()) {
+      numTokens++;
+    }
+    filter.end();
+    filter.close();
+    return numTokens;
+  }
+}
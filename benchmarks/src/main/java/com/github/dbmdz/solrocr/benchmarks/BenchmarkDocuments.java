@@ -0,0 +1,239 @@
+package com.github.dbmdz.solrocr.benchmarks;
+
+import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.FileSourceReader;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Access to the documents that the benchmarks operate on.
+ *
+ * <p>Documents are identified by a corpus and a format name, both of which are usually JMH
+ * parameters:
+ *
+ * <ul>
+ *   <li>{@code synthetic}: Documents generated by {@link SyntheticOcr}, available for all formats
+ *   <li>{@code bundled}: Real-world documents from the test resources of the plugin
+ *   <li>{@code example}: The first document from the corpora in {@code example/data}, only hOCR
+ *       (Google 1000 Books) and ALTO (BNL L'Union) are available. The data needs to be downloaded
+ *       with {@code example/ingest.py} before.
+ * </ul>
+ *
+ * <p>Paths are resolved against the repository root, which is determined from the {@code
+ * solrocr.root} system property or by searching upwards from the working directory.
+ */
+public final class BenchmarkDocuments {
+  private static final Map<String, Path> syntheticCache = new ConcurrentHashMap<>();
+
+  private BenchmarkDocuments() {}
+
+  /** A document to run benchmarks on. */
+  public static final class Document {
+    public final Path path;
+    public final OcrFormat format;
+    /** A term that occurs multiple times in the document */
+    public final String term;
+
+    private final String termPrefix;
+    private final String termSuffix;
+
+    private Document(
+        Path path, OcrFormat format, String term, String termPrefix, String termSuffix) {
+      this.path = path;
+      this.format = format;
+      this.term = term;
+      this.termPrefix = termPrefix;
+      this.termSuffix = termSuffix;
+    }
+
+    public byte[] readBytes() throws IOException {
+      return Files.readAllBytes(path);
+    }
+
+    public String readString() throws IOException {
+      return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    /** Open a reader for the document that is configured like the plugin's default reader. */
+    public SourceReader openReader(int sectionSize, int maxCacheEntries) throws IOException {
+      return new FileSourceReader(
+          path, SourcePointer.parse(path.toString()), sectionSize, maxCacheEntries);
+    }
+
+    /** Open a reader with a section cache that is big enough for the whole document. */
+    public SourceReader openFullyCachedReader(int sectionSize) throws IOException {
+      int numSections = (int) Math.ceil((double) Files.size(path) / sectionSize);
+      SourceReader reader = openReader(sectionSize, numSections);
+      for (int offset = 0; offset < reader.length(); offset += sectionSize) {
+        reader.getAsciiSection(offset);
+      }
+      return reader;
+    }
+
+    /**
+     * Find the UTF-8 byte offsets of the occurrences of {@link #term} in the document.
+     *
+     * @return an array of {@code [start, end]} pairs, i.e. the offsets as they would be stored in
+     *     the index
+     */
+    public int[][] findTermOffsets() throws IOException {
+      byte[] haystack = readBytes();
+      byte[] needle = (termPrefix + term + termSuffix).getBytes(StandardCharsets.UTF_8);
+      int prefixLen = termPrefix.getBytes(StandardCharsets.UTF_8).length;
+      int termLen = term.getBytes(StandardCharsets.UTF_8).length;
+      int[][] out = new int[16][];
+      int numFound = 0;
+      outer:
+      for (int i = 0; i <= haystack.length - needle.length; i++) {
+        for (int j = 0; j < needle.length; j++) {
+          if (haystack[i + j] != needle[j]) {
+            continue outer;
+          }
+        }
+        if (numFound == out.length) {
+          out = Arrays.copyOf(out, out.length * 2);
+        }
+        out[numFound++] = new int[] {i + prefixLen, i + prefixLen + termLen};
+      }
+      if (numFound == 0) {
+        throw new IllegalStateException(
+            String.format(Locale.US, "Term '%s' does not occur in %s", term, path));
+      }
+      return Arrays.copyOf(out, numFound);
+    }
+  }
+
+  /**
+   * Get a document.
+   *
+   * @param corpus the corpus to get the document from, one of {@code synthetic}, {@code bundled} or
+   *     {@code example}
+   * @param format the format of the document, one of {@code hocr}, {@code alto} or {@code miniocr}
+   */
+  public static Document get(String corpus, String format) throws IOException {
+    switch (corpus) {
+      case "synthetic":
+        return document(synthetic(format), format, SyntheticOcr.TERM);
+      case "bundled":
+        return bundled(format);
+      case "example":
+        return example(format);
+      default:
+        throw new IllegalArgumentException("Unknown corpus: " + corpus);
+    }
+  }
+
+  private static Document document(Path path, String format, String term) {
+    switch (format) {
+      case "hocr":
+        return new Document(path, new HocrFormat(), term, ">", "<");
+      case "alto":
+        return new Document(path, new AltoFormat(), term, "CONTENT=\"", "\"");
+      case "miniocr":
+        return new Document(path, new MiniOcrFormat(), term, ">", "<");
+      default:
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+  }
+
+  private static Path synthetic(String format) {
+    return syntheticCache.computeIfAbsent(
+        format,
+        f -> {
+          SyntheticOcr generator = new SyntheticOcr(20, 8, 12, 10, true);
+          String doc;
+          switch (f) {
+            case "hocr":
+              doc = generator.hocr();
+              break;
+            case "alto":
+              doc = generator.alto();
+              break;
+            case "miniocr":
+              doc = generator.miniOcr();
+              break;
+            default:
+              throw new IllegalArgumentException("Unknown format: " + f);
+          }
+          try {
+            Path path = Files.createTempFile("synthetic-", "." + f);
+            path.toFile().deleteOnExit();
+            Files.write(path, doc.getBytes(StandardCharsets.UTF_8));
+            return path;
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        });
+  }
+
+  private static Document bundled(String format) {
+    Path dataDir = getRepositoryRoot().resolve("src/test/resources/data");
+    switch (format) {
+      case "hocr":
+        return document(dataDir.resolve("sn83032300_1887_07_16_3.html"), format, "the");
+      case "alto":
+        return document(dataDir.resolve("sn83032300_1881_12_29_3.xml"), format, "the");
+      case "miniocr":
+        return document(dataDir.resolve("miniocr.xml"), format, "der");
+      default:
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+  }
+
+  private static Document example(String format) throws IOException {
+    Path dataDir = getRepositoryRoot().resolve("example/data");
+    Path corpusDir;
+    String term;
+    switch (format) {
+      case "hocr":
+        corpusDir = dataDir.resolve("google1000");
+        term = "the";
+        break;
+      case "alto":
+        corpusDir = dataDir.resolve("bnl_lunion");
+        term = "de";
+        break;
+      default:
+        throw new IllegalArgumentException("No example documents available for format " + format);
+    }
+    Optional<Path> path;
+    try (Stream<Path> files = Files.walk(corpusDir)) {
+      path = files.filter(Files::isRegularFile).sorted().findFirst();
+    }
+    if (!path.isPresent()) {
+      throw new IllegalStateException(
+          "No documents in " + corpusDir + ", please download them with example/ingest.py");
+    }
+    return document(path.get(), format, term);
+  }
+
+  private static Path getRepositoryRoot() {
+    String configured = System.getProperty("solrocr.root");
+    if (configured != null) {
+      return Paths.get(configured);
+    }
+    Path dir = Paths.get("").toAbsolutePath();
+    while (dir != null) {
+      if (Files.isDirectory(dir.resolve("src/test/resources/data"))) {
+        return dir;
+      }
+      dir = dir.getParent();
+    }
+    throw new IllegalStateException(
+        "Could not find the repository root, please set the solrocr.root system property");
+  }
+}
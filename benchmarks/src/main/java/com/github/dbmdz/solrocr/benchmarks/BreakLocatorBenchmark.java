@@ -0,0 +1,91 @@
+package com.github.dbmdz.solrocr.benchmarks;
+
+import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.model.OcrBlock;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for locating breaks around term matches with the {@link
+ * com.github.dbmdz.solrocr.breaklocator.TagBreakLocator} (ALTO, MiniOCR) and {@link
+ * com.github.dbmdz.solrocr.formats.hocr.HocrClassBreakLocator} (hOCR).
+ *
+ * <p>Like during highlighting, a new locator is created for every document, i.e. every invocation,
+ * so the internal caches of the locators only help for breaks that are close to each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BreakLocatorBenchmark {
+  /** Maximum number of matches per invocation, roughly what a highlighting request looks at */
+  private static final int MAX_MATCHES = 100;
+
+  @Param({"synthetic", "bundled"})
+  public String corpus;
+
+  @Param({"hocr", "alto", "miniocr"})
+  public String format;
+
+  @Param({"LINE", "BLOCK"})
+  public OcrBlock blockType;
+
+  private BenchmarkDocuments.Document doc;
+  private SourceReader reader;
+  private int[] matchOffsets;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    doc = BenchmarkDocuments.get(corpus, format);
+    // Cache the whole document, we only want to measure the break locator
+    reader = doc.openFullyCachedReader(8 * 1024);
+    int[][] termOffsets = doc.findTermOffsets();
+    int numMatches = Math.min(MAX_MATCHES, termOffsets.length);
+    matchOffsets = new int[numMatches];
+    for (int i = 0; i < numMatches; i++) {
+      // Spread the matches across the whole document
+      matchOffsets[i] = termOffsets[(int) ((long) i * termOffsets.length / numMatches)][0];
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+  }
+
+  @Benchmark
+  public long following() throws IOException {
+    BreakLocator locator = doc.format.getBreakLocator(reader, blockType);
+    long sum = 0;
+    for (int offset : matchOffsets) {
+      sum += locator.following(offset);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long preceding() throws IOException {
+    BreakLocator locator = doc.format.getBreakLocator(reader, blockType);
+    long sum = 0;
+    for (int offset : matchOffsets) {
+      sum += locator.preceding(offset);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,89 @@
+package com.github.dbmdz.solrocr.benchmarks;
+
+import com.github.dbmdz.solrocr.formats.OcrParser;
+import com.github.dbmdz.solrocr.formats.OcrParser.ParsingFeature;
+import com.github.dbmdz.solrocr.model.OcrBox;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for parsing complete documents with the {@link
+ * com.github.dbmdz.solrocr.formats.alto.AltoParser}, {@link
+ * com.github.dbmdz.solrocr.formats.hocr.HocrParser} and {@link
+ * com.github.dbmdz.solrocr.formats.miniocr.MiniOcrParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+  @Param({"synthetic", "bundled"})
+  public String corpus;
+
+  @Param({"hocr", "alto", "miniocr"})
+  public String format;
+
+  /**
+   * Which parsing features to enable, {@code indexing} corresponds to what the {@link
+   * com.github.dbmdz.solrocr.lucene.filters.OcrCharFilter} needs and {@code highlighting} to what
+   * the {@link com.github.dbmdz.solrocr.lucene.OcrPassageFormatter} needs.
+   */
+  @Param({"indexing", "highlighting"})
+  public String features;
+
+  private OcrFormat ocrFormat;
+  private String content;
+  private ParsingFeature[] parsingFeatures;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkDocuments.Document doc = BenchmarkDocuments.get(corpus, format);
+    ocrFormat = doc.format;
+    content = doc.readString();
+    switch (features) {
+      case "indexing":
+        parsingFeatures =
+            new ParsingFeature[] {
+              ParsingFeature.TEXT, ParsingFeature.OFFSETS, ParsingFeature.ALTERNATIVES
+            };
+        break;
+      case "highlighting":
+        parsingFeatures =
+            new ParsingFeature[] {
+              ParsingFeature.TEXT,
+              ParsingFeature.COORDINATES,
+              ParsingFeature.ALTERNATIVES,
+              ParsingFeature.HIGHLIGHTS,
+              ParsingFeature.PAGES
+            };
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown feature set: " + features);
+    }
+  }
+
+  @Benchmark
+  public void parse(Blackhole bh) {
+    OcrParser parser = ocrFormat.getParser(new StringReader(content), parsingFeatures);
+    for (OcrBox box : parser) {
+      bh.consume(box);
+    }
+  }
+}
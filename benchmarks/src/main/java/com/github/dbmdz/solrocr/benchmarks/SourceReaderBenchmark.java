@@ -0,0 +1,108 @@
+package com.github.dbmdz.solrocr.benchmarks;
+
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.MappedFileSourceReader;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link com.github.dbmdz.solrocr.reader.BaseSourceReader#getAsciiSection(int)}, the
+ * hottest method during passage formation.
+ *
+ * <p>Misses are forced by alternating between two sections on a reader that can only cache a
+ * single section. Since the OCR files will be in the page cache after the first iteration, this
+ * measures the overhead of reading and decoding a section, not the storage latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourceReaderBenchmark {
+  @Param({"synthetic", "bundled"})
+  public String corpus;
+
+  @Param({"hocr"})
+  public String format;
+
+  @Param({"channel", "mmap"})
+  public String readerMode;
+
+  @Param({"8192"})
+  public int sectionSize;
+
+  private SourceReader hitReader;
+  private SourceReader missReader;
+  private int[] hitOffsets;
+  private int[] missOffsets;
+  private int hitIdx = 0;
+  private int missIdx = 0;
+
+  private SourceReader openReader(BenchmarkDocuments.Document doc, int maxCacheEntries)
+      throws IOException {
+    if ("mmap".equals(readerMode)) {
+      return new MappedFileSourceReader(
+          Collections.singletonList(doc.path),
+          SourcePointer.parse(doc.path.toString()),
+          sectionSize,
+          maxCacheEntries,
+          null);
+    }
+    return doc.openReader(sectionSize, maxCacheEntries);
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkDocuments.Document doc = BenchmarkDocuments.get(corpus, format);
+    hitReader = openReader(doc, 10);
+    missReader = openReader(doc, 1);
+    int length = hitReader.length();
+    // Offsets within the first eight sections, all of which fit into the cache
+    hitOffsets = new int[64];
+    for (int i = 0; i < hitOffsets.length; i++) {
+      hitOffsets[i] = Math.min(length - 1, (i % 8) * sectionSize + (i * 127) % sectionSize);
+    }
+    // Offsets that alternate between the beginning and the end of the document
+    missOffsets = new int[64];
+    for (int i = 0; i < missOffsets.length; i++) {
+      missOffsets[i] = i % 2 == 0 ? (i * 127) % sectionSize : length - 1 - (i * 127) % sectionSize;
+    }
+    if (length < 2 * sectionSize) {
+      throw new IllegalStateException("Document is too small for the benchmark: " + doc.path);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    hitReader.close();
+    missReader.close();
+  }
+
+  @Benchmark
+  public SourceReader.Section cacheHit() throws IOException {
+    hitIdx = (hitIdx + 1) % hitOffsets.length;
+    return hitReader.getAsciiSection(hitOffsets[hitIdx]);
+  }
+
+  @Benchmark
+  public SourceReader.Section cacheMiss() throws IOException {
+    missIdx = (missIdx + 1) % missOffsets.length;
+    return missReader.getAsciiSection(missOffsets[missIdx]);
+  }
+}
@@ -0,0 +1,245 @@
+package com.github.dbmdz.solrocr.benchmarks;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generator for synthetic OCR documents.
+ *
+ * <p>The documents are generated from a fixed seed, so every run of a benchmark operates on exactly
+ * the same data. They contain multi-byte UTF-8 characters, XML entities and (optionally) OCR
+ * alternatives, so all of the slower code paths are exercised.
+ */
+public final class SyntheticOcr {
+  /** Term that is guaranteed to occur in every generated document. */
+  public static final String TERM = "Straße";
+
+  private static final String[] VOCABULARY = {
+    "the", "and", "of", "Straße", "über", "Zürich", "naïve", "café", "newspaper", "Lancaster",
+    "Intelligencer", "München", "Bibliothek", "déjà", "vu", "Ærø", "state", "library",
+    "highlighting", "Tom&amp;Jerry", "price", "1887.", "July", "Saturday", "«quoted»", "—", "a",
+    "in", "to", "is"
+  };
+
+  private static final int PAGE_WIDTH = 5000;
+  private static final int PAGE_HEIGHT = 7000;
+  private static final int LINE_HEIGHT = 50;
+  private static final int WORD_WIDTH = 120;
+
+  private final int numPages;
+  private final int blocksPerPage;
+  private final int linesPerBlock;
+  private final int wordsPerLine;
+  private final boolean withAlternatives;
+
+  public SyntheticOcr(
+      int numPages,
+      int blocksPerPage,
+      int linesPerBlock,
+      int wordsPerLine,
+      boolean withAlternatives) {
+    this.numPages = numPages;
+    this.blocksPerPage = blocksPerPage;
+    this.linesPerBlock = linesPerBlock;
+    this.wordsPerLine = wordsPerLine;
+    this.withAlternatives = withAlternatives;
+  }
+
+  private interface WordWriter {
+    void write(StringBuilder sb, String word, String alternative, int x, int y);
+  }
+
+  private String alternativeFor(Random rand, String word) {
+    if (!withAlternatives || rand.nextInt(10) != 0 || word.indexOf('&') >= 0) {
+      return null;
+    }
+    char[] chars = word.toCharArray();
+    chars[rand.nextInt(chars.length)] = 'x';
+    return new String(chars);
+  }
+
+  private void writeLine(StringBuilder sb, Random rand, int y, String separator, WordWriter out) {
+    for (int w = 0; w < wordsPerLine; w++) {
+      if (w > 0) {
+        sb.append(separator);
+      }
+      String word = VOCABULARY[rand.nextInt(VOCABULARY.length)];
+      out.write(sb, word, alternativeFor(rand, word), w * (WORD_WIDTH + 10), y);
+    }
+  }
+
+  /** Generate an hOCR document. */
+  public String hocr() {
+    Random rand = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    sb.append(
+        "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\""
+            + " \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">\n"
+            + "<html xmlns=\"http://www.w3.org/1999/xhtml\">\n<head>\n"
+            + "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\"/>\n"
+            + "<meta name=\"ocr-capabilities\""
+            + " content=\"ocr_page ocr_carea ocr_line ocrx_word\"/>\n"
+            + "</head>\n<body>\n");
+    for (int p = 0; p < numPages; p++) {
+      sb.append(
+          String.format(
+              Locale.US,
+              "<div class=\"ocr_page\" id=\"page_%d\" title=\"bbox 0 0 %d %d; ppageno %d\">\n",
+              p + 1,
+              PAGE_WIDTH,
+              PAGE_HEIGHT,
+              p));
+      for (int b = 0; b < blocksPerPage; b++) {
+        sb.append("<div class=\"ocr_carea\">\n");
+        for (int l = 0; l < linesPerBlock; l++) {
+          int y = (b * linesPerBlock + l) * LINE_HEIGHT;
+          sb.append(
+              String.format(
+                  Locale.US,
+                  "<span class=\"ocr_line\" title=\"bbox 0 %d %d %d\">",
+                  y,
+                  wordsPerLine * (WORD_WIDTH + 10),
+                  y + LINE_HEIGHT - 10));
+          writeLine(
+              sb,
+              rand,
+              y,
+              " ",
+              (out, word, alt, x, wy) -> {
+                out.append(
+                    String.format(
+                        Locale.US,
+                        "<span class=\"ocrx_word\" title=\"bbox %d %d %d %d; x_wconf 93\">",
+                        x,
+                        wy,
+                        x + WORD_WIDTH,
+                        wy + LINE_HEIGHT - 10));
+                if (alt == null) {
+                  out.append(word);
+                } else {
+                  out.append("<span class=\"alternatives\"><ins class=\"alt\">")
+                      .append(word)
+                      .append("</ins><del class=\"alt\">")
+                      .append(alt)
+                      .append("</del></span>");
+                }
+                out.append("</span>");
+              });
+          sb.append("</span>\n");
+        }
+        sb.append("</div>\n");
+      }
+      sb.append("</div>\n");
+    }
+    sb.append("</body>\n</html>\n");
+    return sb.toString();
+  }
+
+  /** Generate an ALTO document. */
+  public String alto() {
+    Random rand = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    sb.append(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v3#\">\n<Layout>\n");
+    for (int p = 0; p < numPages; p++) {
+      sb.append(
+          String.format(
+              Locale.US,
+              "<Page ID=\"page_%d\" WIDTH=\"%d\" HEIGHT=\"%d\" PHYSICAL_IMG_NR=\"%d\">\n"
+                  + "<PrintSpace>\n",
+              p + 1,
+              PAGE_WIDTH,
+              PAGE_HEIGHT,
+              p + 1));
+      for (int b = 0; b < blocksPerPage; b++) {
+        sb.append(String.format(Locale.US, "<TextBlock ID=\"block_%d_%d\">\n", p, b));
+        for (int l = 0; l < linesPerBlock; l++) {
+          int y = (b * linesPerBlock + l) * LINE_HEIGHT;
+          sb.append(
+              String.format(
+                  Locale.US,
+                  "<TextLine HPOS=\"0\" VPOS=\"%d\" WIDTH=\"%d\" HEIGHT=\"%d\">",
+                  y,
+                  wordsPerLine * (WORD_WIDTH + 10),
+                  LINE_HEIGHT - 10));
+          writeLine(
+              sb,
+              rand,
+              y,
+              "<SP/>",
+              (out, word, alt, x, wy) -> {
+                out.append(
+                    String.format(
+                        Locale.US,
+                        "<String HPOS=\"%d\" VPOS=\"%d\" WIDTH=\"%d\" HEIGHT=\"%d\" WC=\"0.93\""
+                            + " CONTENT=\"",
+                        x,
+                        wy,
+                        WORD_WIDTH,
+                        LINE_HEIGHT - 10));
+                out.append(word).append('"');
+                if (alt == null) {
+                  out.append("/>");
+                } else {
+                  out.append("><ALTERNATIVE>").append(alt).append("</ALTERNATIVE></String>");
+                }
+              });
+          sb.append("</TextLine>\n");
+        }
+        sb.append("</TextBlock>\n");
+      }
+      sb.append("</PrintSpace>\n</Page>\n");
+    }
+    sb.append("</Layout>\n</alto>\n");
+    return sb.toString();
+  }
+
+  /** Generate a MiniOCR document. */
+  public String miniOcr() {
+    Random rand = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<ocr>\n");
+    for (int p = 0; p < numPages; p++) {
+      sb.append(
+          String.format(
+              Locale.US,
+              "<p xml:id=\"page_%d\" wh=\"%d %d\">\n",
+              p + 1,
+              PAGE_WIDTH,
+              PAGE_HEIGHT));
+      for (int b = 0; b < blocksPerPage; b++) {
+        sb.append("<b>\n");
+        for (int l = 0; l < linesPerBlock; l++) {
+          int y = (b * linesPerBlock + l) * LINE_HEIGHT;
+          sb.append("<l>");
+          writeLine(
+              sb,
+              rand,
+              y,
+              " ",
+              (out, word, alt, x, wy) -> {
+                out.append(
+                    String.format(
+                        Locale.US,
+                        "<w x=\"%d %d %d %d\">",
+                        x,
+                        wy,
+                        WORD_WIDTH,
+                        LINE_HEIGHT - 10));
+                out.append(word);
+                if (alt != null) {
+                  out.append('⇿').append(alt);
+                }
+                out.append("</w>");
+              });
+          sb.append(" </l>\n");
+        }
+        sb.append("</b>\n");
+      }
+      sb.append("</p>\n");
+    }
+    sb.append("</ocr>\n");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,110 @@
+package com.github.dbmdz.solrocr.lucene;
+
+import com.github.dbmdz.solrocr.benchmarks.BenchmarkDocuments;
+import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.breaklocator.ContextBreakLocator;
+import com.github.dbmdz.solrocr.model.OcrBlock;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.util.BytesRef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for building snippets from passages with the {@link OcrPassageFormatter}.
+ *
+ * <p>Lives in the same package as the formatter to get access to its protected methods. The
+ * passages are built like the highlighter does it: Two lines of context around a term match,
+ * limited by the containing block. All sections of the document are cached in the reader, so no
+ * I/O is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PassageFormatterBenchmark {
+  /** Number of passages per invocation, i.e. a typical value for `hl.snippets` */
+  private static final int NUM_PASSAGES = 10;
+
+  @Param({"synthetic", "bundled"})
+  public String corpus;
+
+  @Param({"hocr", "alto", "miniocr"})
+  public String format;
+
+  @Param({"false", "true"})
+  public boolean trackPages;
+
+  private SourceReader reader;
+  private OcrPassageFormatter formatter;
+  private Passage[] passages;
+  private String[] fragments;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkDocuments.Document doc = BenchmarkDocuments.get(corpus, format);
+    reader = doc.openFullyCachedReader(8 * 1024);
+    formatter = doc.format.getPassageFormatter("<em>", "</em>", false, true, trackPages);
+    BreakLocator breakLocator =
+        new ContextBreakLocator(
+            doc.format.getBreakLocator(reader, OcrBlock.LINE),
+            doc.format.getBreakLocator(reader, OcrBlock.BLOCK),
+            2);
+    BytesRef term = new BytesRef(doc.term);
+    int[][] termOffsets = doc.findTermOffsets();
+    int numPassages = Math.min(NUM_PASSAGES, termOffsets.length);
+    passages = new Passage[numPassages];
+    fragments = new String[numPassages];
+    for (int i = 0; i < numPassages; i++) {
+      // Spread the passages across the whole document
+      int[] match = termOffsets[(int) ((long) i * termOffsets.length / numPassages)];
+      Passage passage = new Passage();
+      passage.setStartOffset(Math.max(0, breakLocator.preceding(match[0])));
+      passage.setEndOffset(breakLocator.following(match[1]));
+      passage.addMatch(match[0], match[1], term, 1);
+      passage.setScore(1.0f);
+      passages[i] = passage;
+      fragments[i] = formatter.getHighlightedFragment(passage, reader);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+  }
+
+  @Benchmark
+  public void getHighlightedFragment(Blackhole bh) throws IOException {
+    for (Passage passage : passages) {
+      bh.consume(formatter.getHighlightedFragment(passage, reader));
+    }
+  }
+
+  @Benchmark
+  public void parseFragment(Blackhole bh) {
+    for (String fragment : fragments) {
+      bh.consume(formatter.parseFragment(fragment, null));
+    }
+  }
+
+  @Benchmark
+  public Object format() {
+    return formatter.format(passages, reader);
+  }
+}
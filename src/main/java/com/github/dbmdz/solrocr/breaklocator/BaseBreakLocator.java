@@ -1,49 +1,32 @@
 package com.github.dbmdz.solrocr.breaklocator;
 
 import com.github.dbmdz.solrocr.reader.SourceReader;
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
+import com.github.dbmdz.solrocr.util.IntRangeMap;
 import java.io.IOException;
 import java.text.BreakIterator;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 /**
  * Simplified version of a {@link BreakIterator}, without most of the state (except for the text)
  * and automated caching.
  */
-@SuppressWarnings("UnstableApiUsage")
 public abstract class BaseBreakLocator implements BreakLocator {
 
   private static final String BOM_ASCII = "ï»¿";
-  private final RangeMap<Integer, Integer> forwardCache = TreeRangeMap.create();
-  private final RangeMap<Integer, Integer> backwardCache = TreeRangeMap.create();
-  protected final SourceReader text;
+
+  /** Maps offsets in {@code [preceding, following)} to the following break */
+  private final IntRangeMap forwardCache = new IntRangeMap();
 
   /**
-   * An "optimized" version of {@link String#lastIndexOf(String, int)}.
-   *
-   * <p>This optimization is a bit counter-intuitive, since, on the surface, it uses the absolute
-   * worst way to search for the last occurrence of a substring in a larger string, by starting from
-   * the front of the string and working forward until there are no more matches.
-   *
-   * <p>So why does using this approach speed up highlighting hOCR by ~25%? Well, during hOCR break
-   * locating, we need to look for multiple possible block type identifiers for each level in the
-   * block hierarchy, i.e. we often run into the situation there is no match. These cases are the
-   * absolute worst case for both {@link String#lastIndexOf(String, int)} and {@link
-   * String#indexOf(String, int)}. So why is the latter faster? Well, in recent Hotspot versions, it
-   * is SIMD-accelerated via compiler intrinsics. And the speed-up we get from these worst cases is
-   * significant enough to completely make up for the slightly worse performance in more ideal cases
-   * (~25% slower).
+   * Maps offsets in {@code (preceding, following]} to the preceding break, stored as {@code
+   * [preceding + 1, following + 1)}
    */
-  protected static int optimizedLastIndexOf(String haystack, String needle, int fromIdx) {
-    int from = -1;
-    int idx;
-    while ((idx = haystack.indexOf(needle, from + 1)) >= 0 && idx < fromIdx) {
-      from = idx;
-    }
-    return from;
-  }
+  private final IntRangeMap backwardCache = new IntRangeMap();
+
+  /** Scratch buffer for partial tags that span the boundary between two sections */
+  private byte[] overlapBuf = new byte[256];
+
+  protected final SourceReader text;
 
   protected BaseBreakLocator(SourceReader text) {
     this.text = text;
@@ -64,6 +47,54 @@ public abstract class BaseBreakLocator implements BreakLocator {
     return true;
   }
 
+  /** Get the buffer with the overlap, only valid up to the length returned when it was set. */
+  protected byte[] getOverlap() {
+    return overlapBuf;
+  }
+
+  /**
+   * Set the overlap to a part of a section.
+   *
+   * @return the length of the overlap
+   */
+  protected int setOverlap(byte[] src, int from, int to) {
+    int len = to - from;
+    ensureOverlapCapacity(len);
+    System.arraycopy(src, from, overlapBuf, 0, len);
+    return len;
+  }
+
+  /**
+   * Append a part of the following section to the overlap.
+   *
+   * @return the new length of the overlap
+   */
+  protected int appendOverlap(int overlapLen, byte[] src, int from, int to) {
+    int len = to - from;
+    ensureOverlapCapacity(overlapLen + len);
+    System.arraycopy(src, from, overlapBuf, overlapLen, len);
+    return overlapLen + len;
+  }
+
+  /**
+   * Prepend a part of the preceding section to the overlap.
+   *
+   * @return the new length of the overlap
+   */
+  protected int prependOverlap(int overlapLen, byte[] src, int from, int to) {
+    int len = to - from;
+    ensureOverlapCapacity(overlapLen + len);
+    System.arraycopy(overlapBuf, 0, overlapBuf, len, overlapLen);
+    System.arraycopy(src, from, overlapBuf, 0, len);
+    return overlapLen + len;
+  }
+
+  private void ensureOverlapCapacity(int len) {
+    if (len > overlapBuf.length) {
+      overlapBuf = Arrays.copyOf(overlapBuf, Math.max(len, overlapBuf.length * 2));
+    }
+  }
+
   @Override
   public SourceReader getText() {
     return text;
@@ -74,27 +105,27 @@ public abstract class BaseBreakLocator implements BreakLocator {
     if (offset >= this.text.length()) {
       return DONE;
     }
-    Integer cached = this.forwardCache.get(offset);
-    if (cached != null) {
-      return cached;
+    int cachedIdx = this.forwardCache.indexOf(offset);
+    if (cachedIdx >= 0) {
+      return this.forwardCache.getValue(cachedIdx);
     }
-    Entry<Range<Integer>, Integer> entry = this.backwardCache.getEntry(offset);
+    int entryIdx = this.backwardCache.indexOf(offset);
     int preceding;
-    if (entry == null) {
+    if (entryIdx < 0) {
       preceding = this.getPreceding(offset);
     } else {
-      if (entry.getKey().upperEndpoint() == offset) {
+      if (this.backwardCache.getEnd(entryIdx) - 1 == offset) {
         preceding = offset;
       } else {
-        preceding = entry.getValue();
+        preceding = this.backwardCache.getValue(entryIdx);
       }
     }
     int following = this.getFollowing(offset);
     if (following < 0) {
       following = this.text.length();
     }
-    this.forwardCache.put(Range.closedOpen(preceding, following), following);
-    this.backwardCache.put(Range.openClosed(preceding, following), preceding);
+    this.forwardCache.put(preceding, following, following);
+    this.backwardCache.put(preceding + 1, following + 1, preceding);
     return following;
   }
 
@@ -103,24 +134,24 @@ public abstract class BaseBreakLocator implements BreakLocator {
     if (offset <= 0) {
       return DONE;
     }
-    Integer cached = this.backwardCache.get(offset);
-    if (cached != null) {
-      return cached;
+    int cachedIdx = this.backwardCache.indexOf(offset);
+    if (cachedIdx >= 0) {
+      return this.backwardCache.getValue(cachedIdx);
     }
-    Entry<Range<Integer>, Integer> entry = this.forwardCache.getEntry(offset);
+    int entryIdx = this.forwardCache.indexOf(offset);
     int following;
-    if (entry == null) {
+    if (entryIdx < 0) {
       following = this.getFollowing(offset);
     } else {
-      if (entry.getKey().lowerEndpoint() == offset) {
+      if (this.forwardCache.getStart(entryIdx) == offset) {
         following = offset;
       } else {
-        following = entry.getValue();
+        following = this.forwardCache.getValue(entryIdx);
       }
     }
     int preceding = this.getPreceding(offset);
-    this.backwardCache.put(Range.openClosed(Math.max(0, preceding), following), preceding);
-    this.forwardCache.put(Range.closedOpen(Math.max(0, preceding), following), following);
+    this.backwardCache.put(Math.max(0, preceding) + 1, following + 1, preceding);
+    this.forwardCache.put(Math.max(0, preceding), following, following);
     return preceding;
   }
 
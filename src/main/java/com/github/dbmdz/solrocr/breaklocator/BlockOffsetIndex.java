@@ -0,0 +1,325 @@
+package com.github.dbmdz.solrocr.breaklocator;
+
+import com.github.dbmdz.solrocr.model.OcrBlock;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.model.OcrPage;
+import com.github.dbmdz.solrocr.model.OcrPageIndex;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache.FileMetadata;
+import com.github.dbmdz.solrocr.reader.FileSourceReader;
+import com.github.dbmdz.solrocr.reader.SectionCache.SourceKey;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Precomputed byte offsets of the block breaks in a single OCR file, optionally persisted to a
+ * sidecar file next to it.
+ *
+ * <p>The offsets for a combination of OCR format and block types are computed on first access, by
+ * running the format's own scanning {@link BreakLocator} over the whole file once. Hence they are
+ * guaranteed to be identical to the breaks the scanning locator would find. Afterwards, breaks can
+ * be located with a binary search via {@link OffsetIndexBreakLocator}.
+ *
+ * <p>Additionally, the index holds a table of all pages in the file (see {@link
+ * #getPages(OcrFormat)}), so pages can be looked up without parsing the page markup.
+ *
+ * <p>The sidecar file (see {@link #getSidecarPath(Path)}) stores the size and modification time of
+ * the OCR file it was built for, stale sidecars are ignored and overwritten.
+ */
+public class BlockOffsetIndex {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** Suffix that is appended to the name of the OCR file to get the name of the sidecar file */
+  public static final String SIDECAR_SUFFIX = ".ocrbreaks";
+
+  private static final int MAGIC = 0x4f435242; // "OCRB"
+  private static final int VERSION = 2;
+
+  /** Size of the sections the file is read in when computing the breaks */
+  private static final int SCAN_SECTION_SIZE = 64 * 1024;
+
+  /** Approximate overhead of an entry in the index in bytes, not counting the offsets */
+  private static final int ENTRY_OVERHEAD = 96;
+
+  private final Path path;
+  private final SourceKey key;
+  private final long fileSize;
+  private final long lastModified;
+  private final Map<String, int[]> breaks = new ConcurrentHashMap<>();
+  private final Map<String, OcrPageIndex> pages = new ConcurrentHashMap<>();
+  private volatile boolean persistent;
+
+  private BlockOffsetIndex(
+      Path path, SourceKey key, long fileSize, long lastModified, boolean persistent) {
+    this.path = path;
+    this.key = key;
+    this.fileSize = fileSize;
+    this.lastModified = lastModified;
+    this.persistent = persistent;
+  }
+
+  /**
+   * Open the index for an OCR file.
+   *
+   * @param path path to the OCR file
+   * @param persistent whether the index should be loaded from and stored to a sidecar file
+   */
+  public static BlockOffsetIndex open(Path path, boolean persistent) throws IOException {
+    FileMetadataCache.Snapshot files = FileMetadataCache.getShared().newSnapshot();
+    return open(
+        path, SourceKey.forPaths(Collections.singletonList(path), files), files, persistent);
+  }
+
+  /** Open the index for an OCR file, using the metadata the key was built from. */
+  static BlockOffsetIndex open(
+      Path path, SourceKey key, FileMetadataCache.Snapshot files, boolean persistent)
+      throws IOException {
+    FileMetadata metadata = files.get(path);
+    BlockOffsetIndex index =
+        new BlockOffsetIndex(path, key, metadata.getSize(), metadata.getLastModified(), persistent);
+    if (persistent) {
+      index.loadSidecar();
+    }
+    return index;
+  }
+
+  /** Get the path of the sidecar file for an OCR file. */
+  public static Path getSidecarPath(Path path) {
+    return path.resolveSibling(path.getFileName() + SIDECAR_SUFFIX);
+  }
+
+  private static String getEntryKey(OcrFormat format, OcrBlock... blockTypes) {
+    return format.getClass().getSimpleName()
+        + ":"
+        + Arrays.stream(blockTypes).map(OcrBlock::name).collect(Collectors.joining(","));
+  }
+
+  /** Get the identity of the OCR file the index was opened for. */
+  public SourceKey getKey() {
+    return key;
+  }
+
+  /** Get the size of the OCR file in bytes. */
+  public long getFileSize() {
+    return fileSize;
+  }
+
+  /** Check if the breaks for the format and block types have already been computed. */
+  public boolean hasBreaks(OcrFormat format, OcrBlock... blockTypes) {
+    return breaks.containsKey(getEntryKey(format, blockTypes));
+  }
+
+  /**
+   * Get the sorted offsets of all breaks for the given block types in the file, computing them if
+   * needed.
+   */
+  public int[] getBreaks(OcrFormat format, OcrBlock... blockTypes) throws IOException {
+    String key = getEntryKey(format, blockTypes);
+    int[] offsets = breaks.get(key);
+    if (offsets != null) {
+      return offsets;
+    }
+    synchronized (this) {
+      offsets = breaks.get(key);
+      if (offsets == null) {
+        offsets = computeBreaks(format, blockTypes);
+        breaks.put(key, offsets);
+        if (persistent) {
+          writeSidecar();
+        }
+      }
+    }
+    return offsets;
+  }
+
+  /** Check if the page table for the format has already been computed. */
+  public boolean hasPages(OcrFormat format) {
+    return pages.containsKey(format.getClass().getSimpleName());
+  }
+
+  /** Get the table of all pages in the file, computing it if needed. */
+  public OcrPageIndex getPages(OcrFormat format) throws IOException {
+    String key = format.getClass().getSimpleName();
+    OcrPageIndex pageIndex = pages.get(key);
+    if (pageIndex != null) {
+      return pageIndex;
+    }
+    synchronized (this) {
+      pageIndex = pages.get(key);
+      if (pageIndex == null) {
+        String breaksKey = getEntryKey(format, OcrBlock.PAGE);
+        int[] pageBreaks = breaks.get(breaksKey);
+        if (pageBreaks == null) {
+          pageBreaks = computeBreaks(format, OcrBlock.PAGE);
+          breaks.put(breaksKey, pageBreaks);
+        }
+        SourceReader reader = new FileSourceReader(path, null, SCAN_SECTION_SIZE, 2);
+        try {
+          pageIndex = OcrPageIndex.build(format, reader, pageBreaks);
+        } finally {
+          reader.close();
+        }
+        pages.put(key, pageIndex);
+        if (persistent) {
+          writeSidecar();
+        }
+      }
+    }
+    return pageIndex;
+  }
+
+  /** Get the approximate number of bytes used by the index in memory. */
+  public long ramBytesUsed() {
+    return breaks.values().stream().mapToLong(b -> ENTRY_OVERHEAD + 4L * b.length).sum()
+        + pages.values().stream().mapToLong(p -> ENTRY_OVERHEAD + p.ramBytesUsed()).sum();
+  }
+
+  private int[] computeBreaks(OcrFormat format, OcrBlock... blockTypes) throws IOException {
+    SourceReader reader = new FileSourceReader(path, null, SCAN_SECTION_SIZE, 2);
+    try {
+      BreakLocator locator = format.getBreakLocator(reader, blockTypes);
+      int length = reader.length();
+      int[] offsets = new int[1024];
+      int numBreaks = 0;
+      int offset = 0;
+      while (true) {
+        // Skip the range caches of the regular locators, we never look at an offset twice
+        int next =
+            locator instanceof BaseBreakLocator
+                ? ((BaseBreakLocator) locator).getFollowing(offset)
+                : locator.following(offset);
+        if (next <= offset || next >= length) {
+          break;
+        }
+        if (numBreaks == offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[numBreaks++] = next;
+        offset = next;
+      }
+      return Arrays.copyOf(offsets, numBreaks);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void loadSidecar() {
+    Path sidecar = getSidecarPath(path);
+    if (!Files.exists(sidecar)) {
+      return;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        log.warn("Ignoring block offset index with unknown format at {}", sidecar);
+        return;
+      }
+      if (in.readLong() != fileSize || in.readLong() != lastModified) {
+        // Stale index, the OCR file has changed since, will be overwritten
+        return;
+      }
+      int numEntries = in.readInt();
+      for (int i = 0; i < numEntries; i++) {
+        String key = in.readUTF();
+        int[] offsets = new int[in.readInt()];
+        for (int j = 0; j < offsets.length; j++) {
+          offsets[j] = in.readInt();
+        }
+        breaks.put(key, offsets);
+      }
+      int numPageEntries = in.readInt();
+      for (int i = 0; i < numPageEntries; i++) {
+        String key = in.readUTF();
+        int[] starts = new int[in.readInt()];
+        OcrPage[] pageEntries = new OcrPage[starts.length];
+        for (int j = 0; j < starts.length; j++) {
+          starts[j] = in.readInt();
+          String pageId = in.readUTF();
+          Dimension dims = in.readBoolean() ? new Dimension(in.readInt(), in.readInt()) : null;
+          pageEntries[j] = new OcrPage(pageId, dims);
+        }
+        pages.put(key, new OcrPageIndex(starts, pageEntries));
+      }
+    } catch (IOException e) {
+      log.warn(
+          "Could not read block offset index from {}, will rebuild it: {}", sidecar, e.toString());
+      breaks.clear();
+      pages.clear();
+    }
+  }
+
+  private void writeSidecar() {
+    Path sidecar = getSidecarPath(path);
+    Path tmpPath = null;
+    try {
+      tmpPath =
+          Files.createTempFile(
+              sidecar.toAbsolutePath().getParent(), sidecar.getFileName().toString(), ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fileSize);
+        out.writeLong(lastModified);
+        out.writeInt(breaks.size());
+        for (Map.Entry<String, int[]> entry : breaks.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeInt(entry.getValue().length);
+          for (int offset : entry.getValue()) {
+            out.writeInt(offset);
+          }
+        }
+        out.writeInt(pages.size());
+        for (Map.Entry<String, OcrPageIndex> entry : pages.entrySet()) {
+          OcrPageIndex pageIndex = entry.getValue();
+          out.writeUTF(entry.getKey());
+          out.writeInt(pageIndex.size());
+          for (int i = 0; i < pageIndex.size(); i++) {
+            OcrPage page = pageIndex.getPage(i);
+            out.writeInt(pageIndex.getStart(i));
+            out.writeUTF(page.id);
+            out.writeBoolean(page.dimensions != null);
+            if (page.dimensions != null) {
+              out.writeInt(page.dimensions.width);
+              out.writeInt(page.dimensions.height);
+            }
+          }
+        }
+      }
+      try {
+        Files.move(
+            tmpPath, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpPath, sidecar, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      // Most likely a read-only OCR directory, keep the index in memory only from now on
+      log.warn("Could not write block offset index to {}: {}", sidecar, e.toString());
+      persistent = false;
+      if (tmpPath != null) {
+        try {
+          Files.deleteIfExists(tmpPath);
+        } catch (IOException ignored) {
+          // Nothing we can do about it
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.github.dbmdz.solrocr.breaklocator;
+
+import com.github.dbmdz.solrocr.model.OcrBlock;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.model.OcrPageIndex;
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.SectionCache.SourceKey;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Node-wide cache of {@link BlockOffsetIndex} instances for OCR files, used to create {@link
+ * BreakLocator}s that locate breaks by binary search instead of scanning the markup.
+ *
+ * <p>Sources that consist of multiple files use the concatenation of the per-file indices, sources
+ * that are not backed by files (i.e. readers without a {@link SourcePointer}) fall back to the
+ * scanning locators of the format.
+ */
+public class BlockOffsetIndexCache {
+  public enum Mode {
+    /** Don't use an index, always scan the markup. */
+    NONE,
+    /** Build the index lazily and keep it in memory only. */
+    MEMORY,
+    /** Like {@link #MEMORY}, but also persist the index in a sidecar file next to the OCR file. */
+    SIDECAR;
+
+    public static Mode parse(String name) {
+      return Mode.valueOf(name.trim().toUpperCase(Locale.US));
+    }
+  }
+
+  private static BlockOffsetIndexCache shared;
+
+  private final Cache<SourceKey, BlockOffsetIndex> cache;
+  private final Mode mode;
+  private final long maxBytes;
+  private final boolean persistent;
+
+  /**
+   * Create a new cache.
+   *
+   * @param mode how the indices should be stored, must not be {@link Mode#NONE}
+   * @param maxBytes the maximum number of bytes the cached indices may occupy
+   */
+  public BlockOffsetIndexCache(Mode mode, long maxBytes) {
+    if (mode == Mode.NONE) {
+      throw new IllegalArgumentException("No cache needed if the block offset index is disabled");
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    }
+    this.mode = mode;
+    this.maxBytes = maxBytes;
+    this.persistent = mode == Mode.SIDECAR;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .recordStats()
+            .<SourceKey, BlockOffsetIndex>weigher(
+                (k, idx) -> (int) Math.min(Integer.MAX_VALUE, idx.ramBytesUsed() + 128))
+            .build();
+  }
+
+  /**
+   * Get the node-wide instance of the cache, creating it with the given configuration if there is
+   * none yet.
+   *
+   * <p>Only the first configuration is applied, later calls (e.g. from other cores or core reloads)
+   * get the existing instance along with its entries, use {@link #hasConfiguration(Mode, long)} to
+   * check if it matches theirs.
+   */
+  public static synchronized BlockOffsetIndexCache getShared(Mode mode, long maxBytes) {
+    if (shared == null) {
+      shared = new BlockOffsetIndexCache(mode, maxBytes);
+    }
+    return shared;
+  }
+
+  /** Check if the cache was created with the given configuration. */
+  public boolean hasConfiguration(Mode mode, long maxBytes) {
+    return this.mode == mode && this.maxBytes == maxBytes;
+  }
+
+  /**
+   * Get a {@link BreakLocator} for the given block types in the reader's text, backed by the block
+   * offset index if the reader reads from files.
+   */
+  public BreakLocator getBreakLocator(
+      OcrFormat format, SourceReader reader, OcrBlock... blockTypes) throws IOException {
+    List<Path> paths = getPaths(reader.getPointer());
+    if (paths.isEmpty()) {
+      return format.getBreakLocator(reader, blockTypes);
+    }
+    FileMetadataCache.Snapshot files = reader.getPointer().getFiles();
+    if (paths.size() == 1) {
+      return new OffsetIndexBreakLocator(
+          reader, getBreaks(getIndex(paths.get(0), files), format, blockTypes));
+    }
+    // Multiple files are read as a concatenation, so we have to shift the breaks of every file by
+    // the size of the preceding files
+    List<BlockOffsetIndex> indices = getIndices(paths, files);
+    int[] shifts = getShifts(indices);
+    List<int[]> fileBreaks = new ArrayList<>(paths.size());
+    int numBreaks = 0;
+    for (BlockOffsetIndex index : indices) {
+      fileBreaks.add(getBreaks(index, format, blockTypes));
+      numBreaks += fileBreaks.get(fileBreaks.size() - 1).length;
+    }
+    int[] breaks = new int[numBreaks];
+    int idx = 0;
+    for (int i = 0; i < fileBreaks.size(); i++) {
+      for (int offset : fileBreaks.get(i)) {
+        breaks[idx++] = shifts[i] + offset;
+      }
+    }
+    return new OffsetIndexBreakLocator(reader, breaks);
+  }
+
+  /**
+   * Get the table of all pages in the reader's text, or {@code null} if the reader does not read
+   * from files.
+   */
+  public OcrPageIndex getPageIndex(OcrFormat format, SourceReader reader) throws IOException {
+    List<Path> paths = getPaths(reader.getPointer());
+    if (paths.isEmpty()) {
+      return null;
+    }
+    List<BlockOffsetIndex> indices = getIndices(paths, reader.getPointer().getFiles());
+    List<OcrPageIndex> pageIndices = new ArrayList<>(indices.size());
+    for (BlockOffsetIndex index : indices) {
+      boolean isNew = !index.hasPages(format);
+      pageIndices.add(index.getPages(format));
+      if (isNew) {
+        // Re-insert the index so the cache picks up its new weight
+        cache.asMap().replace(index.getKey(), index);
+      }
+    }
+    if (pageIndices.size() == 1) {
+      return pageIndices.get(0);
+    }
+    return OcrPageIndex.concat(pageIndices, getShifts(indices));
+  }
+
+  private List<BlockOffsetIndex> getIndices(List<Path> paths, FileMetadataCache.Snapshot files)
+      throws IOException {
+    List<BlockOffsetIndex> indices = new ArrayList<>(paths.size());
+    for (Path path : paths) {
+      indices.add(getIndex(path, files));
+    }
+    return indices;
+  }
+
+  /** Get the offset of every file in the concatenated text of a multi-file source. */
+  private static int[] getShifts(List<BlockOffsetIndex> indices) {
+    int[] shifts = new int[indices.size()];
+    long shift = 0;
+    for (int i = 0; i < indices.size(); i++) {
+      shifts[i] = (int) shift;
+      shift += indices.get(i).getFileSize();
+    }
+    return shifts;
+  }
+
+  private static List<Path> getPaths(SourcePointer pointer) {
+    if (pointer == null) {
+      return Collections.emptyList();
+    }
+    List<Path> paths = new ArrayList<>(pointer.sources.size());
+    for (SourcePointer.Source source : pointer.sources) {
+      if (source.type != SourcePointer.SourceType.FILESYSTEM) {
+        return Collections.emptyList();
+      }
+      paths.add(Paths.get(source.target));
+    }
+    return paths;
+  }
+
+  private int[] getBreaks(BlockOffsetIndex index, OcrFormat format, OcrBlock... blockTypes)
+      throws IOException {
+    boolean isNew = !index.hasBreaks(format, blockTypes);
+    int[] breaks = index.getBreaks(format, blockTypes);
+    if (isNew) {
+      // Re-insert the index so the cache picks up its new weight
+      cache.asMap().replace(index.getKey(), index);
+    }
+    return breaks;
+  }
+
+  private BlockOffsetIndex getIndex(Path path, FileMetadataCache.Snapshot files)
+      throws IOException {
+    SourceKey key = SourceKey.forPaths(Collections.singletonList(path), files);
+    try {
+      return cache.get(key, () -> BlockOffsetIndex.open(path, key, files, persistent));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /** Get hit/miss/eviction statistics for the cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Get the number of files whose index is currently cached. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Remove all indices from the cache, sidecar files are left untouched. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
@@ -2,10 +2,17 @@ package com.github.dbmdz.solrocr.breaklocator;
 
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * A break locator that wraps other {@link BreakLocator}s and aggregates their breaks to form larger
  * contexts.
+ *
+ * <p>The breaks of the base locator are remembered in an ordered array, along with whether two
+ * neighboring breaks are known to follow each other. Only breaks returned by the base locator are
+ * stored, and only if they don't contradict what is already known. Since passages for neighboring
+ * hits mostly walk over the same breaks, the context around a hit can then usually be determined by
+ * asking the base locator for its first break and stepping through the array from there.
  */
 public class ContextBreakLocator implements BreakLocator {
 
@@ -13,6 +20,17 @@ public class ContextBreakLocator implements BreakLocator {
   private final BreakLocator limitLocator;
   private final int contextSize;
 
+  /** Known breaks of the base locator, in ascending order */
+  private int[] breaks = new int[64];
+
+  /** Whether the following base break of {@code breaks[i]} is {@code breaks[i + 1]} */
+  private boolean[] followingKnown = new boolean[64];
+
+  /** Whether the preceding base break of {@code breaks[i]} is {@code breaks[i - 1]} */
+  private boolean[] precedingKnown = new boolean[64];
+
+  private int numBreaks = 0;
+
   /** Wrap another BreakIterator and configure the output context size */
   public ContextBreakLocator(BreakLocator baseLocator, BreakLocator limitLocator, int contextSize) {
     this.baseLocator = baseLocator;
@@ -27,11 +45,42 @@ public class ContextBreakLocator implements BreakLocator {
       limit = limitLocator.following(offset);
     }
 
-    int idx = baseLocator.following(offset);
-    if (idx >= limit) {
+    int first = baseLocator.following(offset);
+    if (first >= limit) {
       return limit;
     }
+    int breakIdx = first < 0 ? -1 : indexOfBreak(first);
+    if (breakIdx < 0) {
+      return followingUncached(first, limit, contextSize);
+    }
     for (int i = 0; i < contextSize; i++) {
+      int nextIdx;
+      if (followingKnown[breakIdx]) {
+        nextIdx = breakIdx + 1;
+      } else {
+        int next = baseLocator.following(breaks[breakIdx]);
+        if (next >= limit) {
+          return limit;
+        }
+        nextIdx = next > breaks[breakIdx] ? indexOfBreak(next) : -1;
+        if (nextIdx < 0) {
+          // Not a proper successor, don't remember it
+          return followingUncached(next, limit, contextSize - i - 1);
+        }
+        if (nextIdx == breakIdx + 1) {
+          followingKnown[breakIdx] = true;
+        }
+      }
+      if (breaks[nextIdx] >= limit) {
+        return limit;
+      }
+      breakIdx = nextIdx;
+    }
+    return breaks[breakIdx];
+  }
+
+  private int followingUncached(int idx, int limit, int numSteps) throws IOException {
+    for (int i = 0; i < numSteps; i++) {
       int next = baseLocator.following(idx);
       if (next >= limit) {
         return limit;
@@ -47,11 +96,47 @@ public class ContextBreakLocator implements BreakLocator {
     if (limitLocator != null) {
       limit = limitLocator.preceding(offset);
     }
-    int idx = baseLocator.preceding(offset);
-    if (idx <= limit) {
+    int first = baseLocator.preceding(offset);
+    if (first <= limit) {
       return limit;
     }
+    int breakIdx = indexOfBreak(first);
+    if (breakIdx < 0) {
+      return precedingUncached(first, limit, contextSize);
+    }
     for (int i = 0; i < contextSize; i++) {
+      int prevIdx;
+      if (precedingKnown[breakIdx]) {
+        prevIdx = breakIdx - 1;
+      } else {
+        int prev = baseLocator.preceding(breaks[breakIdx]);
+        if (prev <= limit) {
+          return limit;
+        }
+        int numBefore = numBreaks;
+        prevIdx = prev < breaks[breakIdx] ? indexOfBreak(prev) : -1;
+        if (prevIdx < 0) {
+          // Not a proper predecessor, don't remember it
+          return precedingUncached(prev, limit, contextSize - i - 1);
+        }
+        if (numBreaks > numBefore) {
+          // Adding the break shifted the current one to the right
+          breakIdx++;
+        }
+        if (prevIdx == breakIdx - 1) {
+          precedingKnown[breakIdx] = true;
+        }
+      }
+      if (breaks[prevIdx] <= limit) {
+        return limit;
+      }
+      breakIdx = prevIdx;
+    }
+    return breaks[breakIdx];
+  }
+
+  private int precedingUncached(int idx, int limit, int numSteps) throws IOException {
+    for (int i = 0; i < numSteps; i++) {
       int next = baseLocator.preceding(idx);
       if (next <= limit) {
         return limit;
@@ -61,6 +146,37 @@ public class ContextBreakLocator implements BreakLocator {
     return idx;
   }
 
+  /**
+   * Get the index of a base break in {@link #breaks}, adding it if it is not known yet.
+   *
+   * @return the index or {@code -1} if the break lies between two breaks that are known to follow
+   *     each other, it is not added then so the known links stay valid
+   */
+  private int indexOfBreak(int offset) {
+    int idx = Arrays.binarySearch(breaks, 0, numBreaks, offset);
+    if (idx >= 0) {
+      return idx;
+    }
+    idx = -idx - 1;
+    if (idx > 0 && idx < numBreaks && (followingKnown[idx - 1] || precedingKnown[idx])) {
+      return -1;
+    }
+    if (numBreaks == breaks.length) {
+      int newCapacity = breaks.length * 2;
+      breaks = Arrays.copyOf(breaks, newCapacity);
+      followingKnown = Arrays.copyOf(followingKnown, newCapacity);
+      precedingKnown = Arrays.copyOf(precedingKnown, newCapacity);
+    }
+    System.arraycopy(breaks, idx, breaks, idx + 1, numBreaks - idx);
+    System.arraycopy(followingKnown, idx, followingKnown, idx + 1, numBreaks - idx);
+    System.arraycopy(precedingKnown, idx, precedingKnown, idx + 1, numBreaks - idx);
+    breaks[idx] = offset;
+    followingKnown[idx] = false;
+    precedingKnown[idx] = false;
+    numBreaks++;
+    return idx;
+  }
+
   @Override
   public SourceReader getText() {
     return baseLocator.getText();
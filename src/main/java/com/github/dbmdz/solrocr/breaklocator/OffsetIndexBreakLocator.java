@@ -0,0 +1,55 @@
+package com.github.dbmdz.solrocr.breaklocator;
+
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link BreakLocator} that answers queries by binary search over a precomputed, sorted array of
+ * break offsets, without ever touching the markup.
+ *
+ * <p>Behaves exactly like the scanning {@link BaseBreakLocator} the offsets were computed with: If
+ * there is no break before or after an offset, the beginning or end of the text is returned.
+ */
+public class OffsetIndexBreakLocator implements BreakLocator {
+  private final SourceReader text;
+  private final int[] breaks;
+
+  /**
+   * Create a new locator.
+   *
+   * @param text the text the breaks were computed for
+   * @param breaks sorted, distinct offsets of all breaks in the text
+   */
+  public OffsetIndexBreakLocator(SourceReader text, int[] breaks) {
+    this.text = text;
+    this.breaks = breaks;
+  }
+
+  @Override
+  public int following(int offset) throws IOException {
+    if (offset >= text.length()) {
+      return DONE;
+    }
+    int idx = Arrays.binarySearch(breaks, offset);
+    // Index of the first break that is greater than the offset
+    idx = idx >= 0 ? idx + 1 : -(idx + 1);
+    return idx < breaks.length ? breaks[idx] : text.length();
+  }
+
+  @Override
+  public int preceding(int offset) {
+    if (offset <= 0) {
+      return DONE;
+    }
+    int idx = Arrays.binarySearch(breaks, offset);
+    // Index of the last break that is smaller than the offset
+    idx = idx >= 0 ? idx - 1 : -(idx + 1) - 1;
+    return idx >= 0 ? breaks[idx] : 0;
+  }
+
+  @Override
+  public SourceReader getText() {
+    return text;
+  }
+}
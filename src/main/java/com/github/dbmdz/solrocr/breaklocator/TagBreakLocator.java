@@ -1,12 +1,17 @@
 package com.github.dbmdz.solrocr.breaklocator;
 
+import static com.github.dbmdz.solrocr.util.ByteBufUtils.indexOf;
+import static com.github.dbmdz.solrocr.util.ByteBufUtils.lastIndexOf;
+import static com.github.dbmdz.solrocr.util.ByteBufUtils.lastIndexOfBefore;
+
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.github.dbmdz.solrocr.reader.SourceReader.Section;
+import com.github.dbmdz.solrocr.util.ByteBufUtils;
 import java.io.IOException;
 
 /** A {@link BreakLocator} that splits an XML-like document on a specific opening or closing tag. */
 public class TagBreakLocator extends BaseBreakLocator {
-  private final String breakTag;
+  private final byte[] breakTag;
 
   public TagBreakLocator(SourceReader reader, String tagName) {
     this(reader, tagName, false);
@@ -15,43 +20,44 @@ public class TagBreakLocator extends BaseBreakLocator {
   public TagBreakLocator(SourceReader reader, String tagName, boolean closing) {
     super(reader);
     if (closing) {
-      this.breakTag = ("</" + tagName + ">");
+      this.breakTag = ByteBufUtils.toAsciiBytes("</" + tagName + ">");
     } else {
-      this.breakTag = ("<" + tagName);
+      this.breakTag = ByteBufUtils.toAsciiBytes("<" + tagName);
     }
   }
 
   @Override
   protected int getFollowing(int offset) throws IOException {
-    String overlapHead = null;
+    int overlapHeadLen = 0;
     int globalStart = Math.min(offset + 1, this.text.length());
-    // Read the source section-wise  to cut down on String allocations and improve the chance of
-    // cache hits in the reader
+    // Read the source section-wise and search the raw bytes of the sections to cut down on
+    // allocations and improve the chance of cache hits in the reader
     while (globalStart < this.text.length()) {
       Section section = this.text.getAsciiSection(globalStart);
-      String block = section.text;
+      byte[] block = section.getBytes();
+      int blockLen = section.length();
       int blockStart = globalStart - section.start;
 
-      if (overlapHead != null) {
+      if (overlapHeadLen > 0) {
         // If the previous section ended with a partial tag, we need to check if the overlapHead
         // combined with the new section until the closing tag contains the breakTag
-        int firstTagClose = block.indexOf('>');
-        int overlapStart = globalStart - overlapHead.length();
-        String overlap = overlapHead.concat(block.substring(0, firstTagClose + 1));
-        int overlapMatch = overlap.indexOf(breakTag);
+        int firstTagClose = indexOf(block, blockLen, (byte) '>', 0);
+        int overlapStart = globalStart - overlapHeadLen;
+        int overlapLen = appendOverlap(overlapHeadLen, block, 0, firstTagClose + 1);
+        int overlapMatch = indexOf(getOverlap(), overlapLen, breakTag, 0);
         if (overlapMatch >= 0) {
           return overlapStart + overlapMatch;
         }
         blockStart = firstTagClose + 1;
-        overlapHead = null;
+        overlapHeadLen = 0;
       }
       // Truncate block to last '>' and keep the rest for the next iteration if needed
-      int blockEnd = block.length();
-      int lastTagOpen = block.lastIndexOf('<');
+      int blockEnd = blockLen;
+      int lastTagOpen = lastIndexOf(block, blockLen, (byte) '<', blockLen - 1);
       if (lastTagOpen < blockStart) {
         lastTagOpen = -1;
       }
-      int lastTagClose = block.lastIndexOf('>');
+      int lastTagClose = lastIndexOf(block, blockLen, (byte) '>', blockLen - 1);
       if (lastTagClose < blockStart) {
         lastTagClose = -1;
       }
@@ -59,11 +65,11 @@ public class TagBreakLocator extends BaseBreakLocator {
           (lastTagOpen >= 0 && lastTagClose < 0)
               || (lastTagClose >= 0 && lastTagClose < lastTagOpen);
       if (partialTag) {
-        overlapHead = block.substring(lastTagOpen, blockEnd);
+        overlapHeadLen = setOverlap(block, lastTagOpen, blockEnd);
         blockEnd = lastTagOpen + 1;
       }
 
-      int idx = block.indexOf(breakTag, blockStart);
+      int idx = indexOf(block, blockLen, breakTag, blockStart);
       if (idx >= 0 && idx < blockEnd) {
         return section.start + idx;
       }
@@ -75,36 +81,36 @@ public class TagBreakLocator extends BaseBreakLocator {
 
   @Override
   protected int getPreceding(int offset) throws IOException {
-    String overlapTail = null;
+    int overlapTailLen = 0;
     int globalEnd = offset;
 
-    // Read the source section-wise  to cut down on String allocations and improve the chance of
-    // cache hits in the reader
+    // Read the source section-wise and search the raw bytes of the sections to cut down on
+    // allocations and improve the chance of cache hits in the reader
     while (globalEnd > 0) {
       Section section = this.text.getAsciiSection(globalEnd);
-      String block = section.text;
+      byte[] block = section.getBytes();
+      int blockLen = section.length();
       int blockEnd = globalEnd - section.start;
 
-      if (overlapTail != null) {
+      if (overlapTailLen > 0) {
         // If the previous section started with a partial tag, we need to check if the overlapTail
         // combined with the new section until the opening tag contains the breakTag
-        int lastTagOpen = block.lastIndexOf('<');
-        String overlapHead = block.substring(lastTagOpen);
-        String overlap = overlapHead.concat(overlapTail);
-        int overlapMatch = optimizedLastIndexOf(overlap, breakTag, overlap.length());
+        int lastTagOpen = Math.max(0, lastIndexOf(block, blockLen, (byte) '<', blockLen - 1));
+        int overlapLen = prependOverlap(overlapTailLen, block, lastTagOpen, blockLen);
+        int overlapMatch = lastIndexOfBefore(getOverlap(), overlapLen, breakTag, overlapLen);
         if (overlapMatch >= 0) {
           return section.start + lastTagOpen + overlapMatch;
         }
         blockEnd = lastTagOpen;
-        overlapTail = null;
+        overlapTailLen = 0;
       }
 
       int blockStart = 0;
-      int firstTagOpen = block.indexOf('<');
+      int firstTagOpen = indexOf(block, blockLen, (byte) '<', 0);
       if (firstTagOpen > blockEnd) {
         firstTagOpen = -1;
       }
-      int firstTagClose = block.indexOf('>');
+      int firstTagClose = indexOf(block, blockLen, (byte) '>', 0);
       if (firstTagClose > blockEnd) {
         firstTagClose = -1;
       }
@@ -114,10 +120,10 @@ public class TagBreakLocator extends BaseBreakLocator {
       if (partialTag) {
         // Section starts on a partial tag, store it for the next iteration
         blockStart = firstTagClose + 1;
-        overlapTail = block.substring(0, firstTagClose + 1);
+        overlapTailLen = setOverlap(block, 0, firstTagClose + 1);
       }
 
-      int match = optimizedLastIndexOf(block, breakTag, blockEnd);
+      int match = lastIndexOfBefore(block, blockLen, breakTag, blockEnd);
       if (match >= blockStart) {
         return section.start + match;
       }
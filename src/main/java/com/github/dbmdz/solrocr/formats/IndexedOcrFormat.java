@@ -0,0 +1,113 @@
+package com.github.dbmdz.solrocr.formats;
+
+import com.github.dbmdz.solrocr.breaklocator.BlockOffsetIndexCache;
+import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.model.OcrBlock;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.model.OcrPage;
+import com.github.dbmdz.solrocr.model.OcrPageIndex;
+import com.github.dbmdz.solrocr.reader.PeekingReader;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import com.google.common.collect.Range;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator for an {@link OcrFormat} that locates breaks via a {@link BlockOffsetIndexCache}
+ * instead of scanning the markup. Everything else is delegated to the wrapped format.
+ */
+public class IndexedOcrFormat implements OcrFormat {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final OcrFormat format;
+  private final BlockOffsetIndexCache indexCache;
+
+  public IndexedOcrFormat(OcrFormat format, BlockOffsetIndexCache indexCache) {
+    this.format = format;
+    this.indexCache = indexCache;
+  }
+
+  /** Get the wrapped format. */
+  public OcrFormat getFormat() {
+    return format;
+  }
+
+  @Override
+  public BreakLocator getBreakLocator(SourceReader reader, OcrBlock... blockTypes) {
+    try {
+      return indexCache.getBreakLocator(format, reader, blockTypes);
+    } catch (IOException e) {
+      log.warn(
+          "Could not get block offset index for {}, falling back to scanning: {}",
+          reader.getPointer(),
+          e.toString());
+      return format.getBreakLocator(reader, blockTypes);
+    }
+  }
+
+  @Override
+  public OcrPageIndex getPageIndex(SourceReader reader) {
+    try {
+      return indexCache.getPageIndex(format, reader);
+    } catch (IOException e) {
+      log.warn(
+          "Could not get page index for {}, falling back to scanning: {}",
+          reader.getPointer(),
+          e.toString());
+      return null;
+    }
+  }
+
+  @Override
+  public OcrParser getParser(Reader input, OcrParser.ParsingFeature... features) {
+    return format.getParser(input, features);
+  }
+
+  @Override
+  public OcrParser getFragmentParser(String fragment, OcrParser.ParsingFeature... features) {
+    return format.getFragmentParser(fragment, features);
+  }
+
+  @Override
+  public OcrPage parsePageFragment(String pageFragment) {
+    return format.parsePageFragment(pageFragment);
+  }
+
+  @Override
+  public Reader filter(PeekingReader input, boolean expandAlternatives) {
+    return format.filter(input, expandAlternatives);
+  }
+
+  @Override
+  public boolean hasFormat(String ocrChunk) {
+    return format.hasFormat(ocrChunk);
+  }
+
+  @Override
+  public int getLastContentStartIdx(String content) {
+    return format.getLastContentStartIdx(content);
+  }
+
+  @Override
+  public int getFirstContentEndIdx(String content) {
+    return format.getFirstContentEndIdx(content);
+  }
+
+  @Override
+  public int getLastContentStartIdx(String content, int end) {
+    return format.getLastContentStartIdx(content, end);
+  }
+
+  @Override
+  public int getFirstContentEndIdx(String content, int start) {
+    return format.getFirstContentEndIdx(content, start);
+  }
+
+  @Override
+  public Range<Integer> getContainingWordLimits(String fragment, int position) {
+    return format.getContainingWordLimits(fragment, position);
+  }
+}
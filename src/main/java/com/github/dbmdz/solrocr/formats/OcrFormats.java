@@ -0,0 +1,54 @@
+package com.github.dbmdz.solrocr.formats;
+
+import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.google.common.collect.ImmutableMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Registry of the supported OCR formats, for detection and lookup by name. */
+public class OcrFormats {
+  /** Supported formats by name, in the order they are checked during detection. */
+  private static final Map<String, OcrFormat> FORMATS =
+      ImmutableMap.of(
+          "hocr", new HocrFormat(),
+          "alto", new AltoFormat(),
+          "miniocr", new MiniOcrFormat());
+
+  private OcrFormats() {}
+
+  /**
+   * Get a format by its name.
+   *
+   * @param name one of {@code hocr}, {@code alto} or {@code miniocr}, case-insensitive
+   * @throws IllegalArgumentException if the name is not one of the supported formats
+   */
+  public static OcrFormat forName(String name) {
+    OcrFormat format = FORMATS.get(name.toLowerCase(Locale.US));
+    if (format == null) {
+      throw new IllegalArgumentException(
+          String.format(
+              Locale.US,
+              "Unknown OCR format '%s', must be one of %s",
+              name,
+              String.join(", ", FORMATS.keySet())));
+    }
+    return format;
+  }
+
+  /**
+   * Detect the format from a chunk of OCR markup from the beginning of a document.
+   *
+   * @return the format or {@code null} if the chunk doesn't match any of the supported formats
+   */
+  public static OcrFormat detect(String ocrChunk) {
+    for (OcrFormat format : FORMATS.values()) {
+      if (format.hasFormat(ocrChunk)) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
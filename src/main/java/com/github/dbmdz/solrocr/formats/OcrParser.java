@@ -3,10 +3,13 @@ package com.github.dbmdz.solrocr.formats;
 import com.ctc.wstx.api.WstxInputProperties;
 import com.ctc.wstx.stax.WstxInputFactory;
 import com.github.dbmdz.solrocr.model.OcrBox;
+import com.github.dbmdz.solrocr.model.OcrBoxBuffer;
 import com.github.dbmdz.solrocr.reader.PeekingReader;
 import com.google.common.collect.ImmutableMap;
 import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -15,11 +18,11 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.UUID;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.xml.stream.XMLStreamException;
 import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.ri.Stax2ReaderAdapter;
 
 /** Base class for OCR parsers operating on XML markup */
 public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
@@ -58,8 +61,16 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
 
   private static final WstxInputFactory xmlInputFactory = new WstxInputFactory();
 
+  /** Number of characters at the beginning of the input that can be peeked at */
+  private static final int BEGIN_PEEK_SIZE = 2048;
+
+  /** The input reader, {@code null} for parsers of in-memory fragments */
   protected final PeekingReader input;
-  protected UUID currentHighlightSpan;
+
+  private final String fragment;
+
+  protected int currentHighlightSpan = OcrBox.NO_HIGHLIGHT_SPAN;
+  private int numHighlightSpans = 0;
   protected boolean terminateHighlightSpanAfterNext = false;
 
   private final XMLStreamReader2 xmlReader;
@@ -67,12 +78,42 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
 
   private OcrBox nextWord;
 
+  /** Boxes that were copied to a buffer in {@link #readInto(OcrBoxBuffer)} and can be re-used */
+  private final Deque<OcrBox> recycledBoxes = new ArrayDeque<>(4);
+
   public OcrParser(Reader input, ParsingFeature... features) throws XMLStreamException {
-    if (input instanceof PeekingReader) {
-      this.input = (PeekingReader) input;
-    } else {
-      this.input = new PeekingReader(input, 2048, 16384);
-    }
+    this(
+        input instanceof PeekingReader
+            ? (PeekingReader) input
+            : new PeekingReader(input, BEGIN_PEEK_SIZE, 16384),
+        null,
+        null,
+        features);
+  }
+
+  /**
+   * Create a parser for an in-memory fragment of OCR markup, e.g. for building a snippet.
+   *
+   * <p>The fragment is parsed with a lightweight {@link XmlFragmentReader} instead of a full XML
+   * parser. If the fragment is not well-formed, iterating the parser throws an exception, parse it
+   * from a {@link com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter} in that case.
+   *
+   * <p>Since the fragment is not read through a {@link PeekingReader}, offsets are not available
+   * and {@link ParsingFeature#OFFSETS} is ignored.
+   */
+  public OcrParser(String fragment, ParsingFeature... features) throws XMLStreamException {
+    this(
+        null,
+        fragment,
+        Stax2ReaderAdapter.wrapIfNecessary(new XmlFragmentReader(fragment)),
+        features);
+  }
+
+  private OcrParser(
+      PeekingReader input, String fragment, XMLStreamReader2 xmlReader, ParsingFeature... features)
+      throws XMLStreamException {
+    this.input = input;
+    this.fragment = fragment;
     if (features.length == 0) {
       features =
           new ParsingFeature[] {
@@ -86,7 +127,14 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
           };
     }
     this.features.addAll(Arrays.asList(features));
+    if (fragment != null) {
+      this.features.remove(ParsingFeature.OFFSETS);
+    }
+    this.xmlReader = xmlReader != null ? xmlReader : createXmlReader(input);
+    this.nextWord = prepareNext();
+  }
 
+  private static XMLStreamReader2 createXmlReader(PeekingReader input) throws XMLStreamException {
     // Woodstax sometimes splits long text nodes, this option forces it to merge them together
     // before passing them to us
     xmlInputFactory.getConfig().doCoalesceText(true);
@@ -102,8 +150,7 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
         .setUndeclaredEntityResolver(
             (publicID, systemID, baseURI, namespace) ->
                 String.format(Locale.US, "&amp;%s;", namespace));
-    this.xmlReader = (XMLStreamReader2) xmlInputFactory.createXMLStreamReader(this.input);
-    this.nextWord = prepareNext();
+    return (XMLStreamReader2) xmlInputFactory.createXMLStreamReader(input);
   }
 
   @Override
@@ -159,12 +206,28 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
               Locale.US,
               "Failed to parse the OCR markup, make sure your files are well-formed and your regions start/end on "
                   + "complete tags! (Source was: %s)",
-              this.input.getSource().orElse("[unknown]")),
+              this.getSource().orElse("[unknown]")),
           e);
     }
     return null;
   }
 
+  /**
+   * Parse all remaining words into a buffer.
+   *
+   * <p>Unlike iterating over the parser, this doesn't leave a box behind for every word: The buffer
+   * copies what it needs from a box, after which the box is re-used for one of the following words.
+   */
+  public OcrBoxBuffer readInto(OcrBoxBuffer words) {
+    while (hasNext()) {
+      OcrBox box = next();
+      words.add(box);
+      box.reset();
+      recycledBoxes.push(box);
+    }
+    return words;
+  }
+
   /**
    * "Peek" at the next word from the parse without advancing the parse to the word after it (i.e.
    * calling this does not influence the result of the `next()` call *
@@ -182,13 +245,15 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
    * <p>Implements should always call this method when they encounter OCR text, since it might
    * contain highlighting markers that we need to track.
    *
-   * <p>Returns the identifier of the box's highlighting span, if present, else null.
+   * <p>Returns the identifier of the box's highlighting span, if present, else {@link
+   * OcrBox#NO_HIGHLIGHT_SPAN}. Identifiers are only unique for a single parser.
    */
-  protected UUID trackHighlightSpan(String text, OcrBox box) {
-    if (this.currentHighlightSpan == null && text.contains(OcrParser.START_HL)) {
-      this.currentHighlightSpan = UUID.randomUUID();
+  protected int trackHighlightSpan(String text, OcrBox box) {
+    if (this.currentHighlightSpan == OcrBox.NO_HIGHLIGHT_SPAN
+        && text.contains(OcrParser.START_HL)) {
+      this.currentHighlightSpan = numHighlightSpans++;
     }
-    if (this.currentHighlightSpan != null
+    if (this.currentHighlightSpan != OcrBox.NO_HIGHLIGHT_SPAN
         && (terminateHighlightSpanAfterNext || text.contains(OcrParser.END_HL))) {
       // Highlight spans that end on the start of a hyphenation should stretch as far as the end of
       // the hyphenation,
@@ -199,18 +264,43 @@ public abstract class OcrParser implements Iterator<OcrBox>, Iterable<OcrBox> {
         terminateHighlightSpanAfterNext = true;
         return this.currentHighlightSpan;
       }
-      UUID out = this.currentHighlightSpan;
-      this.currentHighlightSpan = null;
+      int out = this.currentHighlightSpan;
+      this.currentHighlightSpan = OcrBox.NO_HIGHLIGHT_SPAN;
       return out;
     }
     return this.currentHighlightSpan;
   }
 
-  /** Get the underlying peeking input reader. */
+  /**
+   * Get an empty box for the next word.
+   *
+   * <p>Implementers should always use this instead of creating boxes themselves, since boxes are
+   * re-used when the words are parsed into a buffer.
+   */
+  protected OcrBox newBox() {
+    OcrBox box = recycledBoxes.poll();
+    return box != null ? box : new OcrBox();
+  }
+
+  /** Get the underlying peeking input reader, {@code null} if the parser reads a fragment. */
   public PeekingReader getInput() {
     return input;
   }
 
+  /** Get the source of the input, if known. */
+  protected Optional<String> getSource() {
+    return input != null ? input.getSource() : Optional.empty();
+  }
+
+  /** Check if the first {@value #BEGIN_PEEK_SIZE} characters of the input contain a string. */
+  protected boolean beginningContains(String needle) {
+    if (fragment == null) {
+      return input.peekBeginning().contains(needle);
+    }
+    int idx = fragment.indexOf(needle);
+    return idx >= 0 && idx + needle.length() <= BEGIN_PEEK_SIZE;
+  }
+
   /**
    * Read the next OCR box in the input stream.
    *
@@ -0,0 +1,649 @@
+package com.github.dbmdz.solrocr.formats;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Lightweight {@link XMLStreamReader} for in-memory fragments of OCR markup.
+ *
+ * <p>Scans the characters of the fragment directly, without the buffering and validation of a full
+ * XML parser. Only supports the subset of XML used in OCR markup: Elements, attributes, text and
+ * character entities. Fragments are treated the same as after passing them through a {@link
+ * com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter}: Unmatched closing tags and
+ * non-self-closing {@code <br>} tags are replaced with whitespace, and unclosed elements are closed
+ * at the end of the fragment.
+ *
+ * <p>Everything else (comments, CDATA sections, processing instructions, unknown entities,
+ * illegal tag names or unbalanced markup) is reported as an {@link XMLStreamException}, callers
+ * are expected to fall back to a sanitizing XML parser in that case.
+ */
+public class XmlFragmentReader implements XMLStreamReader {
+  private static final int MAX_ENTITY_LENGTH = 32;
+
+  private final String fragment;
+  private final Deque<String> openTags = new ArrayDeque<>();
+  private final StringBuilder textBuf = new StringBuilder();
+
+  private int pos = 0;
+  private int eventType = XMLStreamConstants.START_DOCUMENT;
+  private int eventStart = 0;
+  private boolean pendingEnd = false;
+
+  private String localName;
+  private String prefix;
+  private String text;
+  private int attrCount = 0;
+  private String[] attrNames = new String[8];
+  private String[] attrValues = new String[8];
+
+  public XmlFragmentReader(String fragment) {
+    this.fragment = fragment;
+  }
+
+  @Override
+  public int next() throws XMLStreamException {
+    if (!hasNext()) {
+      throw new IllegalStateException("No more events in fragment");
+    }
+    if (pendingEnd) {
+      // Closing event for a self-closing tag, name stays the same
+      pendingEnd = false;
+      attrCount = 0;
+      eventType = XMLStreamConstants.END_ELEMENT;
+      return eventType;
+    }
+    textBuf.setLength(0);
+    int textStart = pos;
+    int len = fragment.length();
+    while (pos < len) {
+      char c = fragment.charAt(pos);
+      if (c == '<') {
+        int end = fragment.indexOf('>', pos + 1);
+        int nextOpen = fragment.indexOf('<', pos + 1);
+        if (end < 0 || (nextOpen >= 0 && nextOpen < end)) {
+          throw malformed("Unterminated tag");
+        }
+        if (pos + 1 == end) {
+          throw malformed("Empty tag");
+        }
+        char next = fragment.charAt(pos + 1);
+        if (next == '!' || next == '?') {
+          throw malformed("Unsupported markup declaration");
+        }
+        if (next == '/') {
+          String tagName = readTagName(pos + 2, end);
+          if (!tagName.equals(openTags.peek())) {
+            // Unmatched closing tag, treat it as whitespace
+            appendSpaces(end - pos + 1);
+            pos = end + 1;
+            continue;
+          }
+          if (textBuf.length() > 0) {
+            return textEvent(textStart);
+          }
+          openTags.pop();
+          startElementEvent(tagName, XMLStreamConstants.END_ELEMENT);
+          attrCount = 0;
+          pos = end + 1;
+          return eventType;
+        }
+        boolean selfClosing = fragment.charAt(end - 1) == '/';
+        int tagEnd = selfClosing ? end - 1 : end;
+        String tagName = readTagName(pos + 1, tagEnd);
+        if (!selfClosing && tagName.equals("br")) {
+          // Unclosed line breaks, treat them as whitespace
+          appendSpaces(end - pos + 1);
+          pos = end + 1;
+          continue;
+        }
+        if (textBuf.length() > 0) {
+          return textEvent(textStart);
+        }
+        startElementEvent(tagName, XMLStreamConstants.START_ELEMENT);
+        readAttributes(pos + 1 + tagName.length(), tagEnd);
+        if (selfClosing) {
+          pendingEnd = true;
+        } else {
+          openTags.push(tagName);
+        }
+        pos = end + 1;
+        return eventType;
+      } else if (c == '&') {
+        pos = readEntity(pos, len, textBuf);
+      } else if (c == '\r') {
+        textBuf.append('\n');
+        pos += fragment.startsWith("\r\n", pos) ? 2 : 1;
+      } else {
+        textBuf.append(c);
+        pos++;
+      }
+    }
+    if (textBuf.length() > 0) {
+      return textEvent(textStart);
+    }
+    if (!openTags.isEmpty()) {
+      // Close all elements that are still open at the end of the fragment
+      eventStart = pos;
+      localName = localName(openTags.pop());
+      attrCount = 0;
+      eventType = XMLStreamConstants.END_ELEMENT;
+      return eventType;
+    }
+    eventStart = pos;
+    eventType = XMLStreamConstants.END_DOCUMENT;
+    return eventType;
+  }
+
+  private XMLStreamException malformed(String msg) {
+    return new XMLStreamException(
+        String.format(Locale.US, "%s at offset %d of OCR fragment", msg, pos), getLocation());
+  }
+
+  private void appendSpaces(int num) {
+    for (int i = 0; i < num; i++) {
+      textBuf.append(' ');
+    }
+  }
+
+  private int textEvent(int textStart) throws XMLStreamException {
+    eventStart = textStart;
+    text = textBuf.toString();
+    attrCount = 0;
+    if (!openTags.isEmpty()) {
+      eventType = XMLStreamConstants.CHARACTERS;
+    } else if (isXmlWhitespace(text)) {
+      eventType = XMLStreamConstants.SPACE;
+    } else {
+      throw malformed("Text outside of element");
+    }
+    return eventType;
+  }
+
+  private void startElementEvent(String tagName, int type) {
+    eventStart = pos;
+    eventType = type;
+    int colonIdx = tagName.indexOf(':');
+    prefix = colonIdx < 0 ? XMLConstants.DEFAULT_NS_PREFIX : tagName.substring(0, colonIdx);
+    localName = localName(tagName);
+  }
+
+  private static String localName(String tagName) {
+    return tagName.substring(tagName.indexOf(':') + 1);
+  }
+
+  /**
+   * Read a tag name starting at {@code from} and ending at a space, tab, newline or {@code to}, the
+   * same way the {@link com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter} does.
+   */
+  private String readTagName(int from, int to) throws XMLStreamException {
+    int idx = from;
+    while (idx < to) {
+      char c = fragment.charAt(idx);
+      if (c == ' ' || c == '\t' || c == '\n') {
+        break;
+      }
+      if (!Character.isLetter(c) && c != ':') {
+        throw malformed("Illegal tag name");
+      }
+      idx++;
+    }
+    if (idx == from) {
+      throw malformed("Missing tag name");
+    }
+    return fragment.substring(from, idx);
+  }
+
+  private void readAttributes(int from, int to) throws XMLStreamException {
+    attrCount = 0;
+    int idx = from;
+    while (true) {
+      while (idx < to && isXmlWhitespace(fragment.charAt(idx))) {
+        idx++;
+      }
+      if (idx >= to) {
+        return;
+      }
+      int nameStart = idx;
+      while (idx < to && fragment.charAt(idx) != '=' && !isXmlWhitespace(fragment.charAt(idx))) {
+        idx++;
+      }
+      String name = fragment.substring(nameStart, idx);
+      while (idx < to && isXmlWhitespace(fragment.charAt(idx))) {
+        idx++;
+      }
+      if (name.isEmpty() || idx >= to || fragment.charAt(idx) != '=') {
+        throw malformed("Malformed attribute");
+      }
+      idx++;
+      while (idx < to && isXmlWhitespace(fragment.charAt(idx))) {
+        idx++;
+      }
+      char quote = idx < to ? fragment.charAt(idx) : 0;
+      int valueEnd = quote == '"' || quote == '\'' ? fragment.indexOf(quote, idx + 1) : -1;
+      if (valueEnd < 0 || valueEnd >= to) {
+        throw malformed("Malformed attribute value");
+      }
+      if (!name.equals("xmlns") && !name.startsWith("xmlns:")) {
+        addAttribute(name, readAttributeValue(idx + 1, valueEnd));
+      }
+      idx = valueEnd + 1;
+    }
+  }
+
+  private String readAttributeValue(int from, int to) throws XMLStreamException {
+    StringBuilder sb = new StringBuilder(to - from);
+    int idx = from;
+    while (idx < to) {
+      char c = fragment.charAt(idx);
+      if (c == '&') {
+        idx = readEntity(idx, to, sb);
+        continue;
+      }
+      if (c == '\r' && idx + 1 < to && fragment.charAt(idx + 1) == '\n') {
+        idx++;
+      }
+      // Attribute values are normalized, all whitespace characters are replaced with spaces
+      sb.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+      idx++;
+    }
+    return sb.toString();
+  }
+
+  private void addAttribute(String name, String value) {
+    if (attrCount == attrNames.length) {
+      attrNames = Arrays.copyOf(attrNames, attrCount * 2);
+      attrValues = Arrays.copyOf(attrValues, attrCount * 2);
+    }
+    attrNames[attrCount] = name;
+    attrValues[attrCount] = value;
+    attrCount++;
+  }
+
+  /**
+   * Decode the character entity starting at {@code from} into {@code out} and return the offset
+   * after the entity.
+   */
+  private int readEntity(int from, int limit, StringBuilder out) throws XMLStreamException {
+    int end = fragment.indexOf(';', from + 1);
+    if (end < 0 || end >= limit || end - from > MAX_ENTITY_LENGTH || end == from + 1) {
+      throw malformed("Malformed entity");
+    }
+    String name = fragment.substring(from + 1, end);
+    if (name.charAt(0) == '#') {
+      int codePoint;
+      try {
+        codePoint =
+            name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X')
+                ? Integer.parseInt(name.substring(2), 16)
+                : Integer.parseInt(name.substring(1));
+      } catch (NumberFormatException e) {
+        throw malformed("Malformed character reference");
+      }
+      if (codePoint <= 0 || !Character.isValidCodePoint(codePoint)) {
+        throw malformed("Illegal character reference");
+      }
+      out.appendCodePoint(codePoint);
+      return end + 1;
+    }
+    switch (name) {
+      case "amp":
+        out.append('&');
+        break;
+      case "lt":
+        out.append('<');
+        break;
+      case "gt":
+        out.append('>');
+        break;
+      case "quot":
+        out.append('"');
+        break;
+      case "apos":
+        out.append('\'');
+        break;
+      default:
+        String value = OcrParser.ENTITIES.get(name);
+        if (value == null) {
+          throw malformed("Unknown entity");
+        }
+        out.append(value);
+    }
+    return end + 1;
+  }
+
+  private static boolean isXmlWhitespace(char c) {
+    return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+  }
+
+  private static boolean isXmlWhitespace(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (!isXmlWhitespace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return eventType != XMLStreamConstants.END_DOCUMENT;
+  }
+
+  @Override
+  public int getEventType() {
+    return eventType;
+  }
+
+  @Override
+  public String getLocalName() {
+    if (!hasName()) {
+      throw new IllegalStateException("Current event has no name");
+    }
+    return localName;
+  }
+
+  @Override
+  public QName getName() {
+    return new QName(getNamespaceURI(), getLocalName(), prefix);
+  }
+
+  @Override
+  public String getPrefix() {
+    return hasName() ? prefix : null;
+  }
+
+  @Override
+  public boolean hasName() {
+    return eventType == XMLStreamConstants.START_ELEMENT
+        || eventType == XMLStreamConstants.END_ELEMENT;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Namespace declarations outside of the fragment are unknown, so only unprefixed attributes
+   * and attributes in the {@code xml} namespace can be matched by their namespace.
+   */
+  @Override
+  public String getAttributeValue(String namespaceURI, String localName) {
+    for (int i = 0; i < attrCount; i++) {
+      if (localName.equals(getAttributeLocalName(i))
+          && (namespaceURI == null || namespaceURI.equals(getAttributeNamespace(i)))) {
+        return attrValues[i];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int getAttributeCount() {
+    return attrCount;
+  }
+
+  @Override
+  public QName getAttributeName(int index) {
+    String ns = getAttributeNamespace(index);
+    return new QName(
+        ns == null ? XMLConstants.NULL_NS_URI : ns,
+        getAttributeLocalName(index),
+        getAttributePrefix(index));
+  }
+
+  @Override
+  public String getAttributeNamespace(int index) {
+    String attrPrefix = getAttributePrefix(index);
+    if (attrPrefix.isEmpty()) {
+      return XMLConstants.NULL_NS_URI;
+    } else if (attrPrefix.equals(XMLConstants.XML_NS_PREFIX)) {
+      return XMLConstants.XML_NS_URI;
+    }
+    return null;
+  }
+
+  @Override
+  public String getAttributeLocalName(int index) {
+    return localName(attrNames[checkAttributeIndex(index)]);
+  }
+
+  @Override
+  public String getAttributePrefix(int index) {
+    String name = attrNames[checkAttributeIndex(index)];
+    int colonIdx = name.indexOf(':');
+    return colonIdx < 0 ? XMLConstants.DEFAULT_NS_PREFIX : name.substring(0, colonIdx);
+  }
+
+  @Override
+  public String getAttributeType(int index) {
+    checkAttributeIndex(index);
+    return "CDATA";
+  }
+
+  @Override
+  public String getAttributeValue(int index) {
+    return attrValues[checkAttributeIndex(index)];
+  }
+
+  @Override
+  public boolean isAttributeSpecified(int index) {
+    checkAttributeIndex(index);
+    return true;
+  }
+
+  private int checkAttributeIndex(int index) {
+    if (index < 0 || index >= attrCount) {
+      throw new IndexOutOfBoundsException("Illegal attribute index: " + index);
+    }
+    return index;
+  }
+
+  @Override
+  public String getText() {
+    if (!hasText()) {
+      throw new IllegalStateException("Current event has no text");
+    }
+    return text;
+  }
+
+  @Override
+  public char[] getTextCharacters() {
+    return getText().toCharArray();
+  }
+
+  @Override
+  public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) {
+    String txt = getText();
+    int num = Math.max(0, Math.min(length, txt.length() - sourceStart));
+    txt.getChars(sourceStart, sourceStart + num, target, targetStart);
+    return num;
+  }
+
+  @Override
+  public int getTextStart() {
+    return 0;
+  }
+
+  @Override
+  public int getTextLength() {
+    return getText().length();
+  }
+
+  @Override
+  public boolean hasText() {
+    return eventType == XMLStreamConstants.CHARACTERS || eventType == XMLStreamConstants.SPACE;
+  }
+
+  @Override
+  public boolean isStartElement() {
+    return eventType == XMLStreamConstants.START_ELEMENT;
+  }
+
+  @Override
+  public boolean isEndElement() {
+    return eventType == XMLStreamConstants.END_ELEMENT;
+  }
+
+  @Override
+  public boolean isCharacters() {
+    return eventType == XMLStreamConstants.CHARACTERS;
+  }
+
+  @Override
+  public boolean isWhiteSpace() {
+    return hasText() && isXmlWhitespace(text);
+  }
+
+  @Override
+  public String getElementText() throws XMLStreamException {
+    if (eventType != XMLStreamConstants.START_ELEMENT) {
+      throw malformed("Not on a start element");
+    }
+    StringBuilder sb = new StringBuilder();
+    while (next() != XMLStreamConstants.END_ELEMENT) {
+      if (hasText()) {
+        sb.append(text);
+      } else {
+        throw malformed("Unexpected element in text-only element");
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public int nextTag() throws XMLStreamException {
+    int evt = next();
+    while (evt == XMLStreamConstants.SPACE
+        || (evt == XMLStreamConstants.CHARACTERS && isWhiteSpace())) {
+      evt = next();
+    }
+    if (evt != XMLStreamConstants.START_ELEMENT && evt != XMLStreamConstants.END_ELEMENT) {
+      throw malformed("Expected a start or end tag");
+    }
+    return evt;
+  }
+
+  @Override
+  public void require(int type, String namespaceURI, String localName)
+      throws XMLStreamException {
+    if (type != eventType
+        || (localName != null && !localName.equals(getLocalName()))
+        || (namespaceURI != null && !namespaceURI.equals(getNamespaceURI()))) {
+      throw malformed("Current event does not match the required event");
+    }
+  }
+
+  /** Namespaces are not resolved, elements are never in a namespace */
+  @Override
+  public String getNamespaceURI() {
+    return null;
+  }
+
+  @Override
+  public String getNamespaceURI(String prefix) {
+    return XMLConstants.XML_NS_PREFIX.equals(prefix) ? XMLConstants.XML_NS_URI : null;
+  }
+
+  @Override
+  public int getNamespaceCount() {
+    return 0;
+  }
+
+  @Override
+  public String getNamespacePrefix(int index) {
+    throw new IndexOutOfBoundsException("No namespace declarations in fragment");
+  }
+
+  @Override
+  public String getNamespaceURI(int index) {
+    throw new IndexOutOfBoundsException("No namespace declarations in fragment");
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext() {
+    return null;
+  }
+
+  @Override
+  public Location getLocation() {
+    final int offset = eventStart;
+    return new Location() {
+      @Override
+      public int getLineNumber() {
+        return -1;
+      }
+
+      @Override
+      public int getColumnNumber() {
+        return -1;
+      }
+
+      @Override
+      public int getCharacterOffset() {
+        return offset;
+      }
+
+      @Override
+      public String getPublicId() {
+        return null;
+      }
+
+      @Override
+      public String getSystemId() {
+        return null;
+      }
+    };
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return null;
+  }
+
+  @Override
+  public String getEncoding() {
+    return null;
+  }
+
+  @Override
+  public String getVersion() {
+    return null;
+  }
+
+  @Override
+  public boolean isStandalone() {
+    return false;
+  }
+
+  @Override
+  public boolean standaloneSet() {
+    return false;
+  }
+
+  @Override
+  public String getCharacterEncodingScheme() {
+    return null;
+  }
+
+  @Override
+  public String getPITarget() {
+    return null;
+  }
+
+  @Override
+  public String getPIData() {
+    return null;
+  }
+
+  @Override
+  public void close() {
+    // Nothing to release
+  }
+}
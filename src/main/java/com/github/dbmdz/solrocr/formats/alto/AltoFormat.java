@@ -13,6 +13,7 @@ import java.awt.Dimension;
 import java.io.Reader;
 import java.util.Map;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.xml.stream.XMLStreamException;
 
 public class AltoFormat implements OcrFormat {
@@ -24,6 +25,12 @@ public class AltoFormat implements OcrFormat {
           OcrBlock.LINE, "TextLine",
           OcrBlock.WORD, "String");
 
+  /** Un-namespaced and namespaced opening tags that identify ALTO markup */
+  private static final String[] FORMAT_MARKERS =
+      Stream.concat(Stream.of("alto"), blockTagMapping.values().stream())
+          .flatMap(t -> Stream.of("<" + t, ":" + t))
+          .toArray(String[]::new);
+
   @Override
   public BreakLocator getBreakLocator(SourceReader reader, OcrBlock... blockTypes) {
     // NOTE: The ALTO hierarchy we support is pretty rigid, i.e. Page > TextBlock > TextLine >
@@ -41,6 +48,15 @@ public class AltoFormat implements OcrFormat {
     }
   }
 
+  @Override
+  public OcrParser getFragmentParser(String fragment, OcrParser.ParsingFeature... features) {
+    try {
+      return new AltoParser(fragment, features);
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public OcrPage parsePageFragment(String pageFragment) {
     // Poor/lean man's XML parsing
@@ -80,15 +96,27 @@ public class AltoFormat implements OcrFormat {
   @Override
   public boolean hasFormat(String ocrChunk) {
     // Check if the chunk contains any ALTO tags, both un-namespaced and namespaced
-    return ocrChunk.contains("<alto")
-        || ocrChunk.contains(":alto")
-        || blockTagMapping.values().stream()
-            .anyMatch(t -> ocrChunk.contains("<" + t) || ocrChunk.contains(":" + t));
+    for (String marker : FORMAT_MARKERS) {
+      if (ocrChunk.contains(marker)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
   public int getLastContentStartIdx(String content) {
-    int contentIdx = content.lastIndexOf("CONTENT=");
+    return getLastContentStartIdx(content, content.length());
+  }
+
+  @Override
+  public int getFirstContentEndIdx(String content) {
+    return getFirstContentEndIdx(content, 0);
+  }
+
+  @Override
+  public int getLastContentStartIdx(String content, int end) {
+    int contentIdx = content.lastIndexOf("CONTENT=", end - "CONTENT=".length());
     if (contentIdx >= 0) {
       contentIdx += 9;
     }
@@ -96,9 +124,9 @@ public class AltoFormat implements OcrFormat {
   }
 
   @Override
-  public int getFirstContentEndIdx(String content) {
-    int singleQuoteIdx = content.indexOf("'");
-    int doubleQuoteIdx = content.indexOf("\"");
+  public int getFirstContentEndIdx(String content, int start) {
+    int singleQuoteIdx = content.indexOf('\'', start);
+    int doubleQuoteIdx = content.indexOf('"', start);
     if (singleQuoteIdx < 0) {
       return doubleQuoteIdx;
     } else if (doubleQuoteIdx < 0) {
@@ -27,12 +27,16 @@ public class AltoParser extends OcrParser {
     super(reader, features);
   }
 
+  public AltoParser(String fragment, ParsingFeature... features) throws XMLStreamException {
+    super(fragment, features);
+  }
+
   @Override
   protected OcrBox readNext(XMLStreamReader2 xmlReader, Set<ParsingFeature> features)
       throws XMLStreamException {
     if (this.hasExplicitSpaces == null) {
       // ALTO can optionally encode explicit spaces with the <SP/> element.
-      this.hasExplicitSpaces = this.input.peekBeginning().contains("<SP");
+      this.hasExplicitSpaces = this.beginningContains("<SP");
     }
 
     // If we encounter hyphenated words, we parse both parts before outputting anything and then
@@ -53,7 +57,7 @@ public class AltoParser extends OcrParser {
       return null;
     }
 
-    OcrBox box = new OcrBox();
+    OcrBox box = newBox();
 
     // Parse text
     if (features.contains(ParsingFeature.TEXT)) {
@@ -69,7 +73,7 @@ public class AltoParser extends OcrParser {
         String dehyphenated = xmlReader.getAttributeValue("", "SUBS_CONTENT");
         box.setHyphenInfo(hyphenStart, dehyphenated);
       }
-      if (features.contains(ParsingFeature.HIGHLIGHTS) && box.getHighlightSpan() == null) {
+      if (features.contains(ParsingFeature.HIGHLIGHTS) && !box.isInHighlight()) {
         box.setHighlightSpan(this.trackHighlightSpan(text, box));
       }
       if (features.contains(ParsingFeature.OFFSETS)) {
@@ -136,7 +140,7 @@ public class AltoParser extends OcrParser {
                 : null;
         String alternative = xmlReader.getText();
         box.addAlternative(alternative, offset != null ? Math.toIntExact(offset) : null);
-        if (features.contains(ParsingFeature.HIGHLIGHTS) && box.getHighlightSpan() == null) {
+        if (features.contains(ParsingFeature.HIGHLIGHTS) && !box.isInHighlight()) {
           box.setHighlightSpan(this.trackHighlightSpan(alternative, box));
         }
         if (xmlReader.next() != XMLStreamConstants.END_ELEMENT) {
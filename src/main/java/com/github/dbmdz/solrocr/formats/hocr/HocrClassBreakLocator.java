@@ -1,15 +1,27 @@
 package com.github.dbmdz.solrocr.formats.hocr;
 
+import static com.github.dbmdz.solrocr.util.ByteBufUtils.indexOf;
+import static com.github.dbmdz.solrocr.util.ByteBufUtils.lastIndexOf;
+import static com.github.dbmdz.solrocr.util.ByteBufUtils.startsWith;
+
 import com.github.dbmdz.solrocr.breaklocator.BaseBreakLocator;
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.github.dbmdz.solrocr.reader.SourceReader.Section;
+import com.github.dbmdz.solrocr.util.ByteBufUtils;
+import com.github.dbmdz.solrocr.util.MultiPatternMatcher;
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HocrClassBreakLocator extends BaseBreakLocator {
+  private static final byte[] META = ByteBufUtils.toAsciiBytes("meta");
+
+  /** Matchers for the combinations of break classes, shared by all locators */
+  private static final Map<List<String>, MultiPatternMatcher> MATCHERS = new ConcurrentHashMap<>();
 
-  private final List<String> breakClasses;
+  private final MultiPatternMatcher matcher;
 
   public HocrClassBreakLocator(SourceReader reader, String breakClass) {
     this(reader, ImmutableList.of(breakClass));
@@ -17,41 +29,43 @@ public class HocrClassBreakLocator extends BaseBreakLocator {
 
   public HocrClassBreakLocator(SourceReader reader, List<String> breakClasses) {
     super(reader);
-    this.breakClasses = breakClasses;
+    this.matcher =
+        MATCHERS.computeIfAbsent(ImmutableList.copyOf(breakClasses), MultiPatternMatcher::new);
   }
 
   @Override
   protected int getFollowing(int offset) throws IOException {
     int globalStart = Math.min(offset + 1, this.text.length());
-    String overlapHead = null;
-    // Read the source section-wise  to cut down on String allocations and improve the chance of
-    // cache hits in the reader
+    int overlapHeadLen = 0;
+    // Read the source section-wise and search the raw bytes of the sections to cut down on
+    // allocations and improve the chance of cache hits in the reader
     while (globalStart < this.text.length()) {
       Section section = this.text.getAsciiSection(globalStart);
-      String block = section.text;
+      byte[] block = section.getBytes();
+      int blockLen = section.length();
       int blockStart = globalStart - section.start;
 
       // There was an overlap from the previous block, combine with the current block up until
       // the first tag close and see if there's a match
-      if (overlapHead != null) {
-        int firstTagClose = block.indexOf('>');
-        int overlapStart = globalStart - overlapHead.length();
-        String overlap = overlapHead.concat(block.substring(0, firstTagClose + 1));
-        int overlapMatch = findForwardMatch(overlap, 0, overlap.length());
+      if (overlapHeadLen > 0) {
+        int firstTagClose = indexOf(block, blockLen, (byte) '>', 0);
+        int overlapStart = globalStart - overlapHeadLen;
+        int overlapLen = appendOverlap(overlapHeadLen, block, 0, firstTagClose + 1);
+        int overlapMatch = findForwardMatch(getOverlap(), overlapLen, 0, overlapLen);
         if (overlapMatch >= 0) {
           return overlapStart + overlapMatch;
         }
         blockStart = firstTagClose + 1;
-        overlapHead = null;
+        overlapHeadLen = 0;
       }
 
       // Truncate block to last '>' and keep the rest for the next iteration if needed
-      int blockEnd = block.length();
-      int lastTagOpen = block.lastIndexOf('<');
+      int blockEnd = blockLen;
+      int lastTagOpen = lastIndexOf(block, blockLen, (byte) '<', blockLen - 1);
       if (lastTagOpen < blockStart) {
         lastTagOpen = -1;
       }
-      int lastTagClose = block.lastIndexOf('>');
+      int lastTagClose = lastIndexOf(block, blockLen, (byte) '>', blockLen - 1);
       if (lastTagClose < blockStart) {
         lastTagClose = -1;
       }
@@ -59,11 +73,11 @@ public class HocrClassBreakLocator extends BaseBreakLocator {
           (lastTagOpen >= 0 && lastTagClose < 0)
               || (lastTagClose >= 0 && lastTagClose < lastTagOpen);
       if (partialTag) {
-        overlapHead = block.substring(lastTagOpen, blockEnd);
+        overlapHeadLen = setOverlap(block, lastTagOpen, blockEnd);
         blockEnd = lastTagOpen + 1;
       }
 
-      int match = findForwardMatch(block, blockStart, blockEnd);
+      int match = findForwardMatch(block, blockLen, blockStart, blockEnd);
       if (match >= 0) {
         return section.start + match;
       }
@@ -79,37 +93,37 @@ public class HocrClassBreakLocator extends BaseBreakLocator {
       return 0;
     }
 
-    // Read the source section-wise  to cut down on String allocations and improve the chance of
-    // cache hits in the reader
-    String overlapTail = null;
+    // Read the source section-wise and search the raw bytes of the sections to cut down on
+    // allocations and improve the chance of cache hits in the reader
+    int overlapTailLen = 0;
     int globalEnd = Math.max(0, offset - 1);
     while (globalEnd > 0) {
       Section section = this.text.getAsciiSection(globalEnd);
 
-      String block = section.text;
+      byte[] block = section.getBytes();
+      int blockLen = section.length();
       int blockEnd = globalEnd - section.start;
 
       // There was an overlap from the previous block, combine with the current block up until
       // the first tag open and see if there's a match
-      if (overlapTail != null) {
-        int lastTagOpen = block.lastIndexOf('<', blockEnd);
-        String overlapHead = block.substring(lastTagOpen);
-        int overlapStartOffset = globalEnd - overlapHead.length() + 1;
-        String overlap = overlapHead.concat(overlapTail);
-        int overlapMatch = findBackwardMatch(overlap, overlap.length(), 0);
+      if (overlapTailLen > 0) {
+        int lastTagOpen = Math.max(0, lastIndexOf(block, blockLen, (byte) '<', blockEnd));
+        int overlapStartOffset = globalEnd - (blockLen - lastTagOpen) + 1;
+        int overlapLen = prependOverlap(overlapTailLen, block, lastTagOpen, blockLen);
+        int overlapMatch = findBackwardMatch(getOverlap(), overlapLen, overlapLen, 0);
         if (overlapMatch >= 0) {
           return overlapStartOffset + overlapMatch;
         }
         blockEnd = lastTagOpen;
-        overlapTail = null;
+        overlapTailLen = 0;
       }
 
       int blockStart = 0;
-      int firstTagOpen = block.indexOf('<');
+      int firstTagOpen = indexOf(block, blockLen, (byte) '<', 0);
       if (firstTagOpen > blockEnd) {
         firstTagOpen = -1;
       }
-      int firstTagClose = block.indexOf('>');
+      int firstTagClose = indexOf(block, blockLen, (byte) '>', 0);
       if (firstTagClose > blockEnd) {
         firstTagClose = -1;
       }
@@ -119,10 +133,10 @@ public class HocrClassBreakLocator extends BaseBreakLocator {
       if (partialTag) {
         // Section starts on a partial tag, store it for the next iteration
         blockStart = firstTagClose + 1;
-        overlapTail = block.substring(0, firstTagClose + 1);
+        overlapTailLen = setOverlap(block, 0, firstTagClose + 1);
       }
 
-      int match = findBackwardMatch(block, blockEnd, blockStart);
+      int match = findBackwardMatch(block, blockLen, blockEnd, blockStart);
       if (match >= 0) {
         return section.start + match;
       }
@@ -133,58 +147,49 @@ public class HocrClassBreakLocator extends BaseBreakLocator {
     return 0;
   }
 
-  /** Find a match for one of the break classes in the given String, seeking forward. */
-  private int findForwardMatch(String text, int fromOffset, int toOffset) {
-    int match = Integer.MAX_VALUE;
-    for (String breakClass : this.breakClasses) {
-      // Where to start looking from for a break in the next iteration
-      int fromIdx = fromOffset;
-      while (fromIdx < toOffset) {
-        int i = text.indexOf(breakClass, fromIdx);
-        if (i < 0 || i >= toOffset) {
-          // Not found, try next class
-          break;
-        }
-        int openIdx = text.lastIndexOf('<', i);
-        int closeIdx = text.indexOf('>', i);
-        if (openIdx < fromIdx && closeIdx < 0) {
-          // No match
-          break;
-        }
-        if (openIdx < fromOffset) {
-          // Incomplete element, try next position
-          fromIdx = closeIdx;
-          continue;
-        }
-        int nextOpenIdx = text.indexOf('<', i);
-        if (nextOpenIdx >= toOffset) {
-          nextOpenIdx = -1;
-        }
-        if (nextOpenIdx > 0 && closeIdx > nextOpenIdx) {
-          // Not inside an element tag, try next position
-          fromIdx = i + breakClass.length();
-          continue;
-        }
-        if (text.startsWith("meta", openIdx + 1)) {
-          // Block specification in meta tag, not a real block, try next position
-          fromIdx = closeIdx;
-          continue;
-        }
-        // Found a match, try next class to see whether there is a match closer to the offset
-        if (openIdx < match) {
-          match = openIdx;
-        }
-        break;
+  /** Find a match for one of the break classes in the given bytes, seeking forward. */
+  private int findForwardMatch(byte[] text, int len, int fromOffset, int toOffset) {
+    // Where to start looking from for a break in the next iteration
+    int fromIdx = fromOffset;
+    while (fromIdx < toOffset) {
+      int i = matcher.indexOf(text, len, fromIdx);
+      if (i < 0 || i >= toOffset) {
+        // Not found
+        return -1;
       }
+      int openIdx = lastIndexOf(text, len, (byte) '<', i);
+      int closeIdx = indexOf(text, len, (byte) '>', i);
+      if (openIdx < fromIdx && closeIdx < 0) {
+        // No match
+        return -1;
+      }
+      if (openIdx < fromOffset) {
+        // Incomplete element, try next position
+        fromIdx = Math.max(closeIdx, i + 1);
+        continue;
+      }
+      int nextOpenIdx = indexOf(text, len, (byte) '<', i);
+      if (nextOpenIdx >= toOffset) {
+        nextOpenIdx = -1;
+      }
+      if (nextOpenIdx > 0 && closeIdx > nextOpenIdx) {
+        // Not inside an element tag, try next position
+        fromIdx = i + 1;
+        continue;
+      }
+      if (startsWith(text, len, META, openIdx + 1)) {
+        // Block specification in meta tag, not a real block, try next position
+        fromIdx = Math.max(closeIdx, i + 1);
+        continue;
+      }
+      // Since the matches are found in order, this is the match closest to the offset
+      return openIdx;
     }
-    if (match == Integer.MAX_VALUE) {
-      return -1;
-    }
-    return match;
+    return -1;
   }
 
-  /** Find a match for one of the break classes in the given String, seeking backwards. */
-  private int findBackwardMatch(String text, int fromOffset, int toOffset) {
+  /** Find a match for one of the break classes in the given bytes, seeking backwards. */
+  private int findBackwardMatch(byte[] text, int len, int fromOffset, int toOffset) {
     if (fromOffset == 0 || fromOffset == toOffset) {
       return -1;
     }
@@ -192,31 +197,25 @@ public class HocrClassBreakLocator extends BaseBreakLocator {
     assert fromOffset > toOffset
         : "fromOffset must be greater than toOffset, we're looking backwards!";
 
-    int match = -1;
-    for (String breakClass : this.breakClasses) {
-      // Look for the class in the block
-      while (fromOffset > toOffset) {
-        int i = optimizedLastIndexOf(text, breakClass, fromOffset);
-        if (i < toOffset) {
-          // Not found, try next class
-          break;
-        }
-        int elemOpen = text.lastIndexOf('<', i);
-        int previousClose = text.lastIndexOf('>', i);
-        if (elemOpen < toOffset
-            || previousClose > elemOpen
-            || text.startsWith("meta", elemOpen + 1)) {
-          // Class was not part of a tag or in the "meta" tag, keep looking
-          fromOffset = Math.max(previousClose, elemOpen);
-          continue;
-        }
-        // Found match, try next class to see whether there is a match closer to the offset
-        if (elemOpen > match) {
-          match = elemOpen;
-        }
-        break;
+    // Look for the classes in the block
+    while (fromOffset > toOffset) {
+      int i = matcher.lastIndexOfBefore(text, len, fromOffset);
+      if (i < toOffset) {
+        // Not found
+        return -1;
+      }
+      int elemOpen = lastIndexOf(text, len, (byte) '<', i);
+      int previousClose = lastIndexOf(text, len, (byte) '>', i);
+      if (elemOpen < toOffset
+          || previousClose > elemOpen
+          || startsWith(text, len, META, elemOpen + 1)) {
+        // Class was not part of a tag or in the "meta" tag, keep looking
+        fromOffset = Math.min(i, Math.max(previousClose, elemOpen));
+        continue;
       }
+      // Since the matches are found in reverse order, this is the match closest to the offset
+      return elemOpen;
     }
-    return match;
+    return -1;
   }
 }
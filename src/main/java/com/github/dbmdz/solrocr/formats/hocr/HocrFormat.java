@@ -60,6 +60,15 @@ public class HocrFormat implements OcrFormat {
     }
   }
 
+  @Override
+  public OcrParser getFragmentParser(String fragment, OcrParser.ParsingFeature... features) {
+    try {
+      return new HocrParser(fragment, features);
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public OcrPage parsePageFragment(String pageFragment) {
     // TODO: Might be faster without regexes? Profile!
@@ -130,4 +139,14 @@ public class HocrFormat implements OcrFormat {
   public int getFirstContentEndIdx(String content) {
     return content.indexOf("</");
   }
+
+  @Override
+  public int getLastContentStartIdx(String content, int end) {
+    return content.lastIndexOf('>', end - 1) + 1;
+  }
+
+  @Override
+  public int getFirstContentEndIdx(String content, int start) {
+    return content.indexOf("</", start);
+  }
 }
@@ -27,6 +27,10 @@ public class HocrParser extends OcrParser {
     super(input, features);
   }
 
+  public HocrParser(String fragment, ParsingFeature... features) throws XMLStreamException {
+    super(fragment, features);
+  }
+
   @Override
   protected OcrBox readNext(XMLStreamReader2 xmlReader, Set<ParsingFeature> features)
       throws XMLStreamException {
@@ -52,7 +56,7 @@ public class HocrParser extends OcrParser {
       return null;
     }
 
-    OcrBox box = new OcrBox();
+    OcrBox box = newBox();
     Map<String, String> props = parseTitle(xmlReader.getAttributeValue("", "title"));
     if (features.contains(ParsingFeature.TEXT)) {
       this.parseText(
@@ -183,7 +187,7 @@ public class HocrParser extends OcrParser {
           box.setHyphenInfo(true, null);
         }
         // Make sure we don't overwrite highlight spans tracked from alternatives
-        if (withHighlights && box.getHighlightSpan() == null) {
+        if (withHighlights && !box.isInHighlight()) {
           box.setHighlightSpan(this.trackHighlightSpan(txt, box));
         }
         return;
@@ -217,7 +221,7 @@ public class HocrParser extends OcrParser {
             withOffsets
                 ? Math.toIntExact(xmlReader.getLocationInfo().getStartingCharOffset())
                 : null;
-        if (withHighlights && box.getHighlightSpan() == null) {
+        if (withHighlights && !box.isInHighlight()) {
           box.setHighlightSpan(this.trackHighlightSpan(altText, box));
         }
         box.addAlternative(altText, altOffset);
@@ -48,6 +48,15 @@ public class MiniOcrFormat implements OcrFormat {
     }
   }
 
+  @Override
+  public OcrParser getFragmentParser(String fragment, OcrParser.ParsingFeature... features) {
+    try {
+      return new MiniOcrParser(fragment, features);
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public OcrPage parsePageFragment(String pageFragment) {
     Matcher m = pagePat.matcher(pageFragment);
@@ -78,4 +87,14 @@ public class MiniOcrFormat implements OcrFormat {
   public int getFirstContentEndIdx(String content) {
     return content.indexOf("</");
   }
+
+  @Override
+  public int getLastContentStartIdx(String content, int end) {
+    return content.lastIndexOf('>', end - 1) + 1;
+  }
+
+  @Override
+  public int getFirstContentEndIdx(String content, int start) {
+    return content.indexOf("</", start);
+  }
 }
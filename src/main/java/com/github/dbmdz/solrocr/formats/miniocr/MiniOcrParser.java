@@ -27,6 +27,11 @@ public class MiniOcrParser extends OcrParser {
     super(input, features);
   }
 
+  public MiniOcrParser(String fragment, OcrParser.ParsingFeature... features)
+      throws XMLStreamException {
+    super(fragment, features);
+  }
+
   @Override
   protected OcrBox readNext(XMLStreamReader2 xmlReader, Set<ParsingFeature> features)
       throws XMLStreamException {
@@ -45,7 +50,7 @@ public class MiniOcrParser extends OcrParser {
       return null;
     }
 
-    OcrBox box = new OcrBox();
+    OcrBox box = newBox();
     if (features.contains(ParsingFeature.COORDINATES)) {
       String[] coords = xmlReader.getAttributeValue("", "x").split(" ");
       if (coords.length > 0) {
@@ -128,7 +133,7 @@ public class MiniOcrParser extends OcrParser {
           "<w> element at line {}, column {} in {} has no text!",
           loc.getStartLocation().getLineNumber(),
           loc.getStartLocation().getColumnNumber(),
-          input.getSource().orElse("<unknown>"));
+          getSource().orElse("<unknown>"));
       box.setText(null);
       box.setTextOffset(-1);
       return;
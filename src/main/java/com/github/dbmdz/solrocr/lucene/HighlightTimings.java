@@ -0,0 +1,39 @@
+package com.github.dbmdz.solrocr.lucene;
+
+/** Receives the time spent in the individual phases of highlighting and what they produced. */
+public interface HighlightTimings {
+  /** Discards all timings. */
+  HighlightTimings NOOP = (phase, nanos) -> {};
+
+  enum Phase {
+    /** Loading the OCR field values of the documents from the index */
+    LOAD_FIELD_VALUES,
+    /** Obtaining the offsets of the matches in a document from the index */
+    OFFSETS,
+    /** Locating, forming and scoring the candidate passages of a document */
+    PASSAGES,
+    /** Reading the OCR markup of a passage and inserting the highlighting markers */
+    FRAGMENT,
+    /** Parsing the highlighted OCR markup of a passage into a snippet */
+    PARSE,
+    /** Converting the snippets into the response structure */
+    SERIALIZATION
+  }
+
+  /**
+   * Record the time spent in a phase. Can be called concurrently from multiple threads.
+   *
+   * @param phase the phase of highlighting
+   * @param nanos the time spent in the phase, in nanoseconds
+   */
+  void record(Phase phase, long nanos);
+
+  /**
+   * Record how many passages were formed for a document and how many matches past the passage
+   * limit were only counted.
+   *
+   * @param numFormed number of passages that were located and scored
+   * @param numCountedOnly number of matches that were only counted towards the total
+   */
+  default void recordPassages(int numFormed, int numCountedOnly) {}
+}
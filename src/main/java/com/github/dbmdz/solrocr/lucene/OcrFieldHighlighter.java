@@ -25,6 +25,9 @@
 package com.github.dbmdz.solrocr.lucene;
 
 import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.lucene.HighlightTimings.Phase;
+import com.github.dbmdz.solrocr.model.OcrPage;
+import com.github.dbmdz.solrocr.model.OcrPageIndex;
 import com.github.dbmdz.solrocr.model.OcrSnippet;
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import java.io.IOException;
@@ -44,6 +47,7 @@ import org.apache.lucene.util.BytesRef;
 /** A customization of {@link FieldHighlighter} to support OCR fields */
 public class OcrFieldHighlighter extends FieldHighlighter {
   private final ConcurrentHashMap<Integer, Integer> numMatches;
+  private final HighlightTimings timings;
 
   public OcrFieldHighlighter(
       String field,
@@ -51,9 +55,26 @@ public class OcrFieldHighlighter extends FieldHighlighter {
       PassageScorer passageScorer,
       int maxPassages,
       int maxNoHighlightPassages) {
+    this(
+        field,
+        fieldOffsetStrategy,
+        passageScorer,
+        maxPassages,
+        maxNoHighlightPassages,
+        HighlightTimings.NOOP);
+  }
+
+  public OcrFieldHighlighter(
+      String field,
+      FieldOffsetStrategy fieldOffsetStrategy,
+      PassageScorer passageScorer,
+      int maxPassages,
+      int maxNoHighlightPassages,
+      HighlightTimings timings) {
     super(
         field, fieldOffsetStrategy, null, passageScorer, maxPassages, maxNoHighlightPassages, null);
     this.numMatches = new ConcurrentHashMap<>();
+    this.timings = timings;
   }
 
   /**
@@ -75,6 +96,40 @@ public class OcrFieldHighlighter extends FieldHighlighter {
       int snippetLimit,
       boolean scorePassages)
       throws IOException {
+    return highlightFieldForDoc(
+        reader,
+        indexDocId,
+        readerDocId,
+        breakLocator,
+        formatter,
+        content,
+        pageId,
+        snippetLimit,
+        scorePassages,
+        false,
+        timings);
+  }
+
+  /**
+   * Highlight this doc and report the time spent in the individual phases to the given timings
+   * instead of the ones of the highlighter, e.g. to profile a single document.
+   *
+   * <p>With {@code preScorePassages}, the candidate passages are scored before their breaks are
+   * located, see {@link #highlightPreScored}.
+   */
+  public OcrSnippet[] highlightFieldForDoc(
+      LeafReader reader,
+      int indexDocId, // relative to the whole index
+      int readerDocId, // relative to the current leafReader
+      BreakLocator breakLocator,
+      OcrPassageFormatter formatter,
+      SourceReader content,
+      String pageId,
+      int snippetLimit,
+      boolean scorePassages,
+      boolean preScorePassages,
+      HighlightTimings timings)
+      throws IOException {
     // note: it'd be nice to accept a CharSequence for content, but we need a CharacterIterator impl
     // for it.
 
@@ -83,7 +138,12 @@ public class OcrFieldHighlighter extends FieldHighlighter {
     }
 
     Passage[] passages;
+    long startNs = System.nanoTime();
     try (OffsetsEnum offsetsEnums = fieldOffsetStrategy.getOffsetsEnum(reader, readerDocId, null)) {
+      // The offsets enum is consumed lazily, so reading the offsets is mostly timed as part of
+      // forming the passages
+      long passagesStartNs = System.nanoTime();
+      timings.record(Phase.OFFSETS, passagesStartNs - startNs);
       passages =
           highlightOffsetsEnums(
               offsetsEnums,
@@ -92,7 +152,10 @@ public class OcrFieldHighlighter extends FieldHighlighter {
               formatter,
               pageId,
               snippetLimit,
-              scorePassages);
+              scorePassages,
+              preScorePassages,
+              timings);
+      timings.record(Phase.PASSAGES, System.nanoTime() - passagesStartNs);
     }
 
     // Format the resulting Passages.
@@ -104,7 +167,7 @@ public class OcrFieldHighlighter extends FieldHighlighter {
     }
 
     if (passages.length > 0) {
-      OcrSnippet[] snippets = formatter.format(passages, breakLocator.getText());
+      OcrSnippet[] snippets = formatter.format(passages, breakLocator.getText(), timings);
       Arrays.sort(snippets, Collections.reverseOrder());
       return snippets;
     } else {
@@ -112,6 +175,43 @@ public class OcrFieldHighlighter extends FieldHighlighter {
     }
   }
 
+  /**
+   * Get the start offsets of the first matches in the document, in the order they occur in the
+   * document.
+   *
+   * <p>This only needs the offsets from the index, so it is cheap compared to forming passages and
+   * can be used to load the OCR around the matches ahead of time.
+   */
+  public int[] getMatchStartOffsets(LeafReader reader, int readerDocId, int limit)
+      throws IOException {
+    return getMatchStartOffsets(reader, readerDocId, limit, timings);
+  }
+
+  /**
+   * Get the start offsets of the first matches in the document and report the time spent to the
+   * given timings.
+   */
+  public int[] getMatchStartOffsets(
+      LeafReader reader, int readerDocId, int limit, HighlightTimings timings) throws IOException {
+    long startNs = System.nanoTime();
+    int[] starts = new int[Math.min(limit, 64)];
+    int numStarts = 0;
+    try (OffsetsEnum offsetsEnums = fieldOffsetStrategy.getOffsetsEnum(reader, readerDocId, null)) {
+      while (numStarts < limit && offsetsEnums.nextPosition()) {
+        int start = offsetsEnums.startOffset();
+        if (start < 0) {
+          break;
+        }
+        if (numStarts == starts.length) {
+          starts = Arrays.copyOf(starts, Math.min(limit, numStarts * 2));
+        }
+        starts[numStarts++] = start;
+      }
+    }
+    timings.record(Phase.OFFSETS, System.nanoTime() - startNs);
+    return Arrays.copyOf(starts, numStarts);
+  }
+
   @Override
   protected Passage[] highlightOffsetsEnums(OffsetsEnum off) {
     throw new UnsupportedOperationException();
@@ -133,50 +233,49 @@ public class OcrFieldHighlighter extends FieldHighlighter {
       OcrPassageFormatter formatter,
       String pageId,
       int snippetLimit,
-      boolean scorePassages)
+      boolean scorePassages,
+      boolean preScorePassages,
+      HighlightTimings timings)
       throws IOException {
     final int contentLength = breakLocator.getText().length();
     if (!off.nextPosition()) {
       return new Passage[0];
     }
+    if (preScorePassages && pageId == null) {
+      return highlightPreScored(
+          off, indexDocId, breakLocator, snippetLimit, scorePassages, timings);
+    }
     // If we're filtering by a page identifier, we want *all* hits on that page
     int queueSize = pageId != null ? 4096 : maxPassages;
-    if (queueSize <= 0) {
-      queueSize = 512;
-    }
 
-    Comparator<Passage> cmp;
-    if (scorePassages) {
-      cmp =
-          (left, right) -> {
-            if (left.getScore() < right.getScore()) {
-              return -1;
-            } else if (left.getScore() > right.getScore()) {
-              return 1;
-            } else {
-              return left.getStartOffset() - right.getStartOffset();
-            }
-          };
-    } else {
-      cmp = Comparator.comparingInt(Passage::getStartOffset);
+    // With a page filter we need the page of every single match, so we look them up in a table of
+    // all pages in the document. Matches are ordered by offset, so we can stop after the last page
+    // with the requested identifier.
+    OcrPageIndex pageIndex = null;
+    int pageEnd = -1;
+    if (pageId != null) {
+      pageIndex = formatter.getPageIndex(breakLocator.getText());
+      pageEnd = pageIndex.getLastEnd(pageId);
     }
 
-    PriorityQueue<Passage> passageQueue = new PriorityQueue<>(queueSize, cmp);
-    Passage passage =
-        new Passage(); // the current passage in-progress.  Will either get reset or added to queue.
+    PassageCollector collector =
+        new PassageCollector(breakLocator, queueSize, contentLength, scorePassages);
 
     // If we've reached the limit, no longer calculate passages, only count matches as passages
     boolean limitReached = false;
-    int numTotal = 0;
+    int numCountedOnly = 0;
     do {
       int start = off.startOffset();
       if (start == -1) {
         throw new IllegalArgumentException(
             "field '" + field + "' was indexed without offsets, cannot highlight");
       }
-      if (pageId != null) {
-        String passagePageId = formatter.determineStartPage(start, breakLocator.getText()).id;
-        if (!passagePageId.equals(pageId)) {
+      if (pageIndex != null) {
+        if (start > pageEnd) {
+          break;
+        }
+        OcrPage passagePage = pageIndex.getPageAt(start);
+        if (passagePage == null || !passagePage.id.equals(pageId)) {
           continue;
         }
       }
@@ -187,11 +286,185 @@ public class OcrFieldHighlighter extends FieldHighlighter {
       // Since building passages is expensive when using external files, we forego it past a certain
       // limit (which can be set by the user) and just update the total count, counting each match
       // as a single passage.
-      if (limitReached || numTotal > snippetLimit) {
-        numTotal++;
+      if (limitReached || collector.getNumPassages() > snippetLimit) {
+        numCountedOnly++;
         limitReached = true;
         continue;
       }
+      BytesRef term = off.getTerm(); // a reference; safe to refer to
+      assert term != null;
+      if (!collector.addMatch(start, end, term, off.freq())) {
+        break;
+      }
+    } while (off.nextPosition());
+    Passage[] passages = collector.finish();
+
+    this.numMatches.put(indexDocId, collector.getNumPassages() + numCountedOnly);
+    timings.recordPassages(collector.getNumPassages(), numCountedOnly);
+    return passages;
+  }
+
+  /**
+   * Form passages in two phases, so breaks only need to be located for the matches in the best
+   * passages.
+   *
+   * <p>In the first phase, the matches are clustered into candidate passages by their distance to
+   * each other. The width of the candidates is estimated from the real passage around the first
+   * match, so that matches are clustered like they would be merged into passages. The candidates
+   * are then scored from their matches alone, without locating any breaks. In the second phase,
+   * the passages are formed as usual from the matches of the best {@code maxPassages} candidates,
+   * along with other matches that end up in their context.
+   *
+   * <p>The total number of passages is the number of candidates and thus only an approximation.
+   */
+  private Passage[] highlightPreScored(
+      OffsetsEnum off,
+      int indexDocId,
+      BreakLocator breakLocator,
+      int snippetLimit,
+      boolean scorePassages,
+      HighlightTimings timings)
+      throws IOException {
+    final int contentLength = breakLocator.getText().length();
+    PriorityQueue<Passage> candidateQueue =
+        new PriorityQueue<>(Math.max(1, maxPassages), getPassageComparator(scorePassages));
+    // All matches that are part of a candidate, in the order they occur in the document
+    Passage matches = new Passage();
+    matches.setStartOffset(0);
+    matches.setEndOffset(contentLength);
+    Passage candidate = new Passage();
+    int halfWidth = -1;
+
+    boolean limitReached = false;
+    int numCandidates = 0;
+    int numCountedOnly = 0;
+    do {
+      int start = off.startOffset();
+      if (start == -1) {
+        throw new IllegalArgumentException(
+            "field '" + field + "' was indexed without offsets, cannot highlight");
+      }
+      int end = off.endOffset();
+      if (start < contentLength && end > contentLength) {
+        continue;
+      }
+      if (limitReached || numCandidates > snippetLimit) {
+        numCountedOnly++;
+        limitReached = true;
+        continue;
+      }
+      if (start >= contentLength) {
+        break;
+      }
+      if (halfWidth < 0) {
+        int passageStart = Math.max(breakLocator.preceding(start + 1), 0);
+        int passageEnd = Math.min(breakLocator.following(end), contentLength);
+        halfWidth = Math.max(1, (passageEnd - passageStart) / 2);
+      }
+      if (start >= candidate.getEndOffset()) {
+        if (candidate.getStartOffset() >= 0) {
+          numCandidates++;
+        }
+        candidate =
+            maybeAddPassage(candidateQueue, passageScorer, candidate, contentLength, scorePassages);
+        candidate.setStartOffset(Math.max(0, start - halfWidth));
+      }
+      candidate.setEndOffset(Math.min(contentLength, end + halfWidth));
+      BytesRef term = off.getTerm(); // a reference; safe to refer to
+      assert term != null;
+      candidate.addMatch(start, end, term, off.freq());
+      matches.addMatch(start, end, term, off.freq());
+    } while (off.nextPosition());
+    if (candidate.getStartOffset() >= 0) {
+      numCandidates++;
+    }
+    maybeAddPassage(candidateQueue, passageScorer, candidate, contentLength, scorePassages);
+
+    Passage[] candidates = candidateQueue.toArray(new Passage[0]);
+    Arrays.sort(candidates, Comparator.comparingInt(Passage::getStartOffset));
+    int[] matchStarts = matches.getMatchStarts();
+    int[] matchEnds = matches.getMatchEnds();
+    BytesRef[] matchTerms = matches.getMatchTerms();
+    int[] matchFreqs = matches.getMatchTermFreqsInDoc();
+    PassageCollector collector =
+        new PassageCollector(breakLocator, maxPassages, contentLength, scorePassages);
+    // Candidates consist of consecutive matches, so we can find their matches with a single scan
+    int candidateIdx = 0;
+    int nextMatchIdx = 0;
+    for (Passage c : candidates) {
+      int firstStart = c.getMatchStarts()[0];
+      while (matchStarts[candidateIdx] < firstStart) {
+        candidateIdx++;
+      }
+      int candidateEnd = candidateIdx + c.getNumMatches();
+      // Include preceding matches that are part of the context of the first match
+      int contextStart = Math.max(breakLocator.preceding(firstStart + 1), 0);
+      int matchIdx = Math.max(candidateIdx, nextMatchIdx);
+      while (matchIdx > nextMatchIdx && matchStarts[matchIdx - 1] >= contextStart) {
+        matchIdx--;
+      }
+      while (matchIdx < matches.getNumMatches()
+          && (matchIdx < candidateEnd || matchStarts[matchIdx] < collector.getPassageEnd())) {
+        collector.addMatch(
+            matchStarts[matchIdx], matchEnds[matchIdx], matchTerms[matchIdx], matchFreqs[matchIdx]);
+        matchIdx++;
+      }
+      nextMatchIdx = matchIdx;
+    }
+    Passage[] passages = collector.finish();
+
+    this.numMatches.put(indexDocId, numCandidates + numCountedOnly);
+    timings.recordPassages(collector.getNumPassages(), numCountedOnly);
+    return passages;
+  }
+
+  private static Comparator<Passage> getPassageComparator(boolean scorePassages) {
+    if (scorePassages) {
+      return (left, right) -> {
+        if (left.getScore() < right.getScore()) {
+          return -1;
+        } else if (left.getScore() > right.getScore()) {
+          return 1;
+        } else {
+          return left.getStartOffset() - right.getStartOffset();
+        }
+      };
+    } else {
+      return Comparator.comparingInt(Passage::getStartOffset);
+    }
+  }
+
+  /**
+   * Forms passages from matches in the order they occur in the document, merging matches whose
+   * contexts overlap, and keeps the best passages.
+   */
+  private class PassageCollector {
+    private final BreakLocator breakLocator;
+    private final PriorityQueue<Passage> passageQueue;
+    private final int contentLength;
+    private final boolean scorePassages;
+
+    // the current passage in-progress.  Will either get reset or added to queue.
+    private Passage passage = new Passage();
+    private int numPassages = 0;
+
+    PassageCollector(
+        BreakLocator breakLocator, int queueSize, int contentLength, boolean scorePassages) {
+      this.breakLocator = breakLocator;
+      if (queueSize <= 0) {
+        queueSize = 512;
+      }
+      this.passageQueue = new PriorityQueue<>(queueSize, getPassageComparator(scorePassages));
+      this.contentLength = contentLength;
+      this.scorePassages = scorePassages;
+    }
+
+    /**
+     * Add a match to the current passage or start a new passage with it.
+     *
+     * @return false if the match is past the end of the content and no more matches can be added
+     */
+    boolean addMatch(int start, int end, BytesRef term, int freq) throws IOException {
       // advance breakIterator
       int passageStart = Math.max(breakLocator.preceding(start + 1), 0);
       int passageEnd = Math.min(breakLocator.following(end), contentLength);
@@ -199,32 +472,44 @@ public class OcrFieldHighlighter extends FieldHighlighter {
       // See if this term should be part of a new passage.
       if (passageStart >= passage.getEndOffset()) {
         if (passage.getStartOffset() >= 0) {
-          numTotal++;
+          numPassages++;
         }
         passage =
             maybeAddPassage(passageQueue, passageScorer, passage, contentLength, scorePassages);
         // if we exceed limit, we are done
         if (start >= contentLength) {
-          break;
+          return false;
         }
         passage.setStartOffset(passageStart);
       }
       passage.setEndOffset(passageEnd);
       // Add this term to the passage.
-      BytesRef term = off.getTerm(); // a reference; safe to refer to
-      assert term != null;
-      passage.addMatch(start, end, term, off.freq());
-    } while (off.nextPosition());
-    if (passage.getStartOffset() >= 0) {
-      numTotal++;
+      passage.addMatch(start, end, term, freq);
+      return true;
     }
-    maybeAddPassage(passageQueue, passageScorer, passage, contentLength, scorePassages);
 
-    this.numMatches.put(indexDocId, numTotal);
-    Passage[] passages = passageQueue.toArray(new Passage[passageQueue.size()]);
-    // sort in ascending order
-    Arrays.sort(passages, Comparator.comparingInt(Passage::getStartOffset));
-    return passages;
+    /** Number of completed passages, i.e. without the one in progress. */
+    int getNumPassages() {
+      return numPassages;
+    }
+
+    /** End offset of the passage in progress, or -1 if there is none. */
+    int getPassageEnd() {
+      return passage.getEndOffset();
+    }
+
+    /** Add the passage in progress and get the best passages, sorted by their start offset. */
+    Passage[] finish() {
+      if (passage.getStartOffset() >= 0) {
+        numPassages++;
+      }
+      maybeAddPassage(passageQueue, passageScorer, passage, contentLength, scorePassages);
+      passage = new Passage();
+      Passage[] passages = passageQueue.toArray(new Passage[0]);
+      // sort in ascending order
+      Arrays.sort(passages, Comparator.comparingInt(Passage::getStartOffset));
+      return passages;
+    }
   }
 
   /**
@@ -8,11 +8,14 @@ import com.github.dbmdz.solrocr.formats.OcrParser;
 import com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter;
 import com.github.dbmdz.solrocr.model.OcrBlock;
 import com.github.dbmdz.solrocr.model.OcrBox;
+import com.github.dbmdz.solrocr.model.OcrBoxBuffer;
 import com.github.dbmdz.solrocr.model.OcrFormat;
 import com.github.dbmdz.solrocr.model.OcrPage;
+import com.github.dbmdz.solrocr.model.OcrPageIndex;
 import com.github.dbmdz.solrocr.model.OcrSnippet;
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.github.dbmdz.solrocr.reader.StringSourceReader;
+import com.github.dbmdz.solrocr.util.Utf8;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import java.io.IOException;
@@ -22,10 +25,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -33,6 +38,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import javax.xml.stream.XMLStreamException;
 import org.apache.lucene.search.uhighlight.Passage;
 import org.apache.lucene.search.uhighlight.PassageFormatter;
 import org.slf4j.Logger;
@@ -51,6 +57,15 @@ public class OcrPassageFormatter extends PassageFormatter {
   protected final boolean alignSpans;
   protected final boolean trackPages;
 
+  // Page lookup state for the document that is currently being formatted
+  private SourceReader pageReader;
+  private OcrPageIndex pageIndex;
+  private BreakLocator pageBreakLocator;
+  private final Map<Integer, OcrPage> pagesByOffset = new HashMap<>();
+
+  /** Number of passages that could not be formatted due to errors */
+  private int numFailedPassages = 0;
+
   public OcrPassageFormatter(
       String startHlTag,
       String endHlTag,
@@ -96,11 +111,26 @@ public class OcrPassageFormatter extends PassageFormatter {
    * @return the parsed snippet representation of the passages
    */
   public OcrSnippet[] format(Passage[] passages, SourceReader content) {
+    return format(passages, content, HighlightTimings.NOOP);
+  }
+
+  /**
+   * Format the passages that point to subsequences of the document text into {@link OcrSnippet}
+   * instances, recording the time spent on reading and parsing the passages.
+   *
+   * @param passages in the the document text that contain highlighted text
+   * @param content of the OCR field, implemented as an {@link SourceReader}
+   * @param timings receives the time spent in the {@link HighlightTimings.Phase#FRAGMENT} and
+   *     {@link HighlightTimings.Phase#PARSE} phases
+   * @return the parsed snippet representation of the passages, {@code null} for passages that
+   *     could not be formatted due to errors (see {@link #getNumFailedPassages()})
+   */
+  public OcrSnippet[] format(Passage[] passages, SourceReader content, HighlightTimings timings) {
     OcrSnippet[] snippets = new OcrSnippet[passages.length];
     for (int i = 0; i < passages.length; i++) {
       Passage passage = passages[i];
       try {
-        snippets[i] = format(passage, content);
+        snippets[i] = format(passage, content, timings);
       } catch (IndexOutOfBoundsException e) {
         String errorMsg =
             String.format(
@@ -111,6 +141,7 @@ public class OcrPassageFormatter extends PassageFormatter {
                 passage.getEndOffset(),
                 content.getIdentifier());
         logger.error(errorMsg, e);
+        numFailedPassages++;
       } catch (IOException e) {
         String errorMsg =
             String.format(
@@ -121,64 +152,102 @@ public class OcrPassageFormatter extends PassageFormatter {
                 content.getIdentifier(),
                 e);
         logger.error(errorMsg, e);
+        numFailedPassages++;
       }
     }
     return snippets;
   }
 
+  /**
+   * Get the number of passages that could not be formatted due to errors so far, e.g. because the
+   * OCR file could not be read. Snippets are incomplete if this is non-zero.
+   */
+  public int getNumFailedPassages() {
+    return numFailedPassages;
+  }
+
+  /**
+   * Read the OCR markup of the passage and insert the highlighting markers around its matches.
+   *
+   * <p>The passage is read and decoded only once. Since the match offsets are usually relative to
+   * the <strong>UTF-8 bytes</strong> of the content, but we need <strong>UTF-16 char</strong>
+   * offsets into the fragment, the offsets are mapped while walking the fragment from the front,
+   * which works in a single pass since the matches are sorted by their offsets. The output is then
+   * assembled front to back, without inserting into the middle of the fragment.
+   */
   protected String getHighlightedFragment(Passage passage, SourceReader content)
       throws IOException {
+    String fragment = content.readUtf8String(passage.getStartOffset(), passage.getLength());
+    if (passage.getNumMatches() == 0) {
+      return fragment;
+    }
+    List<PassageMatch> matches =
+        mergeMatches(passage.getNumMatches(), passage.getMatchStarts(), passage.getMatchEnds());
     StringBuilder sb =
-        new StringBuilder(content.readUtf8String(passage.getStartOffset(), passage.getLength()));
-    int extraChars = 0;
-    if (passage.getNumMatches() > 0) {
-      List<PassageMatch> matches =
-          mergeMatches(passage.getNumMatches(), passage.getMatchStarts(), passage.getMatchEnds());
-      for (PassageMatch match : matches) {
-        // Can't just do match.start - passage.getStartOffset(), since both offsets are relative to
-        // **UTF-8 bytes**, but we need **UTF-16 codepoint** offsets in the code.
-        String preMatchContent =
-            content.readUtf8String(
-                passage.getStartOffset(), match.start - passage.getStartOffset());
-        int matchStart = preMatchContent.length();
-        if (alignSpans) {
-          matchStart = format.getLastContentStartIdx(preMatchContent);
+        new StringBuilder(
+            fragment.length() + matches.size() * (START_HL.length() + END_HL.length()));
+    CharOffsetMapper offsetMapper =
+        new CharOffsetMapper(
+            fragment, passage.getStartOffset(), content.hasByteOffsets() && !content.isAscii());
+    // Everything before this char offset has already been copied to the output
+    int copiedIdx = 0;
+    for (PassageMatch match : matches) {
+      int matchStart = offsetMapper.toCharOffset(match.start);
+      if (alignSpans) {
+        int contentStart = format.getLastContentStartIdx(fragment, matchStart);
+        if (contentStart >= 0) {
+          matchStart = contentStart;
         }
-        sb.insert(
-            this.adjustPositionToCharacterEntities(sb.toString(), extraChars + matchStart),
-            START_HL);
-        extraChars += START_HL.length();
-        // Again, can't just do match.end - passage.getStartOffset(), since we need char offsets
-        // (see above).
-        int matchEnd =
-            content
-                .readUtf8String(passage.getStartOffset(), match.end - passage.getStartOffset())
-                .length();
-        String matchText = sb.substring(extraChars + matchStart, extraChars + matchEnd);
-        if (matchText.trim().endsWith(">")) {
-          // Set the end of the match to the position before the last inner closing tag inside of
-          // the match. This is only relevant for hOCR at the moment
-          Matcher m = LAST_INNER_TAG_PAT.matcher(matchText);
-          int idx = -1;
-          while (m.find()) {
-            idx = m.start() + 1;
-          }
-          if (idx > -1) {
-            matchEnd -= (matchText.length() - idx);
-          }
+      }
+      int hlStart = Math.max(adjustPositionToCharacterEntities(fragment, matchStart), copiedIdx);
+
+      int matchEnd = offsetMapper.toCharOffset(match.end);
+      matchStart = Math.min(matchStart, matchEnd);
+      if (endsWithTag(fragment, matchStart, matchEnd)) {
+        // Set the end of the match to the position before the last inner closing tag inside of
+        // the match. This is only relevant for hOCR at the moment
+        Matcher m = LAST_INNER_TAG_PAT.matcher(fragment).region(matchStart, matchEnd);
+        int idx = -1;
+        while (m.find()) {
+          idx = m.start() + 1;
+        }
+        if (idx > -1) {
+          matchEnd = idx;
         }
-        matchEnd = Math.min(matchEnd + extraChars, sb.length());
-        if (alignSpans && matchEnd != sb.length()) {
-          String postMatchContent = sb.substring(matchEnd, sb.length());
-          matchEnd += format.getFirstContentEndIdx(postMatchContent);
+      }
+      if (alignSpans && matchEnd != fragment.length()) {
+        int contentEnd = format.getFirstContentEndIdx(fragment, matchEnd);
+        if (contentEnd >= 0) {
+          matchEnd = contentEnd;
         }
-        sb.insert(this.adjustPositionToCharacterEntities(sb.toString(), matchEnd), END_HL);
-        extraChars += END_HL.length();
       }
+      int hlEnd =
+          Math.min(
+              Math.max(adjustPositionToCharacterEntities(fragment, matchEnd), hlStart),
+              fragment.length());
+
+      sb.append(fragment, copiedIdx, hlStart)
+          .append(START_HL)
+          .append(fragment, hlStart, hlEnd)
+          .append(END_HL);
+      copiedIdx = hlEnd;
     }
+    sb.append(fragment, copiedIdx, fragment.length());
     return sb.toString();
   }
 
+  /** Check if the last non-whitespace character in the given range of the fragment closes a tag. */
+  private static boolean endsWithTag(String fragment, int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      char c = fragment.charAt(i);
+      // Same notion of whitespace as String#trim
+      if (c > ' ') {
+        return c == '>';
+      }
+    }
+    return false;
+  }
+
   /**
    * Adjust the given position within the OCR fragment to account for XML character entities in the
    * OCR word, assumes that the position is within an OCR word.
@@ -207,81 +276,120 @@ public class OcrPassageFormatter extends PassageFormatter {
     return position;
   }
 
-  private OcrSnippet format(Passage passage, SourceReader reader) throws IOException {
+  private OcrSnippet format(Passage passage, SourceReader reader, HighlightTimings timings)
+      throws IOException {
+    long startNs = System.nanoTime();
     String xmlFragment = getHighlightedFragment(passage, reader);
     OcrPage initialPage = null;
     if (trackPages) {
       initialPage = determineStartPage(passage.getStartOffset(), reader);
     }
+    long parseStartNs = System.nanoTime();
+    timings.record(HighlightTimings.Phase.FRAGMENT, parseStartNs - startNs);
     OcrSnippet snip = parseFragment(xmlFragment, initialPage);
+    timings.record(HighlightTimings.Phase.PARSE, System.nanoTime() - parseStartNs);
     if (snip != null) {
       snip.setScore(passage.getScore());
     }
     return snip;
   }
 
+  private void resetPages(SourceReader reader) {
+    if (reader != pageReader) {
+      pageReader = reader;
+      pageIndex = this.format.getPageIndex(reader);
+      pageBreakLocator = null;
+      pagesByOffset.clear();
+    }
+  }
+
+  /**
+   * Get the table of all pages in the document. If the format has no precomputed table, it is
+   * built by scanning the whole document once and kept for all further lookups in the document.
+   */
+  OcrPageIndex getPageIndex(SourceReader reader) throws IOException {
+    resetPages(reader);
+    if (pageIndex == null) {
+      pageIndex = OcrPageIndex.build(this.format, reader);
+    }
+    return pageIndex;
+  }
+
   /** Determine the page an OCR fragment resides on. */
   OcrPage determineStartPage(int startOffset, SourceReader reader) throws IOException {
-    BreakLocator pageBreakLocator = this.format.getBreakLocator(reader, OcrBlock.PAGE);
+    resetPages(reader);
+    if (pageIndex != null) {
+      return pageIndex.getPageAt(startOffset);
+    }
+    if (pageBreakLocator == null) {
+      pageBreakLocator = this.format.getBreakLocator(reader, OcrBlock.PAGE);
+    }
     int pageOffset = pageBreakLocator.preceding(startOffset);
     if (pageOffset == BreakLocator.DONE) {
       // This means the page is, if present, part of the passage, and will be determined during
       // parsing anyway
       return null;
     }
+    // Passages are often on the same page, so only parse every page once
+    if (pagesByOffset.containsKey(pageOffset)) {
+      return pagesByOffset.get(pageOffset);
+    }
     String pageFragment =
         reader.readUtf8String(pageOffset, Math.min(512, reader.length() - pageOffset));
-    return this.format.parsePageFragment(pageFragment);
+    OcrPage page = this.format.parsePageFragment(pageFragment);
+    pagesByOffset.put(pageOffset, page);
+    return page;
   }
 
   /** Parse an {@link OcrSnippet} from an OCR fragment. */
   protected OcrSnippet parseFragment(String ocrFragment, OcrPage page) {
-    List<OcrBox> allBoxes = this.parseWords(ocrFragment, page);
-    if (allBoxes.isEmpty()) {
+    OcrBoxBuffer words = this.parseWords(ocrFragment, page);
+    if (words.isEmpty()) {
       return null;
     }
 
-    // Grouped by columns
-    List<List<OcrBox>> byColumns = new ArrayList<>();
-    List<OcrBox> currentCol = new ArrayList<>();
-    OcrBox prevBox = null;
+    // Grouped by columns, as the indices of the first word of every column
+    List<Integer> columnStarts = new ArrayList<>();
+    columnStarts.add(0);
+    int prevIdx = -1;
     String pageId = null;
-    for (OcrBox box : allBoxes) {
+    for (int idx = 0; idx < words.size(); idx++) {
       // Stupid, haphazard heuristic for column detection: If the next box is at least the height of
       // the current box times five higher on the page, we're on a new column. Or if the page
       // changes.
       // FIXME: This clearly needs some more thought put into it
       boolean newColumn =
-          prevBox != null && (box.getUly() + prevBox.getHeight() * 5) < prevBox.getUly();
-      String boxPageId = box.getPage() == null ? null : box.getPage().id;
+          prevIdx >= 0
+              && (words.getUly(idx) + words.getHeight(prevIdx) * 5) < words.getUly(prevIdx);
+      OcrPage boxPage = words.getPage(idx);
+      String boxPageId = boxPage == null ? null : boxPage.id;
       boolean newPage = pageId != null && !pageId.equals(boxPageId);
       if (newColumn || newPage) {
-        byColumns.add(currentCol);
-        currentCol = new ArrayList<>();
+        columnStarts.add(idx);
       }
-      currentCol.add(box);
       // Skip very low-height boxes since they throw off the heuristic, we still track page changes,
       // though!
-      if (box.getHeight() > 5) {
-        prevBox = box;
+      if (words.getHeight(idx) > 5) {
+        prevIdx = idx;
       }
       pageId = boxPageId;
     }
-    byColumns.add(currentCol);
+    columnStarts.add(words.size());
 
     // Get highlighted spans
     Set<OcrPage> pages = new LinkedHashSet<>();
     List<List<OcrBox>> hlSpans = new ArrayList<>();
     List<OcrBox> currentSpan = null;
-    for (OcrBox wordBox : allBoxes) {
-      if (wordBox.getPage() != null) {
-        pages.add(wordBox.getPage());
+    int currentSpanId = OcrBox.NO_HIGHLIGHT_SPAN;
+    for (int idx = 0; idx < words.size(); idx++) {
+      if (words.getPage(idx) != null) {
+        pages.add(words.getPage(idx));
       }
-      if (wordBox.isInHighlight()) {
+      if (words.isInHighlight(idx)) {
         boolean isInNewSpan =
             (currentSpan == null
                 || currentSpan.isEmpty()
-                || !wordBox.getHighlightSpan().equals(currentSpan.get(0).getHighlightSpan()));
+                || words.getHighlightSpan(idx) != currentSpanId);
         if (isInNewSpan) {
           if (currentSpan != null && !currentSpan.isEmpty()) {
             hlSpans.add(currentSpan);
@@ -290,8 +398,11 @@ public class OcrPassageFormatter extends PassageFormatter {
         }
         // Only add the word to the span if some of its text actually is in the highlight span,
         // i.e. don't if the word's text starts with the end-marker.
-        if (!wordBox.getText().startsWith(END_HL)) {
-          currentSpan.add(wordBox);
+        if (!words.getText(idx).startsWith(END_HL)) {
+          if (currentSpan.isEmpty()) {
+            currentSpanId = words.getHighlightSpan(idx);
+          }
+          currentSpan.add(words.toBox(idx));
         }
       } else if (currentSpan != null && !currentSpan.isEmpty()) {
         hlSpans.add(currentSpan);
@@ -303,14 +414,17 @@ public class OcrPassageFormatter extends PassageFormatter {
     }
 
     String highlightedText =
-        OcrParser.boxesToString(allBoxes)
+        words
+            .toText(0, words.size())
             .replace(START_HL, startHlTag)
             .replace(OcrParser.END_HL, endHlTag);
-    List<OcrBox> snippetRegions =
-        byColumns.stream()
-            .map(this::determineSnippetRegion)
-            .filter(r -> !r.getText().isEmpty() && !r.getText().trim().isEmpty())
-            .collect(Collectors.toList());
+    List<OcrBox> snippetRegions = new ArrayList<>(columnStarts.size() - 1);
+    for (int i = 0; i < columnStarts.size() - 1; i++) {
+      OcrBox region = determineSnippetRegion(words, columnStarts.get(i), columnStarts.get(i + 1));
+      if (!region.getText().isEmpty() && !region.getText().trim().isEmpty()) {
+        snippetRegions.add(region);
+      }
+    }
     Set<String> snippetPageIds =
         snippetRegions.stream()
             .filter(b -> b.getPage() != null)
@@ -332,30 +446,36 @@ public class OcrPassageFormatter extends PassageFormatter {
     return snip;
   }
 
-  private OcrBox determineSnippetRegion(List<OcrBox> wordBoxes) {
-    float snipUlx = wordBoxes.stream().map(OcrBox::getUlx).min(Float::compareTo).get();
-    float snipUly = wordBoxes.stream().map(OcrBox::getUly).min(Float::compareTo).get();
-    float snipLrx = wordBoxes.stream().map(OcrBox::getLrx).max(Float::compareTo).get();
-    float snipLry = wordBoxes.stream().map(OcrBox::getLry).max(Float::compareTo).get();
-    OcrPage page = wordBoxes.get(0).getPage();
-
-    String regionText = OcrParser.boxesToString(wordBoxes);
-    OcrBox firstBox = wordBoxes.get(0);
-    OcrBox lastBox = wordBoxes.get(wordBoxes.size() - 1);
-    if (firstBox.isInHighlight() && !firstBox.getText().contains(START_HL)) {
+  /** Determine the region of the words in the range {@code [from, to)}. */
+  private OcrBox determineSnippetRegion(OcrBoxBuffer words, int from, int to) {
+    float snipUlx = Float.POSITIVE_INFINITY;
+    float snipUly = Float.POSITIVE_INFINITY;
+    float snipLrx = Float.NEGATIVE_INFINITY;
+    float snipLry = Float.NEGATIVE_INFINITY;
+    for (int idx = from; idx < to; idx++) {
+      snipUlx = Math.min(snipUlx, words.getUlx(idx));
+      snipUly = Math.min(snipUly, words.getUly(idx));
+      snipLrx = Math.max(snipLrx, words.getLrx(idx));
+      snipLry = Math.max(snipLry, words.getLry(idx));
+    }
+    OcrPage page = words.getPage(from);
+
+    String regionText = words.toText(from, to);
+    int lastIdx = to - 1;
+    if (words.isInHighlight(from) && !words.getText(from).contains(START_HL)) {
       regionText = START_HL + regionText;
     }
-    if (lastBox.isInHighlight() && !lastBox.getText().contains(END_HL)) {
+    if (words.isInHighlight(lastIdx) && !words.getText(lastIdx).contains(END_HL)) {
       regionText = regionText + END_HL;
     }
     regionText = regionText.replace(START_HL, startHlTag).replace(END_HL, endHlTag);
 
-    return new OcrBox(regionText, page, snipUlx, snipUly, snipLrx, snipLry, null);
+    return new OcrBox(
+        regionText, page, snipUlx, snipUly, snipLrx, snipLry, OcrBox.NO_HIGHLIGHT_SPAN);
   }
 
   /** Parse word boxes from an OCR fragment. */
-  protected List<OcrBox> parseWords(String ocrFragment, OcrPage startPage) {
-    List<OcrBox> words = new ArrayList<>();
+  protected OcrBoxBuffer parseWords(String ocrFragment, OcrPage startPage) {
     List<OcrParser.ParsingFeature> parsingFeatures =
         Lists.newArrayList(
             OcrParser.ParsingFeature.TEXT,
@@ -365,18 +485,28 @@ public class OcrPassageFormatter extends PassageFormatter {
     if (trackPages) {
       parsingFeatures.add(OcrParser.ParsingFeature.PAGES);
     }
-    OcrParser parser =
-        format.getParser(
-            new SanitizingXmlFilter(new StringReader(ocrFragment), true),
-            parsingFeatures.toArray(new OcrParser.ParsingFeature[0]));
-    boolean onStartPage = true;
-    for (OcrBox box : parser) {
-      if (onStartPage && box.getPage() == null) {
-        box.setPage(startPage);
-      } else if (box.getPage() != null) {
-        onStartPage = false;
+    OcrParser.ParsingFeature[] features = parsingFeatures.toArray(new OcrParser.ParsingFeature[0]);
+    try {
+      return parseWords(format.getFragmentParser(ocrFragment, features), startPage);
+    } catch (RuntimeException e) {
+      // Fragment parsers only handle well-formed markup, everything else needs to be sanitized
+      // and run through a full XML parser. Other errors are not going to go away by that.
+      if (!(e.getCause() instanceof XMLStreamException)) {
+        throw e;
       }
-      words.add(box);
+      logger.debug("Failed to parse OCR fragment, retrying with sanitized markup", e);
+      return parseWords(
+          format.getParser(
+              new SanitizingXmlFilter(new StringReader(ocrFragment), true), features),
+          startPage);
+    }
+  }
+
+  private static OcrBoxBuffer parseWords(OcrParser parser, OcrPage startPage) {
+    OcrBoxBuffer words = parser.readInto(new OcrBoxBuffer());
+    // Words before the first page break in the fragment are on the page the fragment started on
+    for (int idx = 0; idx < words.size() && words.getPage(idx) == null; idx++) {
+      words.setPage(idx, startPage);
     }
     return words;
   }
@@ -485,6 +615,40 @@ public class OcrPassageFormatter extends PassageFormatter {
     return (float) Math.floor(num * 10000) / 10000;
   }
 
+  /**
+   * Maps offsets into the content to char offsets into a fragment of it, for increasing offsets.
+   *
+   * <p>UTF-8 byte offsets are mapped by walking the fragment once from the front, so mapping all
+   * matches of a passage is linear in the length of the passage.
+   */
+  private static final class CharOffsetMapper {
+    private final String fragment;
+    private final int fragmentStart;
+    private final boolean byteOffsets;
+    private int offset;
+    private int charOffset = 0;
+
+    CharOffsetMapper(String fragment, int fragmentStart, boolean byteOffsets) {
+      this.fragment = fragment;
+      this.fragmentStart = fragmentStart;
+      this.byteOffsets = byteOffsets;
+      this.offset = fragmentStart;
+    }
+
+    /** Map an offset into the content that is not smaller than the previously mapped offset. */
+    int toCharOffset(int contentOffset) {
+      if (!byteOffsets) {
+        return Math.min(contentOffset - fragmentStart, fragment.length());
+      }
+      while (offset < contentOffset && charOffset < fragment.length()) {
+        int codePoint = fragment.codePointAt(charOffset);
+        offset += Utf8.encodedLength(codePoint);
+        charOffset += Character.charCount(codePoint);
+      }
+      return charOffset;
+    }
+  }
+
   protected static class PassageMatch {
     public int start;
     public int end;
@@ -0,0 +1,251 @@
+package com.github.dbmdz.solrocr.lucene;
+
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * Reads source pointers from a {@link SortedDocValues} or {@link BinaryDocValues} field and caches
+ * the parsed pointers per segment. Pointers that are read from stored fields are cached the same
+ * way, keyed by their value.
+ *
+ * <p>Reading the pointer from the stored fields means decompressing a whole block of stored fields
+ * for every document, which is expensive compared to the short pointer string. Doc values can be
+ * read directly, and since segments are immutable, the parsed pointer for a document in a segment
+ * never changes. For sorted doc values, the pointers are cached by their ordinal, so documents that
+ * share a pointer also share the parsed pointer and the value doesn't even have to be looked up.
+ *
+ * <p>Cached pointers are handed out with the file metadata snapshot of the request that looks
+ * them up, so the files are still checked once per request when they are opened.
+ *
+ * <p>Once a segment is closed, e.g. after a merge, its entries are dropped from the cache.
+ */
+public class SourcePointerCache {
+  /** Cache that doesn't keep any pointers, for highlighters without a configured cache. */
+  public static final SourcePointerCache DISABLED = new SourcePointerCache(0);
+
+  private static SourcePointerCache shared;
+
+  private final Cache<Key, SourcePointer> cache;
+  private final long maxEntries;
+  private final Set<IndexReader.CacheKey> trackedSegments = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxEntries the maximum number of parsed pointers to keep, {@code 0} disables caching
+   */
+  public SourcePointerCache(long maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("maxEntries must be >= 0");
+    }
+    this.maxEntries = maxEntries;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Get the node-wide instance of the cache, creating it with the given size if there is none yet.
+   *
+   * <p>The entries are keyed by segment, so they can be shared by all cores on the node. Only the
+   * first configuration is applied, later calls (e.g. from other cores or core reloads) get the
+   * existing instance along with its entries, use {@link #hasConfiguration(long)} to check if it
+   * matches theirs.
+   */
+  public static synchronized SourcePointerCache getShared(long maxEntries) {
+    if (shared == null) {
+      shared = new SourcePointerCache(maxEntries);
+    }
+    return shared;
+  }
+
+  /** Check if the cache was created with the given configuration. */
+  public boolean hasConfiguration(long maxEntries) {
+    return this.maxEntries == maxEntries;
+  }
+
+  /**
+   * Create a lookup for the pointers in a doc values field of an index, or for the pointers stored
+   * in a field.
+   *
+   * <p>The lookup is not thread-safe and should be used with ascending document identifiers, since
+   * doc values can only be iterated forwards.
+   *
+   * @param files the file metadata of the current request, used by the pointers that are returned
+   */
+  public Lookup newLookup(IndexReader reader, String field, FileMetadataCache.Snapshot files) {
+    return new Lookup(reader.leaves(), field, files);
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Make sure the entries for a segment are dropped once the segment is closed. */
+  private void trackSegment(IndexReader.CacheHelper cacheHelper) {
+    if (trackedSegments.add(cacheHelper.getKey())) {
+      cacheHelper.addClosedListener(this::dropSegment);
+    }
+  }
+
+  private void dropSegment(IndexReader.CacheKey segment) {
+    cache.asMap().keySet().removeIf(k -> k.segment == segment);
+    trackedSegments.remove(segment);
+  }
+
+  public class Lookup {
+    private final List<LeafReaderContext> leaves;
+    private final String field;
+    private final FileMetadataCache.Snapshot files;
+    private LeafReaderContext leaf;
+    private IndexReader.CacheKey segmentKey;
+    private SortedDocValues sortedValues;
+    private BinaryDocValues binaryValues;
+
+    private Lookup(
+        List<LeafReaderContext> leaves, String field, FileMetadataCache.Snapshot files) {
+      this.leaves = leaves;
+      this.field = field;
+      this.files = files;
+    }
+
+    /**
+     * Get the pointer for a document.
+     *
+     * @param docId index-wide document identifier
+     * @return the parsed pointer or {@code null} if the document has no value in the field
+     * @throws RuntimeException if the pointer could not be parsed, e.g. because a file is missing
+     */
+    public SourcePointer get(int docId) throws IOException {
+      DocIdSetIterator values = advanceTo(docId);
+      if (values == null) {
+        return null;
+      }
+      int segmentDocId = docId - leaf.docBase;
+      if (values.docID() > segmentDocId) {
+        // Documents are out of order, start over
+        leaf = null;
+        values = advanceTo(docId);
+      }
+      if (sortedValues != null) {
+        if (!sortedValues.advanceExact(segmentDocId)) {
+          return null;
+        }
+        int ord = sortedValues.ordValue();
+        return getOrParse(ord, () -> sortedValues.lookupOrd(ord).utf8ToString());
+      } else {
+        if (!binaryValues.advanceExact(segmentDocId)) {
+          return null;
+        }
+        String value = binaryValues.binaryValue().utf8ToString();
+        return getOrParse(value, () -> value);
+      }
+    }
+
+    /**
+     * Parse a pointer that was read from the stored field of a document.
+     *
+     * @param docId index-wide document identifier
+     * @param value the stored value of the field
+     * @throws RuntimeException if the pointer could not be parsed, e.g. because a file is missing
+     */
+    public SourcePointer parse(int docId, String value) throws IOException {
+      advanceTo(docId);
+      return getOrParse(value, () -> value);
+    }
+
+    /** Switch to the leaf of the document, returns the doc values or {@code null} if missing. */
+    private DocIdSetIterator advanceTo(int docId) throws IOException {
+      if (leaf == null || docId < leaf.docBase || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+        leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        LeafReader reader = leaf.reader();
+        IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+        segmentKey = cacheHelper != null ? cacheHelper.getKey() : null;
+        if (cacheHelper != null && maxEntries > 0) {
+          trackSegment(cacheHelper);
+        }
+        sortedValues = null;
+        binaryValues = null;
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo != null && fieldInfo.getDocValuesType() == DocValuesType.SORTED) {
+          sortedValues = reader.getSortedDocValues(field);
+        } else if (fieldInfo != null && fieldInfo.getDocValuesType() == DocValuesType.BINARY) {
+          binaryValues = reader.getBinaryDocValues(field);
+        }
+      }
+      return sortedValues != null ? sortedValues : binaryValues;
+    }
+
+    private SourcePointer getOrParse(Object value, ValueSupplier pointerValue) throws IOException {
+      Key key = segmentKey != null ? new Key(segmentKey, field, value) : null;
+      SourcePointer cached = key != null ? cache.getIfPresent(key) : null;
+      if (cached != null) {
+        return cached.withFiles(files);
+      }
+      SourcePointer pointer = SourcePointer.parse(pointerValue.get(), files);
+      if (key != null && pointer != null) {
+        // Don't keep the request's snapshot alive in the cache
+        cache.put(key, pointer.withFiles(null));
+      }
+      return pointer;
+    }
+  }
+
+  private interface ValueSupplier {
+    String get() throws IOException;
+  }
+
+  private static final class Key {
+    private final IndexReader.CacheKey segment;
+    private final String field;
+    private final Object value;
+    private final int hash;
+
+    private Key(IndexReader.CacheKey segment, String field, Object value) {
+      this.segment = segment;
+      this.field = field;
+      this.value = value;
+      this.hash = Objects.hash(segment, field, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key other = (Key) o;
+      return hash == other.hash
+          && segment == other.segment
+          && field.equals(other.field)
+          && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -1,120 +1,320 @@
 package com.github.dbmdz.solrocr.lucene.filters;
 
 import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache.FileMetadata;
+import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.github.dbmdz.solrocr.util.SourceAwareReader;
-import com.github.dbmdz.solrocr.util.Utf8;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.Queue;
 import org.apache.lucene.analysis.charfilter.BaseCharFilter;
 
+/**
+ * Reads the UTF-8 encoded regions of an external source and maps the Java character offsets of the
+ * output to UTF-8 byte offsets in the source.
+ *
+ * <p>The regions are decoded in a single pass, the byte offsets are tracked while decoding, so the
+ * source does not have to be decoded beforehand to convert the region boundaries to character
+ * offsets. The bytes between regions are skipped without being read.
+ *
+ * <p>For regions that span a whole file, the filter records in the file's metadata whether the file
+ * is pure ASCII, so later offset conversions for the file can be skipped.
+ */
 public class ExternalUtf8ContentFilter extends BaseCharFilter implements SourceAwareReader {
+  private static final int BUFFER_SIZE = 256 * 1024;
 
-  /**
-   * The cumulative offset difference between the input (bytes) and the output (chars) at the
-   * current position.
-   *
-   * <pre>
-   * current actual byte offset in input = currentOutOffset + cumulative
-   * </pre>
-   */
-  private int cumulative;
-
-  /** The current <strong>char</strong> offset in the full file; */
-  private int currentInOffset;
-
-  /** The current <strong>char</strong> offset in the output. */
-  private int currentOutOffset;
+  /** Read buffers are reused by subsequent filters on the same thread */
+  private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
 
   /** Source pointer of this reader, used for debugging and error reporting. */
   private final String pointer;
 
-  private boolean nextIsOffset = false;
-  private final Queue<SourcePointer.Region> remainingRegions;
-  private SourcePointer.Region currentRegion;
+  private final RegionDecoder decoder;
 
-  public ExternalUtf8ContentFilter(Reader input, List<SourcePointer.Region> regions, String pointer)
-      throws IOException {
-    super(input);
-    this.pointer = pointer;
-    this.currentOutOffset = 0;
-    this.currentInOffset = 0;
-    this.cumulative = 0;
-    this.remainingRegions = new LinkedList<>(regions);
-    currentRegion = remainingRegions.remove();
-    if (currentRegion.start > 0) {
-      this.addOffCorrectMap(currentOutOffset, currentRegion.startOffset);
-      this.cumulative += currentRegion.startOffset;
-      this.currentInOffset = (int) this.input.skip(currentRegion.start);
-    }
+  /**
+   * Create a new filter.
+   *
+   * @param source the source to read from, closed along with the filter
+   * @param regions the regions to read, as byte offsets relative to the beginning of the source
+   * @param pointer the source pointer, used for debugging and error reporting
+   */
+  public ExternalUtf8ContentFilter(
+      SourceReader source, List<SourcePointer.Region> regions, String pointer) throws IOException {
+    this(source, regions, null, pointer);
   }
 
   /**
-   * Read <tt>len</tt> <tt>char</tt>s into <tt>cbuf</tt>, starting from character index <tt>off</tt>
-   * relative to the beginning of <tt>cbuf</tt> and return the number of <tt>char</tt>s read.
+   * Create a new filter that detects pure ASCII files.
+   *
+   * @param source the source to read from, closed along with the filter
+   * @param regions the regions to read, as byte offsets relative to the beginning of the source
+   * @param regionFiles for every region, the metadata of the file if the region spans the whole
+   *     file, otherwise {@code null}
+   * @param pointer the source pointer, used for debugging and error reporting
    */
+  public ExternalUtf8ContentFilter(
+      SourceReader source,
+      List<SourcePointer.Region> regions,
+      List<FileMetadata> regionFiles,
+      String pointer)
+      throws IOException {
+    this(new RegionDecoder(source, regions, regionFiles), pointer);
+  }
+
+  private ExternalUtf8ContentFilter(RegionDecoder decoder, String pointer) {
+    super(decoder);
+    this.pointer = pointer;
+    this.decoder = decoder;
+    decoder.start(this::addOffCorrectMap);
+  }
+
   @Override
   public int read(char[] cbuf, int off, int len) throws IOException {
-    if (currentInOffset == currentRegion.end) {
-      return -1;
+    return decoder.read(cbuf, off, len);
+  }
+
+  @Override
+  public Optional<String> getSource() {
+    return Optional.of(this.pointer);
+  }
+
+  private interface OffsetCorrections {
+    void add(int off, int cumulativeDiff);
+  }
+
+  /** Decodes the UTF-8 bytes in the regions of a source into characters. */
+  private static final class RegionDecoder extends Reader {
+    private final SourceReader source;
+    private final List<SourcePointer.Region> regions;
+    private final List<FileMetadata> regionFiles;
+    private ByteBuffer buf;
+    private OffsetCorrections corrections;
+
+    /** Index of the current region */
+    private int regionIdx = -1;
+
+    /** End of the current region, as a byte offset in the source */
+    private int regionEnd;
+
+    /** Byte offset in the source of the next read */
+    private int readOffset;
+
+    /** The current <strong>char</strong> offset in the output. */
+    private int outOffset;
+
+    /**
+     * The cumulative offset difference between the input (bytes) and the output (chars) at the
+     * current position.
+     *
+     * <pre>
+     * current actual byte offset in input = outOffset + cumulative
+     * </pre>
+     */
+    private int cumulative;
+
+    /** Low surrogate of a supplementary character that didn't fit into the output anymore */
+    private char pendingLowSurrogate;
+
+    /** Whether the current region contained any non-ASCII bytes */
+    private boolean sawNonAscii;
+
+    private RegionDecoder(
+        SourceReader source, List<SourcePointer.Region> regions, List<FileMetadata> regionFiles) {
+      this.source = source;
+      this.regions = regions;
+      this.regionFiles = regionFiles;
     }
 
-    int numCharsRead = 0;
-    while (len - numCharsRead > 0) {
-      int charsRemainingInRegion = currentRegion.end - currentInOffset;
-      int charsToRead = len - numCharsRead;
-      if (charsToRead > charsRemainingInRegion) {
-        charsToRead = charsRemainingInRegion;
+    private void start(OffsetCorrections corrections) {
+      this.corrections = corrections;
+      this.buf = BUFFERS.get();
+      if (this.buf == null) {
+        this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      } else {
+        BUFFERS.set(null);
       }
+      this.buf.clear().flip();
+      nextRegion();
+    }
 
-      int read = this.input.read(cbuf, off, charsToRead);
-      if (read < 0) {
-        break;
+    /** Switch to the next region, once the current region has been fully decoded. */
+    private boolean nextRegion() {
+      if (regionIdx >= regions.size()) {
+        return false;
+      }
+      if (regionIdx >= 0 && regionFiles != null && regionFiles.get(regionIdx) != null) {
+        regionFiles.get(regionIdx).setAscii(!sawNonAscii);
+      }
+      sawNonAscii = false;
+      regionIdx++;
+      if (regionIdx >= regions.size()) {
+        return false;
+      }
+      SourcePointer.Region region = regions.get(regionIdx);
+      readOffset = region.start;
+      regionEnd = region.end;
+      buf.clear().flip();
+      cumulative = region.start - outOffset;
+      if (cumulative != 0) {
+        corrections.add(outOffset, cumulative);
       }
-      correctOffsets(cbuf, off, read);
-      numCharsRead += read;
-      off += read;
+      return true;
+    }
 
-      if (currentInOffset == currentRegion.end) {
-        if (remainingRegions.isEmpty()) {
+    /**
+     * Read more bytes from the current region into the buffer, keeping the undecoded bytes.
+     *
+     * @return whether any bytes were read, {@code false} if the region is exhausted
+     */
+    private boolean fill() throws IOException {
+      int toRead = Math.min(buf.capacity() - buf.remaining(), regionEnd - readOffset);
+      if (toRead <= 0) {
+        return false;
+      }
+      buf.compact();
+      buf.limit(buf.position() + toRead);
+      int numRead = 0;
+      while (numRead < toRead) {
+        int read = source.readBytes(buf, readOffset + numRead);
+        if (read <= 0) {
           break;
         }
-        currentRegion = remainingRegions.remove();
+        numRead += read;
+      }
+      buf.flip();
+      if (numRead < toRead) {
+        throw new IOException(
+            String.format(
+                Locale.US,
+                "Read fewer bytes than expected (%d vs %d), check your source pointer!",
+                numRead,
+                toRead));
+      }
+      readOffset += numRead;
+      return true;
+    }
 
-        cumulative = currentRegion.startOffset - currentOutOffset;
-        this.addOffCorrectMap(currentOutOffset, cumulative);
-        int toSkip = this.currentRegion.start - this.currentInOffset;
-        if (toSkip > 0) {
-          this.input.skip(this.currentRegion.start - this.currentInOffset);
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (buf == null) {
+        throw new IOException("Reader is closed");
+      }
+      if (len == 0) {
+        return 0;
+      }
+      int end = off + len;
+      int pos = off;
+      if (pendingLowSurrogate != 0 && pos < end) {
+        pos = emitLowSurrogate(cbuf, pos);
+      }
+      while (pos < end) {
+        if (!buf.hasRemaining() && !fill() && !nextRegion()) {
+          break;
+        }
+        int bufPos = buf.position();
+        int bufLimit = buf.limit();
+        // Fast path for ASCII, no offset corrections needed
+        while (pos < end && bufPos < bufLimit) {
+          byte b = buf.get(bufPos);
+          if (b < 0) {
+            break;
+          }
+          cbuf[pos++] = (char) b;
+          bufPos++;
+        }
+        outOffset += bufPos - buf.position();
+        buf.position(bufPos);
+        if (pos < end && bufPos < bufLimit) {
+          pos = decodeMultiByte(cbuf, pos, end);
         }
-        this.currentInOffset = currentRegion.start;
       }
+      return pos > off ? pos - off : -1;
     }
-    return numCharsRead > 0 ? numCharsRead : -1;
-  }
 
-  private void correctOffsets(char[] cbuf, int off, int len) {
-    for (int i = off; i < off + len; i++) {
-      if (nextIsOffset) {
-        this.addOffCorrectMap(currentOutOffset, cumulative);
-        nextIsOffset = false;
+    /** Decode a single multi-byte sequence at the current buffer position. */
+    private int decodeMultiByte(char[] cbuf, int pos, int end) throws IOException {
+      sawNonAscii = true;
+      int lead = buf.get(buf.position()) & 0xFF;
+      int seqLen;
+      int cp;
+      if (lead >= 0xC2 && lead <= 0xDF) {
+        seqLen = 2;
+        cp = lead & 0x1F;
+      } else if (lead >= 0xE0 && lead <= 0xEF) {
+        seqLen = 3;
+        cp = lead & 0x0F;
+      } else if (lead >= 0xF0 && lead <= 0xF4) {
+        seqLen = 4;
+        cp = lead & 0x07;
+      } else {
+        // Stray continuation byte or invalid lead byte
+        return emitReplacement(cbuf, pos, 1);
       }
-      currentInOffset += 1;
-      currentOutOffset += 1;
-      int cp = Character.codePointAt(cbuf, i);
-      int increment = Utf8.encodedLength(cp) - 1;
-      if (increment > 0) {
-        cumulative += increment;
-        nextIsOffset = true;
+      if (buf.remaining() < seqLen) {
+        fill();
+        if (buf.remaining() < seqLen) {
+          // Sequence is truncated at the end of the region
+          return emitReplacement(cbuf, pos, buf.remaining());
+        }
+      }
+      int bufPos = buf.position();
+      for (int i = 1; i < seqLen; i++) {
+        int b = buf.get(bufPos + i) & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+          return emitReplacement(cbuf, pos, i);
+        }
+        cp = (cp << 6) | (b & 0x3F);
+      }
+      buf.position(bufPos + seqLen);
+      if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        cbuf[pos++] = Character.highSurrogate(cp);
+        outOffset++;
+        // The byte offset difference is only applied after the low surrogate
+        pendingLowSurrogate = Character.lowSurrogate(cp);
+        if (pos < end) {
+          pos = emitLowSurrogate(cbuf, pos);
+        }
+        return pos;
       }
+      cbuf[pos++] = (char) cp;
+      outOffset++;
+      cumulative += seqLen - 1;
+      corrections.add(outOffset, cumulative);
+      return pos;
     }
-  }
 
-  @Override
-  public Optional<String> getSource() {
-    return Optional.of(this.pointer);
+    private int emitLowSurrogate(char[] cbuf, int pos) {
+      cbuf[pos++] = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+      outOffset++;
+      // Four bytes were decoded to two chars
+      cumulative += 2;
+      corrections.add(outOffset, cumulative);
+      return pos;
+    }
+
+    /** Emit a replacement character for malformed input of the given length. */
+    private int emitReplacement(char[] cbuf, int pos, int numBytes) {
+      buf.position(buf.position() + numBytes);
+      cbuf[pos++] = '\uFFFD';
+      outOffset++;
+      if (numBytes != 1) {
+        cumulative += numBytes - 1;
+        corrections.add(outOffset, cumulative);
+      }
+      return pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (buf != null) {
+        BUFFERS.set(buf);
+        buf = null;
+      }
+      source.close();
+    }
   }
 }
@@ -2,24 +2,35 @@ package com.github.dbmdz.solrocr.lucene.filters;
 
 import com.github.dbmdz.solrocr.formats.OcrParser;
 import com.github.dbmdz.solrocr.model.OcrBox;
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
+import com.github.dbmdz.solrocr.util.IntRangeMap;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import org.apache.lucene.analysis.CharFilter;
-import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+import org.apache.lucene.util.ArrayUtil;
 import solrocr.OcrCharFilterFactory;
 
-@SuppressWarnings("UnstableApiUsage")
-public class OcrCharFilter extends BaseCharFilter {
+public class OcrCharFilter extends CharFilter {
+  private static final char[] ALTERNATIVE_MARKER =
+      OcrCharFilterFactory.ALTERNATIVE_MARKER.toCharArray();
+
   private final OcrParser parser;
-  protected final RangeMap<Integer, TokenWithAlternatives> alternativeMap = TreeRangeMap.create();
 
-  private char[] curWord;
-  private int curWordIdx = -1;
+  /** Maps input offset ranges to the index of the token with alternatives in {@link #tokens} */
+  private final IntRangeMap alternativeMap = new IntRangeMap();
+
+  private final List<TokenWithAlternatives> tokens = new ArrayList<>();
+
+  /** Corrections from output offsets to input offsets */
+  private final OffsetCorrectionMap corrections = new OffsetCorrectionMap();
+
+  /** Output for the current word, reused for all words */
+  private char[] wordBuf = new char[64];
+
+  private int wordLen = 0;
+  private int wordIdx = 0;
   private int outputOffset = 0;
 
   public static OcrCharFilter nopFilter() {
@@ -36,8 +47,53 @@ public class OcrCharFilter extends BaseCharFilter {
     this.parser = parser;
   }
 
-  private void readNextWord() {
-    while (this.curWord == null && this.parser.hasNext()) {
+  @Override
+  protected int correct(int currentOff) {
+    return corrections.correct(currentOff);
+  }
+
+  private void append(String str) {
+    int len = str.length();
+    ensureCapacity(len);
+    str.getChars(0, len, wordBuf, wordLen);
+    wordLen += len;
+  }
+
+  private void append(char[] chars) {
+    ensureCapacity(chars.length);
+    System.arraycopy(chars, 0, wordBuf, wordLen, chars.length);
+    wordLen += chars.length;
+  }
+
+  /** Append the decimal representation of a non-negative number. */
+  private void append(int num) {
+    int numDigits = 1;
+    for (int n = num; n >= 10; n /= 10) {
+      numDigits++;
+    }
+    ensureCapacity(numDigits);
+    for (int i = wordLen + numDigits - 1; i >= wordLen; i--) {
+      wordBuf[i] = (char) ('0' + num % 10);
+      num /= 10;
+    }
+    wordLen += numDigits;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (wordLen + additional > wordBuf.length) {
+      wordBuf = ArrayUtil.grow(wordBuf, wordLen + additional);
+    }
+  }
+
+  /**
+   * Write the output for the next word to the word buffer.
+   *
+   * @return whether there was a next word
+   */
+  private boolean readNextWord() {
+    this.wordLen = 0;
+    this.wordIdx = 0;
+    while (this.parser.hasNext()) {
       OcrBox nextWord = this.parser.next();
       if (nextWord.getText() == null) {
         continue;
@@ -62,56 +118,44 @@ public class OcrCharFilter extends BaseCharFilter {
         int endOutputOffset = outputOffset + beginLength;
         OcrBox hyphenEnd = this.parser.next();
         int endOffset = hyphenEnd.getTextOffset();
+        append(text);
         if (hyphenEnd.getTrailingChars() != null) {
-          text += hyphenEnd.getTrailingChars();
+          append(hyphenEnd.getTrailingChars());
         }
-        this.curWord = text.toCharArray();
-        this.curWordIdx = 0;
         // Map the offsets correctly: We output the full dehyphenated form, but the offsets point to
         // the constituting parts, i.e. the beginning and end text. This only makes a difference for
         // ALTO.
-        this.addOffCorrectMap(outputOffset, offset - outputOffset);
-        this.addOffCorrectMap(endOutputOffset, endOffset - endOutputOffset);
-        break;
+        corrections.add(outputOffset, offset - outputOffset);
+        corrections.add(endOutputOffset, endOffset - endOutputOffset);
+        return true;
       }
 
-      this.addOffCorrectMap(outputOffset, nextWord.getTextOffset() - outputOffset);
+      corrections.add(outputOffset, nextWord.getTextOffset() - outputOffset);
 
-      StringBuilder text = new StringBuilder(nextWord.getText());
-      if (!nextWord.getAlternatives().isEmpty()) {
-        List<String> alts = nextWord.getAlternatives();
-        int wordIdx = text.length();
+      append(nextWord.getText());
+      List<String> alts = nextWord.getAlternatives();
+      if (!alts.isEmpty()) {
         for (int i = 0; i < alts.size(); i++) {
           // Every alternative is preceded a sequence of `<marker><offset><marker>`. The markers are
           // sequences of unicode `WORD JOINER` characters that prevent tokenizers from separating
           // alternatives and their offsets from each other so they can be accessed as a single unit
           // downstream in the `OcrAlternativesFilter`.
-          text.append(OcrCharFilterFactory.ALTERNATIVE_MARKER);
-          int offset;
+          int altOffset = nextWord.getAlternativeOffset(i);
+          append(ALTERNATIVE_MARKER);
           if (this.input instanceof CharFilter) {
-            offset =
-                ((CharFilter) this.input).correctOffset(nextWord.getAlternativeOffsets().get(i));
+            append(((CharFilter) this.input).correctOffset(altOffset));
           } else {
-            offset = nextWord.getAlternativeOffsets().get(i);
+            append(altOffset);
           }
-          text.append(offset);
-          text.append(OcrCharFilterFactory.ALTERNATIVE_MARKER);
-          int markerLen =
-              OcrCharFilterFactory.ALTERNATIVE_MARKER.length() * 2
-                  + Integer.toString(offset).length();
-          wordIdx += markerLen;
-          int outOff = this.outputOffset + wordIdx;
-          this.addOffCorrectMap(outOff, nextWord.getAlternativeOffsets().get(i) - outOff);
-          text.append(alts.get(i));
-          wordIdx += alts.get(i).length();
+          append(ALTERNATIVE_MARKER);
+          int outOff = this.outputOffset + wordLen;
+          corrections.add(outOff, altOffset - outOff);
+          append(alts.get(i));
         }
-        alternativeMap.put(
-            Range.closedOpen(
-                this.correctOffset(outputOffset), this.correctOffset(outputOffset + wordIdx)),
-            new TokenWithAlternatives(
-                this.correctOffset(outputOffset),
-                this.correctOffset(outputOffset + text.length()),
-                1 + alts.size()));
+        int start = this.correctOffset(outputOffset);
+        int end = this.correctOffset(outputOffset + wordLen);
+        addTokenWithAlternatives(
+            start, end, new TokenWithAlternatives(start, end, 1 + alts.size()));
         if ((nextWord.isHyphenStart() == null || !nextWord.isHyphenStart())
             && !nextWord.getTrailingChars().contains(" ")) {
           // Add a whitespace after boxes with alternatives so the tokenizer doesn't munge
@@ -120,39 +164,45 @@ public class OcrCharFilter extends BaseCharFilter {
         }
       }
       if (nextWord.getTrailingChars() != null) {
-        text.append(nextWord.getTrailingChars());
+        append(nextWord.getTrailingChars());
       }
-      this.curWord = text.toString().toCharArray();
-      this.curWordIdx = 0;
+      return true;
     }
+    return false;
   }
 
   @Override
   public int read(char[] cbuf, int off, int len) {
-    if (this.parser == null || !this.parser.hasNext()) {
+    if (this.parser == null) {
       return -1;
     }
 
-    if (this.curWord == null) {
-      this.readNextWord();
-    }
-
     int numRead = 0;
-    while (numRead < len && (this.curWord != null)) {
-      int lenToRead = Math.min(len - numRead, this.curWord.length - this.curWordIdx);
-      System.arraycopy(this.curWord, this.curWordIdx, cbuf, off + numRead, lenToRead);
-      curWordIdx += lenToRead;
+    while (numRead < len) {
+      if (wordIdx == wordLen && !this.readNextWord()) {
+        break;
+      }
+      int lenToRead = Math.min(len - numRead, wordLen - wordIdx);
+      System.arraycopy(wordBuf, wordIdx, cbuf, off + numRead, lenToRead);
+      wordIdx += lenToRead;
       outputOffset += lenToRead;
       numRead += lenToRead;
-      if (curWordIdx == curWord.length) {
-        this.curWord = null;
-      }
     }
-    return numRead;
+    return numRead > 0 || len == 0 ? numRead : -1;
+  }
+
+  /** Register a token with alternatives that spans the input offsets {@code [start, end)}. */
+  protected void addTokenWithAlternatives(int start, int end, TokenWithAlternatives token) {
+    this.alternativeMap.put(start, end, this.tokens.size());
+    this.tokens.add(token);
   }
 
   public Optional<TokenWithAlternatives> getTokenWithAlternatives(int inputOffset) {
-    return Optional.ofNullable(this.alternativeMap.get(inputOffset));
+    int idx = this.alternativeMap.indexOf(inputOffset);
+    if (idx < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(this.tokens.get(this.alternativeMap.getValue(idx)));
   }
 
   public static class TokenWithAlternatives {
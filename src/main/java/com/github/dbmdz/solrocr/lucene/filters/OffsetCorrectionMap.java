@@ -0,0 +1,83 @@
+package com.github.dbmdz.solrocr.lucene.filters;
+
+import java.util.Arrays;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Maps output offsets of a char filter to input offsets, like the correction map of {@link
+ * org.apache.lucene.analysis.charfilter.BaseCharFilter}.
+ *
+ * <p>Corrections must be added in the order of their output offsets. Corrections that don't change
+ * the cumulative difference are not stored, and since offsets are mostly looked up in ascending
+ * order (as the tokenizer moves through the output), lookups start at the entry of the previous
+ * lookup and only fall back to a binary search when the offset is not near it.
+ */
+public final class OffsetCorrectionMap {
+  private int[] offsets = new int[64];
+  private int[] diffs = new int[64];
+  private int size = 0;
+
+  /** Index of the entry used for the previous lookup */
+  private int lastIdx = 0;
+
+  /**
+   * Add a correction.
+   *
+   * @param off the output offset from which on the correction applies, must be greater than or
+   *     equal to the offset of the previously added correction
+   * @param cumulativeDiff the difference between the input and output offset at {@code off}
+   */
+  public void add(int off, int cumulativeDiff) {
+    assert size == 0 || off >= offsets[size - 1]
+        : "Offset #" + size + "(" + off + ") is less than the last recorded offset";
+    if (size > 0 && offsets[size - 1] == off) {
+      // Replace the previous correction at the same offset, and drop it if it is now redundant
+      if (size > 1 && diffs[size - 2] == cumulativeDiff) {
+        size--;
+        lastIdx = Math.min(lastIdx, size - 1);
+      } else {
+        diffs[size - 1] = cumulativeDiff;
+      }
+      return;
+    }
+    if (size == 0 ? cumulativeDiff == 0 : diffs[size - 1] == cumulativeDiff) {
+      return;
+    }
+    if (size == offsets.length) {
+      offsets = ArrayUtil.grow(offsets, size + 1);
+      diffs = ArrayUtil.growExact(diffs, offsets.length);
+    }
+    offsets[size] = off;
+    diffs[size] = cumulativeDiff;
+    size++;
+  }
+
+  /** Map an output offset to the corresponding input offset. */
+  public int correct(int off) {
+    if (size == 0 || off < offsets[0]) {
+      return off;
+    }
+    int idx = lastIdx;
+    if (offsets[idx] > off) {
+      idx = findEntry(off);
+    } else if (idx + 1 < size && offsets[idx + 1] <= off) {
+      idx++;
+      if (idx + 1 < size && offsets[idx + 1] <= off) {
+        idx = findEntry(off);
+      }
+    }
+    lastIdx = idx;
+    return off + diffs[idx];
+  }
+
+  /** Find the index of the last entry whose offset is less than or equal to {@code off}. */
+  private int findEntry(int off) {
+    int idx = Arrays.binarySearch(offsets, 0, size, off);
+    return idx >= 0 ? idx : -2 - idx;
+  }
+
+  /** Number of stored corrections. */
+  public int size() {
+    return size;
+  }
+}
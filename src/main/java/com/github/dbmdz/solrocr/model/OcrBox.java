@@ -1,32 +1,38 @@
 package com.github.dbmdz.solrocr.model;
 
+import com.google.common.primitives.Ints;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class OcrBox implements Comparable<OcrBox> {
-  private final Comparator<OcrBox> comparator =
+  /** Value of the highlight span for boxes that are not part of a highlight */
+  public static final int NO_HIGHLIGHT_SPAN = -1;
+
+  private static final Comparator<OcrBox> COMPARATOR =
       Comparator.comparing(OcrBox::getPage)
           .thenComparingDouble(OcrBox::getUly)
           .thenComparingDouble(OcrBox::getUlx);
 
   private String text;
   private int textOffset = -1;
-  private final List<String> alternatives = new ArrayList<>();
-  private final List<Integer> alternativeOffsets = new ArrayList<>();
+  // Most boxes don't have alternatives, so the lists are only allocated when needed
+  private List<String> alternatives;
+  private int[] alternativeOffsets;
   private String trailingChars = "";
   private OcrPage page;
   private float ulx = -1;
   private float uly = -1;
   private float lrx = -1;
   private float lry = -1;
-  private UUID highlightSpan;
-  private Integer parentRegionIdx;
+  private int highlightSpan = NO_HIGHLIGHT_SPAN;
+  private int parentRegionIdx = -1;
   private String dehyphenatedForm;
   private Integer dehyphenatedOffset;
   private Boolean hyphenStart;
@@ -36,7 +42,7 @@ public class OcrBox implements Comparable<OcrBox> {
 
   // FIXME: Is this really ulx/uly?
   public OcrBox(
-      String text, OcrPage page, float ulx, float uly, float lrx, float lry, UUID highlightSpan) {
+      String text, OcrPage page, float ulx, float uly, float lrx, float lry, int highlightSpan) {
     this.text = text;
     this.page = page;
     this.ulx = ulx;
@@ -63,8 +69,8 @@ public class OcrBox implements Comparable<OcrBox> {
     if (this.getText() != null) {
       snipRegion.add("text", this.getText());
     }
-    if (this.getParentRegionIdx() != null) {
-      snipRegion.add("parentRegionIdx", this.getParentRegionIdx());
+    if (this.parentRegionIdx >= 0) {
+      snipRegion.add("parentRegionIdx", this.parentRegionIdx);
     }
     return snipRegion;
   }
@@ -90,12 +96,12 @@ public class OcrBox implements Comparable<OcrBox> {
     if (textOffset >= 0) {
       sb.append('@').append(textOffset);
     }
-    if (!this.alternatives.isEmpty()) {
+    if (this.alternatives != null) {
       sb.append(", alternatives={");
       for (int i = 0; i < alternatives.size(); i++) {
         sb.append('\'').append(alternatives.get(i)).append('\'');
-        if (!this.alternativeOffsets.isEmpty()) {
-          sb.append('@').append(this.alternativeOffsets.get(i));
+        if (this.alternativeOffsets != null) {
+          sb.append('@').append(this.alternativeOffsets[i]);
         }
         if (i != alternatives.size() - 1) {
           sb.append(',');
@@ -121,7 +127,7 @@ public class OcrBox implements Comparable<OcrBox> {
     if (this.lry >= 0) {
       sb.append(", lry=").append(lry);
     }
-    if (this.highlightSpan != null) {
+    if (this.highlightSpan != NO_HIGHLIGHT_SPAN) {
       sb.append(", highlightSpan=").append(highlightSpan);
     }
     if (this.dehyphenatedForm != null) {
@@ -136,16 +142,36 @@ public class OcrBox implements Comparable<OcrBox> {
     if (this.confidence != null) {
       sb.append(", confidence=").append(confidence);
     }
-    if (this.parentRegionIdx != null) {
+    if (this.parentRegionIdx >= 0) {
       sb.append(", parentRegionIdx=").append(parentRegionIdx);
     }
     sb.append('}');
     return sb.toString();
   }
 
+  /** Reset the box to the state of a new box, so that a parser can re-use it for another word. */
+  public void reset() {
+    text = null;
+    textOffset = -1;
+    alternatives = null;
+    alternativeOffsets = null;
+    trailingChars = "";
+    page = null;
+    ulx = -1;
+    uly = -1;
+    lrx = -1;
+    lry = -1;
+    highlightSpan = NO_HIGHLIGHT_SPAN;
+    parentRegionIdx = -1;
+    dehyphenatedForm = null;
+    dehyphenatedOffset = null;
+    hyphenStart = null;
+    confidence = null;
+  }
+
   @Override
   public int compareTo(OcrBox o) {
-    return comparator.compare(this, o);
+    return COMPARATOR.compare(this, o);
   }
 
   public OcrPage getPage() {
@@ -157,11 +183,18 @@ public class OcrBox implements Comparable<OcrBox> {
   }
 
   public List<String> getAlternatives() {
-    return alternatives;
+    return alternatives == null ? Collections.emptyList() : alternatives;
   }
 
   public List<Integer> getAlternativeOffsets() {
-    return alternativeOffsets;
+    return alternativeOffsets == null
+        ? Collections.emptyList()
+        : Ints.asList(Arrays.copyOf(alternativeOffsets, alternatives.size()));
+  }
+
+  /** Get the offset of an alternative without boxing it, only valid if the box has offsets. */
+  public int getAlternativeOffset(int idx) {
+    return alternativeOffsets[idx];
   }
 
   public String getTrailingChars() {
@@ -196,12 +229,13 @@ public class OcrBox implements Comparable<OcrBox> {
     return lry - uly;
   }
 
-  public UUID getHighlightSpan() {
+  /** Get the identifier of the box's highlighting span, or {@link #NO_HIGHLIGHT_SPAN}. */
+  public int getHighlightSpan() {
     return highlightSpan;
   }
 
   public boolean isInHighlight() {
-    return highlightSpan != null;
+    return highlightSpan != NO_HIGHLIGHT_SPAN;
   }
 
   public Integer getDehyphenatedOffset() {
@@ -225,9 +259,18 @@ public class OcrBox implements Comparable<OcrBox> {
   }
 
   public void addAlternative(String alternative, Integer offset) {
+    if (this.alternatives == null) {
+      this.alternatives = new ArrayList<>(2);
+    }
     this.alternatives.add(alternative);
     if (offset != null) {
-      this.alternativeOffsets.add(offset);
+      int idx = this.alternatives.size() - 1;
+      if (this.alternativeOffsets == null) {
+        this.alternativeOffsets = new int[Math.max(2, idx + 1)];
+      } else if (idx >= this.alternativeOffsets.length) {
+        this.alternativeOffsets = Arrays.copyOf(this.alternativeOffsets, idx * 2 + 1);
+      }
+      this.alternativeOffsets[idx] = offset;
     }
   }
 
@@ -267,7 +310,7 @@ public class OcrBox implements Comparable<OcrBox> {
     this.lry = lry;
   }
 
-  public void setHighlightSpan(UUID highlightId) {
+  public void setHighlightSpan(int highlightId) {
     this.highlightSpan = highlightId;
   }
 
@@ -281,7 +324,7 @@ public class OcrBox implements Comparable<OcrBox> {
   }
 
   public Integer getParentRegionIdx() {
-    return parentRegionIdx;
+    return parentRegionIdx < 0 ? null : parentRegionIdx;
   }
 
   public void setParentRegionIdx(int parentRegionIdx) {
@@ -306,13 +349,13 @@ public class OcrBox implements Comparable<OcrBox> {
         && Float.compare(ocrBox.uly, uly) == 0
         && Float.compare(ocrBox.lrx, lrx) == 0
         && Float.compare(ocrBox.lry, lry) == 0
+        && highlightSpan == ocrBox.highlightSpan
+        && parentRegionIdx == ocrBox.parentRegionIdx
         && Objects.equals(text, ocrBox.text)
-        && Objects.equals(alternatives, ocrBox.alternatives)
-        && Objects.equals(alternativeOffsets, ocrBox.alternativeOffsets)
+        && Objects.equals(getAlternatives(), ocrBox.getAlternatives())
+        && Objects.equals(getAlternativeOffsets(), ocrBox.getAlternativeOffsets())
         && Objects.equals(trailingChars, ocrBox.trailingChars)
         && Objects.equals(page, ocrBox.page)
-        && Objects.equals(highlightSpan, ocrBox.highlightSpan)
-        && Objects.equals(parentRegionIdx, ocrBox.parentRegionIdx)
         && Objects.equals(dehyphenatedForm, ocrBox.dehyphenatedForm)
         && Objects.equals(dehyphenatedOffset, ocrBox.dehyphenatedOffset)
         && Objects.equals(hyphenStart, ocrBox.hyphenStart)
@@ -324,8 +367,8 @@ public class OcrBox implements Comparable<OcrBox> {
     return Objects.hash(
         text,
         textOffset,
-        alternatives,
-        alternativeOffsets,
+        getAlternatives(),
+        getAlternativeOffsets(),
         trailingChars,
         page,
         ulx,
@@ -0,0 +1,230 @@
+package com.github.dbmdz.solrocr.model;
+
+import static com.github.dbmdz.solrocr.formats.OcrParser.END_HL;
+import static com.github.dbmdz.solrocr.formats.OcrParser.START_HL;
+
+import com.github.dbmdz.solrocr.formats.OcrParser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact storage for the word boxes of an OCR fragment.
+ *
+ * <p>Snippets are built from hundreds of words, but only the snippet regions and the highlighted
+ * words end up in the response. Instead of keeping an {@link OcrBox} for every word, the buffer
+ * stores the parts that are needed to build a snippet in parallel arrays, indexed by the position
+ * of the word in the fragment. {@link OcrBox} instances are only created for the response with
+ * {@link #toBox(int)}.
+ */
+public class OcrBoxBuffer {
+  private static final byte FLAG_HYPHENATED = 1;
+  private static final byte FLAG_HYPHEN_START = 2;
+
+  private final List<OcrPage> pages = new ArrayList<>();
+  private int size = 0;
+  private String[] texts;
+  private String[] trailingChars;
+  private String[] dehyphenatedForms;
+  private String[] highlightedAlternatives;
+  private float[] coordinates;
+  private int[] pageIdxs;
+  private int[] highlightSpans;
+  private byte[] flags;
+
+  public OcrBoxBuffer() {
+    this(64);
+  }
+
+  public OcrBoxBuffer(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    this.texts = new String[capacity];
+    this.trailingChars = new String[capacity];
+    this.dehyphenatedForms = new String[capacity];
+    this.highlightedAlternatives = new String[capacity];
+    this.coordinates = new float[capacity * 4];
+    this.pageIdxs = new int[capacity];
+    this.highlightSpans = new int[capacity];
+    this.flags = new byte[capacity];
+  }
+
+  /**
+   * Add a word to the buffer, the box can be re-used or discarded afterwards.
+   *
+   * <p>Of the alternatives of the box, only the first one with a highlighting marker is kept.
+   */
+  public void add(OcrBox box) {
+    if (size == texts.length) {
+      grow();
+    }
+    texts[size] = box.getText();
+    trailingChars[size] = box.getTrailingChars();
+    dehyphenatedForms[size] = box.getDehyphenatedForm();
+    String highlightedAlternative = null;
+    for (String alternative : box.getAlternatives()) {
+      if (alternative.contains(START_HL) || alternative.contains(END_HL)) {
+        highlightedAlternative = alternative;
+        break;
+      }
+    }
+    highlightedAlternatives[size] = highlightedAlternative;
+    coordinates[size * 4] = box.getUlx();
+    coordinates[size * 4 + 1] = box.getUly();
+    coordinates[size * 4 + 2] = box.getLrx();
+    coordinates[size * 4 + 3] = box.getLry();
+    pageIdxs[size] = pageIdx(box.getPage());
+    highlightSpans[size] = box.getHighlightSpan();
+    byte boxFlags = 0;
+    if (box.isHyphenated()) {
+      boxFlags |= FLAG_HYPHENATED;
+      if (box.isHyphenStart()) {
+        boxFlags |= FLAG_HYPHEN_START;
+      }
+    }
+    flags[size] = boxFlags;
+    size++;
+  }
+
+  private void grow() {
+    int capacity = texts.length * 2;
+    texts = Arrays.copyOf(texts, capacity);
+    trailingChars = Arrays.copyOf(trailingChars, capacity);
+    dehyphenatedForms = Arrays.copyOf(dehyphenatedForms, capacity);
+    highlightedAlternatives = Arrays.copyOf(highlightedAlternatives, capacity);
+    coordinates = Arrays.copyOf(coordinates, capacity * 4);
+    pageIdxs = Arrays.copyOf(pageIdxs, capacity);
+    highlightSpans = Arrays.copyOf(highlightSpans, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+  }
+
+  /** Pages are compared by identity, like in {@link OcrBox#contains(OcrBox)}. */
+  private int pageIdx(OcrPage page) {
+    if (page == null) {
+      return -1;
+    }
+    for (int i = pages.size() - 1; i >= 0; i--) {
+      if (pages.get(i) == page) {
+        return i;
+      }
+    }
+    pages.add(page);
+    return pages.size() - 1;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public String getText(int idx) {
+    return texts[idx];
+  }
+
+  public float getUlx(int idx) {
+    return coordinates[idx * 4];
+  }
+
+  public float getUly(int idx) {
+    return coordinates[idx * 4 + 1];
+  }
+
+  public float getLrx(int idx) {
+    return coordinates[idx * 4 + 2];
+  }
+
+  public float getLry(int idx) {
+    return coordinates[idx * 4 + 3];
+  }
+
+  public float getHeight(int idx) {
+    return getLry(idx) - getUly(idx);
+  }
+
+  public OcrPage getPage(int idx) {
+    return pageIdxs[idx] < 0 ? null : pages.get(pageIdxs[idx]);
+  }
+
+  public void setPage(int idx, OcrPage page) {
+    pageIdxs[idx] = pageIdx(page);
+  }
+
+  /** Get the identifier of the word's highlighting span, or {@link OcrBox#NO_HIGHLIGHT_SPAN}. */
+  public int getHighlightSpan(int idx) {
+    return highlightSpans[idx];
+  }
+
+  public boolean isInHighlight(int idx) {
+    return highlightSpans[idx] != OcrBox.NO_HIGHLIGHT_SPAN;
+  }
+
+  public boolean isHyphenated(int idx) {
+    return (flags[idx] & FLAG_HYPHENATED) != 0;
+  }
+
+  public boolean isHyphenStart(int idx) {
+    return (flags[idx] & FLAG_HYPHEN_START) != 0;
+  }
+
+  /**
+   * Convert a range of words to a text string, the same way as {@link
+   * OcrParser#boxesToString(List)}.
+   *
+   * @param from index of the first word, inclusive
+   * @param to index of the last word, exclusive
+   */
+  public String toText(int from, int to) {
+    StringBuilder sb = new StringBuilder();
+    for (int idx = from; idx < to; idx++) {
+      int wordIdx = idx;
+      if (isHyphenStart(wordIdx)) {
+        boolean wordIsCompleteHyphenation =
+            wordIdx < to - 1 && isHyphenated(wordIdx + 1) && !isHyphenStart(wordIdx + 1);
+        if (wordIsCompleteHyphenation) {
+          // Both parts of the hyphenation are present, put the dehyphenated form in the text
+          sb.append(dehyphenatedForms[wordIdx + 1]);
+          trailingChars[wordIdx] = trailingChars[wordIdx + 1];
+          idx += 1;
+        } else {
+          // An isolated hyphen start without its corresponding ending, denote the hyphenation
+          // explicitly
+          String text = texts[wordIdx].trim();
+          if (!text.endsWith("-")) {
+            text += "-";
+          }
+          sb.append(text);
+        }
+      } else if (highlightedAlternatives[wordIdx] != null) {
+        // If the highlight is on an alternative, output that alternative instead of the default
+        // token
+        sb.append(highlightedAlternatives[wordIdx]);
+      } else {
+        sb.append(texts[wordIdx]);
+      }
+      if (trailingChars[wordIdx] != null) {
+        sb.append(trailingChars[wordIdx]);
+      }
+    }
+    return sb.toString().trim();
+  }
+
+  /** Create an {@link OcrBox} for a word, e.g. for the response. */
+  public OcrBox toBox(int idx) {
+    OcrBox box =
+        new OcrBox(
+            texts[idx],
+            getPage(idx),
+            getUlx(idx),
+            getUly(idx),
+            getLrx(idx),
+            getLry(idx),
+            highlightSpans[idx]);
+    box.setTrailingChars(trailingChars[idx]);
+    if (isHyphenated(idx)) {
+      box.setHyphenInfo(isHyphenStart(idx), dehyphenatedForms[idx]);
+    }
+    return box;
+  }
+}
@@ -4,11 +4,13 @@ import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
 import com.github.dbmdz.solrocr.formats.OcrParser;
 import com.github.dbmdz.solrocr.lucene.OcrPassageFormatter;
 import com.github.dbmdz.solrocr.lucene.filters.OcrCharFilter;
+import com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter;
 import com.github.dbmdz.solrocr.reader.PeekingReader;
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import java.io.Reader;
+import java.io.StringReader;
 import java.text.BreakIterator;
 import java.util.Set;
 import org.apache.lucene.analysis.CharFilter;
@@ -36,6 +38,22 @@ public interface OcrFormat {
    */
   OcrParser getParser(Reader input, OcrParser.ParsingFeature... features);
 
+  /**
+   * Get a parser for an in-memory fragment of OCR markup, e.g. for building a snippet.
+   *
+   * <p>The parser does not have to handle malformed markup and may throw an exception while
+   * iterating over such fragments. Callers should parse the fragment with {@link
+   * #getParser(Reader, OcrParser.ParsingFeature...)} from a {@link SanitizingXmlFilter} in that
+   * case.
+   *
+   * @param fragment the fragment to parse {@link OcrBox}es from
+   * @param features Desired features for the parsers
+   * @return a parser instance configured with the requested parsing features
+   */
+  default OcrParser getFragmentParser(String fragment, OcrParser.ParsingFeature... features) {
+    return getParser(new SanitizingXmlFilter(new StringReader(fragment), true), features);
+  }
+
   /**
    * Parse an {@link OcrPage} from a string fragment of the page markup.
    *
@@ -49,6 +67,19 @@ public interface OcrFormat {
    */
   OcrPage parsePageFragment(String pageFragment);
 
+  /**
+   * Get a precomputed table of all pages in the document, if the format can provide one without
+   * having to scan the document.
+   *
+   * <p>The default implementation has no precomputed data and always returns {@code null}.
+   *
+   * @param reader reader for the document
+   * @return the page table or {@code null} if none is available
+   */
+  default OcrPageIndex getPageIndex(SourceReader reader) {
+    return null;
+  }
+
   /**
    * Get a {@link PassageFormatter} that builds OCR snippets from passages
    *
@@ -102,6 +133,26 @@ public interface OcrFormat {
 
   int getFirstContentEndIdx(String content);
 
+  /**
+   * Same as {@link #getLastContentStartIdx(String)} on the first {@code end} characters of the
+   * content, but without copying them.
+   */
+  default int getLastContentStartIdx(String content, int end) {
+    return getLastContentStartIdx(content.substring(0, end));
+  }
+
+  /**
+   * Same as {@link #getFirstContentEndIdx(String)} on the content from {@code start} on, but
+   * without copying it and relative to the whole content.
+   *
+   * @return the index of the end of the first word content after {@code start} or {@code -1} if
+   *     there is none
+   */
+  default int getFirstContentEndIdx(String content, int start) {
+    int idx = getFirstContentEndIdx(content.substring(start));
+    return idx < 0 ? -1 : start + idx;
+  }
+
   /**
    * Get the range of positions contained by the word containing the given position.
    *
@@ -0,0 +1,133 @@
+package com.github.dbmdz.solrocr.model;
+
+import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.lucene.HighlightTimings;
+import com.github.dbmdz.solrocr.reader.ReadStats;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.util.Locale;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Profile of highlighting a single field of a single document, for the debug output.
+ *
+ * <p>All timings are passed on to the global timings. A profile is only ever updated by the thread
+ * that highlights the document.
+ */
+public class OcrHighlightProfile implements HighlightTimings {
+  private final HighlightTimings globalTimings;
+  private final long createdNs;
+  private final long[] phaseNanos = new long[Phase.values().length];
+
+  private String threadName;
+  private long startNs = -1;
+  private long queuedNanos;
+  private long totalNanos;
+  private int breakLocatorProbes;
+  private int passagesFormed;
+  private int passagesCountedOnly;
+  private ReadStats readStats;
+
+  /**
+   * Create a new profile when the highlighting of the document is scheduled.
+   *
+   * @param globalTimings timings that all timings of the profile are passed on to
+   */
+  public OcrHighlightProfile(HighlightTimings globalTimings) {
+    this.globalTimings = globalTimings;
+    this.createdNs = System.nanoTime();
+  }
+
+  /** Mark the start of highlighting on the current thread. */
+  public void start() {
+    this.startNs = System.nanoTime();
+    this.queuedNanos = startNs - createdNs;
+    this.threadName = Thread.currentThread().getName();
+  }
+
+  /**
+   * Mark the end of highlighting.
+   *
+   * @param readStats the statistics of the reader of the document, can be {@code null}
+   */
+  public void finish(ReadStats readStats) {
+    this.totalNanos = System.nanoTime() - startNs;
+    this.readStats = readStats;
+  }
+
+  @Override
+  public void record(Phase phase, long nanos) {
+    phaseNanos[phase.ordinal()] += nanos;
+    globalTimings.record(phase, nanos);
+  }
+
+  @Override
+  public void recordPassages(int numFormed, int numCountedOnly) {
+    this.passagesFormed += numFormed;
+    this.passagesCountedOnly += numCountedOnly;
+    globalTimings.recordPassages(numFormed, numCountedOnly);
+  }
+
+  /** Wrap a break locator so that all calls to it are counted as probes in this profile. */
+  public BreakLocator countProbes(BreakLocator locator) {
+    if (locator == null) {
+      return null;
+    }
+    return new ProbeCountingBreakLocator(locator);
+  }
+
+  public NamedList<Object> toNamedList() {
+    SimpleOrderedMap<Object> out = new SimpleOrderedMap<>();
+    out.add("thread", threadName);
+    out.add("queueTime", toMillis(queuedNanos));
+    out.add("time", toMillis(totalNanos));
+    SimpleOrderedMap<Object> phases = new SimpleOrderedMap<>();
+    for (Phase phase : Phase.values()) {
+      if (phase == Phase.LOAD_FIELD_VALUES || phase == Phase.SERIALIZATION) {
+        // Only measured for all documents at once
+        continue;
+      }
+      phases.add(phase.name().toLowerCase(Locale.US), toMillis(phaseNanos[phase.ordinal()]));
+    }
+    out.add("phases", phases);
+    if (readStats != null) {
+      out.add("sectionsRead", readStats.getSectionCacheMisses());
+      out.add("sectionsCached", readStats.getSectionCacheHits());
+      out.add("bytesRead", readStats.getBytesRead());
+    }
+    out.add("breakLocatorProbes", breakLocatorProbes);
+    out.add("passagesFormed", passagesFormed);
+    out.add("passagesCountedOnly", passagesCountedOnly);
+    return out;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private class ProbeCountingBreakLocator implements BreakLocator {
+    private final BreakLocator locator;
+
+    ProbeCountingBreakLocator(BreakLocator locator) {
+      this.locator = locator;
+    }
+
+    @Override
+    public int following(int offset) throws IOException {
+      breakLocatorProbes++;
+      return locator.following(offset);
+    }
+
+    @Override
+    public int preceding(int offset) throws IOException {
+      breakLocatorProbes++;
+      return locator.preceding(offset);
+    }
+
+    @Override
+    public SourceReader getText() {
+      return locator.getText();
+    }
+  }
+}
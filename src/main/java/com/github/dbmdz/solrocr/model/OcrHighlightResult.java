@@ -11,10 +11,12 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 public class OcrHighlightResult {
   private final Map<String, OcrSnippet[]> fieldSnippets;
   private final Map<String, Integer> snippetCounts;
+  private final Map<String, OcrHighlightProfile> profiles;
 
   public OcrHighlightResult() {
     snippetCounts = new HashMap<>();
     fieldSnippets = new HashMap<>();
+    profiles = new HashMap<>();
   }
 
   public void addSnippetsForField(String field, OcrSnippet[] ocrSnippets) {
@@ -25,6 +27,10 @@ public class OcrHighlightResult {
     this.snippetCounts.put(field, i);
   }
 
+  public void addProfileForField(String field, OcrHighlightProfile profile) {
+    this.profiles.put(field, profile);
+  }
+
   public OcrSnippet[] getFieldSnippets(String field) {
     return fieldSnippets.get(field);
   }
@@ -45,6 +51,10 @@ public class OcrHighlightResult {
               .collect(Collectors.toList());
       fieldOut.add("snippets", outSnips);
       fieldOut.add("numTotal", snipCount);
+      OcrHighlightProfile profile = profiles.get(fieldName);
+      if (profile != null) {
+        fieldOut.add("debug", profile.toNamedList());
+      }
       out.add(fieldName, fieldOut);
     }
     return out;
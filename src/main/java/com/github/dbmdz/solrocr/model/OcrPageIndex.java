@@ -0,0 +1,165 @@
+package com.github.dbmdz.solrocr.model;
+
+import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of all pages in an OCR document, sorted by the offset of their opening tag.
+ *
+ * <p>Looking up the page for an offset is a binary search, as opposed to locating the preceding
+ * page break in the markup and parsing the page's opening tag, like {@link
+ * com.github.dbmdz.solrocr.lucene.OcrPassageFormatter} has to do without a page index.
+ */
+public class OcrPageIndex {
+  /** Number of bytes to read from the start of a page for parsing its identifier and dimensions */
+  private static final int PAGE_FRAGMENT_SIZE = 512;
+
+  private final int[] starts;
+  private final OcrPage[] pages;
+
+  /**
+   * Create a new page index.
+   *
+   * @param starts sorted offsets of the opening tags of the pages
+   * @param pages the pages, in the same order as {@code starts}
+   */
+  public OcrPageIndex(int[] starts, OcrPage[] pages) {
+    if (starts.length != pages.length) {
+      throw new IllegalArgumentException("Need exactly one start offset per page");
+    }
+    this.starts = starts;
+    this.pages = pages;
+  }
+
+  /**
+   * Build the page index for a document by parsing the beginning of every page.
+   *
+   * @param format the format of the document
+   * @param reader reader for the document
+   * @param pageBreaks sorted offsets of all page breaks in the document, as located by the format's
+   *     {@link BreakLocator} for {@link OcrBlock#PAGE}
+   */
+  public static OcrPageIndex build(OcrFormat format, SourceReader reader, int[] pageBreaks)
+      throws IOException {
+    int[] starts = new int[pageBreaks.length + 1];
+    OcrPage[] pages = new OcrPage[pageBreaks.length + 1];
+    int numPages = 0;
+    // Like a page break locator, we fall back to the beginning of the document if there is no
+    // preceding page break. This handles documents that start with a page without any preamble.
+    OcrPage firstPage = parsePage(format, reader, 0);
+    if (firstPage != null) {
+      pages[numPages++] = firstPage;
+    }
+    for (int pageBreak : pageBreaks) {
+      if (pageBreak == 0) {
+        continue;
+      }
+      OcrPage page = parsePage(format, reader, pageBreak);
+      if (page != null) {
+        starts[numPages] = pageBreak;
+        pages[numPages++] = page;
+      }
+    }
+    return new OcrPageIndex(Arrays.copyOf(starts, numPages), Arrays.copyOf(pages, numPages));
+  }
+
+  /** Build the page index for a document by locating all page breaks with the format. */
+  public static OcrPageIndex build(OcrFormat format, SourceReader reader) throws IOException {
+    BreakLocator pageLocator = format.getBreakLocator(reader, OcrBlock.PAGE);
+    int length = reader.length();
+    int[] pageBreaks = new int[64];
+    int numBreaks = 0;
+    int offset = pageLocator.following(0);
+    while (offset > 0 && offset < length) {
+      if (numBreaks == pageBreaks.length) {
+        pageBreaks = Arrays.copyOf(pageBreaks, numBreaks * 2);
+      }
+      pageBreaks[numBreaks++] = offset;
+      offset = pageLocator.following(offset);
+    }
+    return build(format, reader, Arrays.copyOf(pageBreaks, numBreaks));
+  }
+
+  /**
+   * Concatenate the page indices of multiple documents.
+   *
+   * @param indices the page indices of the documents
+   * @param shifts the offset of every document in the concatenated text
+   */
+  public static OcrPageIndex concat(List<OcrPageIndex> indices, int[] shifts) {
+    int numPages = indices.stream().mapToInt(OcrPageIndex::size).sum();
+    int[] starts = new int[numPages];
+    OcrPage[] pages = new OcrPage[numPages];
+    int idx = 0;
+    for (int i = 0; i < indices.size(); i++) {
+      OcrPageIndex index = indices.get(i);
+      for (int j = 0; j < index.size(); j++) {
+        starts[idx] = shifts[i] + index.starts[j];
+        pages[idx++] = index.pages[j];
+      }
+    }
+    return new OcrPageIndex(starts, pages);
+  }
+
+  private static OcrPage parsePage(OcrFormat format, SourceReader reader, int offset)
+      throws IOException {
+    String pageFragment =
+        reader.readUtf8String(offset, Math.min(PAGE_FRAGMENT_SIZE, reader.length() - offset));
+    return format.parsePageFragment(pageFragment);
+  }
+
+  /** Get the number of pages in the index. */
+  public int size() {
+    return pages.length;
+  }
+
+  /** Get the offset of the opening tag of the page at the given position in the index. */
+  public int getStart(int idx) {
+    return starts[idx];
+  }
+
+  /** Get the page at the given position in the index. */
+  public OcrPage getPage(int idx) {
+    return pages[idx];
+  }
+
+  /**
+   * Get the page that content at the given offset is on, i.e. the page whose opening tag is the
+   * closest one before the offset, or {@code null} if there is no such page.
+   */
+  public OcrPage getPageAt(int offset) {
+    if (offset <= 0) {
+      return null;
+    }
+    int idx = Arrays.binarySearch(starts, offset);
+    // Index of the last page that starts before the offset
+    idx = idx >= 0 ? idx - 1 : -(idx + 1) - 1;
+    return idx >= 0 ? pages[idx] : null;
+  }
+
+  /**
+   * Get the offset at which the last page with the given identifier ends, i.e. the start of the
+   * next page or {@link Integer#MAX_VALUE} if it is the last page. Returns {@code -1} if there is
+   * no page with the given identifier.
+   */
+  public int getLastEnd(String pageId) {
+    for (int i = pages.length - 1; i >= 0; i--) {
+      if (pages[i].id.equals(pageId)) {
+        return i + 1 < starts.length ? starts[i + 1] : Integer.MAX_VALUE;
+      }
+    }
+    return -1;
+  }
+
+  /** Get the approximate number of bytes used by the index in memory. */
+  public long ramBytesUsed() {
+    long bytes = 32L + 4L * starts.length;
+    for (OcrPage page : pages) {
+      bytes += 64 + 2L * page.id.length();
+    }
+    return bytes;
+  }
+}
@@ -1,16 +1,23 @@
 package com.github.dbmdz.solrocr.model;
 
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache.FileMetadata;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache.Snapshot;
 import com.github.dbmdz.solrocr.reader.FileSourceReader;
+import com.github.dbmdz.solrocr.reader.MappedFileSourceReader;
 import com.github.dbmdz.solrocr.reader.MultiFileSourceReader;
+import com.github.dbmdz.solrocr.reader.ReaderMode;
+import com.github.dbmdz.solrocr.reader.SectionCache;
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.google.common.collect.ImmutableList;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
@@ -35,17 +42,25 @@ public class SourcePointer {
     public boolean isAscii;
 
     public Source(String target, List<Region> regions, boolean isAscii) throws IOException {
-      this.type = determineType(target);
-      Source.validateTarget(target, this.type);
+      this(target, regions, isAscii, FileMetadataCache.getShared().newSnapshot());
+    }
+
+    /**
+     * Create a new source, validating the target against the file metadata of the given snapshot.
+     */
+    public Source(String target, List<Region> regions, boolean isAscii, Snapshot files)
+        throws IOException {
+      this.type = determineType(target, files);
+      Source.validateTarget(target, this.type, files);
       this.target = target;
       this.regions = regions;
       this.isAscii = isAscii;
     }
 
-    static SourceType determineType(String target) throws IOException {
+    static SourceType determineType(String target, Snapshot files) throws IOException {
       if (target.startsWith("/")) {
         return SourceType.FILESYSTEM;
-      } else if (Files.exists(Paths.get(target))) {
+      } else if (exists(Paths.get(target), files)) {
         return SourceType.FILESYSTEM;
       } else {
         throw new IOException(
@@ -53,14 +68,18 @@ public class SourcePointer {
       }
     }
 
-    static void validateTarget(String target, SourceType type) throws IOException {
+    static void validateTarget(String target, SourceType type, Snapshot files)
+        throws IOException {
       if (type == SourceType.FILESYSTEM) {
         Path path = Paths.get(target);
-        if (!Files.exists(path)) {
+        FileMetadata metadata;
+        try {
+          metadata = files.get(path);
+        } catch (NoSuchFileException e) {
           throw new FileNotFoundException(
               String.format(Locale.US, "File at %s does not exist.", target));
         }
-        if (Files.size(path) == 0) {
+        if (metadata.getSize() == 0) {
           throw new IOException(String.format(Locale.US, "File at %s is empty.", target));
         }
       } else {
@@ -69,7 +88,16 @@ public class SourcePointer {
       }
     }
 
-    static Source parse(String pointer) {
+    private static boolean exists(Path path, Snapshot files) {
+      try {
+        files.get(path);
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    static Source parse(String pointer, Snapshot files) {
       Matcher m = POINTER_PAT.matcher(pointer);
       if (!m.find()) {
         throw new RuntimeException("Could not parse source pointer from '" + pointer + ".");
@@ -84,7 +112,7 @@ public class SourcePointer {
                 .collect(Collectors.toList());
       }
       try {
-        return new Source(target, regions, m.group("isAscii") != null);
+        return new Source(target, regions, m.group("isAscii") != null, files);
       } catch (FileNotFoundException e) {
         throw new RuntimeException("Could not locate file at '" + target + ".");
       } catch (IOException e) {
@@ -95,7 +123,10 @@ public class SourcePointer {
     public SourceReader getReader(int sectionSize, int maxCacheEntries) throws IOException {
       if (this.type == SourceType.FILESYSTEM) {
         return new FileSourceReader(
-            Paths.get(this.target), SourcePointer.parse(this.target), sectionSize, maxCacheEntries);
+            Paths.get(this.target),
+            new SourcePointer(Collections.singletonList(this)),
+            sectionSize,
+            maxCacheEntries);
       } else {
         throw new UnsupportedOperationException("Unsupported source type '" + this.type + "'.");
       }
@@ -158,6 +189,9 @@ public class SourcePointer {
 
   public final List<Source> sources;
 
+  /** Metadata of the files as seen by the request that uses the pointer. */
+  private final Snapshot files;
+
   public static boolean isPointer(String pointer) {
     if (pointer.startsWith("<")) {
       return false;
@@ -167,21 +201,45 @@ public class SourcePointer {
   }
 
   public static SourcePointer parse(String pointer) {
+    return parse(pointer, FileMetadataCache.getShared().newSnapshot());
+  }
+
+  /**
+   * Parse a source pointer, validating its files against the file metadata of the given snapshot.
+   */
+  public static SourcePointer parse(String pointer, Snapshot files) {
     if (!isPointer(pointer)) {
       throw new RuntimeException("Could not parse pointer: " + pointer);
     }
     String[] sourceTokens = pointer.split("\\+");
     List<Source> sources =
-        Arrays.stream(sourceTokens).map(Source::parse).collect(Collectors.toList());
+        Arrays.stream(sourceTokens).map(t -> Source.parse(t, files)).collect(Collectors.toList());
     if (sources.isEmpty()) {
       return null;
-    } else {
-      return new SourcePointer(sources);
     }
+    return new SourcePointer(sources, files);
   }
 
   public SourcePointer(List<Source> sources) {
+    this(sources, FileMetadataCache.getShared().newSnapshot());
+  }
+
+  public SourcePointer(List<Source> sources, Snapshot files) {
     this.sources = sources;
+    this.files = files;
+  }
+
+  /**
+   * Get the snapshot of the file metadata that readers for the pointer use for their lengths and
+   * cache keys, so the files are only checked once per request.
+   */
+  public Snapshot getFiles() {
+    return files;
+  }
+
+  /** Get a copy of the pointer that uses the given snapshot of the file metadata. */
+  public SourcePointer withFiles(Snapshot files) {
+    return new SourcePointer(sources, files);
   }
 
   @Override
@@ -191,16 +249,43 @@ public class SourcePointer {
 
   /** Create a reader for the data pointed at by this source pointer. */
   public SourceReader getReader(int sectionSize, int maxCacheEntries) throws IOException {
+    return getReader(sectionSize, maxCacheEntries, null);
+  }
+
+  /**
+   * Create a reader for the data pointed at by this source pointer that uses a node-wide shared
+   * section cache in addition to its own.
+   */
+  public SourceReader getReader(int sectionSize, int maxCacheEntries, SectionCache sharedCache)
+      throws IOException {
+    return getReader(sectionSize, maxCacheEntries, sharedCache, ReaderMode.CHANNEL);
+  }
+
+  /**
+   * Create a reader for the data pointed at by this source pointer, using the given mode to access
+   * the files.
+   */
+  public SourceReader getReader(
+      int sectionSize, int maxCacheEntries, SectionCache sharedCache, ReaderMode mode)
+      throws IOException {
     if (this.sources.stream().allMatch(s -> s.type == SourceType.FILESYSTEM)) {
-      if (this.sources.size() == 1) {
+      if (mode == ReaderMode.MMAP) {
+        return new MappedFileSourceReader(
+            this.sources.stream().map(s -> Paths.get(s.target)).collect(Collectors.toList()),
+            this,
+            sectionSize,
+            maxCacheEntries,
+            sharedCache);
+      } else if (this.sources.size() == 1) {
         return new FileSourceReader(
-            Paths.get(this.sources.get(0).target), this, sectionSize, maxCacheEntries);
+            Paths.get(this.sources.get(0).target), this, sectionSize, maxCacheEntries, sharedCache);
       } else {
         return new MultiFileSourceReader(
             this.sources.stream().map(s -> Paths.get(s.target)).collect(Collectors.toList()),
             this,
             sectionSize,
-            maxCacheEntries);
+            maxCacheEntries,
+            sharedCache);
       }
     } else {
       throw new IOException(
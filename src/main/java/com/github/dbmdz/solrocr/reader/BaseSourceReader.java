@@ -1,9 +1,22 @@
 package com.github.dbmdz.solrocr.reader;
 
 import com.github.dbmdz.solrocr.model.SourcePointer;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Base class that provides caching and section reading for source readers.
@@ -13,11 +26,28 @@ import java.util.Arrays;
  */
 public abstract class BaseSourceReader implements SourceReader {
   private static final int UNUSED = -1;
+  /** Maximum number of sections that can be loaded ahead of time and not yet used */
+  static final int MAX_PENDING_SECTIONS = 64;
+  /**
+   * Maximum number of unneeded sections between two needed sections that we still read in the same
+   * request, since reading a few more bytes is cheaper than another random read
+   */
+  static final int MAX_COALESCE_GAP = 2;
+  /** Maximum number of sections that are read in a single request */
+  static final int MAX_COALESCED_SECTIONS = 16;
 
   protected final SourcePointer pointer;
+  /** Metadata of the files as seen by the current request, shared with the pointer */
+  protected final FileMetadataCache.Snapshot files;
   protected final int sectionSize;
-  private final byte[] copyBuf;
   private final int maxCacheEntries;
+  /** Node-wide section cache shared with other readers, can be {@code null} */
+  private final SectionCache sharedCache;
+  /** Identity of the source in the shared cache, determined lazily on first access */
+  private SectionCache.SourceKey sharedCacheKey;
+  private final ReadStats readStats = new ReadStats();
+  /** Whether all files of the source are pure ASCII, determined lazily on first access */
+  private Boolean ascii;
 
   /**
    * Array with a slot for every possible section in the source, of which only {@link
@@ -32,11 +62,60 @@ public abstract class BaseSourceReader implements SourceReader {
 
   int cacheSlotsUsed = 0;
 
+  /**
+   * Sections that were loaded ahead of time or are being loaded in the background, by section
+   * index. Only accessed from the thread that owns the reader, sections are moved to the regular
+   * cache once they are used.
+   */
+  Map<Integer, RunnableFuture<Section>> pendingSections;
+
   private enum AdjustDirection {
     LEFT,
     RIGHT
   }
 
+  /** A section from a run of adjacent sections that is loaded with a single read */
+  private static final class PendingSection implements RunnableFuture<Section> {
+    private final RunnableFuture<Section[]> run;
+    private final int idxInRun;
+
+    private PendingSection(RunnableFuture<Section[]> run, int idxInRun) {
+      this.run = run;
+      this.idxInRun = idxInRun;
+    }
+
+    @Override
+    public void run() {
+      run.run();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return run.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return run.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return run.isDone();
+    }
+
+    @Override
+    public Section get() throws InterruptedException, ExecutionException {
+      return run.get()[idxInRun];
+    }
+
+    @Override
+    public Section get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      return run.get(timeout, unit)[idxInRun];
+    }
+  }
+
   static final class CachedSection {
     public final Section section;
     public long lastUsedTimestampNs;
@@ -48,10 +127,17 @@ public abstract class BaseSourceReader implements SourceReader {
   }
 
   public BaseSourceReader(SourcePointer pointer, int sectionSize, int maxCacheEntries) {
+    this(pointer, sectionSize, maxCacheEntries, null);
+  }
+
+  public BaseSourceReader(
+      SourcePointer pointer, int sectionSize, int maxCacheEntries, SectionCache sharedCache) {
     this.pointer = pointer;
+    this.files =
+        pointer != null ? pointer.getFiles() : FileMetadataCache.getShared().newSnapshot();
     this.sectionSize = sectionSize;
-    this.copyBuf = new byte[sectionSize];
     this.maxCacheEntries = maxCacheEntries;
+    this.sharedCache = sharedCache;
   }
 
   @Override
@@ -68,6 +154,41 @@ public abstract class BaseSourceReader implements SourceReader {
     return pointer;
   }
 
+  /**
+   * Check if all files of the source are pure ASCII, either because the pointer says so or because
+   * this was detected while indexing the files.
+   */
+  @Override
+  public boolean isAscii() {
+    if (ascii == null) {
+      ascii = pointer != null && pointer.sources.stream().allMatch(this::isAsciiSource);
+    }
+    return ascii;
+  }
+
+  private boolean isAsciiSource(SourcePointer.Source source) {
+    if (source.isAscii) {
+      return true;
+    }
+    try {
+      FileMetadataCache.FileMetadata metadata = files.get(Paths.get(source.target));
+      return Boolean.TRUE.equals(metadata.isAscii());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Get the identity of the source for the shared section cache.
+   *
+   * <p>Implementers that support the shared cache must override this, the key needs to change
+   * whenever the underlying data changes. Returning {@code null} disables the shared cache for the
+   * reader.
+   */
+  protected SectionCache.SourceKey getSourceKey() throws IOException {
+    return null;
+  }
+
   /**
    * Initialize data structures for section cache.
    *
@@ -110,6 +231,12 @@ public abstract class BaseSourceReader implements SourceReader {
     cache[oldestIndex] = null;
     cachedSectionIdxes[idxOfOldestIndex] = UNUSED;
     cacheSlotsUsed--;
+    readStats.recordEviction();
+  }
+
+  @Override
+  public ReadStats getReadStats() {
+    return readStats;
   }
 
   @Override
@@ -120,16 +247,19 @@ public abstract class BaseSourceReader implements SourceReader {
     if (start + len > this.length()) {
       len = this.length() - start;
     }
-    StringBuilder sb = new StringBuilder(len);
+    byte[] buf = new byte[len];
     int numRead = 0;
     while (numRead < len) {
       Section section = getAsciiSection(start + numRead);
       int sectionStart = (start + numRead) - section.start;
-      int sectionEnd = Math.min(sectionStart + (len - numRead), section.end - section.start);
-      sb.append(section.text, sectionStart, sectionEnd);
+      int sectionEnd = Math.min(sectionStart + (len - numRead), section.length());
+      System.arraycopy(section.getBytes(), sectionStart, buf, numRead, sectionEnd - sectionStart);
       numRead += (sectionEnd - sectionStart);
     }
-    return sb.toString();
+    // Construct a String without going through a decoder to save on CPU.
+    // Given that the method has been deprecated since Java 1.1 and was never removed, I don't think
+    // this is very risky 😅
+    return new String(buf, 0, 0, len);
   }
 
   @Override
@@ -142,10 +272,8 @@ public abstract class BaseSourceReader implements SourceReader {
       byteLen = this.length() - start;
     }
     byte[] data = new byte[byteLen];
-    int numRead = 0;
-    while (numRead < byteLen) {
-      numRead += this.readBytes(data, numRead, start + numRead, byteLen - numRead);
-    }
+    readFully(data, start, byteLen);
+    readStats.recordBytesRead(byteLen);
     int dataStart = adjustOffset(0, data, AdjustDirection.RIGHT);
     int dataEnd = adjustOffset(data.length - 1, data, AdjustDirection.LEFT);
     return new String(data, dataStart, dataEnd - dataStart + 1, StandardCharsets.UTF_8);
@@ -212,19 +340,22 @@ public abstract class BaseSourceReader implements SourceReader {
     }
     if (cache[sectionIndex] != null) {
       cache[sectionIndex].lastUsedTimestampNs = System.nanoTime();
+      readStats.recordHit();
       return cache[sectionIndex].section;
     }
-    int startOffset = sectionIndex * sectionSize;
-    int readLen = Math.min(sectionSize, this.length() - startOffset);
-    int numRead = 0;
-    while (numRead < readLen) {
-      numRead += this.readBytes(copyBuf, numRead, startOffset + numRead, readLen - numRead);
+    readStats.recordMiss();
+    Section section = null;
+    RunnableFuture<Section> pending =
+        pendingSections != null ? pendingSections.remove(sectionIndex) : null;
+    if (pending != null) {
+      section = awaitPending(pending);
+    }
+    if (section == null) {
+      if (sharedCache != null && sharedCacheKey == null) {
+        sharedCacheKey = getSourceKey();
+      }
+      section = loadSection(sectionIndex);
     }
-    // Construct a String without going through a decoder to save on CPU.
-    // Given that the method has been deprecated since Java 1.1 and was never removed, I don't think
-    // this is very risky 😅
-    Section section =
-        new Section(startOffset, startOffset + sectionSize, new String(copyBuf, 0, 0, readLen));
     if (cache.length > 0 && cacheSlotsUsed == maxCacheEntries) {
       purgeLeastRecentlyUsed();
     }
@@ -241,4 +372,215 @@ public abstract class BaseSourceReader implements SourceReader {
 
     return section;
   }
+
+  /**
+   * Load the sections containing the given offsets in the background on the executor.
+   *
+   * <p>See {@link #loadSections(int[])} for which sections are loaded. If the executor rejects a
+   * load, the sections are read on demand as usual.
+   */
+  @Override
+  public void prefetch(int[] offsets, Executor executor) throws IOException {
+    scheduleLoads(offsets, executor);
+  }
+
+  /**
+   * Load the sections containing the given offsets ahead of time, merging reads of adjacent or
+   * nearby sections into a single read.
+   *
+   * <p>If an offset is close to the boundary of its section, the neighboring section is loaded as
+   * well, since locating the passage around the offset will probably need it. Sections that are
+   * already cached are skipped, and at most {@link #MAX_PENDING_SECTIONS} sections are held until
+   * they are used, fewer if the reader's cache doesn't have room for them.
+   */
+  @Override
+  public void loadSections(int[] offsets) throws IOException {
+    scheduleLoads(offsets, Runnable::run);
+  }
+
+  private void scheduleLoads(int[] offsets, Executor executor) throws IOException {
+    if (cache == null) {
+      initializeCache();
+    }
+    if (sharedCache != null && sharedCacheKey == null) {
+      sharedCacheKey = getSourceKey();
+    }
+    if (pendingSections == null) {
+      pendingSections = new HashMap<>();
+    }
+    int[] sectionIdxs = getSectionsToLoad(offsets);
+    int runStart = 0;
+    for (int i = 1; i <= sectionIdxs.length; i++) {
+      if (i < sectionIdxs.length
+          && sectionIdxs[i] - sectionIdxs[i - 1] <= MAX_COALESCE_GAP + 1
+          && sectionIdxs[i] - sectionIdxs[runStart] < MAX_COALESCED_SECTIONS) {
+        continue;
+      }
+      if (!scheduleRun(sectionIdxs[runStart], sectionIdxs[i - 1], executor)) {
+        break;
+      }
+      runStart = i;
+    }
+  }
+
+  /** Get the sorted indexes of the sections around the offsets that are not available yet. */
+  private int[] getSectionsToLoad(int[] offsets) throws IOException {
+    int length = this.length();
+    int margin = sectionSize / 4;
+    int[] sectionIdxs = new int[offsets.length * 2];
+    int numSections = 0;
+    for (int offset : offsets) {
+      if (offset < 0 || offset >= length) {
+        continue;
+      }
+      int sectionIndex = offset / sectionSize;
+      int sectionOffset = offset % sectionSize;
+      if (needsLoad(sectionIndex)) {
+        sectionIdxs[numSections++] = sectionIndex;
+      }
+      if (sectionOffset < margin && needsLoad(sectionIndex - 1)) {
+        sectionIdxs[numSections++] = sectionIndex - 1;
+      } else if (sectionSize - sectionOffset <= margin && needsLoad(sectionIndex + 1)) {
+        sectionIdxs[numSections++] = sectionIndex + 1;
+      }
+    }
+    return Arrays.stream(sectionIdxs, 0, numSections)
+        .sorted()
+        .distinct()
+        .limit(Math.max(0, getMaxPendingSections() - pendingSections.size()))
+        .toArray();
+  }
+
+  /**
+   * Pending sections count against the budget of the reader's own cache, since they end up there
+   * once they are used.
+   */
+  private int getMaxPendingSections() {
+    return Math.min(MAX_PENDING_SECTIONS, maxCacheEntries - cacheSlotsUsed);
+  }
+
+  private boolean needsLoad(int sectionIndex) {
+    return sectionIndex >= 0
+        && sectionIndex < cache.length
+        && cache[sectionIndex] == null
+        && !pendingSections.containsKey(sectionIndex)
+        && (sharedCacheKey == null
+            || !sharedCache.contains(sharedCacheKey, sectionSize, sectionIndex));
+  }
+
+  /**
+   * Submit a single read for the sections from {@code first} to {@code last} (inclusive).
+   *
+   * @return whether the executor still accepts loads
+   */
+  private boolean scheduleRun(int first, int last, Executor executor) {
+    RunnableFuture<Section[]> run = new FutureTask<>(() -> readSections(first, last));
+    try {
+      executor.execute(run);
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+    for (int idx = first; idx <= last; idx++) {
+      if (cache[idx] == null) {
+        pendingSections.put(idx, new PendingSection(run, idx - first));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Wait for a pending section, returns {@code null} if the load did not succeed and the section
+   * needs to be read again.
+   */
+  private static Section awaitPending(RunnableFuture<Section> pending) throws IOException {
+    // If no background thread has picked up the load yet, we run it ourselves instead of waiting
+    pending.run();
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for prefetched section");
+    } catch (ExecutionException | CancellationException e) {
+      return null;
+    }
+  }
+
+  /** Cancel all pending background loads, implementers must call this when closing the reader. */
+  protected void cancelPrefetch() {
+    if (pendingSections == null) {
+      return;
+    }
+    for (RunnableFuture<Section> pending : pendingSections.values()) {
+      pending.cancel(false);
+    }
+    pendingSections.clear();
+  }
+
+  /** Load the section with the given index, either from the shared cache or from the source. */
+  private Section loadSection(int sectionIndex) throws IOException {
+    if (sharedCacheKey != null) {
+      return sharedCache.get(
+          sharedCacheKey, sectionSize, sectionIndex, () -> readSection(sectionIndex));
+    }
+    return readSection(sectionIndex);
+  }
+
+  /**
+   * Read {@code len} bytes starting at {@code start} into {@code buf}.
+   *
+   * @throws EOFException if the source ended early, i.e. it was truncated after it was opened
+   */
+  private void readFully(byte[] buf, int start, int len) throws IOException {
+    int numRead = 0;
+    while (numRead < len) {
+      int read = this.readBytes(buf, numRead, start + numRead, len - numRead);
+      if (read <= 0) {
+        throw new EOFException(
+            String.format(
+                "Source %s ended after %d bytes, expected %d, was it modified while reading?",
+                this.getIdentifier(), start + numRead, start + len));
+      }
+      numRead += read;
+    }
+  }
+
+  /** Read the section with the given index from the source. */
+  private Section readSection(int sectionIndex) throws IOException {
+    int startOffset = sectionIndex * sectionSize;
+    int readLen = Math.min(sectionSize, this.length() - startOffset);
+    byte[] buf = new byte[readLen];
+    readFully(buf, startOffset, readLen);
+    readStats.recordBytesRead(readLen);
+    // The section's text is only constructed if someone needs it, break locators work on the bytes
+    return new Section(startOffset, startOffset + sectionSize, buf);
+  }
+
+  /**
+   * Read the sections from {@code first} to {@code last} (inclusive) from the source with a single
+   * read, adding them to the shared cache if there is one.
+   *
+   * <p>Uses its own buffer, since this can run in the background concurrently with reads on the
+   * thread that owns the reader.
+   */
+  private Section[] readSections(int first, int last) throws IOException {
+    int startOffset = first * sectionSize;
+    int readLen = Math.min((last - first + 1) * sectionSize, this.length() - startOffset);
+    byte[] buf = new byte[readLen];
+    readFully(buf, startOffset, readLen);
+    readStats.recordBytesRead(readLen);
+    Section[] sections = new Section[last - first + 1];
+    for (int i = 0; i < sections.length; i++) {
+      int bufOffset = i * sectionSize;
+      int len = Math.min(sectionSize, readLen - bufOffset);
+      sections[i] =
+          new Section(
+              startOffset + bufOffset,
+              startOffset + bufOffset + sectionSize,
+              Arrays.copyOfRange(buf, bufOffset, bufOffset + len));
+      if (sharedCacheKey != null) {
+        sharedCache.put(sharedCacheKey, sectionSize, first + i, sections[i]);
+      }
+    }
+    return sections;
+  }
 }
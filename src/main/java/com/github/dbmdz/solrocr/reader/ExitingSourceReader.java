@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 import org.apache.lucene.index.QueryTimeout;
 
 public class ExitingSourceReader implements SourceReader {
@@ -77,6 +78,33 @@ public class ExitingSourceReader implements SourceReader {
     return input.getAsciiSection(offset);
   }
 
+  @Override
+  public void prefetch(int[] offsets, Executor executor) throws IOException {
+    checkAndThrow();
+    input.prefetch(offsets, executor);
+  }
+
+  @Override
+  public void loadSections(int[] offsets) throws IOException {
+    checkAndThrow();
+    input.loadSections(offsets);
+  }
+
+  @Override
+  public boolean hasByteOffsets() {
+    return input.hasByteOffsets();
+  }
+
+  @Override
+  public boolean isAscii() {
+    return input.isAscii();
+  }
+
+  @Override
+  public ReadStats getReadStats() {
+    return input.getReadStats();
+  }
+
   @Override
   public int readBytes(ByteBuffer dst, int start) throws IOException {
     checkAndThrow();
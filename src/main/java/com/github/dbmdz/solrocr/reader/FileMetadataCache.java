@@ -0,0 +1,186 @@
+package com.github.dbmdz.solrocr.reader;
+
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-wide cache of the information derived from the contents of OCR files.
+ *
+ * <p>Detecting whether a file is pure ASCII or what OCR format it has means reading from the file,
+ * which is a round trip to the server on network storage. The cache keeps this information along
+ * with the size and modification time of the file it was derived from and discards it as soon as
+ * either of them changes.
+ *
+ * <p>The metadata itself is not cached across requests. Every request takes a {@link Snapshot},
+ * which checks each file against the file system once, and validation, reader lengths and cache
+ * keys for the request are all derived from that single check.
+ *
+ * <p>The cache is shared between query-time highlighting and indexing, the shared instance is
+ * configured once by the first {@code OcrHighlightComponent} that is initialized on the node.
+ */
+public class FileMetadataCache {
+  public static final long DEFAULT_MAX_ENTRIES = 100_000;
+
+  private static volatile FileMetadataCache shared = new FileMetadataCache(DEFAULT_MAX_ENTRIES);
+  private static boolean sharedConfigured = false;
+
+  /** Metadata of a single file, along with information derived from its contents. */
+  public static final class FileMetadata {
+    private final long size;
+    private final long lastModified;
+    private volatile Boolean ascii;
+    private volatile OcrFormat format;
+
+    private FileMetadata(long size, long lastModified) {
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    /** Whether the file only contains ASCII characters, {@code null} if not yet known. */
+    public Boolean isAscii() {
+      return ascii;
+    }
+
+    public void setAscii(boolean ascii) {
+      this.ascii = ascii;
+    }
+
+    /** The OCR format of the file, {@code null} if not yet known. */
+    public OcrFormat getFormat() {
+      return format;
+    }
+
+    public void setFormat(OcrFormat format) {
+      this.format = format;
+    }
+  }
+
+  /**
+   * The metadata of files as seen by a single request.
+   *
+   * <p>Every file is checked against the file system at most once per snapshot, later lookups of
+   * the same path return the same metadata. Snapshots are thread-safe.
+   */
+  public final class Snapshot {
+    private final Map<Path, FileMetadata> files = new ConcurrentHashMap<>();
+
+    private Snapshot() {}
+
+    /**
+     * Get the metadata of a file, checking it against the file system on the first lookup.
+     *
+     * @throws java.nio.file.NoSuchFileException if the file does not exist
+     */
+    public FileMetadata get(Path path) throws IOException {
+      try {
+        return files.computeIfAbsent(
+            path,
+            p -> {
+              try {
+                return refresh(p);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  private final Cache<Path, FileMetadata> metadata;
+  private final long maxEntries;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxEntries the maximum number of files to keep
+   */
+  public FileMetadataCache(long maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("maxEntries must be >= 0");
+    }
+    this.maxEntries = maxEntries;
+    this.metadata =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .recordStats()
+            .build();
+  }
+
+  /** Get the node-wide instance of the cache. */
+  public static FileMetadataCache getShared() {
+    return shared;
+  }
+
+  /**
+   * Configure the node-wide instance of the cache.
+   *
+   * <p>The instance is shared by all cores on the node and by the indexing chain, so only the
+   * first configuration is applied, later calls (e.g. from other cores or core reloads) keep the
+   * existing instance along with its entries.
+   *
+   * @return whether the node-wide instance has the requested configuration
+   */
+  public static synchronized boolean configureShared(long maxEntries) {
+    if (!sharedConfigured) {
+      sharedConfigured = true;
+      if (shared.maxEntries != maxEntries) {
+        shared = new FileMetadataCache(maxEntries);
+      }
+      return true;
+    }
+    return shared.maxEntries == maxEntries;
+  }
+
+  /** Start a new snapshot, typically one per request. */
+  public Snapshot newSnapshot() {
+    return new Snapshot();
+  }
+
+  /** Check a file against the file system, keeping the derived information if it didn't change. */
+  private FileMetadata refresh(Path path) throws IOException {
+    BasicFileAttributes attrs;
+    try {
+      attrs = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      metadata.invalidate(path);
+      throw e;
+    }
+    long size = attrs.size();
+    long lastModified = attrs.lastModifiedTime().toMillis();
+    FileMetadata cached = metadata.getIfPresent(path);
+    if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+      return cached;
+    }
+    FileMetadata current = new FileMetadata(size, lastModified);
+    metadata.put(path, current);
+    return current;
+  }
+
+  public CacheStats stats() {
+    return metadata.stats();
+  }
+
+  public long size() {
+    return metadata.size();
+  }
+}
@@ -8,6 +8,7 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 
 /** Reads from a single file source using a {@link FileChannel}. */
 public class FileSourceReader extends BaseSourceReader {
@@ -17,7 +18,13 @@ public class FileSourceReader extends BaseSourceReader {
 
   public FileSourceReader(Path path, SourcePointer ptr, int sectionSize, int maxCacheEntries)
       throws IOException {
-    super(ptr, sectionSize, maxCacheEntries);
+    this(path, ptr, sectionSize, maxCacheEntries, null);
+  }
+
+  public FileSourceReader(
+      Path path, SourcePointer ptr, int sectionSize, int maxCacheEntries, SectionCache sharedCache)
+      throws IOException {
+    super(ptr, sectionSize, maxCacheEntries, sharedCache);
     this.path = path;
     this.chan = (FileChannel) Files.newByteChannel(path, StandardOpenOption.READ);
   }
@@ -30,13 +37,20 @@ public class FileSourceReader extends BaseSourceReader {
   @Override
   public int length() throws IOException {
     if (this.fileSizeBytes < 0) {
-      this.fileSizeBytes = (int) this.chan.size();
+      // Same metadata as the cache key, so the length always matches the cached sections
+      this.fileSizeBytes = (int) files.get(this.path).getSize();
     }
     return this.fileSizeBytes;
   }
 
+  @Override
+  protected SectionCache.SourceKey getSourceKey() throws IOException {
+    return SectionCache.SourceKey.forPaths(Collections.singletonList(this.path), files);
+  }
+
   @Override
   public void close() throws IOException {
+    this.cancelPrefetch();
     this.chan.close();
   }
 
@@ -0,0 +1,148 @@
+package com.github.dbmdz.solrocr.reader;
+
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.util.ArrayUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Reads from one or more file sources, treating them as a single large chunk of data, using
+ * memory-mapped {@link ByteBuffer}s.
+ *
+ * <p>Every file is mapped separately, so concatenations of multiple files never need a single
+ * mapping that spans all of them. Reads are served by copying straight from the mappings, without
+ * any system calls after the files have been mapped. Sections are still copied to the heap once,
+ * since the break locators and the section cache work on byte arrays. This is also why {@link
+ * #getByteChannel()} isn't overridden, the default channel already reads straight from the
+ * mappings into the caller's buffer.
+ *
+ * <p><strong>Be aware that I/O errors (disappearing mounts, truncated files, etc.) while accessing
+ * a mapping can crash the JVM</strong>, since the kernel signals them with a {@code SIGBUS}. Only
+ * use this reader for reliable local storage.
+ */
+public class MappedFileSourceReader extends BaseSourceReader {
+  private final Path[] paths;
+  private final ByteBuffer[] mappings;
+  private final int[] startOffsets;
+  private final int numBytes;
+
+  public MappedFileSourceReader(
+      List<Path> paths,
+      SourcePointer ptr,
+      int sectionSize,
+      int maxCacheEntries,
+      SectionCache sharedCache)
+      throws IOException {
+    super(ptr, sectionSize, maxCacheEntries, sharedCache);
+    this.paths = paths.toArray(new Path[0]);
+    this.mappings = new ByteBuffer[this.paths.length];
+    this.startOffsets = new int[this.paths.length];
+    long offset = 0;
+    for (int i = 0; i < this.paths.length; i++) {
+      // The mapping stays valid after the channel has been closed, so we don't need to hold on to
+      // any file descriptors.
+      try (FileChannel chan = FileChannel.open(this.paths[i], StandardOpenOption.READ)) {
+        // Map the size the request's cache keys are based on, mapping beyond the end of a file
+        // that shrank since then would crash on access
+        long size = files.get(this.paths[i]).getSize();
+        if (offset + size > Integer.MAX_VALUE) {
+          throw new IOException(
+              String.format(
+                  Locale.US,
+                  "Sources larger than 2GiB are not supported (%s has at least %d bytes)",
+                  this.getIdentifier(),
+                  offset + size));
+        }
+        if (chan.size() < size) {
+          throw new IOException(
+              String.format(Locale.US, "%s changed while it was opened", this.paths[i]));
+        }
+        MappedByteBuffer mapping = chan.map(MapMode.READ_ONLY, 0, size);
+        this.mappings[i] = mapping;
+        this.startOffsets[i] = (int) offset;
+        offset += mapping.capacity();
+      }
+    }
+    this.numBytes = (int) offset;
+  }
+
+  @Override
+  public int readBytes(byte[] dst, int dstOffset, int start, int len) throws IOException {
+    int fileIdx = ArrayUtils.binaryFloorIdxSearch(startOffsets, start);
+    if (fileIdx < 0 || start >= numBytes) {
+      throw new IOException(String.format(Locale.US, "Offset %d is out of bounds", start));
+    }
+    int numRead = 0;
+    while (numRead < len && fileIdx < mappings.length) {
+      ByteBuffer view = mappings[fileIdx].duplicate();
+      int fileOffset = (start + numRead) - startOffsets[fileIdx];
+      int toRead = Math.min(len - numRead, view.capacity() - fileOffset);
+      if (toRead > 0) {
+        view.position(fileOffset);
+        view.get(dst, dstOffset + numRead, toRead);
+        numRead += toRead;
+      }
+      fileIdx++;
+    }
+    return numRead;
+  }
+
+  @Override
+  public int readBytes(ByteBuffer dst, int start) throws IOException {
+    int fileIdx = ArrayUtils.binaryFloorIdxSearch(startOffsets, start);
+    if (fileIdx < 0 || start >= numBytes) {
+      return -1;
+    }
+    int numRead = 0;
+    while (dst.hasRemaining() && fileIdx < mappings.length) {
+      ByteBuffer view = mappings[fileIdx].duplicate();
+      int fileOffset = (start + numRead) - startOffsets[fileIdx];
+      int toRead = Math.min(dst.remaining(), view.capacity() - fileOffset);
+      if (toRead > 0) {
+        view.position(fileOffset);
+        view.limit(fileOffset + toRead);
+        dst.put(view);
+        numRead += toRead;
+      }
+      fileIdx++;
+    }
+    return numRead;
+  }
+
+  @Override
+  public int length() {
+    return this.numBytes;
+  }
+
+  @Override
+  protected SectionCache.SourceKey getSourceKey() throws IOException {
+    return SectionCache.SourceKey.forPaths(Arrays.asList(this.paths), files);
+  }
+
+  @Override
+  public void close() {
+    // The mappings are released once they're garbage collected
+    this.cancelPrefetch();
+  }
+
+  @Override
+  public String getIdentifier() {
+    if (paths.length == 1) {
+      return paths[0].toString();
+    }
+    return String.format(
+        "{%s}",
+        Arrays.stream(paths)
+            .map(p -> p.toAbsolutePath().toString())
+            .collect(Collectors.joining(", ")));
+  }
+}
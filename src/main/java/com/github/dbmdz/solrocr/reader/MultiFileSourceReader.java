@@ -5,8 +5,8 @@ import com.github.dbmdz.solrocr.util.ArrayUtils;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
@@ -47,10 +47,20 @@ public class MultiFileSourceReader extends BaseSourceReader {
   private final OpenFile[] openFiles;
   private final int[] startOffsets;
   private final int numBytes;
+  private boolean closed = false;
 
   public MultiFileSourceReader(
       List<Path> paths, SourcePointer ptr, int sectionSize, int maxCacheEntries) {
-    super(ptr, sectionSize, maxCacheEntries);
+    this(paths, ptr, sectionSize, maxCacheEntries, null);
+  }
+
+  public MultiFileSourceReader(
+      List<Path> paths,
+      SourcePointer ptr,
+      int sectionSize,
+      int maxCacheEntries,
+      SectionCache sharedCache) {
+    super(ptr, sectionSize, maxCacheEntries, sharedCache);
     this.paths = paths.toArray(new Path[0]);
     this.openFiles = new OpenFile[paths.size()];
     this.startOffsets = new int[paths.size()];
@@ -58,7 +68,7 @@ public class MultiFileSourceReader extends BaseSourceReader {
     try {
       for (int i = 0; i < paths.size(); i++) {
         startOffsets[i] = offset;
-        offset += (int) Files.size(this.paths[i]);
+        offset += (int) files.get(this.paths[i]).getSize();
       }
     } catch (IOException e) {
       // Should've been caught by SourcePointer validation
@@ -74,37 +84,58 @@ public class MultiFileSourceReader extends BaseSourceReader {
       throw new RuntimeException(String.format("Offset %d is out of bounds", start));
     }
     int fileOffset = startOffsets[fileIdx];
-    if (openFiles[fileIdx] == null) {
-      openFiles[fileIdx] = new OpenFile(paths[fileIdx], fileOffset);
-    }
-    OpenFile file = openFiles[fileIdx];
+    OpenFile file = getOpenFile(fileIdx);
 
     int len = dst.remaining();
     int numRead = 0;
     while (numRead < len) {
-      numRead += file.read(dst, (start + numRead) - fileOffset);
+      int read = file.read(dst, (start + numRead) - fileOffset);
+      if (read < 0) {
+        // The file shrank since we determined its size, there's nothing left to read
+        return numRead > 0 ? numRead : -1;
+      }
+      numRead += read;
       if (numRead < len) {
         fileIdx++;
         if (fileIdx >= paths.length) {
           break;
         }
-        if (openFiles[fileIdx] == null) {
-          openFiles[fileIdx] = new OpenFile(paths[fileIdx], start + numRead);
-        }
-        file = openFiles[fileIdx];
+        file = getOpenFile(fileIdx);
         fileOffset = startOffsets[fileIdx];
       }
     }
     return numRead;
   }
 
+  /**
+   * Get the opened file with the given index, opening it if necessary.
+   *
+   * <p>Synchronized since sections can be prefetched concurrently from multiple threads.
+   */
+  private synchronized OpenFile getOpenFile(int fileIdx) throws IOException {
+    if (closed) {
+      throw new ClosedChannelException();
+    }
+    if (openFiles[fileIdx] == null) {
+      openFiles[fileIdx] = new OpenFile(paths[fileIdx], startOffsets[fileIdx]);
+    }
+    return openFiles[fileIdx];
+  }
+
   @Override
   public int length() {
     return this.numBytes;
   }
 
   @Override
-  public void close() throws IOException {
+  protected SectionCache.SourceKey getSourceKey() throws IOException {
+    return SectionCache.SourceKey.forPaths(Arrays.asList(this.paths), files);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    this.cancelPrefetch();
+    this.closed = true;
     for (OpenFile file : openFiles) {
       if (file == null) {
         continue;
@@ -0,0 +1,52 @@
+package com.github.dbmdz.solrocr.reader;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about the reads of a single {@link SourceReader}.
+ *
+ * <p>The section cache counters are only updated by the thread that owns the reader, the number of
+ * bytes read can also be updated by threads that load sections in the background.
+ */
+public final class ReadStats {
+  private long sectionCacheHits = 0;
+  private long sectionCacheMisses = 0;
+  private long sectionCacheEvictions = 0;
+  private final LongAdder bytesRead = new LongAdder();
+
+  void recordHit() {
+    sectionCacheHits++;
+  }
+
+  void recordMiss() {
+    sectionCacheMisses++;
+  }
+
+  void recordEviction() {
+    sectionCacheEvictions++;
+  }
+
+  void recordBytesRead(int numBytes) {
+    bytesRead.add(numBytes);
+  }
+
+  /** Get the number of section requests that were served from the reader's section cache. */
+  public long getSectionCacheHits() {
+    return sectionCacheHits;
+  }
+
+  /** Get the number of section requests that were not served from the reader's section cache. */
+  public long getSectionCacheMisses() {
+    return sectionCacheMisses;
+  }
+
+  /** Get the number of sections that were evicted from the reader's section cache. */
+  public long getSectionCacheEvictions() {
+    return sectionCacheEvictions;
+  }
+
+  /** Get the number of bytes that were read from the underlying source. */
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+}
@@ -0,0 +1,15 @@
+package com.github.dbmdz.solrocr.reader;
+
+import java.util.Locale;
+
+/** How file sources are accessed during highlighting. */
+public enum ReaderMode {
+  /** Positional reads via a {@link java.nio.channels.FileChannel}, the default. */
+  CHANNEL,
+  /** Reads from memory-mapped files, see {@link MappedFileSourceReader} for the caveats. */
+  MMAP;
+
+  public static ReaderMode parse(String name) {
+    return ReaderMode.valueOf(name.trim().toUpperCase(Locale.US));
+  }
+}
@@ -0,0 +1,246 @@
+package com.github.dbmdz.solrocr.reader;
+
+import com.github.dbmdz.solrocr.reader.SourceReader.Section;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, concurrent cache for source sections that is shared by all {@link BaseSourceReader}
+ * instances on a node.
+ *
+ * <p>The per-reader cache in {@link BaseSourceReader} only lives as long as a single document is
+ * being highlighted. This cache outlives the readers, so that sections of frequently highlighted
+ * documents don't have to be read and decoded again on every request. Entries are keyed by the
+ * identity of the source (its path(s), modification time(s) and size(s)), the section size and the
+ * index of the section, i.e. modified files will never be served from stale cache entries.
+ *
+ * <p>The node-wide instance is created by the first {@code OcrHighlightComponent} that enables it,
+ * so that the configured memory budget applies to the whole node and not to every core.
+ */
+public class SectionCache {
+  /** Approximate per-entry overhead of the cache entry, key, section and array objects in bytes */
+  private static final int ENTRY_OVERHEAD = 128;
+
+  public enum EvictionPolicy {
+    /** Evict the least recently used sections once the byte budget is exhausted. */
+    LRU,
+    /** Like {@link #LRU}, but also evict sections that were not accessed for a given time. */
+    EXPIRE_AFTER_ACCESS,
+    /** Like {@link #LRU}, but also evict sections a given time after they were read. */
+    EXPIRE_AFTER_WRITE;
+
+    public static EvictionPolicy parse(String name) {
+      return EvictionPolicy.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.US));
+    }
+  }
+
+  /** Identity of a source, changes whenever one of its files is modified. */
+  public static final class SourceKey {
+    private final String identifier;
+    private final long[] stamps;
+    private final int hash;
+
+    private SourceKey(String identifier, long[] stamps) {
+      this.identifier = identifier;
+      this.stamps = stamps;
+      this.hash = 31 * identifier.hashCode() + Arrays.hashCode(stamps);
+    }
+
+    /**
+     * Build the key for a source that consists of one or more files, concatenated in order.
+     *
+     * <p>The modification times and sizes are taken from the request's snapshot of the file
+     * metadata, so a changed file never hits the entries of its previous version and the key
+     * matches the lengths the request's readers work with.
+     */
+    public static SourceKey forPaths(List<Path> paths, FileMetadataCache.Snapshot files)
+        throws IOException {
+      StringBuilder identifier = new StringBuilder();
+      long[] stamps = new long[paths.size() * 2];
+      for (int i = 0; i < paths.size(); i++) {
+        if (i > 0) {
+          identifier.append('+');
+        }
+        identifier.append(paths.get(i).toAbsolutePath());
+        FileMetadataCache.FileMetadata metadata = files.get(paths.get(i));
+        stamps[i * 2] = metadata.getLastModified();
+        stamps[i * 2 + 1] = metadata.getSize();
+      }
+      return new SourceKey(identifier.toString(), stamps);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      SourceKey other = (SourceKey) o;
+      return hash == other.hash
+          && identifier.equals(other.identifier)
+          && Arrays.equals(stamps, other.stamps);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "SourceKey{" + identifier + '}';
+    }
+  }
+
+  private static final class Key {
+    private final SourceKey source;
+    private final int sectionSize;
+    private final int sectionIdx;
+
+    private Key(SourceKey source, int sectionSize, int sectionIdx) {
+      this.source = source;
+      this.sectionSize = sectionSize;
+      this.sectionIdx = sectionIdx;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key other = (Key) o;
+      return sectionIdx == other.sectionIdx
+          && sectionSize == other.sectionSize
+          && source.equals(other.source);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(source, sectionSize, sectionIdx);
+    }
+  }
+
+  private static SectionCache shared;
+
+  private final Cache<Key, Section> cache;
+  private final long maxBytes;
+  private final EvictionPolicy policy;
+  private final long ttlSeconds;
+
+  /**
+   * Create a new shared section cache.
+   *
+   * @param maxBytes the maximum number of bytes the cached sections may occupy
+   * @param policy the eviction policy to use
+   * @param ttlSeconds the time after which entries expire, only used for the expiring policies
+   */
+  public SectionCache(long maxBytes, EvictionPolicy policy, long ttlSeconds) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    }
+    this.maxBytes = maxBytes;
+    this.policy = policy;
+    this.ttlSeconds = ttlSeconds;
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .recordStats();
+    if (policy != EvictionPolicy.LRU && ttlSeconds <= 0) {
+      throw new IllegalArgumentException(
+          "A positive TTL is required for the " + policy + " eviction policy");
+    }
+    if (policy == EvictionPolicy.EXPIRE_AFTER_ACCESS) {
+      builder.expireAfterAccess(ttlSeconds, TimeUnit.SECONDS);
+    } else if (policy == EvictionPolicy.EXPIRE_AFTER_WRITE) {
+      builder.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS);
+    }
+    this.cache =
+        builder
+            .<Key, Section>weigher((k, s) -> s.length() + ENTRY_OVERHEAD)
+            .build();
+  }
+
+  /**
+   * Get the node-wide instance of the cache, creating it with the given configuration if there is
+   * none yet.
+   *
+   * <p>Only the first configuration is applied, later calls (e.g. from other cores or core reloads)
+   * get the existing instance along with its entries, use {@link #hasConfiguration(long,
+   * EvictionPolicy, long)} to check if it matches theirs.
+   */
+  public static synchronized SectionCache getShared(
+      long maxBytes, EvictionPolicy policy, long ttlSeconds) {
+    if (shared == null) {
+      shared = new SectionCache(maxBytes, policy, ttlSeconds);
+    }
+    return shared;
+  }
+
+  /** Check if the cache was created with the given configuration. */
+  public boolean hasConfiguration(long maxBytes, EvictionPolicy policy, long ttlSeconds) {
+    return this.maxBytes == maxBytes
+        && this.policy == policy
+        && (policy == EvictionPolicy.LRU || this.ttlSeconds == ttlSeconds);
+  }
+
+  /**
+   * Get the section with the given index for the source, reading it via the loader if it is not
+   * cached yet.
+   */
+  Section get(SourceKey source, int sectionSize, int sectionIdx, Callable<Section> loader)
+      throws IOException {
+    try {
+      return cache.get(new Key(source, sectionSize, sectionIdx), loader);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /** Check if the section with the given index for the source is cached. */
+  boolean contains(SourceKey source, int sectionSize, int sectionIdx) {
+    return cache.asMap().containsKey(new Key(source, sectionSize, sectionIdx));
+  }
+
+  /** Add a section that was read outside of {@link #get(SourceKey, int, int, Callable)}. */
+  void put(SourceKey source, int sectionSize, int sectionIdx, Section section) {
+    cache.put(new Key(source, sectionSize, sectionIdx), section);
+  }
+
+  /** Get hit/miss/eviction statistics for the cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Get the number of sections that are currently cached. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Get the configured byte budget of the cache. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Remove all sections from the cache. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
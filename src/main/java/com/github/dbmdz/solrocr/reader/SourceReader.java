@@ -4,6 +4,7 @@ import com.github.dbmdz.solrocr.model.SourcePointer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.Executor;
 
 /** API for reading data from a source. */
 public interface SourceReader {
@@ -19,6 +20,22 @@ public interface SourceReader {
   /** Get the number of bytes in the source. */
   int length() throws IOException;
 
+  /**
+   * Check if offsets into the source are offsets of UTF-8 bytes (the default) or of UTF-16 chars,
+   * e.g. for text that is already in memory.
+   */
+  default boolean hasByteOffsets() {
+    return true;
+  }
+
+  /**
+   * Check if the source is known to only contain ASCII characters, in which case UTF-8 byte offsets
+   * and UTF-16 char offsets are identical. Returns {@code false} if this is not known.
+   */
+  default boolean isAscii() {
+    return false;
+  }
+
   /**
    * Read a section from the source as an ASCII/Latin1 string.
    *
@@ -38,6 +55,31 @@ public interface SourceReader {
    */
   Section getAsciiSection(int offset) throws IOException;
 
+  /**
+   * Start loading the data around the given offsets in the background on the executor, so that
+   * later reads at these offsets don't have to wait for I/O.
+   *
+   * <p>This is only a hint, the default implementation does nothing.
+   */
+  default void prefetch(int[] offsets, Executor executor) throws IOException {
+    // NOP
+  }
+
+  /**
+   * Load the data around the given offsets ahead of time, with as few reads as possible.
+   *
+   * <p>Intended to be called once per document with the offsets of all matches, before the data
+   * around every single match is read. The default implementation does nothing.
+   */
+  default void loadSections(int[] offsets) throws IOException {
+    // NOP
+  }
+
+  /** Get statistics about the reads so far, or {@code null} if the reader doesn't track them. */
+  default ReadStats getReadStats() {
+    return null;
+  }
+
   /**
    * Read into {@param dst} starting at {@param start} from the source. , returning the number of
    * bytes read.
@@ -105,18 +147,80 @@ public interface SourceReader {
     };
   }
 
+  /**
+   * A section of the source, with one byte per offset.
+   *
+   * <p>Break locators search the bytes directly, the ASCII/Latin1 text of the section is only
+   * created when it is requested.
+   */
   class Section {
+    /** Start byte offset of the section, inclusive */
     public final int start;
+    /** End byte offset of the section, exclusive */
     public final int end;
-    public final String text;
 
+    private final int length;
+    private volatile byte[] bytes;
+    private volatile String text;
+
+    /**
+     * Create a section from bytes that were read from the source.
+     *
+     * @param bytes the bytes of the section, owned by the section from now on
+     */
+    public Section(int start, int end, byte[] bytes) {
+      this.start = start;
+      this.end = end;
+      this.bytes = bytes;
+      this.length = bytes.length;
+    }
+
+    /**
+     * Create a section from text that is already in memory, e.g. for sources with char offsets.
+     *
+     * <p>Its bytes are derived from the text on first access, with all characters outside of the
+     * Latin1 range replaced by {@code 0xFF}.
+     */
     public Section(int start, int end, String text) {
-      /* Start byte offset of the section, inclusive */
       this.start = start;
-      /* End byte offset of the section, exclusive */
       this.end = end;
-      /* ASCII text of the section */
       this.text = text;
+      this.length = text.length();
+    }
+
+    /** Number of bytes in the section, less than {@code end - start} for the last section */
+    public int length() {
+      return length;
+    }
+
+    /**
+     * Get the bytes of the section.
+     *
+     * <p>The array must not be modified, only the first {@link #length()} bytes are valid.
+     */
+    public byte[] getBytes() {
+      byte[] bytes = this.bytes;
+      if (bytes == null) {
+        String text = this.text;
+        bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+          char c = text.charAt(i);
+          bytes[i] = c <= 0xFF ? (byte) c : (byte) 0xFF;
+        }
+        this.bytes = bytes;
+      }
+      return bytes;
+    }
+
+    /** Get the ASCII/Latin1 text of the section. */
+    public String getText() {
+      String text = this.text;
+      if (text == null) {
+        // Construct a String without going through a decoder to save on CPU.
+        text = new String(bytes, 0, 0, length);
+        this.text = text;
+      }
+      return text;
     }
 
     @Override
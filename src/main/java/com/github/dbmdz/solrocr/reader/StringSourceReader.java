@@ -8,6 +8,7 @@ import java.nio.charset.StandardCharsets;
 public class StringSourceReader implements SourceReader {
 
   private final String str;
+  private Section section;
 
   public StringSourceReader(String str) {
     this.str = str;
@@ -25,9 +26,17 @@ public class StringSourceReader implements SourceReader {
     return this.str.substring(start, start + byteLen);
   }
 
+  @Override
+  public boolean hasByteOffsets() {
+    return false;
+  }
+
   @Override
   public Section getAsciiSection(int offset) {
-    return new Section(0, str.length(), str);
+    if (section == null) {
+      section = new Section(0, str.length(), str);
+    }
+    return section;
   }
 
   @Override
@@ -0,0 +1,167 @@
+package com.github.dbmdz.solrocr.solr;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.github.dbmdz.solrocr.breaklocator.BlockOffsetIndexCache;
+import com.github.dbmdz.solrocr.lucene.HighlightTimings;
+import com.github.dbmdz.solrocr.lucene.SourcePointerCache;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.ReadStats;
+import com.github.dbmdz.solrocr.reader.SectionCache;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * Metrics about OCR highlighting, registered with Solr's metrics registry.
+ *
+ * <p>All metrics are registered below the category and scope of the highlighting component, e.g.
+ * {@code HIGHLIGHTER.ocrHighlight.time.passages}. Without a metrics context, the metrics are still
+ * collected, but not reported anywhere.
+ */
+public class OcrHighlightMetrics implements HighlightTimings {
+  /** Type of source for content read from a single file via a file channel */
+  public static final String SOURCE_FILE = "file";
+  /** Type of source for content read from multiple files via file channels */
+  public static final String SOURCE_MULTI_FILE = "multi_file";
+  /** Type of source for content read from memory-mapped files */
+  public static final String SOURCE_MMAP = "mmap";
+
+  private final SolrMetricsContext metricsContext;
+  private final String[] metricPath;
+
+  private final Timer[] phaseTimers;
+  private final Counter sectionCacheHits;
+  private final Counter sectionCacheMisses;
+  private final Counter sectionCacheEvictions;
+  private final Map<String, Counter> bytesRead = new ConcurrentHashMap<>();
+  private final Meter rejectedExecutions;
+  private final Meter partialHighlights;
+
+  /** Create metrics that are collected, but not registered anywhere. */
+  public OcrHighlightMetrics() {
+    this(null);
+  }
+
+  /**
+   * Create metrics registered with the given context.
+   *
+   * @param metricsContext context to register the metrics with, can be {@code null}
+   * @param metricPath path of the metrics below the registry, usually the category and scope of
+   *     the component
+   */
+  public OcrHighlightMetrics(SolrMetricsContext metricsContext, String... metricPath) {
+    this.metricsContext = metricsContext;
+    this.metricPath = metricPath;
+    Phase[] phases = Phase.values();
+    this.phaseTimers = new Timer[phases.length];
+    for (Phase phase : phases) {
+      phaseTimers[phase.ordinal()] = timer("time." + phase.name().toLowerCase(Locale.US));
+    }
+    this.sectionCacheHits = counter("sectionCache.hits");
+    this.sectionCacheMisses = counter("sectionCache.misses");
+    this.sectionCacheEvictions = counter("sectionCache.evictions");
+    this.rejectedExecutions = meter("executor.rejected");
+    this.partialHighlights = meter("partialHighlights");
+  }
+
+  private Timer timer(String name) {
+    return metricsContext != null ? metricsContext.timer(name, metricPath) : new Timer();
+  }
+
+  private Counter counter(String name) {
+    return metricsContext != null ? metricsContext.counter(name, metricPath) : new Counter();
+  }
+
+  private Meter meter(String name) {
+    return metricsContext != null ? metricsContext.meter(name, metricPath) : new Meter();
+  }
+
+  /**
+   * Register gauges for the thread pools and node-wide caches of the highlighter.
+   *
+   * <p>Gauges are only registered if there is a metrics context.
+   */
+  public void registerGauges(SolrOcrHighlighter highlighter) {
+    if (metricsContext == null) {
+      return;
+    }
+    metricsContext.gauge(
+        highlighter::getQueuedHighlightingTasks, true, "executor.queued", metricPath);
+    metricsContext.gauge(highlighter::getQueuedPrefetchLoads, true, "prefetch.queued", metricPath);
+    SectionCache sectionCache = highlighter.getSectionCache();
+    if (sectionCache != null) {
+      metricsContext.gauge(
+          () -> sectionCache.stats().hitCount(), true, "sharedSectionCache.hits", metricPath);
+      metricsContext.gauge(
+          () -> sectionCache.stats().missCount(), true, "sharedSectionCache.misses", metricPath);
+      metricsContext.gauge(
+          () -> sectionCache.stats().evictionCount(),
+          true,
+          "sharedSectionCache.evictions",
+          metricPath);
+      metricsContext.gauge(sectionCache::size, true, "sharedSectionCache.size", metricPath);
+    }
+    BlockOffsetIndexCache blockIndexCache = highlighter.getBlockIndexCache();
+    if (blockIndexCache != null) {
+      metricsContext.gauge(
+          () -> blockIndexCache.stats().hitCount(), true, "blockIndexCache.hits", metricPath);
+      metricsContext.gauge(
+          () -> blockIndexCache.stats().missCount(), true, "blockIndexCache.misses", metricPath);
+      metricsContext.gauge(blockIndexCache::size, true, "blockIndexCache.size", metricPath);
+    }
+    metricsContext.gauge(
+        () -> FileMetadataCache.getShared().stats().hitCount(),
+        true,
+        "fileMetadataCache.hits",
+        metricPath);
+    metricsContext.gauge(
+        () -> FileMetadataCache.getShared().stats().missCount(),
+        true,
+        "fileMetadataCache.misses",
+        metricPath);
+    metricsContext.gauge(
+        () -> FileMetadataCache.getShared().size(), true, "fileMetadataCache.size", metricPath);
+    SourcePointerCache pointerCache = highlighter.getPointerCache();
+    if (pointerCache != null) {
+      metricsContext.gauge(
+          () -> pointerCache.stats().hitCount(), true, "pointerCache.hits", metricPath);
+      metricsContext.gauge(
+          () -> pointerCache.stats().missCount(), true, "pointerCache.misses", metricPath);
+      metricsContext.gauge(pointerCache::size, true, "pointerCache.size", metricPath);
+    }
+  }
+
+  @Override
+  public void record(Phase phase, long nanos) {
+    phaseTimers[phase.ordinal()].update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Add the statistics of a reader whose document was highlighted.
+   *
+   * @param sourceType type of the source, one of the {@code SOURCE_*} constants
+   * @param stats the statistics of the reader
+   */
+  public void recordReads(String sourceType, ReadStats stats) {
+    sectionCacheHits.inc(stats.getSectionCacheHits());
+    sectionCacheMisses.inc(stats.getSectionCacheMisses());
+    sectionCacheEvictions.inc(stats.getSectionCacheEvictions());
+    bytesRead
+        .computeIfAbsent(sourceType, type -> counter("bytesRead." + type))
+        .inc(stats.getBytesRead());
+  }
+
+  /** Record that a document was highlighted on the request thread, since the pool was full. */
+  public void recordRejectedExecution() {
+    rejectedExecutions.mark();
+  }
+
+  /** Record that a request only returned partial highlighting due to a timeout. */
+  public void recordPartialHighlights() {
+    partialHighlights.mark();
+  }
+}
@@ -1,5 +1,7 @@
 package com.github.dbmdz.solrocr.solr;
 
+import java.util.Arrays;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 
 public interface OcrHighlightParams {
@@ -17,9 +19,30 @@ public interface OcrHighlightParams {
   String ABSOLUTE_HIGHLIGHTS = "hl.ocr.absoluteHighlights";
   String MAX_OCR_PASSAGES = "hl.ocr.maxPassages";
   String SCORE_PASSAGES = "hl.ocr.scorePassages";
+  String PRE_SCORE_PASSAGES = "hl.ocr.preScorePassages";
+  String PRELOAD_SECTIONS = "hl.ocr.preloadSections";
   String TIME_ALLOWED = "hl.ocr.timeAllowed";
   String ALIGN_SPANS = "hl.ocr.alignSpans";
   String TRACK_PAGES = "hl.ocr.trackPages";
+  String DEBUG = "hl.ocr.debug";
+  String PREFETCH_ROWS = "hl.ocr.prefetchRows";
+  String POINTER_FIELD = "hl.ocr.pointerField";
+  String FORMAT = "hl.ocr.format";
+
+  /** Value of the {@code debug} parameter that enables the debug output of OCR highlighting. */
+  String DEBUG_OCR_HIGHLIGHTING = "ocrHighlighting";
+
+  /**
+   * Check if a per-document profile of the highlighting should be added to the response, either
+   * via `hl.ocr.debug=true` or `debug=ocrHighlighting`.
+   */
+  static boolean isDebug(SolrParams params) {
+    if (params.getBool(DEBUG, false)) {
+      return true;
+    }
+    String[] debug = params.getParams(CommonParams.DEBUG);
+    return debug != null && Arrays.asList(debug).contains(DEBUG_OCR_HIGHLIGHTING);
+  }
 
   /**
    * Get a boolean value from a `hl.ocr.*` parameter. If no value is given for the parameter, try to
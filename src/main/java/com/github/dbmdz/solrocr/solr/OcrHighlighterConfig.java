@@ -0,0 +1,190 @@
+package com.github.dbmdz.solrocr.solr;
+
+import com.github.dbmdz.solrocr.breaklocator.BlockOffsetIndexCache;
+import com.github.dbmdz.solrocr.lucene.SourcePointerCache;
+import com.github.dbmdz.solrocr.reader.ReaderMode;
+import com.github.dbmdz.solrocr.reader.SectionCache;
+
+/**
+ * Configuration of the OCR highlighter, built once from the attributes of the {@code
+ * OcrHighlightComponent} and shared by all requests.
+ *
+ * <p>The caches are node-wide instances, everything that is left unset keeps the default of the
+ * corresponding component attribute.
+ */
+public final class OcrHighlighterConfig {
+  private final int numHlThreads;
+  private final int maxQueuedPerThread;
+  private final int readerSectionSize;
+  private final int readerMaxCacheEntries;
+  private final SectionCache sectionCache;
+  private final ReaderMode readerMode;
+  private final BlockOffsetIndexCache blockIndexCache;
+  private final int numPrefetchThreads;
+  private final OcrHighlightMetrics metrics;
+  private final String snippetCacheName;
+  private final SourcePointerCache pointerCache;
+
+  private OcrHighlighterConfig(Builder builder) {
+    this.numHlThreads = builder.numHlThreads;
+    this.maxQueuedPerThread = builder.maxQueuedPerThread;
+    this.readerSectionSize = builder.readerSectionSize;
+    this.readerMaxCacheEntries = builder.readerMaxCacheEntries;
+    this.sectionCache = builder.sectionCache;
+    this.readerMode = builder.readerMode;
+    this.blockIndexCache = builder.blockIndexCache;
+    this.numPrefetchThreads = builder.numPrefetchThreads;
+    this.metrics = builder.metrics != null ? builder.metrics : new OcrHighlightMetrics();
+    this.snippetCacheName = builder.snippetCacheName;
+    this.pointerCache = builder.pointerCache;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Create a builder that starts out with the settings of this configuration. */
+  public Builder toBuilder() {
+    return new Builder()
+        .numHlThreads(numHlThreads)
+        .maxQueuedPerThread(maxQueuedPerThread)
+        .readerSectionSize(readerSectionSize)
+        .readerMaxCacheEntries(readerMaxCacheEntries)
+        .sectionCache(sectionCache)
+        .readerMode(readerMode)
+        .blockIndexCache(blockIndexCache)
+        .numPrefetchThreads(numPrefetchThreads)
+        .metrics(metrics)
+        .snippetCacheName(snippetCacheName)
+        .pointerCache(pointerCache);
+  }
+
+  /** Number of threads that highlight documents in parallel, {@code 0} highlights inline. */
+  public int getNumHlThreads() {
+    return numHlThreads;
+  }
+
+  /** Maximum number of documents per highlighting thread that can wait for a thread. */
+  public int getMaxQueuedPerThread() {
+    return maxQueuedPerThread;
+  }
+
+  /** Size of the sections that are read from the OCR files, in bytes. */
+  public int getReaderSectionSize() {
+    return readerSectionSize;
+  }
+
+  /** Maximum number of sections every reader keeps in its own cache. */
+  public int getReaderMaxCacheEntries() {
+    return readerMaxCacheEntries;
+  }
+
+  /** Node-wide section cache, {@code null} if disabled. */
+  public SectionCache getSectionCache() {
+    return sectionCache;
+  }
+
+  public ReaderMode getReaderMode() {
+    return readerMode;
+  }
+
+  /** Node-wide block offset index cache, {@code null} if the index is disabled. */
+  public BlockOffsetIndexCache getBlockIndexCache() {
+    return blockIndexCache;
+  }
+
+  /** Number of threads that load sections ahead of time, {@code 0} disables prefetching. */
+  public int getNumPrefetchThreads() {
+    return numPrefetchThreads;
+  }
+
+  public OcrHighlightMetrics getMetrics() {
+    return metrics;
+  }
+
+  /** Name of the searcher's user cache for snippets, {@code null} if disabled. */
+  public String getSnippetCacheName() {
+    return snippetCacheName;
+  }
+
+  /** Node-wide cache of parsed source pointers, {@code null} if disabled. */
+  public SourcePointerCache getPointerCache() {
+    return pointerCache;
+  }
+
+  public static final class Builder {
+    private int numHlThreads = Runtime.getRuntime().availableProcessors();
+    private int maxQueuedPerThread = 8;
+    private int readerSectionSize = 8 * 1024;
+    private int readerMaxCacheEntries = 64 * 1024;
+    private SectionCache sectionCache;
+    private ReaderMode readerMode = ReaderMode.CHANNEL;
+    private BlockOffsetIndexCache blockIndexCache;
+    private int numPrefetchThreads;
+    private OcrHighlightMetrics metrics;
+    private String snippetCacheName;
+    private SourcePointerCache pointerCache;
+
+    private Builder() {}
+
+    public Builder numHlThreads(int numHlThreads) {
+      this.numHlThreads = numHlThreads;
+      return this;
+    }
+
+    public Builder maxQueuedPerThread(int maxQueuedPerThread) {
+      this.maxQueuedPerThread = maxQueuedPerThread;
+      return this;
+    }
+
+    public Builder readerSectionSize(int readerSectionSize) {
+      this.readerSectionSize = readerSectionSize;
+      return this;
+    }
+
+    public Builder readerMaxCacheEntries(int readerMaxCacheEntries) {
+      this.readerMaxCacheEntries = readerMaxCacheEntries;
+      return this;
+    }
+
+    public Builder sectionCache(SectionCache sectionCache) {
+      this.sectionCache = sectionCache;
+      return this;
+    }
+
+    public Builder readerMode(ReaderMode readerMode) {
+      this.readerMode = readerMode;
+      return this;
+    }
+
+    public Builder blockIndexCache(BlockOffsetIndexCache blockIndexCache) {
+      this.blockIndexCache = blockIndexCache;
+      return this;
+    }
+
+    public Builder numPrefetchThreads(int numPrefetchThreads) {
+      this.numPrefetchThreads = numPrefetchThreads;
+      return this;
+    }
+
+    /** Metrics to record to, unregistered metrics are used if none are set. */
+    public Builder metrics(OcrHighlightMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    public Builder snippetCacheName(String snippetCacheName) {
+      this.snippetCacheName = snippetCacheName;
+      return this;
+    }
+
+    public Builder pointerCache(SourcePointerCache pointerCache) {
+      this.pointerCache = pointerCache;
+      return this;
+    }
+
+    public OcrHighlighterConfig build() {
+      return new OcrHighlighterConfig(this);
+    }
+  }
+}
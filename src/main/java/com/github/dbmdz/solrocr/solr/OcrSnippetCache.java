@@ -0,0 +1,194 @@
+package com.github.dbmdz.solrocr.solr;
+
+import com.github.dbmdz.solrocr.model.OcrSnippet;
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.SectionCache.SourceKey;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.SolrCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for the snippets of a document's OCR field, for queries that are highlighted over and over
+ * again.
+ *
+ * <p>The entries are stored in a user-defined {@link SolrCache} of the current searcher, i.e. they
+ * are dropped whenever a new searcher is opened and the cache statistics are reported like the
+ * ones of Solr's other searcher caches. Entries are keyed on the document, the field, the
+ * highlighting query and the highlighting parameters of the request. For OCR from external files,
+ * the key also includes the modification time and size of the files, so changed files are always
+ * highlighted again.
+ */
+public class OcrSnippetCache {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** Parameters that don't change the snippets of a document */
+  private static final Set<String> IGNORED_PARAMS =
+      ImmutableSet.of(
+          OcrHighlightParams.TIME_ALLOWED,
+          OcrHighlightParams.DEBUG,
+          OcrHighlightParams.PREFETCH_ROWS);
+
+  private final SolrCache<Key, Entry> cache;
+  private final String params;
+
+  public OcrSnippetCache(SolrCache<Key, Entry> cache, SolrParams params) {
+    this.cache = cache;
+    this.params = normalizeParams(params);
+  }
+
+  /**
+   * Get the snippet cache for a request from the searcher's user caches.
+   *
+   * @return the cache, or {@code null} if no cache name was configured or the searcher has no
+   *     cache with that name
+   */
+  public static OcrSnippetCache forRequest(SolrQueryRequest req, String cacheName) {
+    if (cacheName == null) {
+      return null;
+    }
+    SolrCache<Key, Entry> cache = req.getSearcher().getCache(cacheName);
+    if (cache == null) {
+      log.warn(
+          "No cache named '{}' is defined in solrconfig.xml, OCR snippets will not be cached.",
+          cacheName);
+      return null;
+    }
+    return new OcrSnippetCache(cache, req.getParams());
+  }
+
+  /** Build a canonical representation of all highlighting parameters that affect the snippets. */
+  private static String normalizeParams(SolrParams params) {
+    Map<String, String[]> hlParams = new TreeMap<>();
+    Iterator<String> names = params.getParameterNamesIterator();
+    while (names.hasNext()) {
+      String name = names.next();
+      String baseName = name;
+      if (name.startsWith("f.") && name.contains(".hl.")) {
+        // Per-field parameter
+        baseName = name.substring(name.indexOf(".hl.") + 1);
+      }
+      if (baseName.startsWith("hl.") && !IGNORED_PARAMS.contains(baseName)) {
+        hlParams.put(name, params.getParams(name));
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    hlParams.forEach(
+        (name, values) -> {
+          sb.append(name).append('=');
+          for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+              sb.append(',');
+            }
+            sb.append(values[i]);
+          }
+          sb.append('&');
+        });
+    return sb.toString();
+  }
+
+  /**
+   * Build the cache key for the OCR field of a document.
+   *
+   * @param docId index-wide document identifier, stable for the lifetime of the searcher
+   * @param pointer the pointer to the external OCR files, or {@code null} for stored OCR
+   * @return the key, or {@code null} if the OCR files could not be accessed
+   */
+  public Key getKey(int docId, String field, Query query, SourcePointer pointer) {
+    SourceKey source = null;
+    if (pointer != null) {
+      List<Path> paths =
+          pointer.sources.stream().map(s -> Paths.get(s.target)).collect(Collectors.toList());
+      try {
+        source = SourceKey.forPaths(paths, pointer.getFiles());
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return new Key(docId, field, query, params, source);
+  }
+
+  public Entry get(Key key) {
+    return cache.get(key);
+  }
+
+  public void put(Key key, OcrSnippet[] snippets, int snippetCount) {
+    cache.put(key, new Entry(snippets, snippetCount));
+  }
+
+  public static final class Key {
+    private final int docId;
+    private final String field;
+    private final Query query;
+    private final String params;
+    private final SourceKey source;
+    private final int hash;
+
+    private Key(int docId, String field, Query query, String params, SourceKey source) {
+      this.docId = docId;
+      this.field = field;
+      this.query = query;
+      this.params = params;
+      this.source = source;
+      this.hash = Objects.hash(docId, field, query, params, source);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key other = (Key) o;
+      return hash == other.hash
+          && docId == other.docId
+          && field.equals(other.field)
+          && query.equals(other.query)
+          && params.equals(other.params)
+          && Objects.equals(source, other.source);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key{" + docId + ", " + field + ", " + query + ", " + source + '}';
+    }
+  }
+
+  /** Snippets of a document's field, shared between requests and thus never modified. */
+  public static final class Entry {
+    private final OcrSnippet[] snippets;
+    private final int snippetCount;
+
+    private Entry(OcrSnippet[] snippets, int snippetCount) {
+      this.snippets = snippets;
+      this.snippetCount = snippetCount;
+    }
+
+    /** Get the snippets, can be {@code null} if the field had no snippets. */
+    public OcrSnippet[] getSnippets() {
+      return snippets;
+    }
+
+    /** Get the total number of snippets in the document. */
+    public int getSnippetCount() {
+      return snippetCount;
+    }
+  }
+}
@@ -24,11 +24,16 @@
  */
 package com.github.dbmdz.solrocr.solr;
 
+import com.github.dbmdz.solrocr.breaklocator.BlockOffsetIndexCache;
+import com.github.dbmdz.solrocr.lucene.HighlightTimings;
+import com.github.dbmdz.solrocr.lucene.SourcePointerCache;
 import com.github.dbmdz.solrocr.model.OcrHighlightResult;
+import com.github.dbmdz.solrocr.reader.SectionCache;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -37,13 +42,18 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.HighlightParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.highlight.UnifiedSolrHighlighter;
+import org.apache.solr.request.LocalSolrQueryRequest;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.DocList;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.util.SolrPluginUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,20 +61,45 @@ import solrocr.OcrHighlighter;
 
 public class SolrOcrHighlighter extends UnifiedSolrHighlighter {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  /** Maximum number of queued section loads per prefetch thread */
+  private static final int PREFETCH_QUEUE_SIZE_PER_THREAD = 256;
+  /** Maximum number of queued background highlighting requests, further ones are dropped */
+  private static final int BACKGROUND_QUEUE_SIZE = 16;
 
   private final Executor hlExecutor;
-  private final int readerSectionSize;
-  private final int readerMaxCacheEntries;
+  /** Executor for loading OCR sections in the background, {@code null} if disabled */
+  private final Executor prefetchExecutor;
+  /** Executor for highlighting the next result page in the background, {@code null} if disabled */
+  private final Executor backgroundExecutor;
+  private final OcrHighlighterConfig config;
+  /**
+   * Configuration for background highlighting, records to its own metrics so the speculative work
+   * doesn't skew the latencies of the requests that were actually made
+   */
+  private final OcrHighlighterConfig backgroundConfig;
 
   public SolrOcrHighlighter() {
-    this(Runtime.getRuntime().availableProcessors(), 8, 8 * 1024, 64 * 1024);
+    this(OcrHighlighterConfig.builder().build());
   }
 
   public SolrOcrHighlighter(
       int numHlThreads, int maxQueuedPerThread, int readerSectionSize, int readerMaxCacheEntries) {
+    this(
+        OcrHighlighterConfig.builder()
+            .numHlThreads(numHlThreads)
+            .maxQueuedPerThread(maxQueuedPerThread)
+            .readerSectionSize(readerSectionSize)
+            .readerMaxCacheEntries(readerMaxCacheEntries)
+            .build());
+  }
+
+  public SolrOcrHighlighter(OcrHighlighterConfig config) {
     super();
-    this.readerSectionSize = readerSectionSize;
-    this.readerMaxCacheEntries = readerMaxCacheEntries;
+    this.config = config;
+    this.backgroundConfig = config.toBuilder().metrics(new OcrHighlightMetrics()).build();
+    int numHlThreads = config.getNumHlThreads();
+    int maxQueuedPerThread = config.getMaxQueuedPerThread();
+    int numPrefetchThreads = config.getNumPrefetchThreads();
     if (numHlThreads > 0) {
       this.hlExecutor =
           new ThreadPoolExecutor(
@@ -78,12 +113,87 @@ public class SolrOcrHighlighter extends UnifiedSolrHighlighter {
       // Executors.newDirectExecutorService() for Java 8
       this.hlExecutor = Runnable::run;
     }
+    if (numPrefetchThreads > 0) {
+      // Loads are rejected once the queue is full, these sections are then read on demand
+      this.prefetchExecutor =
+          new ThreadPoolExecutor(
+              numPrefetchThreads,
+              numPrefetchThreads,
+              120L,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(numPrefetchThreads * PREFETCH_QUEUE_SIZE_PER_THREAD),
+              new ThreadFactoryBuilder().setNameFormat("OcrPrefetch-%d").setDaemon(true).build());
+    } else {
+      this.prefetchExecutor = null;
+    }
+    if (config.getSnippetCacheName() != null) {
+      // Background highlighting only makes sense with a cache to put the snippets in. Runs at the
+      // lowest priority and silently drops requests once the queue is full.
+      this.backgroundExecutor =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              120L,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(BACKGROUND_QUEUE_SIZE),
+              new ThreadFactoryBuilder()
+                  .setNameFormat("OcrHighlighter-background-%d")
+                  .setDaemon(true)
+                  .setPriority(Thread.MIN_PRIORITY)
+                  .build(),
+              new ThreadPoolExecutor.DiscardPolicy());
+    } else {
+      this.backgroundExecutor = null;
+    }
+  }
+
+  /** Get the node-wide section cache, or {@code null} if it is disabled. */
+  public SectionCache getSectionCache() {
+    return config.getSectionCache();
+  }
+
+  /** Get the node-wide block offset index cache, or {@code null} if the index is disabled. */
+  public BlockOffsetIndexCache getBlockIndexCache() {
+    return config.getBlockIndexCache();
+  }
+
+  /** Get the node-wide cache of parsed source pointers, or {@code null} if it is disabled. */
+  public SourcePointerCache getPointerCache() {
+    return config.getPointerCache();
+  }
+
+  /** Get the metrics of the highlighter. */
+  public OcrHighlightMetrics getMetrics() {
+    return config.getMetrics();
+  }
+
+  /** Get the number of documents that are queued for highlighting in the thread pool. */
+  public int getQueuedHighlightingTasks() {
+    return getQueueSize(hlExecutor);
+  }
+
+  /** Get the number of section loads that are queued in the prefetch thread pool. */
+  public int getQueuedPrefetchLoads() {
+    return getQueueSize(prefetchExecutor);
+  }
+
+  private static int getQueueSize(Executor executor) {
+    if (executor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+    return 0;
   }
 
   public void shutdownThreadPool() {
     if (hlExecutor instanceof ThreadPoolExecutor) {
       ((ThreadPoolExecutor) hlExecutor).shutdown();
     }
+    if (prefetchExecutor instanceof ThreadPoolExecutor) {
+      ((ThreadPoolExecutor) prefetchExecutor).shutdown();
+    }
+    if (backgroundExecutor instanceof ThreadPoolExecutor) {
+      ((ThreadPoolExecutor) backgroundExecutor).shutdown();
+    }
   }
 
   public NamedList<Object> doHighlighting(
@@ -116,20 +226,91 @@ public class SolrOcrHighlighter extends UnifiedSolrHighlighter {
             req.getSearcher(),
             req.getSchema().getIndexAnalyzer(),
             req,
-            readerSectionSize,
-            readerMaxCacheEntries);
+            config,
+            prefetchExecutor,
+            OcrSnippetCache.forRequest(req, config.getSnippetCacheName()));
     OcrHighlightResult[] ocrSnippets =
         ocrHighlighter.highlightOcrFields(
             ocrFieldNames, query, docIDs, maxPassagesOcr, respHeader, hlExecutor);
 
     // Assemble output data
+    long startNs = System.nanoTime();
     SimpleOrderedMap<Object> out = new SimpleOrderedMap<>();
     if (ocrSnippets != null) {
       this.addOcrSnippets(out, keys, ocrSnippets);
     }
+    config.getMetrics().record(HighlightTimings.Phase.SERIALIZATION, System.nanoTime() - startNs);
+
+    // Only start on the next page once the response for this one has been assembled
+    int prefetchRows = params.getInt(OcrHighlightParams.PREFETCH_ROWS, 0);
+    if (prefetchRows > 0 && backgroundExecutor != null) {
+      highlightNextPageInBackground(docs, query, req, ocrFieldNames, maxPassagesOcr, prefetchRows);
+    }
     return out;
   }
 
+  /**
+   * Highlight the documents that follow the current result page in the background, so the snippets
+   * for the next page can be served from the snippet cache.
+   *
+   * <p>Only documents that are already part of the result window computed by the query component
+   * are considered (see {@code queryResultWindowSize}), we never run the query again. The work is
+   * skipped if the highlighting thread pool has queued tasks, i.e. there is no idle capacity.
+   */
+  private void highlightNextPageInBackground(
+      DocList docs,
+      Query query,
+      SolrQueryRequest req,
+      String[] ocrFieldNames,
+      int[] maxPassagesOcr,
+      int numRows) {
+    if (getQueuedHighlightingTasks() > 0) {
+      return;
+    }
+    DocList nextDocs = docs.subset(docs.offset() + docs.size(), numRows);
+    if (nextDocs == null || nextDocs.size() == 0) {
+      return;
+    }
+    int[] docIDs = toDocIDs(nextDocs);
+    SolrCore core = req.getCore();
+    SolrIndexSearcher searcher = req.getSearcher();
+    // The request is closed by the time the task runs, so we need our own
+    ModifiableSolrParams bgParams = new ModifiableSolrParams(req.getParams());
+    bgParams.remove(OcrHighlightParams.TIME_ALLOWED);
+    bgParams.remove(OcrHighlightParams.DEBUG);
+    bgParams.remove(CommonParams.DEBUG);
+    backgroundExecutor.execute(
+        () -> {
+          SolrQueryRequest bgReq = new LocalSolrQueryRequest(core, bgParams);
+          try {
+            if (bgReq.getSearcher() != searcher) {
+              // A new searcher was opened in the meantime, the document ids are no longer valid
+              return;
+            }
+            OcrSnippetCache snippetCache =
+                OcrSnippetCache.forRequest(bgReq, config.getSnippetCacheName());
+            if (snippetCache == null) {
+              return;
+            }
+            OcrHighlighter ocrHighlighter =
+                new OcrHighlighter(
+                    bgReq.getSearcher(),
+                    bgReq.getSchema().getIndexAnalyzer(),
+                    bgReq,
+                    backgroundConfig,
+                    null,
+                    snippetCache);
+            // Highlight on the background thread, so we don't compete with regular requests
+            ocrHighlighter.highlightOcrFields(
+                ocrFieldNames, query, docIDs, maxPassagesOcr, new HashMap<>(), Runnable::run);
+          } catch (IOException | RuntimeException e) {
+            log.warn("Could not highlight the next result page in the background", e);
+          } finally {
+            bgReq.close();
+          }
+        });
+  }
+
   private int[] getMaxPassages(String[] fieldNames, SolrParams params) {
     int[] maxPassages = new int[fieldNames.length];
     for (int i = 0; i < fieldNames.length; i++) {
@@ -0,0 +1,88 @@
+package com.github.dbmdz.solrocr.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility functions to search in byte buffers that hold ASCII/Latin1 text.
+ *
+ * <p>The methods mirror the semantics of their counterparts on {@link String}, with the length of
+ * the text in the buffer passed explicitly, so that buffers can be reused.
+ */
+public class ByteBufUtils {
+  private ByteBufUtils() {}
+
+  /** Get the ASCII bytes of a string, e.g. to use it as a needle. */
+  public static byte[] toAsciiBytes(String str) {
+    return str.getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  /** Like {@link String#indexOf(int, int)}. */
+  public static int indexOf(byte[] buf, int len, byte b, int fromIdx) {
+    for (int i = Math.max(0, fromIdx); i < len; i++) {
+      if (buf[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Like {@link String#lastIndexOf(int, int)}. */
+  public static int lastIndexOf(byte[] buf, int len, byte b, int fromIdx) {
+    for (int i = Math.min(fromIdx, len - 1); i >= 0; i--) {
+      if (buf[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Like {@link String#indexOf(String, int)}. */
+  public static int indexOf(byte[] buf, int len, byte[] needle, int fromIdx) {
+    if (needle.length == 0) {
+      return Math.min(Math.max(0, fromIdx), len);
+    }
+    byte first = needle[0];
+    int max = len - needle.length;
+    for (int i = Math.max(0, fromIdx); i <= max; i++) {
+      if (buf[i] == first && regionMatches(buf, i + 1, needle, 1)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the start of the last occurrence of the needle that starts before {@code beforeIdx}.
+   *
+   * @return the start offset of the match or -1 if there is none
+   */
+  public static int lastIndexOfBefore(byte[] buf, int len, byte[] needle, int beforeIdx) {
+    if (needle.length == 0) {
+      return Math.min(beforeIdx - 1, len);
+    }
+    byte first = needle[0];
+    for (int i = Math.min(beforeIdx - 1, len - needle.length); i >= 0; i--) {
+      if (buf[i] == first && regionMatches(buf, i + 1, needle, 1)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Like {@link String#startsWith(String, int)}. */
+  public static boolean startsWith(byte[] buf, int len, byte[] prefix, int offset) {
+    if (offset < 0 || offset > len - prefix.length) {
+      return false;
+    }
+    return regionMatches(buf, offset, prefix, 0);
+  }
+
+  private static boolean regionMatches(byte[] buf, int offset, byte[] needle, int needleOffset) {
+    for (int i = needleOffset; i < needle.length; i++) {
+      if (buf[offset + i - needleOffset] != needle[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,146 @@
+package com.github.dbmdz.solrocr.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from disjoint, half-open {@code int} ranges to {@code int} values, a primitive replacement
+ * for Guava's {@code TreeRangeMap<Integer, Integer>} for hot paths.
+ *
+ * <p>Like {@code TreeRangeMap}, putting a range overwrites the parts of existing ranges that
+ * overlap with it. The ranges are kept in parallel arrays sorted by their start, so lookups are a
+ * binary search and appending ranges in ascending order (the common case for break offsets and
+ * token offsets) does not need to move any entries.
+ *
+ * <p>Lookups return the index of the matching range, whose bounds and value can then be retrieved
+ * without any allocations.
+ */
+public class IntRangeMap {
+  private int[] starts;
+  private int[] ends;
+  private int[] values;
+  private int size = 0;
+
+  public IntRangeMap() {
+    this(16);
+  }
+
+  public IntRangeMap(int initialCapacity) {
+    this.starts = new int[initialCapacity];
+    this.ends = new int[initialCapacity];
+    this.values = new int[initialCapacity];
+  }
+
+  /**
+   * Map the range {@code [start, end)} to a value, replacing the mappings of all overlapping
+   * ranges within it. Empty ranges are ignored.
+   */
+  public void put(int start, int end, int value) {
+    if (start >= end) {
+      return;
+    }
+    if (size == 0 || ends[size - 1] <= start) {
+      // Fast path: append after the last range
+      insert(size, start, end, value);
+      return;
+    }
+    // Index of the first range that ends after the start of the new range
+    int first = floorIdx(start);
+    if (first < 0 || ends[first] <= start) {
+      first++;
+    }
+    // Index after the last range that starts before the end of the new range
+    int last = floorIdx(end - 1) + 1;
+    if (first >= last) {
+      // No overlaps
+      insert(first, start, end, value);
+      return;
+    }
+    if (first == last - 1 && starts[first] < start && ends[first] > end) {
+      // The new range is contained in an existing range, split it
+      int outerEnd = ends[first];
+      ends[first] = start;
+      insert(first + 1, start, end, value);
+      insert(first + 2, end, outerEnd, values[first]);
+      return;
+    }
+    // Keep the non-overlapping parts of the first and last overlapping range
+    if (starts[first] < start) {
+      ends[first] = start;
+      first++;
+    }
+    if (ends[last - 1] > end) {
+      starts[last - 1] = end;
+      last--;
+    }
+    if (first == last) {
+      insert(first, start, end, value);
+      return;
+    }
+    // Replace the first of the fully covered ranges and remove the others
+    starts[first] = start;
+    ends[first] = end;
+    values[first] = value;
+    int numRemoved = last - first - 1;
+    if (numRemoved > 0) {
+      System.arraycopy(starts, last, starts, first + 1, size - last);
+      System.arraycopy(ends, last, ends, first + 1, size - last);
+      System.arraycopy(values, last, values, first + 1, size - last);
+      size -= numRemoved;
+    }
+  }
+
+  private void insert(int idx, int start, int end, int value) {
+    if (size == starts.length) {
+      int newCapacity = Math.max(4, size * 2);
+      starts = Arrays.copyOf(starts, newCapacity);
+      ends = Arrays.copyOf(ends, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+    if (idx < size) {
+      System.arraycopy(starts, idx, starts, idx + 1, size - idx);
+      System.arraycopy(ends, idx, ends, idx + 1, size - idx);
+      System.arraycopy(values, idx, values, idx + 1, size - idx);
+    }
+    starts[idx] = start;
+    ends[idx] = end;
+    values[idx] = value;
+    size++;
+  }
+
+  /** Index of the last range that starts at or before {@code key}, or -1 if there is none. */
+  private int floorIdx(int key) {
+    int idx = Arrays.binarySearch(starts, 0, size, key);
+    return idx >= 0 ? idx : -2 - idx;
+  }
+
+  /**
+   * Find the range that contains a key.
+   *
+   * @return the index of the range, or -1 if no range contains the key
+   */
+  public int indexOf(int key) {
+    int idx = floorIdx(key);
+    if (idx < 0 || ends[idx] <= key) {
+      return -1;
+    }
+    return idx;
+  }
+
+  /** Inclusive start of the range at the given index. */
+  public int getStart(int idx) {
+    return starts[idx];
+  }
+
+  /** Exclusive end of the range at the given index. */
+  public int getEnd(int idx) {
+    return ends[idx];
+  }
+
+  public int getValue(int idx) {
+    return values[idx];
+  }
+
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,175 @@
+package com.github.dbmdz.solrocr.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Finds any of a set of ASCII patterns in byte buffers with a single pass over the buffer, using
+ * an Aho-Corasick automaton.
+ *
+ * <p>There are two automata, one for the patterns and one for the reversed patterns, so that the
+ * buffer can be scanned forward for the first and backwards for the last match with a single pass
+ * each. Instances are immutable and can be shared between threads.
+ */
+public final class MultiPatternMatcher {
+  private static final int ALPHABET_SIZE = 128;
+
+  /** Transition table of the forward automaton, {@code state * ALPHABET_SIZE + byte} */
+  private final int[] forward;
+
+  /** Length of the longest pattern that ends in a state of the forward automaton, or 0 */
+  private final int[] forwardMatchLength;
+
+  /** Transition table of the automaton for the reversed patterns */
+  private final int[] backward;
+
+  /** Length of the longest pattern that starts in a state of the backward automaton, or 0 */
+  private final int[] backwardMatchLength;
+
+  private final int maxPatternLength;
+
+  /**
+   * Build the automata for the given patterns.
+   *
+   * @throws IllegalArgumentException if one of the patterns is empty or not pure ASCII
+   */
+  public MultiPatternMatcher(Collection<String> patterns) {
+    List<byte[]> forwardPatterns =
+        patterns.stream().map(ByteBufUtils::toAsciiBytes).collect(Collectors.toList());
+    for (byte[] pattern : forwardPatterns) {
+      if (pattern.length == 0) {
+        throw new IllegalArgumentException("Patterns must not be empty");
+      }
+      for (byte b : pattern) {
+        if (b < 0) {
+          throw new IllegalArgumentException("Patterns must only contain ASCII characters");
+        }
+      }
+    }
+    List<byte[]> backwardPatterns =
+        forwardPatterns.stream().map(MultiPatternMatcher::reverse).collect(Collectors.toList());
+    this.maxPatternLength = forwardPatterns.stream().mapToInt(p -> p.length).max().orElse(0);
+    int[][] forwardAutomaton = build(forwardPatterns);
+    this.forward = forwardAutomaton[0];
+    this.forwardMatchLength = forwardAutomaton[1];
+    int[][] backwardAutomaton = build(backwardPatterns);
+    this.backward = backwardAutomaton[0];
+    this.backwardMatchLength = backwardAutomaton[1];
+  }
+
+  private static byte[] reverse(byte[] pattern) {
+    byte[] reversed = new byte[pattern.length];
+    for (int i = 0; i < pattern.length; i++) {
+      reversed[i] = pattern[pattern.length - 1 - i];
+    }
+    return reversed;
+  }
+
+  /**
+   * Build the automaton for the patterns.
+   *
+   * @return the complete transition table and the length of the longest match for every state
+   */
+  private static int[][] build(List<byte[]> patterns) {
+    int maxStates = 1 + patterns.stream().mapToInt(p -> p.length).sum();
+    int[] transitions = new int[maxStates * ALPHABET_SIZE];
+    Arrays.fill(transitions, -1);
+    int[] matchLength = new int[maxStates];
+    int numStates = 1;
+
+    // Build the trie of all patterns
+    for (byte[] pattern : patterns) {
+      int state = 0;
+      for (byte b : pattern) {
+        int next = transitions[state * ALPHABET_SIZE + b];
+        if (next < 0) {
+          next = numStates++;
+          transitions[state * ALPHABET_SIZE + b] = next;
+        }
+        state = next;
+      }
+      matchLength[state] = Math.max(matchLength[state], pattern.length);
+    }
+
+    // Add the failure transitions breadth-first, so that the failure state of every state has
+    // been completed before the state itself
+    int[] failure = new int[numStates];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < ALPHABET_SIZE; c++) {
+      int next = transitions[c];
+      if (next < 0) {
+        transitions[c] = 0;
+      } else {
+        failure[next] = 0;
+        queue.add(next);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      matchLength[state] = Math.max(matchLength[state], matchLength[failure[state]]);
+      for (int c = 0; c < ALPHABET_SIZE; c++) {
+        int idx = state * ALPHABET_SIZE + c;
+        int fallback = transitions[failure[state] * ALPHABET_SIZE + c];
+        if (transitions[idx] < 0) {
+          transitions[idx] = fallback;
+        } else {
+          failure[transitions[idx]] = fallback;
+          queue.add(transitions[idx]);
+        }
+      }
+    }
+    return new int[][] {
+      Arrays.copyOf(transitions, numStates * ALPHABET_SIZE), Arrays.copyOf(matchLength, numStates)
+    };
+  }
+
+  /**
+   * Find the first match of any of the patterns that starts at or after {@code fromIdx}.
+   *
+   * @param buf the buffer to search in
+   * @param len the number of valid bytes in the buffer, matches must end before it
+   * @return the start offset of the match that starts first, or -1 if there is none
+   */
+  public int indexOf(byte[] buf, int len, int fromIdx) {
+    int state = 0;
+    int match = -1;
+    for (int i = Math.max(0, fromIdx); i < len; i++) {
+      if (match >= 0 && i >= match + maxPatternLength - 1) {
+        // No longer pattern can start before the match anymore
+        break;
+      }
+      int b = buf[i];
+      // Non-ASCII bytes can't be part of a pattern
+      state = b < 0 ? 0 : forward[state * ALPHABET_SIZE + b];
+      int matchLen = forwardMatchLength[state];
+      if (matchLen > 0 && (match < 0 || i - matchLen + 1 < match)) {
+        match = i - matchLen + 1;
+      }
+    }
+    return match;
+  }
+
+  /**
+   * Find the last match of any of the patterns that starts before {@code beforeIdx}.
+   *
+   * @param buf the buffer to search in
+   * @param len the number of valid bytes in the buffer, matches must end before it
+   * @return the start offset of the match that starts last, or -1 if there is none
+   */
+  public int lastIndexOfBefore(byte[] buf, int len, int beforeIdx) {
+    int state = 0;
+    // Start far enough after beforeIdx to see the complete patterns that start before it
+    for (int i = Math.min(len - 1, beforeIdx + maxPatternLength - 2); i >= 0; i--) {
+      int b = buf[i];
+      state = b < 0 ? 0 : backward[state * ALPHABET_SIZE + b];
+      if (backwardMatchLength[state] > 0 && i < beforeIdx) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
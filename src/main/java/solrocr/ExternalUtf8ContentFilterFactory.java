@@ -4,23 +4,21 @@ import com.github.dbmdz.solrocr.lucene.filters.ExternalUtf8ContentFilter;
 import com.github.dbmdz.solrocr.model.SourcePointer;
 import com.github.dbmdz.solrocr.model.SourcePointer.Source;
 import com.github.dbmdz.solrocr.model.SourcePointer.SourceType;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache.FileMetadata;
 import com.github.dbmdz.solrocr.reader.SourceReader;
-import com.github.dbmdz.solrocr.util.Utf8;
 import com.google.common.collect.ImmutableList;
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
 import org.apache.commons.io.IOUtils;
 import org.apache.lucene.analysis.CharFilterFactory;
 import org.apache.solr.common.SolrException;
@@ -61,12 +59,7 @@ public class ExternalUtf8ContentFilterFactory extends CharFilterFactory {
                 "Could not parse source pointer from field, check the format (value was: '%s')!",
                 ptrStr));
       }
-      pointer.sources.forEach(this::validateSource);
-
-      // Regions contained in source pointers are defined by byte offsets.
-      // We need to convert these to Java character offsets, so they can be used by the filter.
-      // This is very expensive, but we need this since all IO from here on out is character-based.
-      toCharOffsets(pointer);
+      pointer.sources.forEach(src -> validateSource(src, pointer.getFiles()));
 
       if (pointer.sources.isEmpty()) {
         throw new RuntimeException(
@@ -75,12 +68,17 @@ public class ExternalUtf8ContentFilterFactory extends CharFilterFactory {
                 + "Pointer was: "
                 + ptrStr);
       }
-      Reader r =
-          Channels.newReader(
-              pointer.getReader(512 * 1024, 0).getByteChannel(), StandardCharsets.UTF_8.name());
-      List<SourcePointer.Region> charRegions =
-          pointer.sources.stream().flatMap(s -> s.regions.stream()).collect(Collectors.toList());
-      return new ExternalUtf8ContentFilter(new BufferedReader(r), charRegions, ptrStr);
+      // Regions contained in source pointers are defined by byte offsets, the filter maps them to
+      // character offsets while decoding the source.
+      SourceReader reader = pointer.getReader(512 * 1024, 0);
+      try {
+        List<FileMetadata> regionFiles = new ArrayList<>();
+        List<SourcePointer.Region> regions = toByteRegions(pointer, reader, regionFiles);
+        return new ExternalUtf8ContentFilter(reader, regions, regionFiles, ptrStr);
+      } catch (IOException | RuntimeException e) {
+        reader.close();
+        throw e;
+      }
     } catch (IOException e) {
       throw new RuntimeException(
           String.format(
@@ -89,12 +87,19 @@ public class ExternalUtf8ContentFilterFactory extends CharFilterFactory {
     }
   }
 
-  private void validateSource(Source src) {
+  private void validateSource(Source src, FileMetadataCache.Snapshot files) {
     // TODO: Check if sourcePath is located under one of the allowed base directories, else abort
     // TODO: Check if sourcePath's filename matches one of the allowed filename patterns, else abort
     if (src.type == SourceType.FILESYSTEM) {
-      File f = Paths.get(src.target).toFile();
-      if (!f.exists() || !f.canRead()) {
+      Path path = Paths.get(src.target);
+      boolean readable;
+      try {
+        files.get(path);
+        readable = Files.isReadable(path);
+      } catch (IOException e) {
+        readable = false;
+      }
+      if (!readable) {
         throw new SolrException(
             ErrorCode.BAD_REQUEST,
             String.format(
@@ -107,110 +112,60 @@ public class ExternalUtf8ContentFilterFactory extends CharFilterFactory {
     }
   }
 
-  private static long getUtf8DecodedLength(SeekableByteChannel chan, ByteBuffer buf, long numBytes)
-      throws IOException {
-    long numRead = 0;
-    long decodedLength = 0;
-    while (numRead < numBytes) {
-      if (buf.remaining() > (numBytes - numRead)) {
-        buf.limit((int) (numBytes - numRead));
+  /**
+   * Convert the regions of all sources to byte offsets relative to the beginning of the first
+   * source, skipping the byte order marks at the beginning of files.
+   *
+   * @param regionFiles receives the metadata of the file for every region that spans a whole file
+   *     whose encoding is not known yet, {@code null} for all other regions
+   */
+  private static List<SourcePointer.Region> toByteRegions(
+      SourcePointer ptr, SourceReader reader, List<FileMetadata> regionFiles) throws IOException {
+    List<SourcePointer.Region> byteRegions = new ArrayList<>();
+    ByteBuffer bomBuf = ByteBuffer.allocate(3);
+    // Byte offset of the current file from the beginning of the first file
+    int baseOffset = 0;
+    for (Source src : ptr.sources) {
+      // Same metadata as the reader, the region boundaries have to match the file that is read
+      FileMetadata metadata = ptr.getFiles().get(Paths.get(src.target));
+      int size;
+      int nextBaseOffset;
+      try {
+        size = Math.toIntExact(metadata.getSize());
+        nextBaseOffset = Math.addExact(baseOffset, size);
+      } catch (ArithmeticException e) {
+        throw new IOException(
+            String.format(
+                Locale.US, "Sources are too large, only 2GiB are supported: %s", src.target));
       }
-      int read = chan.read(buf);
-      if (read < 0) {
-        break;
+      boolean ascii = src.isAscii || Boolean.TRUE.equals(metadata.isAscii());
+      List<SourcePointer.Region> regions =
+          src.regions.isEmpty() ? ImmutableList.of(new SourcePointer.Region(0, size)) : src.regions;
+      for (SourcePointer.Region region : regions) {
+        int start = region.start;
+        boolean hasBom = false;
+        if (start == 0 && !ascii && hasBom(reader, baseOffset, bomBuf)) {
+          // Skip the BOM at the start of a file, if present
+          start = 3;
+          hasBom = true;
+          metadata.setAscii(false);
+        }
+        int end = region.end < 0 ? size : Math.min(region.end, size);
+        byteRegions.add(
+            new SourcePointer.Region(baseOffset + start, baseOffset + Math.max(start, end)));
+        boolean wholeFile = region.start == 0 && end == size;
+        regionFiles.add(wholeFile && !hasBom && metadata.isAscii() == null ? metadata : null);
       }
-      numRead += read;
-      buf.flip();
-      decodedLength += Utf8.decodedLength(buf);
-      buf.clear();
-    }
-    if (numRead < numBytes) {
-      throw new IOException(
-          String.format(
-              Locale.US,
-              "Read fewer bytes than expected (%d vs %d), check your source pointer!",
-              numRead,
-              numBytes));
+      baseOffset = nextBaseOffset;
     }
-    return decodedLength;
+    return byteRegions;
   }
 
-  private void toCharOffsets(SourcePointer ptr) throws IOException {
-    int byteOffset = 0;
-    int charOffset = 0;
-    ByteBuffer buf = ByteBuffer.allocateDirect(1024 * 1024 /* 1 MiB */);
-    // TODO: Use a queue for the file sources so we don't have to read until the end of the last
-    //       file every time
-    // TODO: Think about building the UTF8 -> UTF16 offset map right here if the mapping part should
-    //       become a bottle neck
-    for (SourcePointer.Source src : ptr.sources) {
-      SourceReader reader = src.getReader(512 * 1024, 0);
-      try {
-        SeekableByteChannel chan = reader.getByteChannel();
-        final int size = (int) chan.size();
-
-        int bomOffset = 0;
-        if (!src.isAscii) {
-          // Check for BOM without modifying channel position, we need to skip it as to not break
-          // mult-file parsing
-          ByteBuffer bomBuf = ByteBuffer.allocate(3);
-          chan.read(bomBuf);
-          chan.position(0);
-          bomBuf.flip();
-          if (bomBuf.equals(ByteBuffer.wrap(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}))) {
-            bomOffset = 3;
-          }
-        }
-
-        // Byte offset of the current file from the beginning of the first file
-        final int baseOffset = byteOffset;
-        if (src.regions.isEmpty()) {
-          src.regions = ImmutableList.of(new SourcePointer.Region(0, size));
-        }
-        for (SourcePointer.Region region : src.regions) {
-          if (src.isAscii) {
-            // Optimization for pure-ASCII sources, where we don't need to do any mapping
-            region.start += baseOffset;
-            region.end = Math.min(region.end + baseOffset, size + baseOffset);
-            continue;
-          }
-          if (region.start == 0) {
-            // Skip the BOM at the start of a file, if present
-            region.start += bomOffset;
-          }
-          // Make region offsets relative to the beginning of the first file
-          region.start += baseOffset;
-          if (region.end < 0) {
-            region.end = size;
-          }
-          region.end = Math.min(region.end + baseOffset, size + baseOffset);
-          // Read until the start of the region
-          if (byteOffset != region.start) {
-            // Read the data between the current offset and the start of the region
-            int len = region.start - byteOffset;
-            charOffset += (int) getUtf8DecodedLength(chan, buf, len);
-            byteOffset += len;
-          }
-
-          int regionSize = region.end - region.start;
-          region.start = charOffset;
-          region.startOffset = byteOffset;
-          // Read region, determine character offset of region end
-          charOffset += (int) getUtf8DecodedLength(chan, buf, regionSize);
-          byteOffset += regionSize;
-          region.end = charOffset;
-        }
-        // Determine character offset of the end of the file
-        if (src.isAscii) {
-          byteOffset += size;
-        } else if (byteOffset != baseOffset + size) {
-          int len = (baseOffset + size) - byteOffset;
-          charOffset += (int) getUtf8DecodedLength(chan, buf, len);
-          byteOffset += len;
-        }
-      } finally {
-        reader.close();
-      }
-    }
+  private static boolean hasBom(SourceReader reader, int offset, ByteBuffer bomBuf)
+      throws IOException {
+    bomBuf.clear();
+    reader.readBytes(bomBuf, offset);
+    bomBuf.flip();
+    return bomBuf.equals(ByteBuffer.wrap(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}));
   }
 }
@@ -1,13 +1,10 @@
 package solrocr;
 
-import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
-import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
-import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.formats.OcrFormats;
 import com.github.dbmdz.solrocr.lucene.filters.OcrCharFilter;
 import com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter;
 import com.github.dbmdz.solrocr.model.OcrFormat;
 import com.github.dbmdz.solrocr.reader.PeekingReader;
-import com.google.common.collect.ImmutableSet;
 import java.io.Reader;
 import java.util.Map;
 import org.apache.lucene.analysis.CharFilterFactory;
@@ -15,6 +12,10 @@ import org.apache.lucene.analysis.CharFilterFactory;
 /**
  * A CharFilterFactory that detects the OCR format from the input and creates the correct CharFilter
  * instance to convert the input OCR to plaintext.
+ *
+ * <p>If all documents in the field have the same format, it can be declared with the {@code
+ * format} argument ({@code hocr}, {@code alto} or {@code miniocr}). This skips the detection, both
+ * during indexing and highlighting.
  */
 public class OcrCharFilterFactory extends CharFilterFactory {
   public static final String ALTERNATIVE_MARKER = "\u2060\u2060";
@@ -24,14 +25,19 @@ public class OcrCharFilterFactory extends CharFilterFactory {
 
   private final boolean expandAlternatives;
   private final boolean fixMarkup;
-
-  private static final ImmutableSet<OcrFormat> FORMATS =
-      ImmutableSet.of(new HocrFormat(), new AltoFormat(), new MiniOcrFormat());
+  private final OcrFormat format;
 
   public OcrCharFilterFactory(Map<String, String> args) {
     super(args);
     this.expandAlternatives = "true".equals(args.get("expandAlternatives"));
     this.fixMarkup = "true".equals(args.get("fixMarkup"));
+    String formatName = args.get("format");
+    this.format = formatName != null ? OcrFormats.forName(formatName) : null;
+  }
+
+  /** Get the declared format of the field, {@code null} if it is detected from the input. */
+  public OcrFormat getFormat() {
+    return format;
   }
 
   @Override
@@ -42,14 +48,11 @@ public class OcrCharFilterFactory extends CharFilterFactory {
       // Empty document, no special treatment necessary
       return OcrCharFilter.nopFilter();
     }
-    OcrFormat fmt =
-        FORMATS.stream()
-            .filter(f -> f.hasFormat(peeker.peekBeginning()))
-            .findFirst()
-            .orElseThrow(
-                () ->
-                    new RuntimeException(
-                        "Could not determine OCR format from chunk: " + peeker.peekBeginning()));
+    OcrFormat fmt = format != null ? format : OcrFormats.detect(peeker.peekBeginning());
+    if (fmt == null) {
+      throw new RuntimeException(
+          "Could not determine OCR format from chunk: " + peeker.peekBeginning());
+    }
     Reader formatFilter = fmt.filter(peeker, expandAlternatives);
     if (formatFilter == null) {
       return OcrCharFilter.nopFilter();
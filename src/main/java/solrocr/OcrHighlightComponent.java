@@ -1,6 +1,13 @@
 package solrocr;
 
+import com.github.dbmdz.solrocr.breaklocator.BlockOffsetIndexCache;
+import com.github.dbmdz.solrocr.lucene.SourcePointerCache;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.ReaderMode;
+import com.github.dbmdz.solrocr.reader.SectionCache;
+import com.github.dbmdz.solrocr.solr.OcrHighlightMetrics;
 import com.github.dbmdz.solrocr.solr.OcrHighlightParams;
+import com.github.dbmdz.solrocr.solr.OcrHighlighterConfig;
 import com.github.dbmdz.solrocr.solr.SolrOcrHighlighter;
 import com.google.common.base.Strings;
 import java.io.IOException;
@@ -25,6 +32,7 @@ import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.SearchComponent;
 import org.apache.solr.handler.component.ShardRequest;
 import org.apache.solr.handler.component.ShardResponse;
+import org.apache.solr.metrics.SolrMetricsContext;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QParserPlugin;
@@ -44,17 +52,31 @@ public class OcrHighlightComponent extends SearchComponent
 
   private PluginInfo info;
   private SolrOcrHighlighter ocrHighlighter;
+  private OcrHighlightMetrics metrics;
 
   @Override
   public String getDescription() {
     return "OCR Highlighting";
   }
 
+  @Override
+  public Category getCategory() {
+    return Category.HIGHLIGHTER;
+  }
+
   @Override
   public void init(PluginInfo info) {
     this.info = info;
   }
 
+  @Override
+  public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+    // Solr initializes the metrics of a plugin before the core is informed about it
+    super.initializeMetrics(parentContext, scope);
+    this.metrics =
+        new OcrHighlightMetrics(this.solrMetricsContext, getCategory().toString(), scope);
+  }
+
   @Override
   public void prepare(ResponseBuilder rb) throws IOException {
     SolrParams params = rb.req.getParams();
@@ -102,12 +124,150 @@ public class OcrHighlightComponent extends SearchComponent
       maxSectionCacheSize = sectionReadSize * 10;
     }
 
+    SectionCache sharedSectionCache = null;
+    long sharedSectionCacheSize =
+        Long.parseLong(info.attributes.getOrDefault("sharedSectionCacheSizeMiB", "0"))
+            * 1024
+            * 1024;
+    if (sharedSectionCacheSize > 0) {
+      SectionCache.EvictionPolicy evictionPolicy;
+      try {
+        evictionPolicy =
+            SectionCache.EvictionPolicy.parse(
+                info.attributes.getOrDefault("sharedSectionCacheEvictionPolicy", "lru"));
+      } catch (IllegalArgumentException e) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "Invalid sharedSectionCacheEvictionPolicy, must be one of 'lru', "
+                + "'expire_after_access' or 'expire_after_write'",
+            e);
+      }
+      long ttlSeconds =
+          Long.parseLong(info.attributes.getOrDefault("sharedSectionCacheTtlSeconds", "-1"));
+      if (evictionPolicy != SectionCache.EvictionPolicy.LRU && ttlSeconds <= 0) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "sharedSectionCacheTtlSeconds must be > 0 for eviction policy " + evictionPolicy);
+      }
+      // Shared by all cores, so the memory budget applies to the whole node
+      sharedSectionCache =
+          SectionCache.getShared(sharedSectionCacheSize, evictionPolicy, ttlSeconds);
+      if (!sharedSectionCache.hasConfiguration(
+          sharedSectionCacheSize, evictionPolicy, ttlSeconds)) {
+        log.warn(
+            "Shared section cache was already configured by another core, ignoring "
+                + "sharedSectionCacheSizeMiB, sharedSectionCacheEvictionPolicy and "
+                + "sharedSectionCacheTtlSeconds of this core");
+      }
+    }
+
+    ReaderMode readerMode;
+    try {
+      readerMode = ReaderMode.parse(info.attributes.getOrDefault("readerMode", "channel"));
+    } catch (IllegalArgumentException e) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Invalid readerMode, must be one of 'channel' or 'mmap'",
+          e);
+    }
+
+    BlockOffsetIndexCache blockIndexCache = null;
+    BlockOffsetIndexCache.Mode blockIndexMode;
+    try {
+      blockIndexMode =
+          BlockOffsetIndexCache.Mode.parse(info.attributes.getOrDefault("blockIndexMode", "none"));
+    } catch (IllegalArgumentException e) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Invalid blockIndexMode, must be one of 'none', 'memory' or 'sidecar'",
+          e);
+    }
+    if (blockIndexMode != BlockOffsetIndexCache.Mode.NONE) {
+      long blockIndexCacheSize =
+          Long.parseLong(info.attributes.getOrDefault("blockIndexCacheSizeMiB", "64"))
+              * 1024
+              * 1024;
+      if (blockIndexCacheSize <= 0) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "Invalid blockIndexCacheSizeMiB, must be > 0: " + blockIndexCacheSize);
+      }
+      // Shared by all cores, so the memory budget applies to the whole node
+      blockIndexCache = BlockOffsetIndexCache.getShared(blockIndexMode, blockIndexCacheSize);
+      if (!blockIndexCache.hasConfiguration(blockIndexMode, blockIndexCacheSize)) {
+        log.warn(
+            "Block index cache was already configured by another core, ignoring "
+                + "blockIndexMode and blockIndexCacheSizeMiB of this core");
+      }
+    }
+
+    int numPrefetchThreads =
+        Integer.parseInt(info.attributes.getOrDefault("numPrefetchThreads", "0"));
+    if (numPrefetchThreads < 0) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Invalid numPrefetchThreads, must be >= 0: " + numPrefetchThreads);
+    }
+
+    long pointerCacheSize =
+        Long.parseLong(info.attributes.getOrDefault("pointerCacheSize", "100000"));
+    if (pointerCacheSize < 0) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Invalid pointerCacheSize, must be >= 0: " + pointerCacheSize);
+    }
+    SourcePointerCache pointerCache = null;
+    if (pointerCacheSize > 0) {
+      // Shared by all cores, the entries are keyed by segment
+      pointerCache = SourcePointerCache.getShared(pointerCacheSize);
+      if (!pointerCache.hasConfiguration(pointerCacheSize)) {
+        log.warn(
+            "Source pointer cache was already configured by another core, ignoring "
+                + "pointerCacheSize={}",
+            pointerCacheSize);
+      }
+    }
+
+    long fileMetadataCacheSize =
+        Long.parseLong(
+            info.attributes.getOrDefault(
+                "fileMetadataCacheSize", String.valueOf(FileMetadataCache.DEFAULT_MAX_ENTRIES)));
+    if (fileMetadataCacheSize < 0) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Invalid fileMetadataCacheSize, must be >= 0: " + fileMetadataCacheSize);
+    }
+    // The cache is shared with the indexing chain, so it is configured for the whole node
+    if (!FileMetadataCache.configureShared(fileMetadataCacheSize)) {
+      log.warn(
+          "File metadata cache was already configured by another core, ignoring "
+              + "fileMetadataCacheSize={}",
+          fileMetadataCacheSize);
+    }
+
+    // Name of a user cache in the <query> section of solrconfig.xml
+    String snippetCacheName = info.attributes.get("snippetCacheName");
+
+    if (metrics == null) {
+      metrics = new OcrHighlightMetrics();
+    }
     this.ocrHighlighter =
         new SolrOcrHighlighter(
-            numHlThreads,
-            maxQueuedPerThread,
-            sectionReadSize,
-            (int) Math.ceil((double) maxSectionCacheSize / sectionReadSize));
+            OcrHighlighterConfig.builder()
+                .numHlThreads(numHlThreads)
+                .maxQueuedPerThread(maxQueuedPerThread)
+                .readerSectionSize(sectionReadSize)
+                .readerMaxCacheEntries(
+                    (int) Math.ceil((double) maxSectionCacheSize / sectionReadSize))
+                .sectionCache(sharedSectionCache)
+                .readerMode(readerMode)
+                .blockIndexCache(blockIndexCache)
+                .numPrefetchThreads(numPrefetchThreads)
+                .metrics(metrics)
+                .snippetCacheName(snippetCacheName)
+                .pointerCache(pointerCache)
+                .build());
+    metrics.registerGauges(ocrHighlighter);
   }
 
   @Override
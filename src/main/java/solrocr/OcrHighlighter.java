@@ -24,30 +24,39 @@
  */
 package solrocr;
 
+import com.github.dbmdz.solrocr.breaklocator.BlockOffsetIndexCache;
 import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
 import com.github.dbmdz.solrocr.breaklocator.ContextBreakLocator;
-import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
-import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
-import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.formats.IndexedOcrFormat;
+import com.github.dbmdz.solrocr.formats.OcrFormats;
+import com.github.dbmdz.solrocr.lucene.HighlightTimings;
 import com.github.dbmdz.solrocr.lucene.OcrFieldHighlighter;
 import com.github.dbmdz.solrocr.lucene.OcrPassageFormatter;
 import com.github.dbmdz.solrocr.lucene.OcrPassageScorer;
+import com.github.dbmdz.solrocr.lucene.SourcePointerCache;
 import com.github.dbmdz.solrocr.model.OcrBlock;
 import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.model.OcrHighlightProfile;
 import com.github.dbmdz.solrocr.model.OcrHighlightResult;
 import com.github.dbmdz.solrocr.model.OcrSnippet;
 import com.github.dbmdz.solrocr.model.SourcePointer;
 import com.github.dbmdz.solrocr.reader.ExitingSourceReader;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
 import com.github.dbmdz.solrocr.reader.LegacyBaseCompositeReader;
+import com.github.dbmdz.solrocr.reader.ReaderMode;
+import com.github.dbmdz.solrocr.reader.SectionCache;
 import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.github.dbmdz.solrocr.reader.StringSourceReader;
+import com.github.dbmdz.solrocr.solr.OcrHighlightMetrics;
 import com.github.dbmdz.solrocr.solr.OcrHighlightParams;
+import com.github.dbmdz.solrocr.solr.OcrHighlighterConfig;
+import com.github.dbmdz.solrocr.solr.OcrSnippetCache;
 import com.github.dbmdz.solrocr.util.TimeAllowedLimit;
-import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -63,6 +72,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharFilterFactory;
 import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.index.BaseCompositeReader;
 import org.apache.lucene.index.ExitableDirectoryReader;
@@ -87,9 +97,12 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.InPlaceMergeSorter;
 import org.apache.lucene.util.Version;
 import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.solr.analysis.TokenizerChain;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.HighlightParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.SchemaField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -101,9 +114,6 @@ public class OcrHighlighter extends UnifiedHighlighter {
 
   private static final Logger log = LoggerFactory.getLogger(OcrHighlighter.class);
 
-  private static final Set<OcrFormat> FORMATS =
-      ImmutableSet.of(new HocrFormat(), new AltoFormat(), new MiniOcrFormat());
-
   private static final CharacterRunAutomaton[] ZERO_LEN_AUTOMATA_ARRAY_LEGACY =
       new CharacterRunAutomaton[0];
   private static final IndexSearcher EMPTY_INDEXSEARCHER;
@@ -238,6 +248,15 @@ public class OcrHighlighter extends UnifiedHighlighter {
   private final SolrQueryRequest req;
   private final int readerSectionSize;
   private final int readerMaxCacheEntries;
+  private final SectionCache sectionCache;
+  private final ReaderMode readerMode;
+  private final BlockOffsetIndexCache blockIndexCache;
+  private final Executor prefetchExecutor;
+  private final OcrHighlightMetrics metrics;
+  private final OcrSnippetCache snippetCache;
+  private final SourcePointerCache pointerCache;
+  /** Metadata of the OCR files, every file is only checked once per request */
+  private final FileMetadataCache.Snapshot files = FileMetadataCache.getShared().newSnapshot();
 
   public OcrHighlighter(
       IndexSearcher indexSearcher,
@@ -245,11 +264,47 @@ public class OcrHighlighter extends UnifiedHighlighter {
       SolrQueryRequest req,
       int readerSectionSize,
       int readerMaxCacheEntries) {
+    this(
+        indexSearcher,
+        indexAnalyzer,
+        req,
+        OcrHighlighterConfig.builder()
+            .readerSectionSize(readerSectionSize)
+            .readerMaxCacheEntries(readerMaxCacheEntries)
+            .build(),
+        null,
+        null);
+  }
+
+  /**
+   * Create a highlighter for a single request.
+   *
+   * @param config the configuration of the highlighting component
+   * @param prefetchExecutor executor to load sections ahead of time, {@code null} to load them on
+   *     demand
+   * @param snippetCache cache for the finished snippets of the request, {@code null} if disabled
+   */
+  public OcrHighlighter(
+      IndexSearcher indexSearcher,
+      Analyzer indexAnalyzer,
+      SolrQueryRequest req,
+      OcrHighlighterConfig config,
+      Executor prefetchExecutor,
+      OcrSnippetCache snippetCache) {
     super(indexSearcher, indexAnalyzer);
     this.params = req.getParams();
     this.req = req;
-    this.readerSectionSize = readerSectionSize;
-    this.readerMaxCacheEntries = readerMaxCacheEntries;
+    this.readerSectionSize = config.getReaderSectionSize();
+    this.readerMaxCacheEntries = config.getReaderMaxCacheEntries();
+    this.sectionCache = config.getSectionCache();
+    this.readerMode = config.getReaderMode();
+    this.blockIndexCache = config.getBlockIndexCache();
+    this.prefetchExecutor = prefetchExecutor;
+    this.metrics = config.getMetrics();
+    this.snippetCache = snippetCache;
+    // Without a shared cache, pointers are still read from doc values, but parsed every time
+    this.pointerCache =
+        config.getPointerCache() != null ? config.getPointerCache() : SourcePointerCache.DISABLED;
   }
 
   @Override
@@ -336,12 +391,15 @@ public class OcrHighlighter extends UnifiedHighlighter {
     // Init field highlighters (where most of the highlight logic lives, and on a per field basis)
     Set<Term> queryTerms = extractTerms(query);
     OcrFieldHighlighter[] fieldHighlighters = new OcrFieldHighlighter[fields.length];
+    // Resolved up front, so invalid parameters fail the request instead of every document
+    OcrFormat[] declaredFormats = new OcrFormat[fields.length];
     int numTermVectors = 0;
     int numPostings = 0;
     for (int f = 0; f < fields.length; f++) {
       OcrFieldHighlighter fieldHighlighter =
           getOcrFieldHighlighter(fields[f], query, queryTerms, maxPassages[f]);
       fieldHighlighters[f] = fieldHighlighter;
+      declaredFormats[f] = getDeclaredFormat(fields[f]);
 
       switch (fieldHighlighter.getOffsetSource()) {
         case TERM_VECTORS:
@@ -369,13 +427,20 @@ public class OcrHighlighter extends UnifiedHighlighter {
     // [fieldIdx][docIdInIndex] of highlightDoc result
     OcrSnippet[][][] highlightDocsInByField = new OcrSnippet[fields.length][sortedDocIds.length][];
     int[][] snippetCountsByField = new int[fields.length][sortedDocIds.length];
+    // [fieldIdx][docIdInIndex] of the highlighting profile, only if requested
+    OcrHighlightProfile[][] profilesByField =
+        OcrHighlightParams.isDebug(params)
+            ? new OcrHighlightProfile[fields.length][sortedDocIds.length]
+            : null;
     // Highlight in doc batches determined by loadFieldValues (consumes from docIdIter)
     DocIdSetIterator docIdIter = asDocIdSetIterator(sortedDocIds);
 
     List<CompletableFuture<Void>> hlFuts = new ArrayList<>();
     docLoop:
     for (int batchDocIdx = 0; batchDocIdx < sortedDocIds.length; ) {
+      long loadStartNs = System.nanoTime();
       List<SourceReader[]> fieldValsByDoc = loadOcrFieldValues(fields, docIdIter);
+      metrics.record(HighlightTimings.Phase.LOAD_FIELD_VALUES, System.nanoTime() - loadStartNs);
 
       // Highlight in per-field order first, then by doc (better I/O pattern)
       for (int fieldIdx = 0; fieldIdx < fields.length; fieldIdx++) {
@@ -391,6 +456,23 @@ public class OcrHighlighter extends UnifiedHighlighter {
           if (content == null) {
             continue;
           }
+          int docInIndex = docInIndexes[docIdx]; // original input order
+          assert resultByDocIn[docInIndex] == null;
+
+          // Profiles are only available for documents that are actually highlighted, so the
+          // cache is bypassed for debug requests
+          OcrSnippetCache.Key cacheKey = null;
+          if (snippetCache != null && profilesByField == null) {
+            cacheKey =
+                snippetCache.getKey(indexDocId, fields[fieldIdx], query, content.getPointer());
+            OcrSnippetCache.Entry cached = cacheKey != null ? snippetCache.get(cacheKey) : null;
+            if (cached != null) {
+              resultByDocIn[docInIndex] = cached.getSnippets();
+              snippetCountsByField[fieldIdx][docInIndex] = cached.getSnippetCount();
+              closeContent(content);
+              continue;
+            }
+          }
           if (timeout != null) {
             // We only check against the timeout when reading our field content (both from disk and
             // from memory), since this is a process that is performed at multiple points in the
@@ -412,9 +494,6 @@ public class OcrHighlighter extends UnifiedHighlighter {
             leafReader = leafReaderContext.reader();
             readerDocId -= leafReaderContext.docBase; // adjust 'doc' to be within this leaf reader
           }
-          int docInIndex = docInIndexes[docIdx]; // original input order
-          assert resultByDocIn[docInIndex] == null;
-
           int snippetLimit =
               Math.max(
                   maxPassages[fieldIdx],
@@ -424,20 +503,41 @@ public class OcrHighlighter extends UnifiedHighlighter {
           final int readerDocIdFinal = readerDocId;
           final int fieldIdxFinal = fieldIdx;
           final SourceReader contentFinal = content;
+          final OcrSnippetCache.Key cacheKeyFinal = cacheKey;
+          final OcrHighlightProfile profile;
+          if (profilesByField != null) {
+            profile = new OcrHighlightProfile(metrics);
+            profilesByField[fieldIdx][docInIndex] = profile;
+          } else {
+            profile = null;
+          }
           Runnable hlFn =
               () -> {
                 try {
-                  highlightDocField(
-                      indexDocId,
-                      readerDocIdFinal,
-                      docInIndex,
-                      fieldIdxFinal,
-                      contentFinal,
-                      fieldHighlighter,
-                      leafReader,
-                      snippetLimit,
-                      resultByDocIn,
-                      snippetCountsByField);
+                  if (profile != null) {
+                    profile.start();
+                  }
+                  boolean complete =
+                      highlightDocField(
+                          indexDocId,
+                          readerDocIdFinal,
+                          docInIndex,
+                          fieldIdxFinal,
+                          contentFinal,
+                          fieldHighlighter,
+                          declaredFormats[fieldIdxFinal],
+                          leafReader,
+                          snippetLimit,
+                          resultByDocIn,
+                          snippetCountsByField,
+                          profile);
+                  // Snippets are missing if passages failed to format, don't keep those around
+                  if (cacheKeyFinal != null && complete) {
+                    snippetCache.put(
+                        cacheKeyFinal,
+                        resultByDocIn[docInIndex],
+                        snippetCountsByField[fieldIdxFinal][docInIndex]);
+                  }
                 } catch (ExitingSourceReader.ExitingSourceReaderException
                     | ExitableDirectoryReader.ExitingReaderException e) {
                   resultByDocIn[docInIndex] = null;
@@ -465,14 +565,13 @@ public class OcrHighlighter extends UnifiedHighlighter {
                         e);
                   }
                 } finally {
-                  try {
-                    contentFinal.close();
-                  } catch (Exception e) {
-                    log.warn(
-                        "Encountered error while closing content iterator for {}: {}",
-                        contentFinal.getPointer(),
-                        e.getMessage());
+                  if (profile != null) {
+                    profile.finish(contentFinal.getReadStats());
+                  }
+                  if (contentFinal.getReadStats() != null) {
+                    metrics.recordReads(getSourceType(contentFinal), contentFinal.getReadStats());
                   }
+                  closeContent(contentFinal);
                 }
               };
           try {
@@ -480,6 +579,7 @@ public class OcrHighlighter extends UnifiedHighlighter {
             hlFuts.add(CompletableFuture.runAsync(hlFn, hlThreadPool));
           } catch (RejectedExecutionException rejected) {
             // If the pool is full, run the task synchronously on the current thread
+            metrics.recordRejectedExecution();
             try {
               hlFn.run();
             } catch (ExitingSourceReader.ExitingSourceReaderException
@@ -513,6 +613,9 @@ public class OcrHighlighter extends UnifiedHighlighter {
         }
       }
     }
+    if (respHeader.get(PARTIAL_OCR_HIGHLIGHTS) != null) {
+      metrics.recordPartialHighlights();
+    }
 
     OcrHighlightResult[] out = new OcrHighlightResult[sortedDocIds.length];
     for (int d = 0; d < sortedDocIds.length; d++) {
@@ -523,6 +626,9 @@ public class OcrHighlighter extends UnifiedHighlighter {
         }
         hl.addSnippetsForField(fields[f], highlightDocsInByField[f][d]);
         hl.addSnippetCountForField(fields[f], snippetCountsByField[f][d]);
+        if (profilesByField != null) {
+          hl.addProfileForField(fields[f], profilesByField[f][d]);
+        }
       }
       if (Arrays.stream(fields).allMatch(f -> hl.getFieldSnippets(f) == null)) {
         continue;
@@ -532,24 +638,45 @@ public class OcrHighlighter extends UnifiedHighlighter {
     return out;
   }
 
-  private void highlightDocField(
+  /**
+   * Highlight a single field of a document.
+   *
+   * @return whether the snippets are complete, i.e. no passages failed to format due to errors
+   */
+  private boolean highlightDocField(
       int indexDocId, // index-wide docId
       int readerDocId, // docId relative to the leaf reader
       int docInIndex,
       int fieldIdx,
       SourceReader reader,
       OcrFieldHighlighter fieldHighlighter,
+      OcrFormat declaredFormat,
       LeafReader leafReader,
       int snippetLimit,
       OcrSnippet[][] resultByDocIn,
-      int[][] snippetCountsByField)
+      int[][] snippetCountsByField,
+      OcrHighlightProfile profile)
       throws IOException {
     if (reader == null) {
-      return;
+      return true;
+    }
+    HighlightTimings timings = profile != null ? profile : metrics;
+    // Pre-scoring only reads the OCR around the best candidates, so don't load it around all of
+    // the matches
+    boolean preScorePassages = params.getBool(OcrHighlightParams.PRE_SCORE_PASSAGES, false);
+    // Looking up the offsets is an extra pass over the postings, so only do it if the background
+    // threads were configured or it was requested explicitly
+    boolean preload =
+        prefetchExecutor != null || params.getBool(OcrHighlightParams.PRELOAD_SECTIONS, false);
+    if (preload && params.get(OcrHighlightParams.PAGE_ID) == null && !preScorePassages) {
+      preloadSections(reader, fieldHighlighter, leafReader, readerDocId, snippetLimit, timings);
     }
-    OcrFormat ocrFormat = getFormat(reader);
+    OcrFormat ocrFormat = declaredFormat != null ? declaredFormat : getFormat(reader);
     if (ocrFormat == null) {
-      return;
+      return true;
+    }
+    if (blockIndexCache != null) {
+      ocrFormat = new IndexedOcrFormat(ocrFormat, blockIndexCache);
     }
 
     String limitBlockParam = params.get(OcrHighlightParams.LIMIT_BLOCK, "block");
@@ -566,6 +693,10 @@ public class OcrHighlighter extends UnifiedHighlighter {
     BreakLocator contextLocator = ocrFormat.getBreakLocator(reader, contextBlock);
     BreakLocator limitLocator =
         limitBlocks == null ? null : ocrFormat.getBreakLocator(reader, limitBlocks);
+    if (profile != null) {
+      contextLocator = profile.countProbes(contextLocator);
+      limitLocator = profile.countProbes(limitLocator);
+    }
     BreakLocator breakLocator =
         new ContextBreakLocator(
             contextLocator, limitLocator, params.getInt(OcrHighlightParams.CONTEXT_SIZE, 2));
@@ -588,53 +719,191 @@ public class OcrHighlighter extends UnifiedHighlighter {
             reader,
             params.get(OcrHighlightParams.PAGE_ID),
             snippetLimit,
-            scorePassages);
+            scorePassages,
+            preScorePassages,
+            timings);
     snippetCountsByField[fieldIdx][docInIndex] = fieldHighlighter.getNumMatches(indexDocId);
+    return formatter.getNumFailedPassages() == 0;
+  }
+
+  /**
+   * Load the OCR around the first matches of the document ahead of passage formation.
+   *
+   * <p>With a prefetch executor, the sections are loaded in the background while we determine the
+   * format and form the passages. Otherwise they are loaded right away if requested with {@code
+   * hl.ocr.preloadSections}, with reads of nearby sections merged into a single read. Without
+   * prefetching, this is skipped if there is a block index, since passages are then located
+   * without reading the OCR.
+   *
+   * <p>Only done if the offsets are available from the index, since running the analysis chain
+   * twice would cost more than we could ever save on I/O.
+   */
+  private void preloadSections(
+      SourceReader reader,
+      OcrFieldHighlighter fieldHighlighter,
+      LeafReader leafReader,
+      int readerDocId,
+      int snippetLimit,
+      HighlightTimings timings)
+      throws IOException {
+    OffsetSource offsetSource = fieldHighlighter.getOffsetSource();
+    if (reader.getPointer() == null
+        || (prefetchExecutor == null && blockIndexCache != null)
+        || (offsetSource != OffsetSource.POSTINGS
+            && offsetSource != OffsetSource.POSTINGS_WITH_TERM_VECTORS
+            && offsetSource != OffsetSource.TERM_VECTORS)) {
+      return;
+    }
+    // Passages are only formed for the first `snippetLimit` matches
+    int[] matchOffsets =
+        fieldHighlighter.getMatchStartOffsets(leafReader, readerDocId, snippetLimit + 1, timings);
+    if (prefetchExecutor != null) {
+      reader.prefetch(matchOffsets, prefetchExecutor);
+    } else {
+      reader.loadSections(matchOffsets);
+    }
   }
 
   protected List<SourceReader[]> loadOcrFieldValues(String[] fields, DocIdSetIterator docIter)
       throws IOException {
+    // Fields whose pointers can be read from a doc values field instead of the stored fields
+    SourcePointerCache.Lookup[] pointerLookups = new SourcePointerCache.Lookup[fields.length];
+    // Pointers that were read from the stored fields
+    SourcePointerCache.Lookup[] storedLookups = new SourcePointerCache.Lookup[fields.length];
+    for (int fieldIdx = 0; fieldIdx < fields.length; fieldIdx++) {
+      String pointerField =
+          params.getFieldParam(fields[fieldIdx], OcrHighlightParams.POINTER_FIELD);
+      if (pointerField != null) {
+        pointerLookups[fieldIdx] =
+            pointerCache.newLookup(searcher.getIndexReader(), pointerField, files);
+      }
+      storedLookups[fieldIdx] =
+          pointerCache.newLookup(searcher.getIndexReader(), fields[fieldIdx], files);
+    }
+
     List<SourceReader[]> fieldValues = new ArrayList<>((int) docIter.cost());
     int docId;
     while ((docId = docIter.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-      DocumentStoredFieldVisitor docIdVisitor = new DocumentStoredFieldVisitor(fields);
       SourceReader[] ocrVals = new SourceReader[fields.length];
-      searcher.doc(docId, docIdVisitor);
+      DocumentStoredFieldVisitor docIdVisitor = null;
       for (int fieldIdx = 0; fieldIdx < fields.length; fieldIdx++) {
         String fieldName = fields[fieldIdx];
-        String fieldValue = docIdVisitor.getDocument().get(fieldName);
-        if (fieldValue == null) {
-          // No OCR content at all
-          ocrVals[fieldIdx] = null;
-          continue;
-        }
-        if (!SourcePointer.isPointer(fieldValue)) {
-          // OCR content as stored text
-          ocrVals[fieldIdx] = new StringSourceReader(fieldValue);
-          continue;
-        }
         SourcePointer sourcePointer = null;
+        String fieldValue = null;
         try {
-          sourcePointer = SourcePointer.parse(fieldValue);
+          if (pointerLookups[fieldIdx] != null) {
+            sourcePointer = pointerLookups[fieldIdx].get(docId);
+          }
+          if (sourcePointer == null) {
+            // No pointer in the doc values, the field is stored (e.g. as text)
+            if (docIdVisitor == null) {
+              docIdVisitor = new DocumentStoredFieldVisitor(fields);
+              searcher.doc(docId, docIdVisitor);
+            }
+            fieldValue = docIdVisitor.getDocument().get(fieldName);
+            if (fieldValue == null) {
+              // No OCR content at all
+              continue;
+            }
+            if (!SourcePointer.isPointer(fieldValue)) {
+              // OCR content as stored text
+              ocrVals[fieldIdx] = new StringSourceReader(fieldValue);
+              continue;
+            }
+            sourcePointer = storedLookups[fieldIdx].parse(docId, fieldValue);
+          }
         } catch (RuntimeException e) {
           log.error("Could not parse OCR pointer for document {}: {}", docId, fieldValue, e);
         }
         if (sourcePointer == null) {
           // None of the files in the pointer exist or were readable, log should have warnings
-          ocrVals[fieldIdx] = null;
           continue;
         }
-        ocrVals[fieldIdx] = sourcePointer.getReader(readerSectionSize, readerMaxCacheEntries);
+        try {
+          ocrVals[fieldIdx] =
+              sourcePointer.getReader(
+                  readerSectionSize, readerMaxCacheEntries, sectionCache, readerMode);
+        } catch (IOException e) {
+          // Cached pointers are not checked for the existence of their files
+          log.error("Could not open OCR files for document {}: {}", docId, sourcePointer, e);
+        }
       }
       fieldValues.add(ocrVals);
     }
     return fieldValues;
   }
 
+  private static void closeContent(SourceReader content) {
+    try {
+      content.close();
+    } catch (Exception e) {
+      log.warn(
+          "Encountered error while closing content iterator for {}: {}",
+          content.getPointer(),
+          e.getMessage());
+    }
+  }
+
+  /** Get the type of source external content is read from, for the metrics. */
+  private String getSourceType(SourceReader content) {
+    if (readerMode == ReaderMode.MMAP) {
+      return OcrHighlightMetrics.SOURCE_MMAP;
+    } else if (content.getPointer().sources.size() > 1) {
+      return OcrHighlightMetrics.SOURCE_MULTI_FILE;
+    } else {
+      return OcrHighlightMetrics.SOURCE_FILE;
+    }
+  }
+
+  /**
+   * Get the format that was declared for a field, either with the {@code hl.ocr.format} parameter
+   * or with the {@code format} argument of the {@link OcrCharFilterFactory} in the field type.
+   *
+   * @return the declared format or {@code null} if the format has to be detected
+   */
+  private OcrFormat getDeclaredFormat(String field) {
+    String formatName = params.getFieldParam(field, OcrHighlightParams.FORMAT);
+    if (formatName != null) {
+      try {
+        return OcrFormats.forName(formatName);
+      } catch (IllegalArgumentException e) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, e.getMessage());
+      }
+    }
+    SchemaField schemaField = req.getSchema().getFieldOrNull(field);
+    if (schemaField == null
+        || !(schemaField.getType().getIndexAnalyzer() instanceof TokenizerChain)) {
+      return null;
+    }
+    TokenizerChain chain = (TokenizerChain) schemaField.getType().getIndexAnalyzer();
+    for (CharFilterFactory factory : chain.getCharFilterFactories()) {
+      if (factory instanceof OcrCharFilterFactory) {
+        return ((OcrCharFilterFactory) factory).getFormat();
+      }
+    }
+    return null;
+  }
+
   private OcrFormat getFormat(SourceReader content) throws IOException {
+    // The format of a file is remembered in the file metadata, as long as the file doesn't change
+    FileMetadataCache.FileMetadata metadata = null;
+    if (content.getPointer() != null) {
+      metadata =
+          content
+              .getPointer()
+              .getFiles()
+              .get(Paths.get(content.getPointer().sources.get(0).target));
+      if (metadata.getFormat() != null) {
+        return metadata.getFormat();
+      }
+    }
     // Sample the first 4k characters to determine the format
     String sampleChunk = content.readAsciiString(0, Math.min(4096, content.length()));
-    return FORMATS.stream().filter(fmt -> fmt.hasFormat(sampleChunk)).findFirst().orElse(null);
+    OcrFormat format = OcrFormats.detect(sampleChunk);
+    if (metadata != null && format != null) {
+      metadata.setFormat(format);
+    }
+    return format;
   }
 
   /**
@@ -675,7 +944,8 @@ public class OcrHighlighter extends UnifiedHighlighter {
         getOffsetStrategy(offsetSource, components),
         getScorer(field),
         maxPassages,
-        getMaxNoHighlightPassages(field));
+        getMaxNoHighlightPassages(field),
+        metrics);
   }
 
   private OcrFieldHighlighter getOcrFieldHighlighterLegacy(
@@ -706,7 +976,8 @@ public class OcrHighlighter extends UnifiedHighlighter {
         getOffsetStrategy(offsetSource, components),
         getScorer(field),
         maxPassages,
-        getMaxNoHighlightPassages(field));
+        getMaxNoHighlightPassages(field),
+        metrics);
   }
 
   private CharacterRunAutomaton[] getAutomataLegacy(
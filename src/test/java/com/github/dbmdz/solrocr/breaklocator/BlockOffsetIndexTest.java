@@ -0,0 +1,142 @@
+package com.github.dbmdz.solrocr.breaklocator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.model.OcrBlock;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.model.OcrPageIndex;
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import com.github.dbmdz.solrocr.reader.FileSourceReader;
+import com.github.dbmdz.solrocr.reader.MultiFileSourceReader;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class BlockOffsetIndexTest {
+  private static final Path dataPath = Paths.get("src/test/resources/data");
+
+  static Stream<Arguments> documents() {
+    return Stream.of(
+        Arguments.of("miniocr.xml", new MiniOcrFormat(), new OcrBlock[] {OcrBlock.LINE}),
+        Arguments.of("miniocr.xml", new MiniOcrFormat(), new OcrBlock[] {OcrBlock.PAGE}),
+        Arguments.of(
+            "sn83032300_1881_12_29_3.xml", new AltoFormat(), new OcrBlock[] {OcrBlock.LINE}),
+        Arguments.of(
+            "sn83032300_1881_12_29_3.xml",
+            new AltoFormat(),
+            OcrBlock.getHierarchyFrom(OcrBlock.BLOCK).toArray(new OcrBlock[0])),
+        Arguments.of(
+            "sn83032300_1887_07_16_3.html", new HocrFormat(), new OcrBlock[] {OcrBlock.LINE}),
+        Arguments.of(
+            "sn83032300_1887_07_16_3.html",
+            new HocrFormat(),
+            OcrBlock.getHierarchyFrom(OcrBlock.BLOCK).toArray(new OcrBlock[0])));
+  }
+
+  /**
+   * Compare the locators at the beginning of all text nodes and ALTO {@code CONTENT} attributes,
+   * i.e. the offsets that term matches can start at.
+   */
+  private static void assertSameBreaks(BreakLocator expected, BreakLocator actual)
+      throws IOException {
+    SourceReader reader = actual.getText();
+    String text = reader.readAsciiString(0, reader.length());
+    List<Integer> offsets = new ArrayList<>();
+    for (int i = text.indexOf("CONTENT=\""); i >= 0; i = text.indexOf("CONTENT=\"", i + 1)) {
+      offsets.add(i + "CONTENT=\"".length());
+    }
+    for (int i = text.indexOf('>'); i >= 0 && i < text.length() - 1; i = text.indexOf('>', i + 1)) {
+      char next = text.charAt(i + 1);
+      if (next != '<' && !Character.isWhitespace(next)) {
+        offsets.add(i + 1);
+      }
+    }
+    assertThat(offsets).isNotEmpty();
+    for (int offset : offsets) {
+      assertThat(actual.following(offset))
+          .as("following(%d)", offset)
+          .isEqualTo(expected.following(offset));
+      assertThat(actual.preceding(offset))
+          .as("preceding(%d)", offset)
+          .isEqualTo(expected.preceding(offset));
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("documents")
+  void shouldLocateSameBreaksAsScanningLocator(
+      String fileName, OcrFormat format, OcrBlock[] blockTypes) throws IOException {
+    Path path = dataPath.resolve(fileName);
+    SourceReader reader = new FileSourceReader(path, null, 8 * 1024, 8);
+    BlockOffsetIndex index = BlockOffsetIndex.open(path, false);
+    BreakLocator actual = new OffsetIndexBreakLocator(reader, index.getBreaks(format, blockTypes));
+    assertSameBreaks(format.getBreakLocator(reader, blockTypes), actual);
+  }
+
+  @Test
+  void shouldConcatenateIndicesOfMultipleFiles() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(dataPath.resolve("alto_multi"), "1860-11-30*.xml")) {
+      stream.forEach(paths::add);
+    }
+    paths.sort(Comparator.comparing(Path::toString));
+    SourcePointer pointer =
+        SourcePointer.parse(
+            paths.stream()
+                .map(p -> p.toAbsolutePath().toString())
+                .collect(Collectors.joining("+")));
+    SourceReader reader = new MultiFileSourceReader(paths, pointer, 8 * 1024, 8);
+    OcrFormat format = new AltoFormat();
+    BlockOffsetIndexCache cache =
+        new BlockOffsetIndexCache(BlockOffsetIndexCache.Mode.MEMORY, 1024 * 1024);
+    BreakLocator actual = cache.getBreakLocator(format, reader, OcrBlock.LINE);
+    assertThat(actual).isInstanceOf(OffsetIndexBreakLocator.class);
+    assertThat(cache.size()).isEqualTo(paths.size());
+    assertSameBreaks(format.getBreakLocator(reader, OcrBlock.LINE), actual);
+  }
+
+  @Test
+  void shouldPersistIndexInSidecar(@TempDir Path tmpDir) throws IOException {
+    Path path = tmpDir.resolve("miniocr.xml");
+    Files.copy(dataPath.resolve("miniocr.xml"), path);
+    OcrFormat format = new MiniOcrFormat();
+    int[] breaks = BlockOffsetIndex.open(path, true).getBreaks(format, OcrBlock.LINE);
+    assertThat(BlockOffsetIndex.getSidecarPath(path)).exists();
+
+    BlockOffsetIndex reopened = BlockOffsetIndex.open(path, true);
+    assertThat(reopened.hasBreaks(format, OcrBlock.LINE)).isTrue();
+    assertThat(reopened.hasBreaks(format, OcrBlock.PAGE)).isFalse();
+    assertThat(reopened.getBreaks(format, OcrBlock.LINE)).isEqualTo(breaks);
+
+    OcrPageIndex pages = reopened.getPages(format);
+    assertThat(pages.size()).isGreaterThan(1);
+    OcrPageIndex persistedPages = BlockOffsetIndex.open(path, true).getPages(format);
+    for (int i = 0; i < pages.size(); i++) {
+      assertThat(persistedPages.getStart(i)).isEqualTo(pages.getStart(i));
+      assertThat(persistedPages.getPage(i)).isEqualTo(pages.getPage(i));
+    }
+
+    // Sidecars of modified files must not be used
+    Files.setLastModifiedTime(
+        path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 60_000));
+    assertThat(BlockOffsetIndex.open(path, true).hasBreaks(format, OcrBlock.LINE)).isFalse();
+  }
+}
@@ -0,0 +1,151 @@
+package com.github.dbmdz.solrocr.formats;
+
+import static com.github.dbmdz.solrocr.formats.OcrParser.END_HL;
+import static com.github.dbmdz.solrocr.formats.OcrParser.START_HL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.lucene.filters.SanitizingXmlFilter;
+import com.github.dbmdz.solrocr.model.OcrBox;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Test;
+
+class XmlFragmentReaderTest {
+  private static final OcrParser.ParsingFeature[] FEATURES = {
+    OcrParser.ParsingFeature.TEXT,
+    OcrParser.ParsingFeature.COORDINATES,
+    OcrParser.ParsingFeature.ALTERNATIVES,
+    OcrParser.ParsingFeature.HIGHLIGHTS,
+    OcrParser.ParsingFeature.PAGES
+  };
+
+  private static List<String> getFragments(String path, String lineMarker) throws IOException {
+    String doc =
+        new String(
+            Files.readAllBytes(Paths.get("src/test/resources/data", path)), StandardCharsets.UTF_8);
+    List<Integer> lineStarts = new ArrayList<>();
+    int idx = doc.indexOf(lineMarker);
+    while (idx >= 0) {
+      lineStarts.add(doc.lastIndexOf('<', idx));
+      idx = doc.indexOf(lineMarker, idx + 1);
+    }
+    List<String> fragments = new ArrayList<>();
+    for (int i = 0; i + 3 < lineStarts.size(); i += 7) {
+      fragments.add(doc.substring(lineStarts.get(i), lineStarts.get(i + 3)));
+    }
+    return fragments;
+  }
+
+  private static List<OcrBox> parse(OcrParser parser) {
+    return parser.stream().collect(Collectors.toList());
+  }
+
+  private static void assertSameAsSanitizedParse(OcrFormat format, List<String> fragments) {
+    assertThat(fragments).isNotEmpty();
+    for (String fragment : fragments) {
+      List<OcrBox> expected =
+          parse(
+              format.getParser(
+                  new SanitizingXmlFilter(new StringReader(fragment), true), FEATURES));
+      assertThat(parse(format.getFragmentParser(fragment, FEATURES)))
+          .as("Boxes parsed from fragment '%s'", fragment)
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void shouldParseMiniOcrFragments() throws IOException {
+    assertSameAsSanitizedParse(new MiniOcrFormat(), getFragments("miniocr.xml", "<l>"));
+  }
+
+  @Test
+  void shouldParseHocrFragments() throws IOException {
+    assertSameAsSanitizedParse(
+        new HocrFormat(), getFragments("sn83032300_1887_07_16_3.html", "\"ocr_line\""));
+  }
+
+  @Test
+  void shouldParseAltoFragments() throws IOException {
+    assertSameAsSanitizedParse(
+        new AltoFormat(), getFragments("sn83032300_1881_12_29_3.xml", "<TextLine "));
+  }
+
+  @Test
+  void shouldTrackHighlights() {
+    String fragment =
+        "<l><w x=\"0.1 0.1 0.1 0.1\">"
+            + START_HL
+            + "Grüße</w> <w x=\"0.2 0.1 0.1 0.1\">aus"
+            + END_HL
+            + "</w> <w x=\"0.3 0.1 0.1 0.1\">München</w></l>";
+    List<OcrBox> boxes = parse(new MiniOcrFormat().getFragmentParser(fragment, FEATURES));
+    assertThat(boxes)
+        .extracting(OcrBox::getText)
+        .containsExactly(START_HL + "Grüße", "aus" + END_HL, "München");
+    assertThat(boxes)
+        .extracting(OcrBox::getHighlightSpan)
+        .containsExactly(0, 0, OcrBox.NO_HIGHLIGHT_SPAN);
+  }
+
+  @Test
+  void shouldSanitizeUnbalancedTags() throws XMLStreamException {
+    XmlFragmentReader reader = new XmlFragmentReader("a</w></l><l><w>b&amp;c<br>d</w>");
+    // Leading text is outside of any element after the unmatched closing tags are removed
+    assertThatThrownBy(reader::next).isInstanceOf(XMLStreamException.class);
+
+    reader = new XmlFragmentReader("</w></l><l><w x='1'>b&amp;c<br>d</w><w/>");
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.SPACE);
+    assertThat(reader.getText()).isEqualTo("        ");
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.START_ELEMENT);
+    assertThat(reader.getLocalName()).isEqualTo("l");
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.START_ELEMENT);
+    assertThat(reader.getAttributeValue("", "x")).isEqualTo("1");
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.CHARACTERS);
+    assertThat(reader.getText()).isEqualTo("b&c    d");
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.END_ELEMENT);
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.START_ELEMENT);
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.END_ELEMENT);
+    assertThat(reader.getLocalName()).isEqualTo("w");
+    // Unclosed elements are closed at the end of the fragment
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.END_ELEMENT);
+    assertThat(reader.getLocalName()).isEqualTo("l");
+    assertThat(reader.next()).isEqualTo(XMLStreamConstants.END_DOCUMENT);
+    assertThat(reader.hasNext()).isFalse();
+  }
+
+  @Test
+  void shouldRejectMalformedMarkup() {
+    String[] malformed = {
+      "<l><w>AT&T</w></l>",
+      "<l><w>a < b</w></l>",
+      "<l><!-- comment --><w>a</w></l>",
+      "<l><w x=\"1>a</w></l>",
+      "<l><h1>a</h1></l>",
+      "<l><w>&unknown;</w></l>",
+    };
+    for (String fragment : malformed) {
+      XmlFragmentReader reader = new XmlFragmentReader(fragment);
+      assertThatThrownBy(
+              () -> {
+                while (reader.hasNext()) {
+                  reader.next();
+                }
+              })
+          .as("Parsing '%s'", fragment)
+          .isInstanceOf(XMLStreamException.class);
+    }
+  }
+}
@@ -16,7 +16,6 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.xml.stream.XMLStreamException;
 import org.apache.lucene.analysis.CharFilter;
@@ -111,14 +110,14 @@ public class AltoParserTest {
     fragment.insert(3109 + OcrParser.START_HL.length(), OcrParser.END_HL);
     List<OcrBox> boxes =
         new AltoParser(new StringReader(fragment.toString())).stream().collect(Collectors.toList());
-    assertThat(boxes.get(9).getHighlightSpan()).isNull();
-    UUID hlSpan = boxes.get(10).getHighlightSpan();
-    assertThat(hlSpan).isNotNull();
+    assertThat(boxes.get(9).isInHighlight()).isFalse();
+    int hlSpan = boxes.get(10).getHighlightSpan();
+    assertThat(hlSpan).isNotEqualTo(OcrBox.NO_HIGHLIGHT_SPAN);
     assertThat(boxes.get(11).getHighlightSpan()).isEqualTo(hlSpan);
     assertThat(boxes.get(12).getHighlightSpan()).isEqualTo(hlSpan);
     assertThat(boxes.get(13).getHighlightSpan()).isEqualTo(hlSpan);
     assertThat(boxes.get(14).getHighlightSpan()).isEqualTo(hlSpan);
-    assertThat(boxes.get(15).getHighlightSpan()).isNull();
+    assertThat(boxes.get(15).isInHighlight()).isFalse();
   }
 
   @Test
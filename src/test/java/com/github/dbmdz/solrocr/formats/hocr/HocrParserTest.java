@@ -16,7 +16,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.xml.stream.XMLStreamException;
 import org.apache.lucene.analysis.CharFilter;
@@ -123,14 +122,14 @@ public class HocrParserTest {
     fragment.insert(3365 + OcrParser.START_HL.length(), OcrParser.END_HL);
     OcrParser parser = new HocrParser(new StringReader(fragment.toString()));
     List<OcrBox> boxes = parser.stream().collect(Collectors.toList());
-    assertThat(boxes.get(20).getHighlightSpan()).isNull();
-    UUID hlSpan = boxes.get(21).getHighlightSpan();
-    assertThat(hlSpan).isNotNull();
+    assertThat(boxes.get(20).isInHighlight()).isFalse();
+    int hlSpan = boxes.get(21).getHighlightSpan();
+    assertThat(hlSpan).isNotEqualTo(OcrBox.NO_HIGHLIGHT_SPAN);
     assertThat(boxes.get(22).getHighlightSpan()).isEqualTo(hlSpan);
     assertThat(boxes.get(23).getHighlightSpan()).isEqualTo(hlSpan);
     assertThat(boxes.get(24).getHighlightSpan()).isEqualTo(hlSpan);
     assertThat(boxes.get(25).getHighlightSpan()).isEqualTo(hlSpan);
-    assertThat(boxes.get(26).getHighlightSpan()).isNull();
+    assertThat(boxes.get(26).isInHighlight()).isFalse();
     assertThat(boxes).isNotEmpty();
   }
 
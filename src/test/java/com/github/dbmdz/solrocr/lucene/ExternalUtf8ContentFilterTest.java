@@ -3,11 +3,12 @@ package com.github.dbmdz.solrocr.lucene;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.github.dbmdz.solrocr.lucene.filters.ExternalUtf8ContentFilter;
+import com.github.dbmdz.solrocr.model.SourcePointer;
 import com.github.dbmdz.solrocr.model.SourcePointer.Region;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache;
+import com.github.dbmdz.solrocr.reader.SourceReader;
 import com.github.dbmdz.solrocr.util.Utf8;
 import com.google.common.collect.ImmutableList;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.ByteBuffer;
@@ -57,7 +58,7 @@ public class ExternalUtf8ContentFilterTest {
     Path p = Paths.get("src/test/resources/data/hocr.html");
     CharFilter filter =
         new ExternalUtf8ContentFilter(
-            new BufferedReader(new FileReader(p.toFile())),
+            SourcePointer.parse(p.toString()).getReader(8192, 0),
             ImmutableList.of(new Region(0, (int) p.toFile().length())),
             p.toString());
     String full = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
@@ -148,4 +149,44 @@ public class ExternalUtf8ContentFilterTest {
       assertThat(filtered).isEqualTo(fullText);
     }
   }
+
+  @Test
+  public void supplementaryCharacters() throws IOException {
+    Path p = Files.createTempFile("supplementary", ".txt");
+    try {
+      String text = "a\uD83D\uDE00b\u00e4c\u4e2dd";
+      Files.write(p, text.getBytes(StandardCharsets.UTF_8));
+      ExternalUtf8ContentFilter filter =
+          (ExternalUtf8ContentFilter) fac.create(new StringReader(p.toString()));
+      String filtered = IOUtils.toString(filter);
+      assertThat(filtered).isEqualTo(text);
+      assertThat(filter.correctOffset(filtered.indexOf('b'))).isEqualTo(5);
+      assertThat(filter.correctOffset(filtered.indexOf('c'))).isEqualTo(8);
+      assertThat(filter.correctOffset(filtered.indexOf('d'))).isEqualTo(12);
+    } finally {
+      Files.delete(p);
+    }
+  }
+
+  @Test
+  public void detectsAsciiFiles() throws IOException {
+    Path ascii = Files.createTempFile("ascii", ".txt");
+    Path partial = Paths.get("src/test/resources/data/multi_txt/complete.txt");
+    try {
+      Files.write(ascii, "plain old ascii".getBytes(StandardCharsets.UTF_8));
+      // Only regions that span the whole file are used for detection
+      IOUtils.toString(fac.create(new StringReader(ascii + "[0:5]")));
+      assertThat(FileMetadataCache.getShared().newSnapshot().get(ascii).isAscii()).isNull();
+      IOUtils.toString(fac.create(new StringReader(ascii.toString())));
+      assertThat(FileMetadataCache.getShared().newSnapshot().get(ascii).isAscii()).isTrue();
+      SourceReader reader = SourcePointer.parse(ascii.toString()).getReader(8192, 0);
+      assertThat(reader.isAscii()).isTrue();
+      reader.close();
+
+      IOUtils.toString(fac.create(new StringReader(partial.toString())));
+      assertThat(FileMetadataCache.getShared().newSnapshot().get(partial).isAscii()).isFalse();
+    } finally {
+      Files.delete(ascii);
+    }
+  }
 }
@@ -6,7 +6,6 @@ import com.github.dbmdz.solrocr.formats.OcrParser;
 import com.github.dbmdz.solrocr.lucene.filters.OcrCharFilter;
 import com.github.dbmdz.solrocr.reader.PeekingReader;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Range;
 import com.google.common.collect.Streams;
 import java.io.IOException;
 import java.io.StringReader;
@@ -217,7 +216,6 @@ public class OcrAlternativesFilterTest {
     }
   }
 
-  @SuppressWarnings("UnstableApiUsage")
   public static class StubOcrCharFilter extends OcrCharFilter {
 
     public StubOcrCharFilter(String filteredStream) {
@@ -225,10 +223,10 @@ public class OcrAlternativesFilterTest {
           Mockito.when(Mockito.mock(OcrParser.class).getInput())
               .thenReturn(new PeekingReader(new StringReader(filteredStream), 2048, 16384))
               .getMock());
-      this.alternativeMap.put(Range.closedOpen(0, 12), new TokenWithAlternatives(0, 3, 2));
-      this.alternativeMap.put(Range.closedOpen(20, 81), new TokenWithAlternatives(20, 30, 4));
-      this.alternativeMap.put(Range.closedOpen(99, 118), new TokenWithAlternatives(99, 105, 2));
-      this.alternativeMap.put(Range.closedOpen(119, 466), new TokenWithAlternatives(119, 139, 12));
+      this.addTokenWithAlternatives(0, 12, new TokenWithAlternatives(0, 3, 2));
+      this.addTokenWithAlternatives(20, 81, new TokenWithAlternatives(20, 30, 4));
+      this.addTokenWithAlternatives(99, 118, new TokenWithAlternatives(99, 105, 2));
+      this.addTokenWithAlternatives(119, 466, new TokenWithAlternatives(119, 139, 12));
     }
 
     @Override
@@ -94,4 +94,24 @@ public class OcrCharFilterTest {
     String doc = IOUtils.toString(filter);
     assertThat(doc).contains("Imper-Imper-Imper-senater");
   }
+
+  @Test
+  public void testReadWithSmallBuffer() throws IOException {
+    Path p = Paths.get("src/test/resources/data/chronicling_america.xml");
+    String expected =
+        IOUtils.toString(ocrFac.create(filterFac.create(new StringReader(p.toString()))));
+    OcrCharFilter filter =
+        (OcrCharFilter) ocrFac.create(filterFac.create(new StringReader(p.toString())));
+    StringBuilder doc = new StringBuilder();
+    char[] buf = new char[3];
+    int read;
+    while ((read = filter.read(buf, 0, buf.length)) > 0) {
+      doc.append(buf, 0, read);
+    }
+    assertThat(read).isEqualTo(-1);
+    assertThat(doc.toString()).isEqualTo(expected);
+    int idx = expected.indexOf("purebased⁠⁠29525⁠⁠pUlcohased");
+    assertThat(filter.correctOffset(idx)).isEqualTo(29489);
+    assertThat(filter.correctOffset(expected.indexOf("Mr YoB"))).isEqualTo(28909);
+  }
 }
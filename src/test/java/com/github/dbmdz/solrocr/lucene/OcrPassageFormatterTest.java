@@ -0,0 +1,78 @@
+package com.github.dbmdz.solrocr.lucene;
+
+import static com.github.dbmdz.solrocr.formats.OcrParser.END_HL;
+import static com.github.dbmdz.solrocr.formats.OcrParser.START_HL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.model.OcrSnippet;
+import com.github.dbmdz.solrocr.reader.FileSourceReader;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import com.github.dbmdz.solrocr.reader.StringSourceReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.util.BytesRef;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OcrPassageFormatterTest {
+  private static final String OCR =
+      "<p><l><w>Grüße</w> <w>aus</w> <w>München</w> <w>und</w> <w>𝔘lm</w></l></p>";
+  private static final String[] TERMS = {"aus", "München", "𝔘lm"};
+
+  private final OcrPassageFormatter formatter =
+      new OcrPassageFormatter("<em>", "</em>", false, false, false, new MiniOcrFormat());
+
+  private static String getExpectedFragment() {
+    String expected = OCR;
+    for (String term : TERMS) {
+      expected = expected.replace(">" + term + "<", ">" + START_HL + term + END_HL + "<");
+    }
+    return expected;
+  }
+
+  private static Passage makePassage(boolean byteOffsets) {
+    Passage passage = new Passage();
+    passage.setStartOffset(0);
+    passage.setEndOffset(length(OCR, byteOffsets));
+    for (String term : TERMS) {
+      int start = length(OCR.substring(0, OCR.indexOf(">" + term + "<") + 1), byteOffsets);
+      passage.addMatch(start, start + length(term, byteOffsets), new BytesRef(term), 1);
+    }
+    return passage;
+  }
+
+  private static int length(String text, boolean byteOffsets) {
+    return byteOffsets ? text.getBytes(StandardCharsets.UTF_8).length : text.length();
+  }
+
+  @Test
+  void shouldHighlightMatchesWithByteOffsets(@TempDir Path tmpDir) throws IOException {
+    Path path = tmpDir.resolve("ocr.xml");
+    Files.write(path, OCR.getBytes(StandardCharsets.UTF_8));
+    SourceReader reader = new FileSourceReader(path, null, 8 * 1024, 8);
+    assertThat(formatter.getHighlightedFragment(makePassage(true), reader))
+        .isEqualTo(getExpectedFragment());
+  }
+
+  @Test
+  void shouldHighlightMatchesWithCharOffsets() throws IOException {
+    SourceReader reader = new StringSourceReader(OCR);
+    assertThat(formatter.getHighlightedFragment(makePassage(false), reader))
+        .isEqualTo(getExpectedFragment());
+  }
+
+  @Test
+  void shouldCountPassagesThatFailedDueToIoErrors(@TempDir Path tmpDir) throws IOException {
+    Path path = tmpDir.resolve("ocr.xml");
+    Files.write(path, OCR.getBytes(StandardCharsets.UTF_8));
+    SourceReader reader = new FileSourceReader(path, null, 8 * 1024, 8);
+    reader.close();
+    OcrSnippet[] snippets = formatter.format(new Passage[] {makePassage(true)}, reader);
+    assertThat(snippets).containsExactly((OcrSnippet) null);
+    assertThat(formatter.getNumFailedPassages()).isEqualTo(1);
+  }
+}
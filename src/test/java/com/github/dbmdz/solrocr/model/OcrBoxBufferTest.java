@@ -0,0 +1,108 @@
+package com.github.dbmdz.solrocr.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.dbmdz.solrocr.formats.OcrParser;
+import com.github.dbmdz.solrocr.formats.alto.AltoFormat;
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class OcrBoxBufferTest {
+  static Stream<Arguments> documents() {
+    return Stream.of(
+        Arguments.of("miniocr.xml", new MiniOcrFormat()),
+        Arguments.of("hyphen_partial.html", new HocrFormat()),
+        Arguments.of("alto_hyphen.xml", new AltoFormat()),
+        Arguments.of("hyphenconseq.xml", new AltoFormat()));
+  }
+
+  private static List<OcrBox> parse(String fileName, OcrFormat format) throws IOException {
+    String ocr =
+        new String(
+            Files.readAllBytes(Paths.get("src/test/resources/data", fileName)),
+            StandardCharsets.UTF_8);
+    return format
+        .getParser(new StringReader(ocr), OcrParser.ParsingFeature.TEXT)
+        .stream()
+        .collect(Collectors.toList());
+  }
+
+  @ParameterizedTest
+  @MethodSource("documents")
+  void shouldConvertToSameTextAsBoxes(String fileName, OcrFormat format) throws IOException {
+    List<OcrBox> boxes = parse(fileName, format);
+    OcrBoxBuffer buffer = new OcrBoxBuffer(4);
+    boxes.forEach(buffer::add);
+    assertThat(buffer.size()).isEqualTo(boxes.size());
+
+    // Also check ranges that split hyphenations
+    for (int from = 0; from < Math.min(boxes.size(), 50); from += 7) {
+      int to = Math.min(boxes.size(), from + 13);
+      List<OcrBox> range = new ArrayList<>(parse(fileName, format).subList(from, to));
+      assertThat(buffer.toText(from, to)).isEqualTo(OcrParser.boxesToString(range));
+    }
+    assertThat(buffer.toText(0, buffer.size())).isEqualTo(OcrParser.boxesToString(boxes));
+  }
+
+  @ParameterizedTest
+  @MethodSource("documents")
+  void shouldMaterializeBoxes(String fileName, OcrFormat format) throws IOException {
+    List<OcrBox> boxes = parse(fileName, format);
+    OcrBoxBuffer buffer = new OcrBoxBuffer();
+    boxes.forEach(buffer::add);
+    for (int idx = 0; idx < boxes.size(); idx++) {
+      OcrBox expected = boxes.get(idx);
+      OcrBox box = buffer.toBox(idx);
+      assertThat(box.getText()).isEqualTo(expected.getText());
+      assertThat(box.getPage()).isSameAs(expected.getPage());
+      assertThat(box.getUlx()).isEqualTo(expected.getUlx());
+      assertThat(box.getLry()).isEqualTo(expected.getLry());
+      assertThat(box.isHyphenated()).isEqualTo(expected.isHyphenated());
+      assertThat(box.isHyphenStart()).isEqualTo(expected.isHyphenStart());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("documents")
+  void shouldReadSameWordsWithRecycledBoxes(String fileName, OcrFormat format)
+      throws IOException {
+    String ocr =
+        new String(
+            Files.readAllBytes(Paths.get("src/test/resources/data", fileName)),
+            StandardCharsets.UTF_8);
+    OcrParser.ParsingFeature[] features = {
+      OcrParser.ParsingFeature.TEXT,
+      OcrParser.ParsingFeature.COORDINATES,
+      OcrParser.ParsingFeature.ALTERNATIVES,
+      OcrParser.ParsingFeature.PAGES
+    };
+    List<OcrBox> boxes =
+        format.getParser(new StringReader(ocr), features).stream().collect(Collectors.toList());
+    OcrBoxBuffer buffer =
+        format.getParser(new StringReader(ocr), features).readInto(new OcrBoxBuffer());
+    assertThat(buffer.size()).isEqualTo(boxes.size());
+    for (int idx = 0; idx < boxes.size(); idx++) {
+      OcrBox expected = boxes.get(idx);
+      assertThat(buffer.getText(idx)).isEqualTo(expected.getText());
+      assertThat(buffer.getUlx(idx)).isEqualTo(expected.getUlx());
+      assertThat(buffer.getLry(idx)).isEqualTo(expected.getLry());
+      assertThat(buffer.isHyphenStart(idx)).isEqualTo(expected.isHyphenStart());
+      if (expected.getPage() != null) {
+        assertThat(buffer.getPage(idx).id).isEqualTo(expected.getPage().id);
+      }
+    }
+    assertThat(buffer.toText(0, buffer.size())).isEqualTo(OcrParser.boxesToString(boxes));
+  }
+}
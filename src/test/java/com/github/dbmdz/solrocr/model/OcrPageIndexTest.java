@@ -0,0 +1,67 @@
+package com.github.dbmdz.solrocr.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.dbmdz.solrocr.breaklocator.BreakLocator;
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.formats.miniocr.MiniOcrFormat;
+import com.github.dbmdz.solrocr.reader.FileSourceReader;
+import com.github.dbmdz.solrocr.reader.SourceReader;
+import com.github.dbmdz.solrocr.reader.StringSourceReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class OcrPageIndexTest {
+  static Stream<Arguments> documents() {
+    return Stream.of(
+        Arguments.of("miniocr.xml", new MiniOcrFormat()),
+        Arguments.of("sn83032300_1887_07_16_3.html", new HocrFormat()),
+        Arguments.of("multicolumn.hocr", new HocrFormat()));
+  }
+
+  @ParameterizedTest
+  @MethodSource("documents")
+  void shouldFindSamePagesAsBreakLocator(String fileName, OcrFormat format) throws IOException {
+    SourceReader reader =
+        new FileSourceReader(Paths.get("src/test/resources/data", fileName), null, 8 * 1024, 8);
+    OcrPageIndex index = OcrPageIndex.build(format, reader);
+    assertThat(index.size()).isGreaterThan(0);
+
+    String text = reader.readAsciiString(0, reader.length());
+    BreakLocator pageLocator = format.getBreakLocator(reader, OcrBlock.PAGE);
+    for (int i = text.indexOf('>'); i >= 0 && i < text.length() - 1; i = text.indexOf('>', i + 1)) {
+      int offset = i + 1;
+      if (text.charAt(offset) == '<' || Character.isWhitespace(text.charAt(offset))) {
+        continue;
+      }
+      int pageOffset = pageLocator.preceding(offset);
+      OcrPage expected =
+          format.parsePageFragment(
+              reader.readUtf8String(pageOffset, Math.min(512, reader.length() - pageOffset)));
+      assertThat(index.getPageAt(offset)).as("page at %d", offset).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void shouldDetermineEndOfPages() throws IOException {
+    String ocr =
+        "<ocr><p xml:id=\"one\"><l><w>a</w></l></p>"
+            + "<p xml:id=\"two\"><l><w>b</w></l></p>"
+            + "<p xml:id=\"one\"><l><w>c</w></l></p></ocr>";
+    OcrPageIndex index = OcrPageIndex.build(new MiniOcrFormat(), new StringSourceReader(ocr));
+    int secondPage = ocr.indexOf("<p xml:id=\"two\"");
+    int thirdPage = ocr.lastIndexOf("<p ");
+    assertThat(index.getPageAt(ocr.indexOf(">a<") + 1).id).isEqualTo("one");
+    assertThat(index.getPageAt(ocr.indexOf(">b<") + 1).id).isEqualTo("two");
+    assertThat(index.getPageAt(ocr.indexOf(">c<") + 1).id).isEqualTo("one");
+    assertThat(index.getLastEnd("two")).isEqualTo(thirdPage);
+    assertThat(index.getLastEnd("one")).isEqualTo(Integer.MAX_VALUE);
+    assertThat(index.getLastEnd("three")).isEqualTo(-1);
+    assertThat(index.getStart(index.size() - 2)).isEqualTo(secondPage);
+  }
+}
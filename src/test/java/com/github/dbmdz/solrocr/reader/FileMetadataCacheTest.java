@@ -0,0 +1,88 @@
+package com.github.dbmdz.solrocr.reader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.dbmdz.solrocr.formats.hocr.HocrFormat;
+import com.github.dbmdz.solrocr.model.OcrFormat;
+import com.github.dbmdz.solrocr.reader.FileMetadataCache.FileMetadata;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileMetadataCacheTest {
+  @TempDir Path tempDir;
+
+  private Path copyFile() throws IOException {
+    Path path = tempDir.resolve("hocr.html");
+    Files.copy(Paths.get("src/test/resources/data/hocr.html"), path);
+    return path;
+  }
+
+  @Test
+  void shouldKeepDerivedInformationForUnchangedFiles() throws IOException {
+    Path path = copyFile();
+    FileMetadataCache cache = new FileMetadataCache(10);
+    FileMetadata metadata = cache.newSnapshot().get(path);
+    assertThat(metadata.getSize()).isEqualTo(Files.size(path));
+    metadata.setAscii(false);
+    OcrFormat format = new HocrFormat();
+    metadata.setFormat(format);
+
+    FileMetadata revalidated = cache.newSnapshot().get(path);
+    assertThat(revalidated.isAscii()).isFalse();
+    assertThat(revalidated.getFormat()).isSameAs(format);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldDiscardDerivedInformationForChangedFiles() throws IOException {
+    Path path = copyFile();
+    FileMetadataCache cache = new FileMetadataCache(10);
+    cache.newSnapshot().get(path).setAscii(false);
+    Files.setLastModifiedTime(
+        path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 10_000));
+
+    FileMetadata changed = cache.newSnapshot().get(path);
+    assertThat(changed.getLastModified()).isEqualTo(Files.getLastModifiedTime(path).toMillis());
+    assertThat(changed.isAscii()).isNull();
+  }
+
+  @Test
+  void shouldCheckFilesOncePerSnapshot() throws IOException {
+    Path path = copyFile();
+    FileMetadataCache cache = new FileMetadataCache(10);
+    FileMetadataCache.Snapshot snapshot = cache.newSnapshot();
+    FileMetadata metadata = snapshot.get(path);
+    Files.write(path, new byte[] {'a'});
+
+    assertThat(snapshot.get(path)).isSameAs(metadata);
+    FileMetadata fresh = cache.newSnapshot().get(path);
+    assertThat(fresh.getSize()).isEqualTo(1);
+    Files.delete(path);
+    assertThat(snapshot.get(path)).isSameAs(metadata);
+    assertThatThrownBy(() -> cache.newSnapshot().get(path))
+        .isInstanceOf(NoSuchFileException.class);
+  }
+
+  @Test
+  void shouldFailForMissingFiles() {
+    FileMetadataCache cache = new FileMetadataCache(10);
+    assertThatThrownBy(() -> cache.newSnapshot().get(tempDir.resolve("missing.html")))
+        .isInstanceOf(NoSuchFileException.class);
+  }
+
+  @Test
+  void shouldOnlyApplyFirstSharedConfiguration() {
+    // Other tests might have configured the shared instance already, but always with the defaults
+    assertThat(FileMetadataCache.configureShared(FileMetadataCache.DEFAULT_MAX_ENTRIES)).isTrue();
+    FileMetadataCache shared = FileMetadataCache.getShared();
+    assertThat(FileMetadataCache.configureShared(10)).isFalse();
+    assertThat(FileMetadataCache.getShared()).isSameAs(shared);
+  }
+}
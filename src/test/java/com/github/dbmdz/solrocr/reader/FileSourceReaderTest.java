@@ -9,6 +9,11 @@ import java.nio.channels.ByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -41,6 +46,127 @@ class FileSourceReaderTest {
     assertThat(reader.cache[1]).isNull();
   }
 
+  @Test
+  void shouldTrackReadStats() throws IOException {
+    FileSourceReader reader = new FileSourceReader(filePath, pointer, 8192, 2);
+    reader.getAsciiSection(128);
+    reader.getAsciiSection(256);
+    reader.getAsciiSection(8192 + 128);
+    reader.getAsciiSection(2 * 8192 + 128);
+    ReadStats stats = reader.getReadStats();
+    assertThat(stats.getSectionCacheHits()).isEqualTo(1);
+    assertThat(stats.getSectionCacheMisses()).isEqualTo(3);
+    assertThat(stats.getSectionCacheEvictions()).isEqualTo(1);
+    assertThat(stats.getBytesRead()).isEqualTo(3 * 8192);
+    reader.close();
+  }
+
+  @Test
+  void shouldShareSectionsBetweenReaders() throws IOException {
+    SectionCache sharedCache = new SectionCache(1024 * 1024, SectionCache.EvictionPolicy.LRU, -1);
+    FileSourceReader first = new FileSourceReader(filePath, pointer, 8192, 3, sharedCache);
+    SourceReader.Section fromDisk = first.getAsciiSection(128);
+    first.close();
+    assertThat(sharedCache.stats().missCount()).isEqualTo(1);
+
+    FileSourceReader second = new FileSourceReader(filePath, pointer, 8192, 3, sharedCache);
+    SourceReader.Section fromCache = second.getAsciiSection(256);
+    second.close();
+    assertThat(sharedCache.stats().hitCount()).isEqualTo(1);
+    assertThat(fromCache).isSameAs(fromDisk);
+
+    // Readers with a different section size must not share sections
+    FileSourceReader third = new FileSourceReader(filePath, pointer, 4096, 3, sharedCache);
+    assertThat(third.getAsciiSection(128).end).isEqualTo(4096);
+    third.close();
+    assertThat(sharedCache.size()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldPrefetchSectionsAroundOffsets() throws IOException {
+    FileSourceReader reader = new FileSourceReader(filePath, pointer, 8192, maxCacheEntries);
+    List<Runnable> submitted = new ArrayList<>();
+    // Section 4 is close to the start and section 9 close to the end of the section
+    reader.prefetch(new int[] {4 * 8192 + 128, 4 * 8192 + 4096, 9 * 8192 + 8000}, submitted::add);
+    assertThat(reader.pendingSections.keySet()).containsExactlyInAnyOrder(3, 4, 9, 10);
+    // Adjacent sections are loaded together
+    assertThat(submitted).hasSize(2);
+
+    // Loads that weren't picked up by the executor yet are run on the reading thread
+    SourceReader expected = new FileSourceReader(filePath, pointer, 8192, maxCacheEntries);
+    assertThat(reader.getAsciiSection(9 * 8192).getText())
+        .isEqualTo(expected.getAsciiSection(9 * 8192).getText());
+    assertThat(reader.pendingSections).doesNotContainKey(9);
+    assertThat(reader.cache[9]).isNotNull();
+
+    // Already cached sections are not prefetched again
+    reader.prefetch(new int[] {9 * 8192 + 4096}, submitted::add);
+    assertThat(submitted).hasSize(2);
+    reader.close();
+    assertThat(reader.pendingSections).isEmpty();
+    expected.close();
+  }
+
+  @Test
+  void shouldCoalesceReadsOfNearbySections() throws IOException {
+    AtomicInteger numReads = new AtomicInteger();
+    FileSourceReader reader =
+        new FileSourceReader(filePath, pointer, 1024, maxCacheEntries) {
+          @Override
+          public int readBytes(ByteBuffer dst, int start) throws IOException {
+            numReads.incrementAndGet();
+            return super.readBytes(dst, start);
+          }
+        };
+    SourceReader expected = new FileSourceReader(filePath, pointer, 1024, maxCacheEntries);
+    // Sections 10, 11, 13 and 14 are read together, section 40 on its own
+    int[] offsets = {10 * 1024 + 512, 11 * 1024 + 512, 13 * 1024 + 512, 14 * 1024 + 512, 40 * 1024};
+    reader.loadSections(offsets);
+    assertThat(numReads.get()).isEqualTo(2);
+    for (int offset : offsets) {
+      assertThat(reader.readAsciiString(offset, 500))
+          .isEqualTo(expected.readAsciiString(offset, 500));
+    }
+    assertThat(numReads.get()).isEqualTo(2);
+    // Section 41 was not loaded ahead of time
+    reader.getAsciiSection(41 * 1024);
+    assertThat(numReads.get()).isEqualTo(3);
+    reader.close();
+    expected.close();
+  }
+
+  @Test
+  void shouldOnlyLoadAheadWhatFitsIntoTheCache() throws IOException {
+    FileSourceReader reader = new FileSourceReader(filePath, pointer, 1024, 3);
+    reader.getAsciiSection(0);
+    reader.loadSections(new int[] {10 * 1024 + 512, 20 * 1024 + 512, 30 * 1024 + 512});
+    // One slot is taken by the section that was already read
+    assertThat(reader.pendingSections.keySet()).containsExactlyInAnyOrder(10, 20);
+    reader.close();
+  }
+
+  @Test
+  void shouldReadSameDataWithPrefetching() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      FileSourceReader reader = new FileSourceReader(filePath, pointer, 1024, 3);
+      SourceReader expected = new FileSourceReader(filePath, pointer, 1024, 3);
+      int[] offsets = new int[32];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = i * 37_813;
+      }
+      reader.prefetch(offsets, executor);
+      for (int offset : offsets) {
+        assertThat(reader.readAsciiString(offset, 2048))
+            .isEqualTo(expected.readAsciiString(offset, 2048));
+      }
+      reader.close();
+      expected.close();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   void shouldReadUtf8StringCorrectly() throws IOException {
     SourceReader reader = new FileSourceReader(filePath, pointer, 8192, maxCacheEntries);
@@ -88,6 +214,6 @@ class FileSourceReaderTest {
     String expectedStr = new String(expectedData, 0, 0, expectedData.length);
     assertThat(section.start).isEqualTo(sectionSize * 4);
     assertThat(section.end).isEqualTo(sectionSize * 5);
-    assertThat(section.text).isEqualTo(expectedStr);
+    assertThat(section.getText()).isEqualTo(expectedStr);
   }
 }
@@ -0,0 +1,100 @@
+package com.github.dbmdz.solrocr.reader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.dbmdz.solrocr.model.SourcePointer;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MappedFileSourceReaderTest {
+  private final List<Path> filePaths;
+  private final SourcePointer pointer;
+
+  MappedFileSourceReaderTest() throws IOException {
+    Path root = Paths.get("src/test/resources/data/alto_multi");
+    filePaths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "1860-11-30*.xml")) {
+      stream.forEach(filePaths::add);
+    }
+    filePaths.sort(Comparator.comparing(Path::toString));
+    pointer =
+        SourcePointer.parse(
+            filePaths.stream()
+                .map(p -> p.toAbsolutePath().toString())
+                .collect(Collectors.joining("+")));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {64, 1024, 8192, 65_536})
+  void shouldReadSameDataAsChannelReader(int sectionSize) throws IOException {
+    SourceReader expected = new MultiFileSourceReader(filePaths, pointer, sectionSize, 3);
+    SourceReader actual = new MappedFileSourceReader(filePaths, pointer, sectionSize, 3, null);
+    assertThat(actual.length()).isEqualTo(expected.length());
+    // Read across section and file boundaries
+    int offset = (int) Files.size(filePaths.get(0)) - (sectionSize * 2) - 17;
+    int len = sectionSize * 5;
+    assertThat(actual.readAsciiString(offset, len))
+        .isEqualTo(expected.readAsciiString(offset, len));
+    assertThat(actual.getAsciiSection(offset).getText())
+        .isEqualTo(expected.getAsciiSection(offset).getText());
+    assertThat(actual.readUtf8String(offset, len)).isEqualTo(expected.readUtf8String(offset, len));
+    expected.close();
+    actual.close();
+  }
+
+  @Test
+  void shouldReadSingleFile() throws IOException {
+    Path path = Paths.get("src/test/resources/data/bnl_lunion_1865-04-15.xml");
+    SourcePointer ptr = SourcePointer.parse(path.toString());
+    SourceReader expected = new FileSourceReader(path, ptr, 8192, 10);
+    SourceReader actual =
+        new MappedFileSourceReader(Collections.singletonList(path), ptr, 8192, 10, null);
+    assertThat(actual.readUtf8String(12345, 997)).isEqualTo(expected.readUtf8String(12345, 997));
+    expected.close();
+    actual.close();
+  }
+
+  @Test
+  void shouldRejectSourcesLargerThan2GiB(@TempDir Path tmpDir) throws IOException {
+    Path path = tmpDir.resolve("huge.xml");
+    // Sparse file, nothing is actually written
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+      file.setLength(Integer.MAX_VALUE + 1L);
+    }
+    SourcePointer ptr = SourcePointer.parse(path.toString());
+    assertThatThrownBy(
+            () -> new MappedFileSourceReader(Collections.singletonList(path), ptr, 8192, 10, null))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("2GiB");
+  }
+
+  @Test
+  void shouldReturnValidReader() throws IOException {
+    SourceReader reader = new MappedFileSourceReader(filePaths, pointer, 512 * 1024, 0, null);
+    String fromReader =
+        IOUtils.toString(
+            Channels.newReader(reader.getByteChannel(), StandardCharsets.UTF_8.name()));
+    StringBuilder fromFiles = new StringBuilder();
+    for (Path p : filePaths) {
+      fromFiles.append(new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+    }
+    assertThat(fromReader).isEqualTo(fromFiles.toString());
+  }
+}
@@ -120,7 +120,7 @@ class MultiFileSourceReaderTest {
     String expectedStr = new String(expectedData, 0, 0, expectedData.length);
     assertThat(section.start).isEqualTo(sectionStart);
     assertThat(section.end).isEqualTo(sectionStart + sectionSize);
-    assertThat(section.text).isEqualTo(expectedStr);
+    assertThat(section.getText()).isEqualTo(expectedStr);
   }
 
   @Test
@@ -12,6 +12,7 @@ import java.util.stream.Stream;
 import org.apache.lucene.tests.util.QuickPatchThreadsFilter;
 import org.apache.solr.SolrIgnoredThreadsFilter;
 import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.request.SolrQueryRequest;
 import org.junit.BeforeClass;
@@ -101,6 +102,23 @@ public class AltoTest extends SolrTestCaseJ4 {
         "//arr[@name='highlights']/arr/lst[1]/int[@name='ulx']/text()=524");
   }
 
+  @Test
+  public void testDeclaredFormat() {
+    SolrQueryRequest req = xmlQ("q", "mighty", "f.ocr_text.hl.ocr.format", "alto");
+    assertQ(
+        req,
+        "count(//lst[@name='ocrHighlighting']/lst[@name='44']/lst[@name='ocr_text']/arr/lst)=1",
+        "//arr[@name='highlights']/arr/lst[1]/int[@name='ulx']/text()=524");
+  }
+
+  @Test
+  public void testUnknownDeclaredFormat() {
+    assertQEx(
+        "Unknown formats should be rejected",
+        xmlQ("q", "mighty", "hl.ocr.format", "pdf"),
+        SolrException.ErrorCode.BAD_REQUEST);
+  }
+
   @Test
   public void testAccidentalMerge() {
     SolrQueryRequest req = xmlQ("q", "ligesom");
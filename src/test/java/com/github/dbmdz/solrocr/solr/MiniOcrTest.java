@@ -1,6 +1,10 @@
 package com.github.dbmdz.solrocr.solr;
 
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakFilters;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableMap;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -45,7 +49,8 @@ public class MiniOcrTest extends SolrTestCaseJ4 {
             "id",
             "1337"));
     Path ocrPath = dataPath.resolve("miniocr.xml");
-    assertU(adoc("ocr_text", ocrPath.toString(), "id", "31337"));
+    assertU(
+        adoc("ocr_text", ocrPath.toString(), "ocr_pointer", ocrPath.toString(), "id", "31337"));
     assertU(
         adoc(
             "ocr_text_stored",
@@ -130,6 +135,84 @@ public class MiniOcrTest extends SolrTestCaseJ4 {
         "//arr[@name='highlights'][1]/arr/lst/int[@name='lry']/text()='1'");
   }
 
+  @Test
+  public void testMetrics() {
+    assertQ(
+        xmlQ("q", "München"),
+        "count(//lst[@name='ocrHighlighting']/lst[@name='31337']/lst[@name='ocr_text']/arr/lst)=3");
+    Map<String, Metric> metrics =
+        h.getCore().getSolrMetricsContext().getMetricRegistry().getMetrics();
+    Timer passageTimer = (Timer) metrics.get("HIGHLIGHTER.ocr_highlight.time.passages");
+    assertNotNull(passageTimer);
+    assertTrue(passageTimer.getCount() > 0);
+    Counter bytesRead = (Counter) metrics.get("HIGHLIGHTER.ocr_highlight.bytesRead.file");
+    assertNotNull(bytesRead);
+    assertTrue(bytesRead.getCount() > 0);
+    assertNotNull(metrics.get("HIGHLIGHTER.ocr_highlight.executor.queued"));
+  }
+
+  @Test
+  public void testPointerFromDocValues() {
+    String snippetsPath =
+        "count(//lst[@name='ocrHighlighting']/lst[@name='31337']/lst[@name='ocr_text']/arr/lst)=3";
+    assertQ(xmlQ("q", "München", "f.ocr_text.hl.ocr.pointerField", "ocr_pointer"), snippetsPath);
+    Map<String, Metric> metrics =
+        h.getCore().getSolrMetricsContext().getMetricRegistry().getMetrics();
+    Gauge<?> pointerCacheHits =
+        (Gauge<?>) metrics.get("HIGHLIGHTER.ocr_highlight.pointerCache.hits");
+    long hitsBefore = ((Number) pointerCacheHits.getValue()).longValue();
+    assertQ(xmlQ("q", "München", "f.ocr_text.hl.ocr.pointerField", "ocr_pointer"), snippetsPath);
+    assertTrue(((Number) pointerCacheHits.getValue()).longValue() > hitsBefore);
+  }
+
+  @Test
+  public void testDebugProfile() {
+    String debugPath = "//lst[@name='ocrHighlighting']/lst[@name='31337']/lst[@name='ocr_text']";
+    assertQ(xmlQ("q", "München"), "count(" + debugPath + "/lst[@name='debug'])=0");
+    assertQ(
+        xmlQ("q", "München", "debug", "ocrHighlighting"),
+        debugPath + "/lst[@name='debug']/str[@name='thread']",
+        debugPath + "/lst[@name='debug']/lst[@name='phases']/double[@name='passages']",
+        debugPath + "/lst[@name='debug']/long[@name='bytesRead'][. > 0]",
+        debugPath + "/lst[@name='debug']/int[@name='breakLocatorProbes'][. > 0]",
+        debugPath + "/lst[@name='debug']/int[@name='passagesFormed'][. > 0]");
+    assertQ(
+        xmlQ(
+            "q",
+            "München",
+            "hl.ocr.debug",
+            "true",
+            "hl.snippets",
+            "1",
+            "hl.ocr.maxPassages",
+            "1"),
+        debugPath + "/lst[@name='debug']/int[@name='passagesCountedOnly'][. > 0]");
+  }
+
+  @Test
+  public void testPreScorePassages() {
+    String snippetsPath = "//lst[@name='ocrHighlighting']/lst[@name='31337']/lst[@name='ocr_text']";
+    assertQ(
+        xmlQ("q", "München", "hl.ocr.preScorePassages", "true"),
+        "count(" + snippetsPath + "/arr/lst)=3",
+        "//str[@name='text'][1]/text()='Bayerische Staatsbibliothek <em>München</em>'",
+        snippetsPath + "/int[@name='numTotal']/text()='3'");
+    assertQ(
+        xmlQ("q", "München", "hl.ocr.preScorePassages", "true", "hl.snippets", "1"),
+        "count(" + snippetsPath + "/arr/lst)=1",
+        snippetsPath + "/int[@name='numTotal']/text()='3'");
+  }
+
+  @Test
+  public void testPreloadSections() {
+    String snippetsPath = "//lst[@name='ocrHighlighting']/lst[@name='31337']/lst[@name='ocr_text']";
+    assertQ(
+        xmlQ("q", "München", "hl.ocr.preloadSections", "true"),
+        "count(" + snippetsPath + "/arr/lst)=3",
+        "//str[@name='text'][1]/text()='Bayerische Staatsbibliothek <em>München</em>'",
+        snippetsPath + "/int[@name='numTotal']/text()='3'");
+  }
+
   @Test
   public void testStoredHighlighting() {
     SolrQueryRequest req =
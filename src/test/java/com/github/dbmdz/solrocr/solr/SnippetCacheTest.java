@@ -0,0 +1,129 @@
+package com.github.dbmdz.solrocr.solr;
+
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakFilters;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import org.apache.lucene.tests.util.QuickPatchThreadsFilter;
+import org.apache.solr.SolrIgnoredThreadsFilter;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@ThreadLeakFilters(
+    defaultFilters = true,
+    filters = {
+      SolrIgnoredThreadsFilter.class,
+      QuickPatchThreadsFilter.class,
+      HlThreadsFilter.class
+    })
+public class SnippetCacheTest extends SolrTestCaseJ4 {
+  private static final String SNIPPETS_PATH =
+      "count(//lst[@name='ocrHighlighting']/lst[@name='31337']/lst[@name='ocr_text']/arr/lst)=3";
+
+  private static Path ocrPath;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // Needed since https://github.com/apache/solr/commit/16657ccab092
+    System.setProperty("solr.install.dir", "./");
+    initCore("solrconfig_snippetcache.xml", "schema.xml", "src/test/resources/solr", "general");
+
+    // Work on a copy, since the test modifies the file
+    ocrPath = createTempDir().resolve("miniocr.xml");
+    Files.copy(Paths.get("src", "test", "resources", "data", "miniocr.xml"), ocrPath);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clearIndex();
+    assertU(adoc("ocr_text", ocrPath.toString(), "id", "31337"));
+    assertU(commit());
+  }
+
+  private static SolrQueryRequest xmlQ(String... extraArgs) {
+    String[] args = {
+      "defType", "edismax", "hl", "true", "hl.ocr.fl", "ocr_text", "df", "ocr_text", "fl", "id",
+      "hl.snippets", "10"
+    };
+    String[] allArgs = new String[args.length + extraArgs.length];
+    System.arraycopy(args, 0, allArgs, 0, args.length);
+    System.arraycopy(extraArgs, 0, allArgs, args.length, extraArgs.length);
+    return req(allArgs);
+  }
+
+  private static Map<String, Object> getCacheStats() {
+    MetricsMap stats =
+        (MetricsMap)
+            h.getCore()
+                .getSolrMetricsContext()
+                .getMetricRegistry()
+                .getMetrics()
+                .get("CACHE.searcher.ocrSnippetCache");
+    assertNotNull(stats);
+    return stats.getValue();
+  }
+
+  @Test
+  public void testCachedSnippets() {
+    assertQ(xmlQ("q", "München"), SNIPPETS_PATH);
+    assertEquals(1L, ((Number) getCacheStats().get("inserts")).longValue());
+    assertEquals(0L, ((Number) getCacheStats().get("hits")).longValue());
+
+    assertQ(
+        xmlQ("q", "München"),
+        SNIPPETS_PATH,
+        "//str[@name='text'][1]/text()='Bayerische Staatsbibliothek <em>München</em>'");
+    assertEquals(1L, ((Number) getCacheStats().get("hits")).longValue());
+
+    // Different parameters must not be served from the cache
+    assertQ(
+        xmlQ("q", "München", "hl.ocr.tag.pre", "<b>", "hl.ocr.tag.post", "</b>"),
+        "//str[@name='text'][1]/text()='Bayerische Staatsbibliothek <b>München</b>'");
+    assertEquals(2L, ((Number) getCacheStats().get("inserts")).longValue());
+  }
+
+  @Test
+  public void testModifiedFileIsHighlightedAgain() throws Exception {
+    assertQ(xmlQ("q", "München"), SNIPPETS_PATH);
+    Files.setLastModifiedTime(
+        ocrPath, FileTime.fromMillis(Files.getLastModifiedTime(ocrPath).toMillis() + 10_000));
+    assertQ(xmlQ("q", "München"), SNIPPETS_PATH);
+    assertEquals(2L, ((Number) getCacheStats().get("inserts")).longValue());
+    assertEquals(0L, ((Number) getCacheStats().get("hits")).longValue());
+  }
+
+  @Test
+  public void testPrefetchNextPage() throws Exception {
+    assertU(adoc("ocr_text", ocrPath.toString(), "id", "31338"));
+    assertU(commit());
+    assertQ(
+        xmlQ("q", "München", "sort", "id asc", "rows", "1", "hl.ocr.prefetchRows", "1"),
+        SNIPPETS_PATH);
+    // The second document is highlighted in the background
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (((Number) getCacheStats().get("inserts")).longValue() < 2) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(50);
+    }
+    assertQ(
+        xmlQ("q", "München", "sort", "id asc", "rows", "1", "start", "1"),
+        "count(//lst[@name='ocrHighlighting']/lst[@name='31338']/lst[@name='ocr_text']/arr/lst)=3");
+    assertEquals(1L, ((Number) getCacheStats().get("hits")).longValue());
+  }
+
+  @Test
+  public void testDebugBypassesCache() {
+    assertQ(xmlQ("q", "München"), SNIPPETS_PATH);
+    assertQ(
+        xmlQ("q", "München", "debug", "ocrHighlighting"),
+        "//lst[@name='31337']/lst[@name='ocr_text']/lst[@name='debug']");
+    assertEquals(0L, ((Number) getCacheStats().get("hits")).longValue());
+  }
+}
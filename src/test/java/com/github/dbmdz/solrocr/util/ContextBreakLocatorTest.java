@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.charfilter.HTMLStripCharFilter;
@@ -108,4 +109,83 @@ class ContextBreakLocatorTest {
     snippet = reader.readUtf8String(start, end - start);
     assertThat(StringUtils.countMatches(snippet, "<TextLine")).isEqualTo(1 + 2);
   }
+
+  @Test
+  void testRememberedBreaksDontInfluenceResults() throws IOException {
+    SourceReader reader = new FileSourceReader(utf8Path, null, 8 * 1024, 8);
+    AtomicInteger numBaseCalls = new AtomicInteger();
+    TagBreakLocator countingLocator =
+        new TagBreakLocator(reader, "w") {
+          @Override
+          public int following(int offset) throws IOException {
+            numBaseCalls.incrementAndGet();
+            return super.following(offset);
+          }
+
+          @Override
+          public int preceding(int offset) throws IOException {
+            numBaseCalls.incrementAndGet();
+            return super.preceding(offset);
+          }
+        };
+    ContextBreakLocator it =
+        new ContextBreakLocator(countingLocator, new TagBreakLocator(reader, "b"), 5);
+    int[] offsets = {16283, 16400, 16283, 16150, 16600, 16350};
+    for (int offset : offsets) {
+      ContextBreakLocator fresh =
+          new ContextBreakLocator(
+              new TagBreakLocator(reader, "w"), new TagBreakLocator(reader, "b"), 5);
+      assertThat(it.preceding(offset)).isEqualTo(fresh.preceding(offset));
+      assertThat(it.following(offset)).isEqualTo(fresh.following(offset));
+    }
+    // Only the initial break of every lookup needs the base locator once the context is known
+    int numCalls = numBaseCalls.get();
+    it.preceding(16283);
+    it.following(16283);
+    assertThat(numBaseCalls.get()).isEqualTo(numCalls + 2);
+  }
+
+  @Test
+  void testHitsInOneContextOnlyNeedTheirFirstBreak() throws IOException {
+    SourceReader reader = new FileSourceReader(utf8Path, null, 8 * 1024, 8);
+    AtomicInteger numBaseCalls = new AtomicInteger();
+    TagBreakLocator countingLocator =
+        new TagBreakLocator(reader, "w") {
+          @Override
+          public int following(int offset) throws IOException {
+            numBaseCalls.incrementAndGet();
+            return super.following(offset);
+          }
+
+          @Override
+          public int preceding(int offset) throws IOException {
+            numBaseCalls.incrementAndGet();
+            return super.preceding(offset);
+          }
+        };
+    ContextBreakLocator it =
+        new ContextBreakLocator(countingLocator, new TagBreakLocator(reader, "b"), 5);
+    int start = it.preceding(16283);
+    int end = it.following(16283);
+    // First break and five context breaks in both directions
+    assertThat(numBaseCalls.get()).isEqualTo(2 * (1 + 5));
+
+    // More hits in the same word share the context, only their first breaks need the base locator
+    for (int offset : new int[] {16290, 16300, 16283}) {
+      numBaseCalls.set(0);
+      assertThat(it.preceding(offset)).isEqualTo(start);
+      assertThat(it.following(offset)).isEqualTo(end);
+      assertThat(numBaseCalls.get()).isEqualTo(2);
+    }
+
+    // A hit in the next word needs the break at the new end of its context and the link between
+    // the two words, which neither of the lookups above had to walk
+    numBaseCalls.set(0);
+    ContextBreakLocator fresh =
+        new ContextBreakLocator(
+            new TagBreakLocator(reader, "w"), new TagBreakLocator(reader, "b"), 5);
+    assertThat(it.preceding(16320)).isEqualTo(fresh.preceding(16320));
+    assertThat(it.following(16320)).isEqualTo(fresh.following(16320));
+    assertThat(numBaseCalls.get()).isEqualTo(4);
+  }
 }
@@ -0,0 +1,60 @@
+package com.github.dbmdz.solrocr.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class IntRangeMapTest {
+  private static Integer get(IntRangeMap map, int key) {
+    int idx = map.indexOf(key);
+    return idx < 0 ? null : map.getValue(idx);
+  }
+
+  @Test
+  void shouldFindValuesInHalfOpenRanges() {
+    IntRangeMap map = new IntRangeMap();
+    map.put(0, 10, 10);
+    map.put(10, 25, 25);
+    map.put(30, 40, -1);
+    assertThat(get(map, 0)).isEqualTo(10);
+    assertThat(get(map, 9)).isEqualTo(10);
+    assertThat(get(map, 10)).isEqualTo(25);
+    assertThat(get(map, 25)).isNull();
+    assertThat(get(map, 39)).isEqualTo(-1);
+    assertThat(get(map, 40)).isNull();
+    assertThat(get(map, -5)).isNull();
+    int idx = map.indexOf(12);
+    assertThat(map.getStart(idx)).isEqualTo(10);
+    assertThat(map.getEnd(idx)).isEqualTo(25);
+  }
+
+  @Test
+  void shouldOverwriteOverlappingRanges() {
+    IntRangeMap map = new IntRangeMap(1);
+    map.put(50, 60, 1);
+    map.put(0, 10, 2);
+    map.put(20, 30, 3);
+    // Spans the end of the second, the whole third and the start of the first range
+    map.put(5, 55, 4);
+    assertThat(map.size()).isEqualTo(3);
+    assertThat(get(map, 4)).isEqualTo(2);
+    assertThat(get(map, 5)).isEqualTo(4);
+    assertThat(get(map, 54)).isEqualTo(4);
+    assertThat(get(map, 55)).isEqualTo(1);
+
+    // Contained in an existing range, which is split
+    map.put(20, 30, 5);
+    assertThat(map.size()).isEqualTo(5);
+    assertThat(get(map, 19)).isEqualTo(4);
+    assertThat(get(map, 20)).isEqualTo(5);
+    assertThat(get(map, 30)).isEqualTo(4);
+  }
+
+  @Test
+  void shouldIgnoreEmptyRanges() {
+    IntRangeMap map = new IntRangeMap();
+    map.put(5, 5, 1);
+    assertThat(map.size()).isZero();
+    assertThat(get(map, 5)).isNull();
+  }
+}
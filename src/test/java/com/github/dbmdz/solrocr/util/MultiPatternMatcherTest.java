@@ -0,0 +1,49 @@
+package com.github.dbmdz.solrocr.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+class MultiPatternMatcherTest {
+  private static final MultiPatternMatcher matcher =
+      new MultiPatternMatcher(ImmutableList.of("ocr_line", "ocrx_line", "ocr_par"));
+
+  private static final byte[] text =
+      ByteBufUtils.toAsciiBytes(
+          "<p class='ocr_par'><span class='ocrx_line'>ocr</span><span class='ocr_line'>");
+
+  @Test
+  void shouldFindFirstMatchOfAnyPattern() {
+    assertThat(matcher.indexOf(text, text.length, 0)).isEqualTo(10);
+    assertThat(matcher.indexOf(text, text.length, 11)).isEqualTo(32);
+    assertThat(matcher.indexOf(text, text.length, 33)).isEqualTo(66);
+    assertThat(matcher.indexOf(text, text.length, 67)).isEqualTo(-1);
+    // The last match does not fit into the valid part of the buffer
+    assertThat(matcher.indexOf(text, 70, 33)).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldFindLastMatchOfAnyPattern() {
+    assertThat(matcher.lastIndexOfBefore(text, text.length, text.length)).isEqualTo(66);
+    assertThat(matcher.lastIndexOfBefore(text, text.length, 66)).isEqualTo(32);
+    assertThat(matcher.lastIndexOfBefore(text, text.length, 32)).isEqualTo(10);
+    assertThat(matcher.lastIndexOfBefore(text, text.length, 10)).isEqualTo(-1);
+    assertThat(matcher.lastIndexOfBefore(text, 70, text.length)).isEqualTo(32);
+  }
+
+  @Test
+  void shouldPreferEarlierStartForOverlappingPatterns() {
+    MultiPatternMatcher overlapping = new MultiPatternMatcher(ImmutableList.of("cd", "abcde"));
+    byte[] buf = ByteBufUtils.toAsciiBytes("xxabcdexx");
+    assertThat(overlapping.indexOf(buf, buf.length, 0)).isEqualTo(2);
+    assertThat(overlapping.lastIndexOfBefore(buf, buf.length, buf.length)).isEqualTo(4);
+  }
+
+  @Test
+  void shouldRejectNonAsciiPatterns() {
+    assertThatThrownBy(() -> new MultiPatternMatcher(ImmutableList.of("ocr_läne")))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}